@@ -37,7 +37,41 @@ public enum ConfigurationKey implements Serializable {
     TIME_ZONE,
     NEWSWIRE_INTERVAL,
     NEWSWIRE_PURGE_INTERVAL,
+    NEWSWIRE_SCHEDULER_INTERVAL,
+    NEWSWIRE_FETCH_JITTER,
+    NEWSWIRE_LEASE_TIMEOUT,
+    NEWSWIRE_RETRY_DELAY,
+    NEWSWIRE_MAX_CONCURRENT_FETCHES,
+    NEWSWIRE_MAX_CONCURRENT_FETCHES_PER_HOST,
+    NEWSWIRE_EXTERNAL_ID_INDEX_SIZE,
     EDITION_INTERVAL,
+    NOTIFICATION_BATCH_SIZE,
+    NOTIFICATION_COALESCE_WINDOW,
+    WORKFLOW_ACTION_TIMEOUT,
+    WORKFLOW_ACTION_MAX_ATTEMPTS,
+    WORKFLOW_ACTION_RETRY_DELAY,
+    WORKFLOW_ACTION_RETRY_INTERVAL,
+    REFERENCE_DATA_CACHE_TTL,
+    REFERENCE_DATA_CACHE_SIZE,
+    PRECALCULATED_FIELDS_BATCH_SIZE,
+    PRECALCULATED_FIELDS_CHECKPOINT,
+    METADATA_CACHE_SIZE,
+    MEDIA_DELIVERY_MAX_AGE,
+    LDAP_POOL_SIZE,
+    LDAP_POOL_VALIDATION_INTERVAL,
+    LDAP_CACHE_TTL,
+    LDAP_CACHE_SIZE,
+    LDAP_CACHE_UNKNOWN_TTL,
+    LDAP_SYNC_INTERVAL,
+    JOB_INTERVAL,
+    JOB_MAX_ATTEMPTS,
+    JOB_RETRY_DELAY,
+    JOB_TIMEOUT,
+    JOB_RETENTION,
+    JOB_CONCURRENCY_EDITION,
+    JOB_CONCURRENCY_OUTLET,
+    JOB_CONCURRENCY_NEWSWIRE,
+    JOB_CONCURRENCY_CATALOGUE_HOOK,
     CATALOGUE_WATCH_INTERVAL,
     SEARCH_ENGINE_INDEXING_INTERVAL,
     SEARCH_ENGINE_URL,
@@ -48,6 +82,8 @@ public enum ConfigurationKey implements Serializable {
     SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST,
     SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS,
     SEARCH_ENGINE_MAX_RETRIES,
+    SEARCH_ENGINE_INDEXING_BATCH_SIZE,
+    SEARCH_ENGINE_INDEXING_THREADS,
     LDAP_GROUP_USERS,
     LDAP_GROUP_ADMINISTRATORS,
     LDAP_GROUP_MAPPING_NAME,
@@ -44,7 +44,8 @@ import javax.persistence.Temporal;
 @Table(name = "notification")
 @NamedQueries({
     @NamedQuery(name = Notification.FIND_BY_USERNAME, query = "SELECT n FROM Notification n WHERE n.recipient.username = :username ORDER BY n.added DESC"),
-    @NamedQuery(name = Notification.COUNT_BY_USERNAME, query = "SELECT COUNT(n) FROM Notification n WHERE n.recipient.username = :username")
+    @NamedQuery(name = Notification.COUNT_BY_USERNAME, query = "SELECT COUNT(n) FROM Notification n WHERE n.recipient.username = :username"),
+    @NamedQuery(name = Notification.FIND_RECENT_BY_LINK, query = "SELECT n.recipient.id, n.message FROM Notification n WHERE n.link = :link AND n.added >= :since")
 })
 public class Notification implements Serializable {
 
@@ -56,6 +57,9 @@ public class Notification implements Serializable {
     /** Query for getting the count of notifications for a particular user by {@code username}. */
     public static final String COUNT_BY_USERNAME = "Notification.countByUsername";
 
+    /** Query for finding the recipients and messages of notifications with a given {@code link} added {@code since} a given time. */
+    public static final String FIND_RECENT_BY_LINK = "Notification.findRecentByLink";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
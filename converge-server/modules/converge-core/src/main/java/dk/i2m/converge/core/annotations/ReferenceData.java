@@ -0,0 +1,41 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation used for annotating entities holding reference data that rarely
+ * changes, such as workflows, outlets and user roles. Reference data looked up
+ * through the {@code ReferenceDataService} is served from a cache shared by
+ * all sessions, and changes to any entity annotated with this annotation
+ * invalidate the cache on all nodes of the cluster. Entities holding content,
+ * such as news items and editions, must not be annotated.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ReferenceData {
+}
@@ -27,6 +27,7 @@ import java.io.Serializable;
 import java.util.*;
 import javax.persistence.*;
 import org.eclipse.persistence.annotations.PrivateOwned;
+import org.eclipse.persistence.indirection.IndirectContainer;
 
 /**
  * {@link NewsItem} written by one or more journalists for publishing in an
@@ -35,6 +36,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  * @author Allan Lykke Christensen
  */
 @Entity
+@EntityListeners({NewsItemListener.class})
 @Table(name = "news_item")
 @NamedQueries({
     @NamedQuery(name = NewsItem.FIND_BY_OUTLET, query = "SELECT n FROM NewsItem AS n WHERE n.outlet = :outlet ORDER BY n.created DESC"),
@@ -49,6 +51,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
     @NamedQuery(name = NewsItem.FIND_BY_OUTLET_AND_STATE_NAME, query = "SELECT n FROM NewsItem AS n WHERE n.currentState.name = :stateName AND n.outlet = :outlet"),
     @NamedQuery(name = NewsItem.FIND_BY_OUTLET_STATE_AND_USER, query = "SELECT DISTINCT ni FROM NewsItem AS ni JOIN ni.actors AS n WHERE ni.outlet = :outlet AND ni.currentState = :state AND (( n.user = :user) OR (ni.currentState.permission = dk.i2m.converge.core.workflow.WorkflowStatePermission.GROUP AND :user MEMBER OF ni.currentState.actorRole.userAccounts)) ORDER BY ni.updated DESC"),
     @NamedQuery(name = NewsItem.FIND_VERSIONS, query = "SELECT n FROM NewsItem AS n WHERE n.versionOf = :newsItem ORDER BY n.updated DESC"),
+    @NamedQuery(name = NewsItem.FIND_AFTER_ID, query = "SELECT n FROM NewsItem AS n WHERE n.id > :id ORDER BY n.id ASC"),
     @NamedQuery(name = NewsItem.FIND_TRASH, query = "SELECT DISTINCT ni FROM NewsItem AS ni JOIN ni.actors AS n WHERE ni.currentState.workflow.trashState = ni.currentState AND (( n.user = :user) OR (ni.currentState.permission = dk.i2m.converge.core.workflow.WorkflowStatePermission.GROUP AND :user MEMBER OF ni.currentState.actorRole.userAccounts)) ORDER BY ni.updated DESC"),
     @NamedQuery(name = NewsItem.REVOKE_LOCK, query = "UPDATE NewsItem n SET n.checkedOut = NULL, n.checkedOutBy = NULL WHERE n.id = :id"),
     @NamedQuery(name = NewsItem.REVOKE_LOCKS, query = "UPDATE NewsItem n SET n.checkedOut = NULL, n.checkedOutBy = NULL WHERE n.checkedOutBy = :user"),
@@ -85,6 +88,9 @@ public class NewsItem implements Serializable {
     /** Query for finding all the versions of a given news item arranged by the date they were updated. */
     public static final String FIND_VERSIONS = "NewsItem.findVersions";
 
+    /** Query for finding news items with an identifier greater than {@code id}, ordered by their identifier. */
+    public static final String FIND_AFTER_ID = "NewsItem.findAfterId";
+
     /** Query for finding all the news item in the trash. */
     public static final String FIND_TRASH = "NewsItem.findTrash";
 
@@ -179,11 +185,11 @@ public class NewsItem implements Serializable {
     @JoinColumn(name = "current_state_id")
     private WorkflowState currentState;
 
-    @OneToMany(mappedBy = "newsItem", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "newsItem", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @OrderBy("timestamp DESC")
     private List<WorkflowStateTransition> history = new ArrayList<WorkflowStateTransition>();
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(name = "news_item_concept",
     joinColumns = {@JoinColumn(referencedColumnName = "id", name = "news_item_id", nullable = false)},
     inverseJoinColumns = {@JoinColumn(referencedColumnName = "id", name = "concept_id", nullable = false)})
@@ -197,7 +203,7 @@ public class NewsItem implements Serializable {
     @JoinColumn(name = "event_id")
     private Event event;
 
-    @OneToMany(mappedBy = "newsItem", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
+    @OneToMany(mappedBy = "newsItem", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @PrivateOwned
     private List<NewsItemActor> actors = new ArrayList<NewsItemActor>();
 
@@ -218,6 +224,12 @@ public class NewsItem implements Serializable {
     @Column(name = "precalc_current_actor")
     private String precalculatedCurrentActor = "";
 
+    /** Story as last loaded from or written to the database. */
+    private transient String storedStory;
+
+    /** Current state as last loaded from or written to the database. */
+    private transient WorkflowState storedState;
+
     @javax.persistence.Version
     @Column(name = "opt_lock")
     private int versionIdentifier;
@@ -225,7 +237,7 @@ public class NewsItem implements Serializable {
     @OneToMany(mappedBy = "newsItem", fetch = FetchType.LAZY)
     private List<NewsItemMediaAttachment> mediaAttachments = new ArrayList<NewsItemMediaAttachment>();
 
-    @OneToMany(mappedBy = "newsItem", fetch = FetchType.EAGER, cascade = CascadeType.ALL)
+    @OneToMany(mappedBy = "newsItem", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
     private List<NewsItemPlacement> placements = new ArrayList<NewsItemPlacement>();
     
     /**
@@ -764,8 +776,8 @@ public class NewsItem implements Serializable {
 
     /**
      * Gets a {@link String} containing the precalculated current actor.
-     * The current actor is precalculated everytime the {@link NewsItem}
-     * is saved.
+     * The current actor is precalculated when the {@link NewsItem}
+     * is saved with a changed state or actors.
      * 
      * @return {@link String} containing the precalculated current actor
      */
@@ -779,8 +791,8 @@ public class NewsItem implements Serializable {
 
     /**
      * Gets a {@link Integer} containing the precalculated word count.
-     * The word count is precalculated everytime the {@link NewsItem}
-     * is saved.
+     * The word count is precalculated when the {@link NewsItem}
+     * is saved with a changed story.
      * 
      * @return {@link Integer} containing the precalculated word count
      */
@@ -792,6 +804,80 @@ public class NewsItem implements Serializable {
         this.precalculatedWordCount = precalculatedWordCount;
     }
 
+    /**
+     * Recalculates the precalculated word count and current actor. The
+     * fields are maintained automatically when the {@link NewsItem} is saved,
+     * so this is only needed for fields calculated by a previous version.
+     */
+    public void updatePrecalculatedFields() {
+        updatePrecalculatedWordCount();
+        updatePrecalculatedCurrentActor();
+    }
+
+    void updatePrecalculatedWordCount() {
+        setPrecalculatedWordCount(getWordCount());
+    }
+
+    /**
+     * Recalculates the precalculated current actor. The field is maintained
+     * automatically when the {@link NewsItem} is saved, but must be
+     * recalculated when {@link #getActors() actors} are added or removed
+     * without changing the {@link NewsItem} itself.
+     */
+    public void updatePrecalculatedCurrentActor() {
+        if (getCurrentState() != null) {
+            setPrecalculatedCurrentActor(getCurrentActor());
+        }
+    }
+
+    /**
+     * Records the story and current state as stored in the database, for
+     * detecting if they were changed before the next update.
+     */
+    void markStored() {
+        this.storedStory = this.story;
+        this.storedState = this.currentState;
+    }
+
+    /**
+     * Determines if the story was changed since it was loaded from or written
+     * to the database.
+     *
+     * @return {@code true} if the story was changed
+     */
+    boolean isStoryChanged() {
+        if (story == storedStory) {
+            return false;
+        }
+        return story == null || !story.equals(storedStory);
+    }
+
+    /**
+     * Determines if the current state was changed since it was loaded from
+     * or written to the database.
+     *
+     * @return {@code true} if the current state was changed
+     */
+    boolean isCurrentStateChanged() {
+        if (currentState == null) {
+            return storedState != null;
+        }
+        return !currentState.equals(storedState);
+    }
+
+    /**
+     * Determines if the actors have been loaded, in which case they may have
+     * been changed.
+     *
+     * @return {@code true} if the actors have been loaded
+     */
+    boolean isActorsLoaded() {
+        if (actors instanceof IndirectContainer) {
+            return ((IndirectContainer) actors).isInstantiated();
+        }
+        return true;
+    }
+
     /**
      * Gets the version identifier of the entity. The purpose of the identifier
      * is to implement optimistic locking of the entity.
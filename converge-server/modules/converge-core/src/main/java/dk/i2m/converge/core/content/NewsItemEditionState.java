@@ -27,10 +27,24 @@ import javax.persistence.*;
  */
 @Entity
 @Table(name = "news_item_edition_state")
+@NamedQueries({
+    @NamedQuery(name = NewsItemEditionState.FIND_BY_EDITION_PLACEMENTS_AND_PROPERTY, query =
+        "SELECT s FROM NewsItemEditionState s WHERE s.label = :label AND s.property = :property AND s.value IS NOT NULL " +
+        "AND s.newsItem.id IN (SELECT p.newsItem.id FROM NewsItemPlacement p WHERE p.edition.id = :edition) " +
+        "ORDER BY s.id ASC")
+})
 public class NewsItemEditionState implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Query for finding the states of a property recorded under a label for
+     * the {@link NewsItem}s placed in an {@link Edition}, recorded for any
+     * {@link Edition}. Ordered from the oldest to the newest state.
+     */
+    public static final String FIND_BY_EDITION_PLACEMENTS_AND_PROPERTY =
+            "NewsItemEditionState.findByEditionPlacementsAndProperty";
+
     @Id
     @Column(name = "id")
     @GeneratedValue(strategy = GenerationType.IDENTITY)
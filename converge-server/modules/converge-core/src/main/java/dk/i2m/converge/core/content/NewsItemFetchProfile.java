@@ -0,0 +1,108 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.content;
+
+import java.util.Collection;
+
+/**
+ * Profiles of the collections of a {@link NewsItem} to fetch for a given use
+ * case. The collections of a {@link NewsItem} are fetched lazily, so the
+ * profile is used for fetching the collections needed by the use case in
+ * batches when loading multiple news items, and for loading them before the
+ * news items are handed over to other threads or detached. The workflow
+ * history is not included in any profile as it grows with every transition.
+ *
+ * @author Allan Lykke Christensen
+ */
+public enum NewsItemFetchProfile {
+
+    /**
+     * Lists of news items, such as inboxes and planning views. Only the
+     * fields and single-valued relationships are fetched.
+     */
+    LIST,
+    /**
+     * Editing a single news item.
+     */
+    EDIT("actors", "concepts", "placements", "mediaAttachments"),
+    /**
+     * Generating search engine documents.
+     */
+    INDEX("actors", "concepts", "placements"),
+    /**
+     * Publishing news items placed in an edition.
+     */
+    PUBLISH("actors", "concepts", "placements", "mediaAttachments");
+
+    private final String[] collections;
+
+    private NewsItemFetchProfile(String... collections) {
+        this.collections = collections;
+    }
+
+    /**
+     * Gets the names of the collections fetched by the profile.
+     *
+     * @return Names of the collections fetched by the profile
+     */
+    public String[] getCollections() {
+        return collections.clone();
+    }
+
+    /**
+     * Gets the collections fetched by the profile prefixed with the
+     * identification variable of a query, e.g. {@code n.actors}.
+     *
+     * @param alias Identification variable of the {@link NewsItem} in the
+     *              query
+     * @return Prefixed names of the collections fetched by the profile
+     */
+    public String[] getCollections(String alias) {
+        String[] attributes = new String[collections.length];
+        for (int i = 0; i < collections.length; i++) {
+            attributes[i] = alias + "." + collections[i];
+        }
+        return attributes;
+    }
+
+    /**
+     * Loads the collections of the profile on a given {@link NewsItem}.
+     *
+     * @param newsItem {@link NewsItem} on which to load the collections
+     */
+    public void fetch(NewsItem newsItem) {
+        for (String collection : collections) {
+            getCollection(newsItem, collection).size();
+        }
+    }
+
+    private static Collection<?> getCollection(NewsItem newsItem,
+            String collection) {
+        if ("actors".equals(collection)) {
+            return newsItem.getActors();
+        } else if ("concepts".equals(collection)) {
+            return newsItem.getConcepts();
+        } else if ("placements".equals(collection)) {
+            return newsItem.getPlacements();
+        } else if ("mediaAttachments".equals(collection)) {
+            return newsItem.getMediaAttachments();
+        } else {
+            throw new IllegalArgumentException("Unknown collection "
+                    + collection);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.content;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostUpdate;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Entity listener maintaining the precalculated word count and current actor
+ * of a {@link NewsItem}. The word count is only recalculated when the story
+ * was changed, and the current actor is only recalculated when the state was
+ * changed or the actors were loaded, so that saving a {@link NewsItem} does
+ * not require stripping and counting the story or loading the actors.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class NewsItemListener {
+
+    @PrePersist
+    public void prePersist(NewsItem newsItem) {
+        newsItem.updatePrecalculatedFields();
+    }
+
+    @PreUpdate
+    public void preUpdate(NewsItem newsItem) {
+        if (newsItem.isStoryChanged()) {
+            newsItem.updatePrecalculatedWordCount();
+        }
+        if (newsItem.isCurrentStateChanged() || newsItem.isActorsLoaded()) {
+            newsItem.updatePrecalculatedCurrentActor();
+        }
+    }
+
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    public void stored(NewsItem newsItem) {
+        newsItem.markStored();
+    }
+}
@@ -23,6 +23,7 @@ import java.io.Serializable;
 import java.text.SimpleDateFormat;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
@@ -66,10 +67,14 @@ public class NewsItemPlacement implements Serializable {
     @JoinColumn(name = "outlet_id")
     private Outlet outlet;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "section_id")
     private Section section;
 
+    /** Read-only copy of the foreign key of {@link #section}. */
+    @Column(name = "section_id", insertable = false, updatable = false)
+    private Long sectionId;
+
     @ManyToOne()
     @JoinColumn(name = "edition_id")
     private Edition edition;
@@ -88,6 +93,7 @@ public class NewsItemPlacement implements Serializable {
         this.newsItem = newsItem;
         this.outlet = outlet;
         this.section = section;
+        this.sectionId = section == null ? null : section.getId();
         this.edition = edition;
         this.position = position;
         this.start = start;
@@ -139,6 +145,19 @@ public class NewsItemPlacement implements Serializable {
 
     public void setSection(Section section) {
         this.section = section;
+        this.sectionId = section == null ? null : section.getId();
+    }
+
+    /**
+     * Gets the unique identifier of the {@link Section} of the placement,
+     * without loading the {@link Section}. The {@link Section} can then be
+     * obtained from the reference data cache.
+     *
+     * @return Unique identifier of the {@link Section}, or {@code null} if
+     *         the placement has no {@link Section}
+     */
+    public Long getSectionId() {
+        return sectionId;
     }
 
     public Integer getStart() {
@@ -180,6 +199,18 @@ public class NewsItemPlacement implements Serializable {
      */
     @Override
     public String toString() {
+        return toString(getSection());
+    }
+
+    /**
+     * String representation of the placement in a given section, e.g. a
+     * cached copy of the section of the placement.
+     *
+     * @param section {@link Section} of the placement
+     * @return Outlet title followed by edition publication date/time
+     *         and full section name
+     */
+    public String toString(Section section) {
         SimpleDateFormat formatter = new SimpleDateFormat("EEEE d. MMMM yyyy HH:mm zzz");
         StringBuilder out = new StringBuilder();
         try {
@@ -194,7 +225,7 @@ public class NewsItemPlacement implements Serializable {
         }
         try {
             out.append(" - ");
-            out.append(getSection().getFullName());
+            out.append(section.getFullName());
         } catch (Exception ex) {
         }
 
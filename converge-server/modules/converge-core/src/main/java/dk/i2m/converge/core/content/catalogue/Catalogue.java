@@ -196,6 +196,18 @@ public class Catalogue implements Serializable {
         this.location = location;
     }
 
+    /**
+     * Gets the location of the folder receiving files uploaded to the
+     * {@link Catalogue}. The folder is inside the {@link Catalogue} folder so
+     * that uploaded files can be moved to their final location without
+     * copying them.
+     *
+     * @return Path to the upload folder of the {@link Catalogue}
+     */
+    public String getUploadLocation() {
+        return getLocation() + File.separator + ".upload";
+    }
+
     public String getWatchLocation() {
         return watchLocation;
     }
@@ -18,6 +18,7 @@ package dk.i2m.converge.core.content.catalogue;
 
 import dk.i2m.converge.core.plugin.CatalogueEventException;
 import dk.i2m.converge.core.plugin.CatalogueHook;
+import dk.i2m.converge.core.plugin.PluginManager;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -154,9 +155,7 @@ public class CatalogueHookInstance implements Serializable {
 
     public CatalogueHook getHook() throws CatalogueEventException {
         try {
-            Class c = Class.forName(getHookClass());
-            CatalogueHook hook = (CatalogueHook) c.newInstance();
-            return hook;
+            return PluginManager.newInstance(getHookClass(), CatalogueHook.class);
         } catch (ClassNotFoundException ex) {
             throw new CatalogueEventException("Could not find action: "
                     + getHookClass(), ex);
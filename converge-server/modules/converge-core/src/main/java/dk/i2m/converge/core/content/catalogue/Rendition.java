@@ -9,6 +9,7 @@
  */
 package dk.i2m.converge.core.content.catalogue;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import java.io.Serializable;
 import java.util.List;
 import javax.persistence.*;
@@ -18,6 +19,7 @@ import javax.persistence.*;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "rendition")
 @NamedQueries({
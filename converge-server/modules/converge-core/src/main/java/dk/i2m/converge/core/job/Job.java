@@ -0,0 +1,742 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.job;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.plugin.CatalogueEvent;
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.Map;
+import javax.persistence.*;
+
+/**
+ * Job executed asynchronously by one of the message-driven beans. A job is
+ * persisted when it is enqueued and only its unique identifier is sent to the
+ * queue, so that queued jobs survive a restart, duplicates can be detected
+ * and failed jobs can be retried.
+ * <p/>
+ * Jobs are created using the factory methods of each {@link Type}, which
+ * set the parameters required by the type.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Entity
+@Table(name = "job")
+@NamedQueries({
+    @NamedQuery(name = Job.FIND_ACTIVE_BY_DEDUPLICATION_KEY, query = "SELECT j FROM Job j WHERE j.activeKey = :deduplicationKey"),
+    @NamedQuery(name = Job.FIND_BY_STATUS, query = "SELECT j FROM Job j WHERE j.status = :status ORDER BY j.id DESC"),
+    @NamedQuery(name = Job.FIND_PENDING, query = "SELECT j FROM Job j WHERE j.queue = :queue AND j.status = :status ORDER BY j.priority DESC, j.id ASC"),
+    @NamedQuery(name = Job.COUNT_ACTIVE, query = "SELECT COUNT(j) FROM Job j WHERE j.queue = :queue AND (j.status = :queued OR j.status = :running)"),
+    @NamedQuery(name = Job.COUNT_BY_QUEUE_AND_STATUS, query = "SELECT j.queue, j.status, COUNT(j) FROM Job j GROUP BY j.queue, j.status"),
+    @NamedQuery(name = Job.CLAIM, query = "UPDATE Job j SET j.status = :running, j.activeKey = NULL, j.owner = :owner, j.attempts = j.attempts + 1, j.started = :now, j.finished = NULL, j.nextAttempt = NULL WHERE j.id = :id AND j.status = :queued"),
+    @NamedQuery(name = Job.MARK_QUEUED, query = "UPDATE Job j SET j.status = :queued, j.queued = :now WHERE j.id = :id AND j.status = :pending"),
+    @NamedQuery(name = Job.REQUEUE_DUE_RETRIES, query = "UPDATE Job j SET j.status = :pending WHERE j.status = :retrying AND j.nextAttempt <= :now"),
+    @NamedQuery(name = Job.REQUEUE_UNDELIVERED, query = "UPDATE Job j SET j.status = :pending WHERE j.status = :queued AND j.queued < :expired"),
+    @NamedQuery(name = Job.FIND_INTERRUPTED, query = "SELECT j FROM Job j WHERE j.status = :status AND j.owner = :owner AND j.started < :started"),
+    @NamedQuery(name = Job.FIND_STALLED, query = "SELECT j FROM Job j WHERE j.status = :status AND j.started < :expired"),
+    @NamedQuery(name = Job.DELETE_FINISHED, query = "DELETE FROM Job j WHERE j.status = :status AND j.finished < :before")
+})
+public class Job implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Long property of the queue message containing the identifier of the job. */
+    public static final String MESSAGE_PROPERTY = "jobId";
+
+    /** Query for finding the pending, queued or retrying job with a given deduplication key. */
+    public static final String FIND_ACTIVE_BY_DEDUPLICATION_KEY = "Job.findActiveByDeduplicationKey";
+
+    /** Query for finding the jobs with a given status. */
+    public static final String FIND_BY_STATUS = "Job.findByStatus";
+
+    /** Query for finding the jobs of a queue with a given status in order of priority. */
+    public static final String FIND_PENDING = "Job.findPending";
+
+    /** Query for counting the queued and running jobs of a queue. */
+    public static final String COUNT_ACTIVE = "Job.countActive";
+
+    /** Query for counting the jobs of each queue and status. */
+    public static final String COUNT_BY_QUEUE_AND_STATUS = "Job.countByQueueAndStatus";
+
+    /** Query for starting a queued job. Updates no rows if the job is no longer queued. */
+    public static final String CLAIM = "Job.claim";
+
+    /** Query for marking a pending job as queued. Updates no rows if the job is no longer pending. */
+    public static final String MARK_QUEUED = "Job.markQueued";
+
+    /** Query for making the retrying jobs due to be retried pending. */
+    public static final String REQUEUE_DUE_RETRIES = "Job.requeueDueRetries";
+
+    /** Query for making the jobs queued before a given time pending. */
+    public static final String REQUEUE_UNDELIVERED = "Job.requeueUndelivered";
+
+    /** Query for finding the jobs with a given status and owner started before a given time. */
+    public static final String FIND_INTERRUPTED = "Job.findInterrupted";
+
+    /** Query for finding the jobs with a given status started before a given time. */
+    public static final String FIND_STALLED = "Job.findStalled";
+
+    /** Query for deleting the jobs with a given status finished before a given time. */
+    public static final String DELETE_FINISHED = "Job.deleteFinished";
+
+    /**
+     * Queues processed by the message-driven beans. Each queue has a
+     * configurable limit of jobs queued or running at the same time.
+     */
+    public enum Queue {
+
+        /** Edition and placement actions. */
+        EDITION("jms/editionServiceQueue", ConfigurationKey.JOB_CONCURRENCY_EDITION),
+        /** Edition actions executed on all open editions of an outlet. */
+        OUTLET("jms/outletServiceQueue", ConfigurationKey.JOB_CONCURRENCY_OUTLET),
+        /** Newswire service downloads. */
+        NEWSWIRE("jms/newswireServiceQueue", ConfigurationKey.JOB_CONCURRENCY_NEWSWIRE),
+        /** Catalogue hooks. */
+        CATALOGUE_HOOK("jms/catalogueHookQueue", ConfigurationKey.JOB_CONCURRENCY_CATALOGUE_HOOK);
+
+        private final String destination;
+
+        private final ConfigurationKey concurrency;
+
+        Queue(String destination, ConfigurationKey concurrency) {
+            this.destination = destination;
+            this.concurrency = concurrency;
+        }
+
+        /**
+         * Gets the JNDI name of the JMS destination of the queue.
+         *
+         * @return JNDI name of the JMS destination
+         */
+        public String getDestination() {
+            return destination;
+        }
+
+        /**
+         * Gets the configuration key containing the maximum number of jobs
+         * queued or running at the same time.
+         *
+         * @return Configuration key of the concurrency limit
+         */
+        public ConfigurationKey getConcurrency() {
+            return concurrency;
+        }
+    }
+
+    /**
+     * Parameters of a job and the type of their values.
+     */
+    public enum Parameter {
+
+        EDITION_ID(Long.class),
+        NEWS_ITEM_PLACEMENT_ID(Long.class),
+        OUTLET_ID(Long.class),
+        ACTION_ID(Long.class),
+        NEWSWIRE_SERVICE_ID(Long.class),
+        CATALOGUE_HOOK_INSTANCE_ID(Long.class),
+        MEDIA_ITEM_ID(Long.class),
+        EVENT_TYPE(CatalogueEvent.Event.class),
+        USER_ACCOUNT_ID(String.class);
+
+        private final Class<?> type;
+
+        Parameter(Class<?> type) {
+            this.type = type;
+        }
+
+        /**
+         * Gets the type of the values of the parameter.
+         *
+         * @return Type of the values of the parameter
+         */
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * Parses a value of the parameter stored in the payload of a job.
+         *
+         * @param value Stored value
+         * @return Parsed value
+         * @throws IllegalArgumentException If the value is not valid for the
+         *                                  parameter
+         */
+        Object parse(String value) {
+            if (type == Long.class) {
+                return Long.valueOf(value);
+            } else if (type.isEnum()) {
+                for (Object constant : type.getEnumConstants()) {
+                    if (((Enum<?>) constant).name().equals(value)) {
+                        return constant;
+                    }
+                }
+                throw new IllegalArgumentException(value
+                        + " is not a valid " + this);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Types of jobs, the queue processing them and their required
+     * parameters.
+     */
+    public enum Type {
+
+        /** Executes an edition action on an edition. */
+        EDITION_ACTION(Queue.EDITION, 4, true, Parameter.EDITION_ID,
+        Parameter.ACTION_ID),
+        /** Executes an edition action on a single placement. */
+        PLACEMENT_ACTION(Queue.EDITION, 6, true, Parameter.EDITION_ID,
+        Parameter.ACTION_ID, Parameter.NEWS_ITEM_PLACEMENT_ID),
+        /** Executes an edition action on all open editions of an outlet. */
+        OUTLET_ACTION(Queue.OUTLET, 2, true, Parameter.OUTLET_ID,
+        Parameter.ACTION_ID),
+        /** Downloads a newswire service. Retried by the next download. */
+        NEWSWIRE_FETCH(Queue.NEWSWIRE, 4, false,
+        Parameter.NEWSWIRE_SERVICE_ID),
+        /** Executes a catalogue hook on a media item. */
+        CATALOGUE_HOOK(Queue.CATALOGUE_HOOK, 4, true,
+        Parameter.CATALOGUE_HOOK_INSTANCE_ID, Parameter.MEDIA_ITEM_ID,
+        Parameter.EVENT_TYPE);
+
+        private final Queue queue;
+
+        private final int priority;
+
+        private final boolean retryable;
+
+        private final Parameter[] parameters;
+
+        Type(Queue queue, int priority, boolean retryable,
+                Parameter... parameters) {
+            this.queue = queue;
+            this.priority = priority;
+            this.retryable = retryable;
+            this.parameters = parameters;
+        }
+
+        public Queue getQueue() {
+            return queue;
+        }
+
+        /**
+         * Gets the default JMS priority (0-9) of jobs of the type.
+         *
+         * @return Default priority of jobs of the type
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * Determines if failed jobs of the type are retried.
+         *
+         * @return {@code true} if failed jobs are retried
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * Gets the parameters required by the type. The required parameters
+         * make up the deduplication key of the job.
+         *
+         * @return Parameters required by the type
+         */
+        public Parameter[] getParameters() {
+            return parameters.clone();
+        }
+    }
+
+    /**
+     * Status of a job.
+     */
+    public enum Status {
+
+        /** The job is waiting for a free slot on its queue. */
+        PENDING,
+        /** The job was sent to its queue and is waiting to be started. */
+        QUEUED,
+        /** The job is being executed. */
+        RUNNING,
+        /** The job was executed successfully. */
+        COMPLETED,
+        /** The last attempt failed and the job will be retried. */
+        RETRYING,
+        /** All attempts failed or the job could not be executed. */
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type")
+    private Type type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "queue")
+    private Queue queue;
+
+    @Column(name = "priority")
+    private Integer priority = 4;
+
+    @Column(name = "deduplication_key")
+    private String deduplicationKey;
+
+    /**
+     * Deduplication key while the job is waiting to be executed, otherwise
+     * {@code null}. Unique in the database, so that identical jobs cannot be
+     * waiting at the same time.
+     */
+    @Column(name = "active_key", unique = true)
+    private String activeKey;
+
+    /** Server instance executing the job, or that last executed it. */
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "payload") @Lob
+    private String payload = "";
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Status status = Status.PENDING;
+
+    @Column(name = "attempts")
+    private Integer attempts = 0;
+
+    @Column(name = "created")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar created;
+
+    @Column(name = "queued")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar queued;
+
+    @Column(name = "started")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar started;
+
+    @Column(name = "finished")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar finished;
+
+    @Column(name = "next_attempt")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar nextAttempt;
+
+    @Column(name = "message") @Lob
+    private String message = "";
+
+    @Transient
+    private Map<Parameter, String> parameters = null;
+
+    /**
+     * Creates a new instance of {@link Job}.
+     */
+    public Job() {
+    }
+
+    /**
+     * Creates a new pending {@link Job}.
+     *
+     * @param type       Type of job
+     * @param parameters Values of the parameters required by the type, in
+     *                   the order of {@link Type#getParameters()}
+     * @throws IllegalArgumentException If a required parameter is missing or
+     *                                  of the wrong type
+     */
+    public Job(Type type, Object... parameters) {
+        Parameter[] required = type.getParameters();
+        if (parameters.length != required.length) {
+            throw new IllegalArgumentException(type + " requires "
+                    + required.length + " parameters");
+        }
+        this.type = type;
+        this.queue = type.getQueue();
+        this.priority = type.getPriority();
+        this.created = Calendar.getInstance();
+
+        StringBuilder key = new StringBuilder(type.name());
+        for (int i = 0; i < required.length; i++) {
+            if (parameters[i] == null) {
+                throw new IllegalArgumentException(required[i]
+                        + " is required by " + type);
+            }
+            setParameter(required[i], parameters[i]);
+            key.append(':').append(getParameter(required[i]));
+        }
+        this.deduplicationKey = key.toString();
+        setStatus(Status.PENDING);
+    }
+
+    /**
+     * Creates a job executing an edition action on an edition.
+     *
+     * @param editionId Unique identifier of the edition
+     * @param actionId  Unique identifier of the edition action
+     * @param username  Username of the user executing the action, or
+     *                  {@code null} if executed by the system
+     * @return Pending {@link Job}
+     */
+    public static Job editionAction(Long editionId, Long actionId,
+            String username) {
+        return new Job(Type.EDITION_ACTION, editionId, actionId).
+                setParameter(Parameter.USER_ACCOUNT_ID, username);
+    }
+
+    /**
+     * Creates a job executing an edition action on a single placement.
+     *
+     * @param editionId   Unique identifier of the edition
+     * @param actionId    Unique identifier of the edition action
+     * @param placementId Unique identifier of the placement
+     * @param username    Username of the user executing the action, or
+     *                    {@code null} if executed by the system
+     * @return Pending {@link Job}
+     */
+    public static Job placementAction(Long editionId, Long actionId,
+            Long placementId, String username) {
+        return new Job(Type.PLACEMENT_ACTION, editionId, actionId,
+                placementId).setParameter(Parameter.USER_ACCOUNT_ID, username);
+    }
+
+    /**
+     * Creates a job executing an edition action on all open editions of an
+     * outlet.
+     *
+     * @param outletId Unique identifier of the outlet
+     * @param actionId Unique identifier of the edition action
+     * @param username Username of the user executing the action, or
+     *                 {@code null} if executed by the system
+     * @return Pending {@link Job}
+     */
+    public static Job outletAction(Long outletId, Long actionId,
+            String username) {
+        return new Job(Type.OUTLET_ACTION, outletId, actionId).
+                setParameter(Parameter.USER_ACCOUNT_ID, username);
+    }
+
+    /**
+     * Creates a job downloading a newswire service.
+     *
+     * @param newswireServiceId Unique identifier of the newswire service
+     * @return Pending {@link Job}
+     */
+    public static Job newswireFetch(Long newswireServiceId) {
+        return new Job(Type.NEWSWIRE_FETCH, newswireServiceId);
+    }
+
+    /**
+     * Creates a job executing a catalogue hook on a media item.
+     *
+     * @param hookInstanceId Unique identifier of the hook instance
+     * @param mediaItemId    Unique identifier of the media item
+     * @param event          Type of event
+     * @return Pending {@link Job}
+     */
+    public static Job catalogueHook(Long hookInstanceId, Long mediaItemId,
+            CatalogueEvent.Event event) {
+        return new Job(Type.CATALOGUE_HOOK, hookInstanceId, mediaItemId,
+                event);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public Queue getQueue() {
+        return queue;
+    }
+
+    public void setQueue(Queue queue) {
+        this.queue = queue;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Gets the key identifying identical jobs. A job is not enqueued if an
+     * identical job is already waiting to be executed.
+     *
+     * @return Deduplication key of the job
+     */
+    public String getDeduplicationKey() {
+        return deduplicationKey;
+    }
+
+    public void setDeduplicationKey(String deduplicationKey) {
+        this.deduplicationKey = deduplicationKey;
+        updateActiveKey();
+    }
+
+    /**
+     * Gets the deduplication key of the job if it is waiting to be executed.
+     *
+     * @return Deduplication key of the job if it is pending, queued or
+     *         retrying, otherwise {@code null}
+     */
+    public String getActiveKey() {
+        return activeKey;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the status of the job. The active key is kept in line with the
+     * status.
+     *
+     * @param status Status of the job
+     */
+    public void setStatus(Status status) {
+        this.status = status;
+        updateActiveKey();
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Calendar getCreated() {
+        return created;
+    }
+
+    public void setCreated(Calendar created) {
+        this.created = created;
+    }
+
+    public Calendar getQueued() {
+        return queued;
+    }
+
+    public void setQueued(Calendar queued) {
+        this.queued = queued;
+    }
+
+    public Calendar getStarted() {
+        return started;
+    }
+
+    public void setStarted(Calendar started) {
+        this.started = started;
+    }
+
+    public Calendar getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Calendar finished) {
+        this.finished = finished;
+    }
+
+    public Calendar getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(Calendar nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Gets the value of a parameter as stored in the payload of the job.
+     *
+     * @param parameter Parameter to get
+     * @return Stored value of the parameter, or {@code null} if not set
+     */
+    public String getParameter(Parameter parameter) {
+        return getParameters().get(parameter);
+    }
+
+    /**
+     * Gets the value of a parameter.
+     *
+     * @param <T>       Type of the value
+     * @param parameter Parameter to get
+     * @param type      Type of the value, as given by
+     *                  {@link Parameter#getType()}
+     * @return Value of the parameter, or {@code null} if not set
+     * @throws IllegalArgumentException If the parameter is not of the given
+     *                                  type or its stored value is not valid
+     */
+    public <T> T getParameter(Parameter parameter, Class<T> type) {
+        if (type != parameter.getType()) {
+            throw new IllegalArgumentException(parameter + " is a "
+                    + parameter.getType().getSimpleName());
+        }
+        String value = getParameter(parameter);
+        return value == null ? null : type.cast(parameter.parse(value));
+    }
+
+    /**
+     * Gets the value of a numeric parameter.
+     *
+     * @param parameter Parameter to get
+     * @return Value of the parameter, or {@code null} if not set
+     * @throws IllegalArgumentException If the parameter is not numeric or its
+     *                                  stored value is not a number
+     */
+    public Long getLongParameter(Parameter parameter) {
+        return getParameter(parameter, Long.class);
+    }
+
+    /**
+     * Sets the value of a parameter. Values are stored as strings and must
+     * not contain line breaks.
+     *
+     * @param parameter Parameter to set
+     * @param value     Value of the parameter, or {@code null} to remove the
+     *                  parameter
+     * @return This job
+     * @throws IllegalArgumentException If the value is not of the type of
+     *                                  the parameter or contains line breaks
+     */
+    public Job setParameter(Parameter parameter, Object value) {
+        Map<Parameter, String> values = getParameters();
+        if (value == null) {
+            values.remove(parameter);
+        } else {
+            if (!parameter.getType().isInstance(value)) {
+                throw new IllegalArgumentException(parameter + " must be a "
+                        + parameter.getType().getSimpleName());
+            }
+            String s = value instanceof Enum ? ((Enum<?>) value).name()
+                    : String.valueOf(value);
+            if (s.indexOf('\n') > -1 || s.indexOf('\r') > -1) {
+                throw new IllegalArgumentException(parameter
+                        + " cannot contain line breaks");
+            }
+            values.put(parameter, s);
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Parameter, String> entry : values.entrySet()) {
+            sb.append(entry.getKey().name()).append('=').
+                    append(entry.getValue()).append('\n');
+        }
+        this.payload = sb.toString();
+        return this;
+    }
+
+    private void updateActiveKey() {
+        if (status == Status.PENDING || status == Status.QUEUED
+                || status == Status.RETRYING) {
+            this.activeKey = deduplicationKey;
+        } else {
+            this.activeKey = null;
+        }
+    }
+
+    /**
+     * Parses the payload of the job upon first use.
+     *
+     * @return Parameters of the job
+     */
+    private Map<Parameter, String> getParameters() {
+        if (parameters == null) {
+            parameters = new EnumMap<Parameter, String>(Parameter.class);
+            if (payload != null) {
+                for (String line : payload.split("\n")) {
+                    int separator = line.indexOf('=');
+                    if (separator < 1) {
+                        continue;
+                    }
+                    try {
+                        parameters.put(Parameter.valueOf(
+                                line.substring(0, separator)),
+                                line.substring(separator + 1));
+                    } catch (IllegalArgumentException ex) {
+                        // Parameter no longer supported
+                    }
+                }
+            }
+        }
+        return parameters;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final Job other = (Job) obj;
+        if (this.id != other.id && (this.id == null || !this.id.equals(
+                other.id))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 59 * hash + (this.id != null ? this.id.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[id=" + id + ", type=" + type + "]";
+    }
+}
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.metadata;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.security.UserAccount;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -47,6 +48,7 @@ import javax.persistence.Temporal;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "concept")
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
@@ -37,7 +37,9 @@ import org.eclipse.persistence.annotations.PrivateOwned;
     @NamedQuery(name = NewswireItem.FIND_BY_USER, query = "SELECT DISTINCT n FROM NewswireItem n JOIN n.newswireService ns WHERE :user MEMBER OF ns.subscribers"),
     @NamedQuery(name = NewswireItem.FIND_BY_SERVICE, query = "SELECT n FROM NewswireItem AS n WHERE n.newswireService=:newswireService"),
     @NamedQuery(name = NewswireItem.SEARCH, query = "SELECT DISTINCT n FROM NewswireItem n JOIN n.newswireService ns WHERE :user MEMBER OF ns.subscribers AND (n.title LIKE :keyword OR n.summary LIKE :keyword)"),
-    @NamedQuery(name = NewswireItem.DELETE_BY_SERVICE, query = "DELETE FROM NewswireItem n WHERE n.newswireService = :newswireService")
+    @NamedQuery(name = NewswireItem.DELETE_BY_SERVICE, query = "DELETE FROM NewswireItem n WHERE n.newswireService = :newswireService"),
+    @NamedQuery(name = NewswireItem.FIND_EXTERNAL_IDS_AFTER_ID, query = "SELECT n.id, n.externalId FROM NewswireItem n WHERE n.newswireService.id = :newswireServiceId AND n.id > :lastId ORDER BY n.id ASC"),
+    @NamedQuery(name = NewswireItem.COUNT_BY_SERVICE, query = "SELECT COUNT(n) FROM NewswireItem n WHERE n.newswireService.id = :newswireServiceId")
 })
 public class NewswireItem implements Serializable {
 
@@ -57,6 +59,12 @@ public class NewswireItem implements Serializable {
 
     public static final String DELETE_BY_SERVICE = "NewswireItem.deleteByService";
 
+    /** Query for finding the identifiers and external identifiers of the items of a newswire service added after a given item. Parameters {@code newswireServiceId} and {@code lastId}. */
+    public static final String FIND_EXTERNAL_IDS_AFTER_ID = "NewswireItem.findExternalIdsAfterId";
+
+    /** Query for counting the items of a newswire service. Parameters {@code newswireServiceId}. */
+    public static final String COUNT_BY_SERVICE = "NewswireItem.countByService";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
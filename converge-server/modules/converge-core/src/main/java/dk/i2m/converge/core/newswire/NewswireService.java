@@ -17,6 +17,7 @@
 package dk.i2m.converge.core.newswire;
 
 import dk.i2m.converge.core.plugin.NewswireDecoder;
+import dk.i2m.converge.core.plugin.PluginManager;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.security.UserRole;
 import java.io.Serializable;
@@ -32,7 +33,11 @@ import org.eclipse.persistence.annotations.PrivateOwned;
 @Entity
 @Table(name = "newswire_service")
 @NamedQueries({
-    @NamedQuery(name = NewswireService.RESET_PROCESSING, query = "UPDATE NewswireService ns SET ns.processing = false"),
+    @NamedQuery(name = NewswireService.RESET_PROCESSING, query = "UPDATE NewswireService ns SET ns.processing = false, ns.processingSince = NULL"),
+    @NamedQuery(name = NewswireService.ACQUIRE_LEASE, query = "UPDATE NewswireService ns SET ns.processing = true, ns.processingSince = :now WHERE ns.id = :id AND (ns.processing = false OR ns.processingSince IS NULL OR ns.processingSince < :expired)"),
+    @NamedQuery(name = NewswireService.RELEASE_LEASE, query = "UPDATE NewswireService ns SET ns.processing = false, ns.processingSince = NULL, ns.nextFetch = :nextFetch WHERE ns.id = :id"),
+    @NamedQuery(name = NewswireService.FIND_DUE, query = "SELECT ns FROM NewswireService ns WHERE ns.active = true AND (ns.processing = false OR ns.processingSince IS NULL OR ns.processingSince < :expired) AND (ns.nextFetch IS NULL OR ns.nextFetch <= :now) ORDER BY ns.nextFetch ASC"),
+    @NamedQuery(name = NewswireService.FIND_LEASED, query = "SELECT ns FROM NewswireService ns WHERE ns.processing = true AND ns.processingSince >= :expired"),
     @NamedQuery(name = NewswireService.COUNT_SUBSCRIBERS, query = "select count(ns.subscribers) from NewswireService ns where ns.id=:id"),
     @NamedQuery(name = NewswireService.DELETE_EXPIRED_ITEMS, query = "DELETE FROM NewswireItem ni WHERE ni.newswireService.id=:id AND ni.date <= :expirationDate"),
     @NamedQuery(name = NewswireService.COUNT_ITEMS, query = "select count(ns.items) from NewswireService ns where ns.id=:id"),
@@ -46,6 +51,38 @@ public class NewswireService implements Serializable {
 
     /** Query for resetting the processing status of all newswire services. */
     public static final String RESET_PROCESSING = "NewswireService.resetProcessing";
+
+    /**
+     * Update query for acquiring the processing lease of a newswire service.
+     * The lease is only acquired if the service is not being processed or if
+     * the current lease was obtained before {@code expired}. Parameters are
+     * {@code id} (ID of the newswire service), {@code now} (Time of
+     * acquisition) and {@code expired} (Time before which leases are
+     * expired).
+     */
+    public static final String ACQUIRE_LEASE = "NewswireService.acquireLease";
+
+    /**
+     * Update query for releasing the processing lease of a newswire service.
+     * Parameters are {@code id} (ID of the newswire service) and
+     * {@code nextFetch} (Time of the next scheduled fetch).
+     */
+    public static final String RELEASE_LEASE = "NewswireService.releaseLease";
+
+    /**
+     * Query for finding the active newswire services that are due to be
+     * fetched and not holding an unexpired processing lease. Parameters are
+     * {@code now} (Current time) and {@code expired} (Time before which
+     * leases are expired).
+     */
+    public static final String FIND_DUE = "NewswireService.findDue";
+
+    /**
+     * Query for finding the newswire services holding an unexpired processing
+     * lease. Parameter is {@code expired} (Time before which leases are
+     * expired).
+     */
+    public static final String FIND_LEASED = "NewswireService.findLeased";
     
     public static final String COUNT_SUBSCRIBERS = "NewswireService.countSubscribers";
 
@@ -90,6 +127,26 @@ public class NewswireService implements Serializable {
     @Column(name = "processing")
     private boolean processing = false;
 
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    @Column(name = "processing_since")
+    private Calendar processingSince;
+
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    @Column(name = "next_fetch")
+    private Calendar nextFetch;
+
+    @Column(name = "fetch_interval")
+    private Integer fetchInterval = 0;
+
+    @Column(name = "last_fetch_etag")
+    private String lastFetchETag;
+
+    @Column(name = "last_fetch_modified")
+    private String lastFetchModified;
+
+    @Column(name = "last_fetch_checksum")
+    private String lastFetchChecksum;
+
     @ManyToMany
     @JoinTable(name = "newswire_restriction",
     joinColumns = {@JoinColumn(referencedColumnName = "id", name = "newswire_service_id", nullable = false)},
@@ -212,9 +269,7 @@ public class NewswireService implements Serializable {
      */
     public NewswireDecoder getDecoder() throws NewswireDecoderException {
         try {
-            Class c = Class.forName(getDecoderClass());
-            NewswireDecoder decoder = (NewswireDecoder) c.newInstance();
-            return decoder;
+            return PluginManager.newInstance(getDecoderClass(), NewswireDecoder.class);
         } catch (ClassNotFoundException ex) {
             throw new NewswireDecoderException("Could not find connector: " + getDecoderClass(), ex);
         } catch (InstantiationException ex) {
@@ -319,6 +374,129 @@ public class NewswireService implements Serializable {
         this.processing = processing;
     }
 
+    /**
+     * Gets the time when the current processing lease was obtained.
+     *
+     * @return Time when the current processing lease was obtained, or
+     *         {@code null} if the service is not being processed
+     */
+    public Calendar getProcessingSince() {
+        return processingSince;
+    }
+
+    /**
+     * Sets the time when the current processing lease was obtained.
+     *
+     * @param processingSince Time when the current processing lease was
+     *                        obtained
+     */
+    public void setProcessingSince(Calendar processingSince) {
+        this.processingSince = processingSince;
+    }
+
+    /**
+     * Gets the time when the service is next due to be fetched.
+     *
+     * @return Time when the service is next due to be fetched, or
+     *         {@code null} if the service should be fetched immediately
+     */
+    public Calendar getNextFetch() {
+        return nextFetch;
+    }
+
+    /**
+     * Sets the time when the service is next due to be fetched.
+     *
+     * @param nextFetch Time when the service is next due to be fetched
+     */
+    public void setNextFetch(Calendar nextFetch) {
+        this.nextFetch = nextFetch;
+    }
+
+    /**
+     * Gets the number of minutes between fetches of the service. If the
+     * interval is {@code 0} the default newswire interval is used.
+     *
+     * @return Number of minutes between fetches of the service
+     */
+    public Integer getFetchInterval() {
+        return fetchInterval;
+    }
+
+    /**
+     * Sets the number of minutes between fetches of the service.
+     *
+     * @param fetchInterval Number of minutes between fetches of the service,
+     *                      or {@code 0} to use the default newswire interval
+     */
+    public void setFetchInterval(Integer fetchInterval) {
+        this.fetchInterval = fetchInterval;
+    }
+
+    /**
+     * Gets the {@code ETag} returned by the newswire server on the last
+     * successful fetch. The value is sent back to the server so that an
+     * unchanged feed is not downloaded again.
+     *
+     * @return {@code ETag} of the last fetch, or {@code null} if unknown
+     */
+    public String getLastFetchETag() {
+        return lastFetchETag;
+    }
+
+    /**
+     * Sets the {@code ETag} returned by the newswire server on the last
+     * successful fetch.
+     *
+     * @param lastFetchETag {@code ETag} of the last fetch
+     */
+    public void setLastFetchETag(String lastFetchETag) {
+        this.lastFetchETag = lastFetchETag;
+    }
+
+    /**
+     * Gets the {@code Last-Modified} header returned by the newswire server
+     * on the last successful fetch.
+     *
+     * @return {@code Last-Modified} header of the last fetch, or {@code null}
+     *         if unknown
+     */
+    public String getLastFetchModified() {
+        return lastFetchModified;
+    }
+
+    /**
+     * Sets the {@code Last-Modified} header returned by the newswire server
+     * on the last successful fetch.
+     *
+     * @param lastFetchModified {@code Last-Modified} header of the last fetch
+     */
+    public void setLastFetchModified(String lastFetchModified) {
+        this.lastFetchModified = lastFetchModified;
+    }
+
+    /**
+     * Gets the checksum of the content downloaded on the last successful
+     * fetch. Used for detecting unchanged content from servers that do not
+     * support conditional requests.
+     *
+     * @return Checksum of the content of the last fetch, or {@code null} if
+     *         unknown
+     */
+    public String getLastFetchChecksum() {
+        return lastFetchChecksum;
+    }
+
+    /**
+     * Sets the checksum of the content downloaded on the last successful
+     * fetch.
+     *
+     * @param lastFetchChecksum Checksum of the content of the last fetch
+     */
+    public void setLastFetchChecksum(String lastFetchChecksum) {
+        this.lastFetchChecksum = lastFetchChecksum;
+    }
+
     public Long getNumberOfSubscribers() {
         return this.numberOfSubscribers;
     }
@@ -38,7 +38,9 @@ import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.workflow.Edition;
 import dk.i2m.converge.core.workflow.Outlet;
 import dk.i2m.converge.core.workflow.WorkflowState;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Context of which a plug-in is being executed.
@@ -120,6 +122,19 @@ public interface PluginContext {
      */
     List<NewswireItem> findNewswireItemsByExternalId(String externalId);
 
+    /**
+     * Finds which of the given external identifiers have already been
+     * downloaded for a {@link NewswireService}. Decoders should use this
+     * method to check all the items of a fetch at once rather than checking
+     * each item with {@link #findNewswireItemsByExternalId(String)}.
+     *
+     * @param service     {@link NewswireService} receiving the items
+     * @param externalIds External identifiers of the items
+     * @return {@link Set} of the external identifiers already downloaded
+     */
+    Set<String> findNewswireItemExternalIds(NewswireService service,
+            Collection<String> externalIds);
+
     /**
      * Fetches the newswire items of a given {@link NewswireService}.
      *
@@ -322,6 +337,20 @@ public interface PluginContext {
     NewsItemEditionState addNewsItemEditionState(Long editionId, Long newsItemId,
             String property, String value);
 
+    /**
+     * Create a new {@link NewsItemEditionState} for a {@link NewsItem} under
+     * a label, e.g. identifying the remote system the state belongs to.
+     *
+     * @param editionId  {@link Edition} id the {@link NewsItem} belongs to
+     * @param newsItemId {@link NewsItem} id that will have a new state created
+     * @param label      State label
+     * @param property   State property
+     * @param value      Property value
+     * @return Created {@link NewsItemEditionState}
+     */
+    NewsItemEditionState addNewsItemEditionState(Long editionId, Long newsItemId,
+            String label, String property, String value);
+
     /**
      * Update an existing {@link NewsItemEditionState}
      *
@@ -330,4 +359,18 @@ public interface PluginContext {
      */
     NewsItemEditionState updateNewsItemEditionState(
             NewsItemEditionState newsItemEditionState);
+
+    /**
+     * Finds the {@link NewsItemEditionState}s of a property recorded under a
+     * label for all the {@link NewsItem}s placed in an {@link Edition} in a
+     * single lookup. The states recorded for other {@link Edition}s are
+     * included, ordered from the oldest to the newest.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     * @param label     State label
+     * @param property  State property
+     * @return {@link List} of {@link NewsItemEditionState}s with a value
+     */
+    List<NewsItemEditionState> findNewsItemEditionStates(Long editionId,
+            String label, String property);
 }
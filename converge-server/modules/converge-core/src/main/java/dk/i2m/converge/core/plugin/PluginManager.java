@@ -16,45 +16,78 @@
  */
 package dk.i2m.converge.core.plugin;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigInteger;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.scannotation.AnnotationDB;
 
 /**
- * Singleton responsible for discovering available {@link Plugin}s.
+ * Singleton responsible for discovering available {@link Plugin}s and for
+ * creating instances of them.
+ * <p/>
+ * Discovery scans the archives on the classpath for plug-in annotations. The
+ * result of the scan is persisted in the plug-in index file together with a
+ * fingerprint of the classpath, and reused on the next start-up as long as
+ * the archives on the classpath are unchanged. The location of the index file
+ * can be set using the {@value #INDEX_PROPERTY} system property.
+ * <p/>
+ * Plug-ins are instantiated using {@link #newInstance(String, Class)} which
+ * resolves each plug-in class once and caches its constructor. Plug-ins are
+ * instantiated for every invocation.
  *
  * @author Allan Lykke Christensen
  */
 public final class PluginManager {
 
-    private static PluginManager instance = null;
+    /** System property containing the location of the plug-in index file. */
+    public static final String INDEX_PROPERTY = "converge.plugins.index";
+
+    private static final String INDEX_FILE = "converge-plugins.properties";
+
+    private static final String INDEX_FINGERPRINT = "fingerprint";
 
     private static final Logger LOG = Logger.getLogger(PluginManager.class.getName());
 
-    private Map<String, NewswireDecoder> newswireDecoders = new HashMap<String, NewswireDecoder>();
+    private static final ConcurrentMap<String, Factory> FACTORIES = new ConcurrentHashMap<String, Factory>();
 
-    private Map<String, WorkflowAction> workflowActions = new HashMap<String, WorkflowAction>();
+    private volatile Map<String, NewswireDecoder> newswireDecoders = Collections.emptyMap();
 
-    private Map<String, EditionAction> outletActions = new HashMap<String, EditionAction>();
+    private volatile Map<String, WorkflowAction> workflowActions = Collections.emptyMap();
 
-    private Map<String, WorkflowValidator> workflowValidators = new HashMap<String, WorkflowValidator>();
+    private volatile Map<String, EditionAction> outletActions = Collections.emptyMap();
 
-    private Map<String, CatalogueHook> catalogueActions = new HashMap<String, CatalogueHook>();
+    private volatile Map<String, WorkflowValidator> workflowValidators = Collections.emptyMap();
 
-    private Map<String, NewsItemAction> newsItemActions = new HashMap<String, NewsItemAction>();
+    private volatile Map<String, CatalogueHook> catalogueActions = Collections.emptyMap();
+
+    private volatile Map<String, NewsItemAction> newsItemActions = Collections.emptyMap();
 
     private PluginManager() {
-        discover();
+        discover(false);
     }
 
     /**
@@ -63,10 +96,49 @@ public final class PluginManager {
      * @return Instance of the {@link PluginManager}
      */
     public static PluginManager getInstance() {
-        if (instance == null) {
-            instance = new PluginManager();
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Creates an instance of a plug-in. The plug-in class and its constructor
+     * are resolved on the first invocation and cached for subsequent
+     * invocations. A new instance is returned on every invocation.
+     * <p/>
+     * Instantiating plug-ins does not require discovery, and can be done
+     * without initialising the {@link PluginManager}.
+     *
+     * @param <T>       Type of plug-in
+     * @param className Class name of the plug-in
+     * @param type      Type of plug-in
+     * @return Instance of the plug-in
+     * @throws ClassNotFoundException If the plug-in class could not be found
+     * @throws InstantiationException If the plug-in could not be instantiated,
+     *                                or is not of the given type
+     * @throws IllegalAccessException If the constructor of the plug-in is not
+     *                                accessible
+     */
+    public static <T> T newInstance(String className, Class<T> type) throws
+            ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        if (className == null) {
+            throw new ClassNotFoundException("Plug-in class not specified");
+        }
+
+        Factory factory = FACTORIES.get(className);
+        if (factory == null) {
+            Factory created = new Factory(Class.forName(className));
+            factory = FACTORIES.putIfAbsent(className, created);
+            if (factory == null) {
+                factory = created;
+            }
+        }
+
+        Object instance = factory.getInstance();
+        if (!type.isInstance(instance)) {
+            throw new InstantiationException(className + " is not a "
+                    + type.getName());
         }
-        return instance;
+        return type.cast(instance);
     }
 
     public Map<String, Plugin> getPlugins() {
@@ -105,43 +177,54 @@ public final class PluginManager {
     }
 
     /**
-     * Discovers available plug-ins.
+     * Discovers available plug-ins by scanning the classpath. The plug-in
+     * index file is updated with the result of the scan.
      *
      * @return Number of plug-ins discovered
      */
     public int discover() {
+        return discover(true);
+    }
+
+    /**
+     * Discovers available plug-ins.
+     *
+     * @param rescan {@code true} to scan the classpath even if the plug-in
+     *               index file matches the classpath
+     * @return Number of plug-ins discovered
+     */
+    private synchronized int discover(boolean rescan) {
         int discoveredPlugins = 0;
-        AnnotationDB db = new AnnotationDB();
 
         try {
-            URLClassLoader cl = (URLClassLoader) getClass().getClassLoader();
-            URL[] preClassPaths = cl.getURLs();
-
-            List<URL> postClassPaths = new ArrayList<URL>();
-            for (URL url : preClassPaths) {
-                URL newURL;
-                if (url.toString().startsWith("/")) {
-                    newURL = new URL("file:" + url.toString());
-                } else {
-                    newURL = url;
-                }
+            URL[] classPath = getClassPath();
+            String fingerprint = fingerprint(classPath);
+            File indexFile = getIndexFile();
 
-                try {
-                    newURL.openStream();
-                    postClassPaths.add(newURL);
-                } catch (FileNotFoundException fnfe) {
-                    LOG.log(Level.FINEST, "{0} was not found", newURL.toString());
-                }
+            Map<String, Set<String>> index = null;
+            if (!rescan) {
+                index = readIndex(indexFile, fingerprint);
             }
 
-            db.scanArchives(postClassPaths.toArray(new URL[postClassPaths.size()]));
+            if (index == null) {
+                AnnotationDB db = new AnnotationDB();
+                db.scanArchives(classPath);
+                index = db.getAnnotationIndex();
+                writeIndex(indexFile, fingerprint, index);
+            } else {
+                LOG.log(Level.INFO, "Using plug-in index {0}", indexFile);
+            }
 
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.NewswireDecoder.class, newswireDecoders);
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.WorkflowAction.class, workflowActions);
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.OutletAction.class, outletActions);
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.WorkflowValidator.class, workflowValidators);
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.CatalogueAction.class, catalogueActions);
-            discoveredPlugins += discoverPlugins(db, dk.i2m.converge.core.annotations.NewsItemAction.class, newsItemActions);
+            newswireDecoders = discoverPlugins(index, dk.i2m.converge.core.annotations.NewswireDecoder.class, NewswireDecoder.class);
+            workflowActions = discoverPlugins(index, dk.i2m.converge.core.annotations.WorkflowAction.class, WorkflowAction.class);
+            outletActions = discoverPlugins(index, dk.i2m.converge.core.annotations.OutletAction.class, EditionAction.class);
+            workflowValidators = discoverPlugins(index, dk.i2m.converge.core.annotations.WorkflowValidator.class, WorkflowValidator.class);
+            catalogueActions = discoverPlugins(index, dk.i2m.converge.core.annotations.CatalogueAction.class, CatalogueHook.class);
+            newsItemActions = discoverPlugins(index, dk.i2m.converge.core.annotations.NewsItemAction.class, NewsItemAction.class);
+
+            discoveredPlugins = newswireDecoders.size() + workflowActions.size()
+                    + outletActions.size() + workflowValidators.size()
+                    + catalogueActions.size() + newsItemActions.size();
             LOG.log(Level.INFO, "{0} {0, choice, 0#plugins|1#plugin|2#plugins} discovered", discoveredPlugins);
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "", ex);
@@ -150,18 +233,17 @@ public final class PluginManager {
         return discoveredPlugins;
     }
 
-    private int discoverPlugins(AnnotationDB db, Class type, Map registry) {
-        registry.clear();
-        Set<String> entities = db.getAnnotationIndex().get(type.getName());
+    private <T extends Plugin> Map<String, T> discoverPlugins(Map<String, Set<String>> index, Class annotation, Class<T> type) {
+        Map<String, T> registry = new LinkedHashMap<String, T>();
+        Set<String> entities = index.get(annotation.getName());
 
         if (entities == null) {
-            LOG.log(Level.INFO, "No {0} plug-ins found in classpath", type.getName());
+            LOG.log(Level.INFO, "No {0} plug-ins found in classpath", annotation.getName());
         } else {
             for (String clazz : entities) {
                 LOG.log(Level.INFO, "Plug-in ''{0}'' found", clazz);
                 try {
-                    Class c = Class.forName(clazz);
-                    Plugin plugin = (Plugin) c.newInstance();
+                    T plugin = newInstance(clazz, type);
                     registry.put(plugin.getName(), plugin);
                 } catch (ClassNotFoundException e) {
                     LOG.log(Level.SEVERE, "", e);
@@ -172,6 +254,206 @@ public final class PluginManager {
                 }
             }
         }
-        return registry.size();
+        return Collections.unmodifiableMap(registry);
+    }
+
+    private URL[] getClassPath() throws IOException {
+        URLClassLoader cl = (URLClassLoader) getClass().getClassLoader();
+        URL[] preClassPaths = cl.getURLs();
+
+        List<URL> postClassPaths = new ArrayList<URL>();
+        for (URL url : preClassPaths) {
+            URL newURL;
+            if (url.toString().startsWith("/")) {
+                newURL = new URL("file:" + url.toString());
+            } else {
+                newURL = url;
+            }
+
+            try {
+                newURL.openStream().close();
+                postClassPaths.add(newURL);
+            } catch (FileNotFoundException fnfe) {
+                LOG.log(Level.FINEST, "{0} was not found", newURL.toString());
+            }
+        }
+        return postClassPaths.toArray(new URL[postClassPaths.size()]);
+    }
+
+    /**
+     * Calculates a fingerprint of the classpath from the location, size and
+     * modification time of each archive. Archives that are not files are
+     * identified by their location only.
+     */
+    private String fingerprint(URL[] classPath) {
+        StringBuilder sb = new StringBuilder();
+        for (URL url : classPath) {
+            sb.append(url.toString());
+            if ("file".equals(url.getProtocol())) {
+                try {
+                    File f = new File(url.toURI());
+                    sb.append(":").append(f.length()).append(":").append(f.lastModified());
+                } catch (URISyntaxException ex) {
+                    LOG.log(Level.FINEST, "", ex);
+                } catch (IllegalArgumentException ex) {
+                    LOG.log(Level.FINEST, "", ex);
+                }
+            }
+            sb.append("\n");
+        }
+
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] digest = md5.digest(sb.toString().getBytes("UTF-8"));
+            return new BigInteger(1, digest).toString(16);
+        } catch (NoSuchAlgorithmException ex) {
+            return String.valueOf(sb.toString().hashCode());
+        } catch (IOException ex) {
+            return String.valueOf(sb.toString().hashCode());
+        }
+    }
+
+    private File getIndexFile() {
+        String location = System.getProperty(INDEX_PROPERTY);
+        if (location != null && !location.trim().isEmpty()) {
+            return new File(location);
+        }
+        return new File(System.getProperty("java.io.tmpdir"), INDEX_FILE);
+    }
+
+    /**
+     * Reads the plug-in index file.
+     *
+     * @return Annotation index read from the file, or {@code null} if the
+     *         file does not exist or was created for a different classpath
+     */
+    private Map<String, Set<String>> readIndex(File file, String fingerprint) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            properties.load(in);
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read plug-in index {0}. {1}", new Object[]{file, ex.getMessage()});
+            return null;
+        } finally {
+            close(in);
+        }
+
+        if (!fingerprint.equals(properties.getProperty(INDEX_FINGERPRINT))) {
+            LOG.log(Level.INFO, "Classpath changed since plug-in index {0} was created", file);
+            return null;
+        }
+
+        Map<String, Set<String>> index = new LinkedHashMap<String, Set<String>>();
+        for (String annotation : properties.stringPropertyNames()) {
+            if (INDEX_FINGERPRINT.equals(annotation)) {
+                continue;
+            }
+            Set<String> classes = new HashSet<String>();
+            for (String clazz : properties.getProperty(annotation).split(",")) {
+                if (!clazz.trim().isEmpty()) {
+                    classes.add(clazz.trim());
+                }
+            }
+            index.put(annotation, classes);
+        }
+        return index;
+    }
+
+    /**
+     * Writes the plug-in annotations of an annotation index to the plug-in
+     * index file. Failing to write the file is not fatal, the classpath will
+     * be scanned again on the next start-up.
+     */
+    private void writeIndex(File file, String fingerprint, Map<String, Set<String>> index) {
+        Class[] annotations = new Class[]{
+            dk.i2m.converge.core.annotations.NewswireDecoder.class,
+            dk.i2m.converge.core.annotations.WorkflowAction.class,
+            dk.i2m.converge.core.annotations.OutletAction.class,
+            dk.i2m.converge.core.annotations.WorkflowValidator.class,
+            dk.i2m.converge.core.annotations.CatalogueAction.class,
+            dk.i2m.converge.core.annotations.NewsItemAction.class};
+
+        Properties properties = new Properties();
+        properties.setProperty(INDEX_FINGERPRINT, fingerprint);
+        for (Class annotation : annotations) {
+            StringBuilder classes = new StringBuilder();
+            Set<String> entities = index.get(annotation.getName());
+            if (entities != null) {
+                for (String clazz : entities) {
+                    if (classes.length() > 0) {
+                        classes.append(",");
+                    }
+                    classes.append(clazz);
+                }
+            }
+            properties.setProperty(annotation.getName(), classes.toString());
+        }
+
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, "Converge plug-in index");
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not write plug-in index {0}. {1}", new Object[]{file, ex.getMessage()});
+        } finally {
+            close(out);
+        }
+    }
+
+    private void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ex) {
+                LOG.log(Level.FINEST, "", ex);
+            }
+        }
+    }
+
+    /**
+     * Lazy holder of the {@link PluginManager} singleton. The class loader
+     * guarantees that the singleton is created exactly once.
+     */
+    private static class Holder {
+
+        private static final PluginManager INSTANCE = new PluginManager();
+    }
+
+    /**
+     * Factory of a resolved plug-in class.
+     */
+    private static class Factory {
+
+        private final Constructor constructor;
+
+        Factory(Class clazz) throws InstantiationException {
+            try {
+                this.constructor = clazz.getConstructor();
+            } catch (NoSuchMethodException ex) {
+                InstantiationException ie = new InstantiationException(
+                        clazz.getName() + " does not have a public constructor with no arguments");
+                ie.initCause(ex);
+                throw ie;
+            }
+        }
+
+        Object getInstance() throws InstantiationException,
+                IllegalAccessException {
+            try {
+                return constructor.newInstance();
+            } catch (InvocationTargetException ex) {
+                InstantiationException ie = new InstantiationException(
+                        constructor.getDeclaringClass().getName()
+                        + " could not be instantiated. " + ex.getCause());
+                ie.initCause(ex.getCause());
+                throw ie;
+            }
+        }
     }
 }
@@ -39,7 +39,8 @@ import javax.persistence.Temporal;
 @Entity
 @Table(name = "index_queue")
 @NamedQueries({
-    @NamedQuery(name = IndexQueueEntry.FIND_BY_TYPE_ID_AND_OPERATION, query = "SELECT e FROM IndexQueueEntry AS e WHERE e.entryId=:entryId AND e.type=:type AND e.operation=:operation")
+    @NamedQuery(name = IndexQueueEntry.FIND_BY_TYPE_ID_AND_OPERATION, query = "SELECT e FROM IndexQueueEntry AS e WHERE e.entryId=:entryId AND e.type=:type AND e.operation=:operation"),
+    @NamedQuery(name = IndexQueueEntry.FIND_AFTER_ID, query = "SELECT e FROM IndexQueueEntry AS e WHERE e.id > :lastId ORDER BY e.id ASC")
 })
 public class IndexQueueEntry implements Serializable {
 
@@ -47,6 +48,9 @@ public class IndexQueueEntry implements Serializable {
 
     public static final String FIND_BY_TYPE_ID_AND_OPERATION = "IndexQueueEntry.findByTypeIdAndOperation";
 
+    /** Query identifier for finding the entries queued after a given entry ({@code lastId}). */
+    public static final String FIND_AFTER_ID = "IndexQueueEntry.findAfterId";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -45,6 +45,8 @@ import javax.persistence.*;
 @NamedQueries({
     @NamedQuery(name = UserAccount.FIND_BY_UID, query = "SELECT u FROM UserAccount u WHERE u.username=:username"),
     @NamedQuery(name = UserAccount.FIND_BY_USER_ROLE, query = "SELECT u FROM UserRole r JOIN r.userAccounts u WHERE r.name=:roleName"),
+    @NamedQuery(name = UserAccount.FIND_MEMBERS_OF_USER_ROLE, query = "SELECT DISTINCT u FROM UserRole r JOIN r.userAccounts u WHERE r = :userRole"),
+    @NamedQuery(name = UserAccount.FIND_ACTORS_BY_NEWS_ITEM_AND_USER_ROLE, query = "SELECT DISTINCT u FROM NewsItemActor a JOIN a.user u WHERE a.newsItem = :newsItem AND a.role = :userRole"),
     @NamedQuery(name = UserAccount.FIND_USERS_WITH_PUBLICATIONS, query = "SELECT u FROM NewsItemActor n JOIN n.newsItem ni JOIN ni.placements p JOIN n.user u WHERE (n.role = :userRole AND p.edition.publicationDate >= :startDate AND p.edition.publicationDate <= :endDate) GROUP BY u"),
     @NamedQuery(name = UserAccount.FIND_ACTIVE_USERS_BY_ROLE, query = "SELECT DISTINCT u FROM NewsItem AS ni JOIN ni.actors AS a JOIN a.user AS u JOIN ni.history AS h WHERE (a.role = :userRole AND h.user = a.user AND h.timestamp >= :startDate AND h.timestamp <= :endDate AND h.submitted = true) ORDER BY a.user.username DESC"),
     @NamedQuery(name = UserAccount.FIND_PASSIVE_USERS_BY_ROLE, query = "SELECT DISTINCT u FROM NewsItem AS ni JOIN ni.actors AS a JOIN a.user AS u JOIN ni.history AS h WHERE (a.role = :userRole AND h.timestamp >= :startDate AND h.timestamp <= :endDate AND h.submitted = true) ORDER BY a.user.username DESC")
@@ -59,6 +61,12 @@ public class UserAccount implements Serializable {
     /** Query for finding a user accounts who are members of a given role. */
     public static final String FIND_BY_USER_ROLE = "UserAccount.findByUserRole";
 
+    /** Query for finding the user accounts who are members of a given {@link UserRole}. */
+    public static final String FIND_MEMBERS_OF_USER_ROLE = "UserAccount.findMembersOfUserRole";
+
+    /** Query for finding the user accounts who are actors of a given news item in a given role. */
+    public static final String FIND_ACTORS_BY_NEWS_ITEM_AND_USER_ROLE = "UserAccount.findActorsByNewsItemAndUserRole";
+
     /** Query for generating the activity report. */
     public static final String FIND_USERS_WITH_PUBLICATIONS = "UserAccount.findUsersWithPublications";
 
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.security;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.newswire.NewswireService;
 import dk.i2m.converge.core.workflow.Outlet;
 import java.io.Serializable;
@@ -38,6 +39,7 @@ import javax.persistence.Table;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "user_role")
 public class UserRole implements Serializable {
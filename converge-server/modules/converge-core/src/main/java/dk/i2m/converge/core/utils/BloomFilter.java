@@ -0,0 +1,137 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.util.BitSet;
+
+/**
+ * Space-efficient set of strings supporting membership tests with false
+ * positives but no false negatives. If {@link #mightContain(String)} returns
+ * {@code false} the string was never added. Strings cannot be removed.
+ * <p/>
+ * The filter is not thread-safe.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class BloomFilter {
+
+    private final BitSet bits;
+
+    private final int size;
+
+    private final int hashes;
+
+    private final int capacity;
+
+    private int count = 0;
+
+    /**
+     * Creates a new instance of {@link BloomFilter}.
+     *
+     * @param capacity                  Expected number of strings added
+     * @param falsePositiveProbability Acceptable probability of false
+     *                                  positives while the filter holds no
+     *                                  more than {@code capacity} strings
+     */
+    public BloomFilter(int capacity, double falsePositiveProbability) {
+        this.capacity = Math.max(1, capacity);
+        double ln2 = Math.log(2);
+        this.size = Math.max(64, (int) Math.ceil(-this.capacity
+                * Math.log(falsePositiveProbability) / (ln2 * ln2)));
+        this.hashes = Math.max(1, (int) Math.round((double) size
+                / this.capacity * ln2));
+        this.bits = new BitSet(size);
+    }
+
+    /**
+     * Adds a string to the filter.
+     *
+     * @param value String to add
+     */
+    public void add(String value) {
+        int h1 = value.hashCode();
+        int h2 = secondaryHash(value);
+        for (int i = 0; i < hashes; i++) {
+            bits.set(index(h1, h2, i));
+        }
+        count++;
+    }
+
+    /**
+     * Determines if a string might have been added to the filter.
+     *
+     * @param value String to check
+     * @return {@code false} if the string was definitely not added, or
+     *         {@code true} if the string might have been added
+     */
+    public boolean mightContain(String value) {
+        int h1 = value.hashCode();
+        int h2 = secondaryHash(value);
+        for (int i = 0; i < hashes; i++) {
+            if (!bits.get(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of strings added to the filter.
+     *
+     * @return Number of strings added to the filter
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of strings the filter was sized for.
+     *
+     * @return Number of strings the filter was sized for
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Determines if more strings were added than the filter was sized for, in
+     * which case the false positive probability exceeds the requested.
+     *
+     * @return {@code true} if the filter is over capacity
+     */
+    public boolean isOverCapacity() {
+        return count > capacity;
+    }
+
+    private int index(int h1, int h2, int i) {
+        int combined = h1 + i * h2;
+        return (combined & Integer.MAX_VALUE) % size;
+    }
+
+    /**
+     * FNV-1a hash of the string, used together with {@link String#hashCode()}
+     * for deriving the bit positions.
+     */
+    private static int secondaryHash(String value) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x01000193;
+        }
+        return hash | 1;
+    }
+}
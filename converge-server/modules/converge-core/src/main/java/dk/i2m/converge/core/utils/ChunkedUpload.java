@@ -0,0 +1,219 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * File being uploaded in chunks. Each chunk is streamed from the request
+ * directly to its offset in the file, so that a chunk can be resent after a
+ * failure and an interrupted upload can be resumed from
+ * {@link #getLength()}. The file should be kept on the same file system as
+ * its final location, so that it can be moved there without copying it.
+ * <p/>
+ * Uploads are not thread-safe. A client must send the chunks of an upload
+ * one at a time.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ChunkedUpload {
+
+    /** Extension of files being uploaded. */
+    private static final String EXTENSION = ".upload";
+
+    /** Number of bytes transferred from the request at a time. */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    private static final String DIGEST = "MD5";
+
+    private final File file;
+
+    /**
+     * Creates a new instance of {@link ChunkedUpload}.
+     *
+     * @param directory
+     *          Directory containing the files being uploaded
+     * @param uploadId
+     *          Identifier of the upload chosen by the client. Characters
+     *          that are not safe in file names are replaced
+     */
+    public ChunkedUpload(File directory, String uploadId) {
+        this.file = new File(directory, uploadId.replaceAll("[^A-Za-z0-9._-]",
+                "_") + EXTENSION);
+    }
+
+    /**
+     * Gets the file being uploaded.
+     *
+     * @return File being uploaded
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of bytes received. An interrupted upload should be
+     * resumed from this offset.
+     *
+     * @return Number of bytes received
+     */
+    public long getLength() {
+        return file.length();
+    }
+
+    /**
+     * Writes a chunk at a given offset of the file. Any bytes after the chunk
+     * are discarded, as they were received before the chunk was resent.
+     *
+     * @param in
+     *          Stream containing the chunk
+     * @param offset
+     *          Offset of the chunk in the file
+     * @param checksum
+     *          Expected MD5 checksum of the chunk as a hexadecimal string, or
+     *          {@code null} if the chunk should not be verified
+     * @return Number of bytes in the chunk
+     * @throws IOException
+     *          If the offset is beyond the bytes received, if the chunk could
+     *          not be written, or if the chunk did not match the checksum.
+     *          The file is truncated to the offset if the chunk was
+     *          incomplete
+     */
+    public long write(InputStream in, long offset, String checksum) throws
+            IOException {
+        if (offset < 0 || offset > getLength()) {
+            throw new IOException("Chunk at offset " + offset + " does not "
+                    + "continue the " + getLength() + " bytes received");
+        }
+        file.getParentFile().mkdirs();
+
+        DigestInputStream digestIn = new DigestInputStream(in, getDigest());
+        ReadableByteChannel source = Channels.newChannel(digestIn);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long position = offset;
+            boolean complete = false;
+            try {
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position,
+                        TRANSFER_SIZE)) > 0) {
+                    position += transferred;
+                }
+                // transferFrom also returns 0 if the source is not at its end
+                complete = source.read(ByteBuffer.allocate(1)) == -1;
+            } finally {
+                channel.truncate(complete ? position : offset);
+            }
+            if (!complete) {
+                throw new IOException("Chunk at offset " + offset
+                        + " could not be written completely");
+            }
+
+            String actual = toHex(digestIn.getMessageDigest().digest());
+            if (checksum != null && !checksum.equalsIgnoreCase(actual)) {
+                channel.truncate(offset);
+                throw new IOException("Chunk at offset " + offset
+                        + " does not match checksum " + checksum);
+            }
+            return position - offset;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Calculates the MD5 checksum of the bytes received.
+     *
+     * @return MD5 checksum of the bytes received as a hexadecimal string
+     * @throws IOException
+     *          If the file could not be read
+     */
+    public String getChecksum() throws IOException {
+        MessageDigest md = getDigest();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Discards the bytes received.
+     */
+    public void delete() {
+        file.delete();
+    }
+
+    /**
+     * Discards uploads in a directory that have not received any chunks for
+     * a given period.
+     *
+     * @param directory
+     *          Directory containing the files being uploaded
+     * @param maxAge
+     *          Number of milliseconds after which an upload is abandoned
+     */
+    public static void purge(File directory, long maxAge) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long expired = System.currentTimeMillis() - maxAge;
+        for (File f : files) {
+            if (f.getName().endsWith(EXTENSION) && f.lastModified() < expired) {
+                f.delete();
+            }
+        }
+    }
+
+    private static MessageDigest getDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance(DIGEST);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
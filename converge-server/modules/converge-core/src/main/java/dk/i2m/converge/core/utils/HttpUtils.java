@@ -16,7 +16,12 @@
  */
 package dk.i2m.converge.core.utils;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
@@ -37,6 +42,12 @@ public class HttpUtils {
     /** Digest used to construct the token. */
     private static final String TOKEN_DIGEST = "MD5";
 
+    /** Prefix of the single byte range supported in a {@code Range} header. */
+    private static final String BYTES_UNIT = "bytes=";
+
+    /** Range returned by {@link #getRange} when the range is unsatisfiable. */
+    private static final long[] UNSATISFIABLE = new long[0];
+
     /**
      * Protection against instantiation of the class.
      */
@@ -411,4 +422,327 @@ public class HttpUtils {
                     getBinary(), filePackage.getContentType());
         }
     }
+
+    /**
+     * Creates a strong entity tag for a file delivered through
+     * {@link #sendFile} or {@link #sendBinary(HttpServletRequest,
+     * HttpServletResponse, String, byte[], String, String, long, int, boolean)}.
+     *
+     * @param type
+     *          Type of the file, e.g. {@code rendition}
+     * @param id
+     *          Unique identifier of the file
+     * @param size
+     *          Size of the file in bytes
+     * @param lastModified
+     *          Time the file was last modified, or {@code 0} if unknown
+     * @return Strong entity tag of the file
+     */
+    public static String createETag(String type, Object id, long size,
+            long lastModified) {
+        StringBuilder etag = new StringBuilder("\"");
+        etag.append(type).append("-").append(id).append("-").append(size);
+        if (lastModified > 0) {
+            etag.append("-").append(Long.toHexString(lastModified));
+        }
+        return etag.append("\"").toString();
+    }
+
+    /**
+     * Sends a file to the user through a {@link HttpServletResponse}. The file
+     * is transferred from its {@link FileChannel} without copying it into
+     * memory. The entity tag and modification time of the file are validated
+     * against the conditional headers of the request, responding
+     * {@code 304 Not Modified} if the client already has the file, and a
+     * single byte range requested in the {@code Range} header is sent as
+     * {@code 206 Partial Content}.
+     *
+     * @param request
+     *          {@link HttpServletRequest} requesting the file
+     * @param response
+     *          {@link HttpServletResponse} to send the file through
+     * @param file
+     *          File to send
+     * @param filename
+     *          Name of the file presented to the user
+     * @param contentType
+     *          Content type of the file
+     * @param etag
+     *          Strong entity tag of the file, see {@link #createETag}
+     * @param maxAge
+     *          Number of seconds the file may be cached by the client and
+     *          shared caches, or {@code 0} if the file may only be cached
+     *          privately and must be revalidated
+     * @param forceDownload
+     *          Force the user to download the file rather than displaying it
+     *          in-line
+     * @throws IOException
+     *          If the file could not be read or the
+     *          {@link HttpServletResponse} could not be manipulated
+     */
+    public static void sendFile(HttpServletRequest request,
+            HttpServletResponse response, File file, String filename,
+            String contentType, String etag, int maxAge, boolean forceDownload)
+            throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        long[] range = prepare(request, response, filename, contentType, etag,
+                length, lastModified, maxAge, forceDownload);
+        if (range == null) {
+            return;
+        }
+
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel out = Channels.newChannel(response.
+                    getOutputStream());
+            long position = range[0];
+            long remaining = range[1] - range[0] + 1;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        } finally {
+            in.close();
+        }
+        response.flushBuffer();
+    }
+
+    /**
+     * Sends binary data to the user through a {@link HttpServletResponse}
+     * supporting conditional and range requests in the same way as
+     * {@link #sendFile}. Used for files not stored on the file system.
+     *
+     * @param request
+     *          {@link HttpServletRequest} requesting the file
+     * @param response
+     *          {@link HttpServletResponse} to send the file through
+     * @param filename
+     *          Name of the file presented to the user
+     * @param filedata
+     *          Binary data to send
+     * @param contentType
+     *          Content type of the file
+     * @param etag
+     *          Strong entity tag of the file, see {@link #createETag}
+     * @param lastModified
+     *          Time the file was last modified, or {@code 0} if unknown
+     * @param maxAge
+     *          Number of seconds the file may be cached by the client and
+     *          shared caches, or {@code 0} if the file may only be cached
+     *          privately and must be revalidated
+     * @param forceDownload
+     *          Force the user to download the file rather than displaying it
+     *          in-line
+     * @throws IOException
+     *          If the {@link HttpServletResponse} could not be manipulated
+     */
+    public static void sendBinary(HttpServletRequest request,
+            HttpServletResponse response, String filename, byte[] filedata,
+            String contentType, String etag, long lastModified, int maxAge,
+            boolean forceDownload) throws IOException {
+        long[] range = prepare(request, response, filename, contentType, etag,
+                filedata.length, lastModified, maxAge, forceDownload);
+        if (range == null) {
+            return;
+        }
+
+        ServletOutputStream outs = response.getOutputStream();
+        outs.write(filedata, (int) range[0], (int) (range[1] - range[0] + 1));
+        outs.flush();
+        response.flushBuffer();
+    }
+
+    /**
+     * Determines if the client already has the current version of a file by
+     * validating the {@code If-None-Match} and {@code If-Modified-Since}
+     * headers of the request. If so, the response status is set to
+     * {@code 304 Not Modified}.
+     *
+     * @param request
+     *          {@link HttpServletRequest} requesting the file
+     * @param response
+     *          {@link HttpServletResponse} to set the status on
+     * @param etag
+     *          Strong entity tag of the file
+     * @param lastModified
+     *          Time the file was last modified, or {@code 0} if unknown
+     * @return {@code true} if the client has the current version of the file
+     *         and the response was completed, otherwise {@code false}
+     */
+    public static boolean isNotModified(HttpServletRequest request,
+            HttpServletResponse response, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        boolean notModified;
+        if (ifNoneMatch != null) {
+            notModified = matches(ifNoneMatch, etag);
+        } else {
+            long ifModifiedSince = getDateHeader(request, "If-Modified-Since");
+            // HTTP dates have a precision of seconds
+            notModified = lastModified > 0 && ifModifiedSince != -1
+                    && lastModified / 1000 <= ifModifiedSince / 1000;
+        }
+
+        if (notModified) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            response.setHeader("ETag", etag);
+        }
+        return notModified;
+    }
+
+    /**
+     * Sets the validation and caching headers of a file and determines the
+     * byte range to send.
+     *
+     * @return Inclusive first and last byte to send, or {@code null} if the
+     *         response was completed without a body
+     */
+    private static long[] prepare(HttpServletRequest request,
+            HttpServletResponse response, String filename, String contentType,
+            String etag, long length, long lastModified, int maxAge,
+            boolean forceDownload) throws IOException {
+        response.setHeader("ETag", etag);
+        if (lastModified > 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+        if (maxAge > 0) {
+            response.setHeader("Cache-Control", "public, max-age=" + maxAge);
+        } else {
+            response.setHeader("Cache-Control", "private, must-revalidate");
+        }
+
+        if (isNotModified(request, response, etag, lastModified)) {
+            return null;
+        }
+
+        response.setHeader("Accept-Ranges", "bytes");
+        long[] range = getRange(request, etag, lastModified, length);
+        if (range == UNSATISFIABLE) {
+            response.setHeader("Content-Range", "bytes */" + length);
+            response.sendError(
+                    HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return null;
+        }
+
+        if (forceDownload) {
+            response.setHeader("Content-Disposition", "attachment; filename=\""
+                    + filename + "\"");
+        } else {
+            response.setHeader("Content-Disposition", "inline; filename=\""
+                    + filename + "\"");
+        }
+        response.setContentType(contentType);
+
+        if (range == null) {
+            range = new long[]{0, length - 1};
+        } else {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + range[0] + "-"
+                    + range[1] + "/" + length);
+        }
+        long contentLength = range[1] - range[0] + 1;
+        if (contentLength <= Integer.MAX_VALUE) {
+            response.setContentLength((int) contentLength);
+        } else {
+            response.setHeader("Content-Length", String.valueOf(contentLength));
+        }
+        return range;
+    }
+
+    /**
+     * Gets the byte range requested in the {@code Range} header. Only a
+     * single range is supported, requests for multiple ranges are served the
+     * entire file. The range is ignored if the {@code If-Range} header does
+     * not match the current version of the file.
+     *
+     * @return Inclusive first and last byte requested, {@code null} if the
+     *         entire file should be sent, or {@link #UNSATISFIABLE}
+     */
+    private static long[] getRange(HttpServletRequest request, String etag,
+            long lastModified, long length) {
+        String header = request.getHeader("Range");
+        if (header == null || !header.startsWith(BYTES_UNIT)
+                || header.indexOf(',') != -1) {
+            return null;
+        }
+
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange != null) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (!ifRange.equals(etag)) {
+                    return null;
+                }
+            } else {
+                long date = getDateHeader(request, "If-Range");
+                if (date == -1 || lastModified / 1000 > date / 1000) {
+                    return null;
+                }
+            }
+        }
+
+        String spec = header.substring(BYTES_UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        long start;
+        long end;
+        try {
+            if (dash == 0) {
+                // Suffix range of the last bytes of the file
+                long suffix = Long.parseLong(spec.substring(1).trim());
+                if (suffix == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash).trim());
+                String last = spec.substring(dash + 1).trim();
+                end = last.length() == 0 ? length - 1 : Math.min(length - 1,
+                        Long.parseLong(last));
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+
+        if (start > end) {
+            return start >= length ? UNSATISFIABLE : null;
+        }
+        return new long[]{start, end};
+    }
+
+    /**
+     * Determines if a list of entity tags from an {@code If-None-Match}
+     * header matches an entity tag.
+     */
+    private static boolean matches(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets a date header of a request, ignoring malformed dates.
+     */
+    private static long getDateHeader(HttpServletRequest request,
+            String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException ex) {
+            return -1;
+        }
+    }
 }
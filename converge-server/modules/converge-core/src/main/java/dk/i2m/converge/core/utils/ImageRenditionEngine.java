@@ -0,0 +1,460 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Singleton generating scaled renditions of images.
+ * <p/>
+ * The original image is decoded once for all the requested renditions.
+ * Images much larger than the largest rendition are decoded with
+ * subsampling, so that only the pixels needed are held in memory. The
+ * decoded image is downscaled in multiple steps of halving for quality, and
+ * each rendition is encoded in the format of the original using the
+ * requested quality if the format supports it.
+ * <p/>
+ * Renditions are generated by a bounded pool of worker threads, with the
+ * calling thread waiting for the result, which limits the number of images
+ * decoded at the same time regardless of the number of uploads.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ImageRenditionEngine {
+
+    private static final ImageRenditionEngine INSTANCE =
+            new ImageRenditionEngine();
+
+    /** Format used if no writer is available for the original format. */
+    private static final String FALLBACK_FORMAT = "png";
+
+    /**
+     * Factor by which the decoded image must be larger than the largest
+     * rendition before subsampling is used.
+     */
+    private static final int SUBSAMPLING_MARGIN = 2;
+
+    private final ThreadPoolExecutor workers;
+
+    private ImageRenditionEngine() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        workers = new ThreadPoolExecutor(threads, threads, 60L,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "converge-rendition-"
+                                + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the singleton instance of {@link ImageRenditionEngine}.
+     *
+     * @return Singleton instance of {@link ImageRenditionEngine}
+     */
+    public static ImageRenditionEngine getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the maximum number of images rendered at the same time.
+     *
+     * @return Maximum number of images rendered at the same time
+     */
+    public int getThreads() {
+        return workers.getMaximumPoolSize();
+    }
+
+    /**
+     * Sets the maximum number of images rendered at the same time.
+     *
+     * @param threads Maximum number of images rendered at the same time
+     */
+    public void setThreads(int threads) {
+        int size = Math.max(1, threads);
+        if (size > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(size);
+            workers.setCorePoolSize(size);
+        } else {
+            workers.setCorePoolSize(size);
+            workers.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Generates renditions of an image stored in a file.
+     *
+     * @param original File containing the original image
+     * @param targets  Renditions to generate
+     * @throws IOException          If the image could not be decoded or a
+     *                              rendition could not be written
+     * @throws InterruptedException If the thread was interrupted while
+     *                              waiting for the renditions
+     */
+    public void render(final File original, final List<Target> targets)
+            throws IOException, InterruptedException {
+        execute(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                ImageInputStream source = ImageIO.createImageInputStream(
+                        original);
+                if (source == null) {
+                    throw new IOException("Could not read " + original);
+                }
+                render(source, targets);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Generates renditions of an image held in memory.
+     *
+     * @param original Original image
+     * @param targets  Renditions to generate
+     * @throws IOException          If the image could not be decoded or a
+     *                              rendition could not be written
+     * @throws InterruptedException If the thread was interrupted while
+     *                              waiting for the renditions
+     */
+    public void render(final byte[] original, final List<Target> targets)
+            throws IOException, InterruptedException {
+        execute(new Callable<Void>() {
+
+            @Override
+            public Void call() throws IOException {
+                render(ImageIO.createImageInputStream(
+                        new ByteArrayInputStream(original)), targets);
+                return null;
+            }
+        });
+    }
+
+    private void execute(Callable<Void> task) throws IOException,
+            InterruptedException {
+        Future<Void> result = workers.submit(task);
+        try {
+            result.get();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause.getMessage());
+        }
+    }
+
+    private void render(ImageInputStream source, List<Target> targets)
+            throws IOException {
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(source);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            BufferedImage image;
+            String format;
+            try {
+                reader.setInput(source, true, true);
+                format = reader.getFormatName().toLowerCase();
+
+                int maxWidth = 0;
+                int maxHeight = 0;
+                for (Target target : targets) {
+                    maxWidth = Math.max(maxWidth, target.getMaxWidth());
+                    maxHeight = Math.max(maxHeight, target.getMaxHeight());
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = getSubsampling(reader.getWidth(0),
+                        reader.getHeight(0), maxWidth, maxHeight);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+
+            for (Target target : targets) {
+                BufferedImage scaled = scale(image, target.getMaxWidth(),
+                        target.getMaxHeight());
+                target.setWidth(scaled.getWidth());
+                target.setHeight(scaled.getHeight());
+                target.setFormat(write(scaled, format, target.getQuality(),
+                        target.getOutput()));
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Calculates the subsampling factor for decoding an image, keeping the
+     * decoded image at least {@link #SUBSAMPLING_MARGIN} times larger than
+     * the largest rendition.
+     *
+     * @param width     Width of the original image
+     * @param height    Height of the original image
+     * @param maxWidth  Maximum width of the largest rendition
+     * @param maxHeight Maximum height of the largest rendition
+     * @return Subsampling factor, {@code 1} if the image should be decoded
+     *         at full resolution
+     */
+    static int getSubsampling(int width, int height, int maxWidth,
+            int maxHeight) {
+        if (maxWidth < 1 || maxHeight < 1) {
+            return 1;
+        }
+        int horizontal = width / (maxWidth * SUBSAMPLING_MARGIN);
+        int vertical = height / (maxHeight * SUBSAMPLING_MARGIN);
+        return Math.max(1, Math.min(horizontal, vertical));
+    }
+
+    /**
+     * Scales an image to fit within the given dimensions, preserving its
+     * aspect ratio. Images are never enlarged. Large reductions are done in
+     * steps halving the image, as a single bilinear step only samples a
+     * fraction of the pixels of the original.
+     *
+     * @param image     Image to scale
+     * @param maxWidth  Maximum width of the scaled image
+     * @param maxHeight Maximum height of the scaled image
+     * @return Scaled image
+     */
+    static BufferedImage scale(BufferedImage image, int maxWidth,
+            int maxHeight) {
+        double ratio = Math.min((double) maxWidth / image.getWidth(),
+                (double) maxHeight / image.getHeight());
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (ratio < 1) {
+            width = Math.max(1, (int) Math.round(width * ratio));
+            height = Math.max(1, (int) Math.round(height * ratio));
+        }
+
+        int type = image.getTransparency() == Transparency.OPAQUE
+                ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage scaled = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            if (w > width) {
+                w = Math.max(width, w / 2);
+            }
+            if (h > height) {
+                h = Math.max(height, h / 2);
+            }
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(scaled, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            scaled = step;
+        } while (w != width || h != height);
+
+        return scaled;
+    }
+
+    /**
+     * Encodes an image.
+     *
+     * @param image   Image to encode
+     * @param format  Preferred format of the encoded image
+     * @param quality Quality of the encoded image between {@code 0} and
+     *                {@code 100}, used if the format supports compression
+     * @param output  {@link OutputStream} receiving the encoded image
+     * @return Format of the encoded image
+     * @throws IOException If the image could not be written
+     */
+    private String write(BufferedImage image, String format, int quality,
+            OutputStream output) throws IOException {
+        if ("jpeg".equals(format)) {
+            format = "jpg";
+        }
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(
+                format);
+        if (!writers.hasNext() || (isJpeg(format)
+                && image.getTransparency() != Transparency.OPAQUE)) {
+            format = FALLBACK_FORMAT;
+            writers = ImageIO.getImageWritersByFormatName(format);
+        }
+        ImageWriter writer = writers.next();
+        ImageOutputStream out = ImageIO.createImageOutputStream(output);
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && isJpeg(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(0, Math.min(100,
+                        quality)) / 100f);
+            }
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+        return format;
+    }
+
+    private static boolean isJpeg(String format) {
+        return "jpg".equals(format);
+    }
+
+    /**
+     * Rendition to generate by the {@link ImageRenditionEngine}. Once
+     * generated, the dimensions and format of the rendition are available
+     * from the target.
+     */
+    public static class Target {
+
+        private final int maxWidth;
+
+        private final int maxHeight;
+
+        private final int quality;
+
+        private final OutputStream output;
+
+        private int width;
+
+        private int height;
+
+        private String format;
+
+        /**
+         * Creates a new instance of {@link Target}.
+         *
+         * @param maxWidth  Maximum width of the rendition
+         * @param maxHeight Maximum height of the rendition
+         * @param quality   Quality of the rendition between {@code 0} and
+         *                  {@code 100}
+         * @param output    {@link OutputStream} receiving the rendition. The
+         *                  stream is not closed
+         */
+        public Target(int maxWidth, int maxHeight, int quality,
+                OutputStream output) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.quality = quality;
+            this.output = output;
+        }
+
+        public int getMaxWidth() {
+            return maxWidth;
+        }
+
+        public int getMaxHeight() {
+            return maxHeight;
+        }
+
+        public int getQuality() {
+            return quality;
+        }
+
+        public OutputStream getOutput() {
+            return output;
+        }
+
+        /**
+         * Gets the width of the generated rendition.
+         *
+         * @return Width of the generated rendition
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        void setWidth(int width) {
+            this.width = width;
+        }
+
+        /**
+         * Gets the height of the generated rendition.
+         *
+         * @return Height of the generated rendition
+         */
+        public int getHeight() {
+            return height;
+        }
+
+        void setHeight(int height) {
+            this.height = height;
+        }
+
+        /**
+         * Gets the format of the generated rendition, e.g. {@code jpg} or
+         * {@code png}.
+         *
+         * @return Format of the generated rendition
+         */
+        public String getFormat() {
+            return format;
+        }
+
+        void setFormat(String format) {
+            this.format = format;
+        }
+    }
+}
@@ -16,11 +16,9 @@
  */
 package dk.i2m.converge.core.utils;
 
-import java.awt.*;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import javax.imageio.ImageIO;
+import java.util.Collections;
 
 /**
  *
@@ -35,7 +33,9 @@ public class ImageUtils {
     }
 
     /**
-     * Generates a thumbnail of a given image.
+     * Generates a thumbnail of a given image using the
+     * {@link ImageRenditionEngine}. The thumbnail is encoded in the format of
+     * the original image.
      *
      * @param img
      *          Original image
@@ -50,34 +50,9 @@ public class ImageUtils {
      * @throws java.io.IOException
      */
     public static byte[] generateThumbnail(byte[] img, int width, int height, int quality) throws InterruptedException, IOException {
-        Image image = Toolkit.getDefaultToolkit().createImage(img);
-        MediaTracker mediaTracker = new MediaTracker(new Container());
-        mediaTracker.addImage(image, 0);
-        mediaTracker.waitForID(0);
-
-        // determine thumbnail size from WIDTH and HEIGHT
-        double thumbRatio = (double) width / (double) height;
-        int imageWidth = image.getWidth(null);
-        int imageHeight = image.getHeight(null);
-        double imageRatio = (double) imageWidth / (double) imageHeight;
-
-        if (thumbRatio < imageRatio) {
-            height = (int) (width / imageRatio);
-        } else {
-            width = (int) (height * imageRatio);
-        }
-
-        // draw original image to thumbnail image object and
-        // scale it to the new size on-the-fly
-        BufferedImage thumbImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-        Graphics2D graphics2D = thumbImage.createGraphics();
-        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        graphics2D.drawImage(image, 0, 0, width, height, null);
-
-        // save thumbnail image to OUTFILE
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(thumbImage, "png", baos);
-
+        ImageRenditionEngine.getInstance().render(img, Collections.singletonList(
+                new ImageRenditionEngine.Target(width, height, quality, baos)));
         return baos.toByteArray();
     }
     
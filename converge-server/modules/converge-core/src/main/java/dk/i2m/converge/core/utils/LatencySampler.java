@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size sample of the most recent latencies recorded, used for
+ * calculating latency percentiles without keeping every measurement. Once the
+ * sample is full, each new latency replaces the oldest.
+ * <p/>
+ * The sampler is not thread-safe.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class LatencySampler {
+
+    private final long[] samples;
+
+    private int size = 0;
+
+    private int next = 0;
+
+    /**
+     * Creates a new instance of {@link LatencySampler}.
+     *
+     * @param capacity Number of recent latencies kept
+     */
+    public LatencySampler(int capacity) {
+        this.samples = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param latency Latency to record
+     */
+    public void add(long latency) {
+        samples[next] = latency;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Gets the number of latencies in the sample.
+     *
+     * @return Number of latencies in the sample
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Calculates percentiles of the latencies in the sample using the
+     * nearest-rank method.
+     *
+     * @param percentiles Percentiles to calculate, between {@code 0} and
+     *                    {@code 100}
+     * @return Latency of each of the requested percentiles, or {@code 0} for
+     *         each percentile if the sample is empty
+     */
+    public long[] getPercentiles(double... percentiles) {
+        long[] result = new long[percentiles.length];
+        if (size == 0) {
+            return result;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * size);
+            result[i] = sorted[Math.min(size, Math.max(1, rank)) - 1];
+        }
+        return result;
+    }
+
+    /**
+     * Removes all latencies from the sample.
+     */
+    public void clear() {
+        size = 0;
+        next = 0;
+    }
+}
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import java.io.Serializable;
 import java.util.Calendar;
 import java.util.Date;
@@ -35,6 +36,7 @@ import javax.persistence.Temporal;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "edition_pattern")
 @NamedQueries({})
@@ -0,0 +1,209 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.workflow;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import javax.persistence.*;
+
+/**
+ * Snapshot of the published content of an {@link Edition}, as served to
+ * external systems. The payload is built once and served until the edition,
+ * its placements or the news items placed in it are changed, which increments
+ * the version of the snapshot.
+ * <p/>
+ * A payload is only stored if the version has not changed while it was
+ * being built, so that a payload built from content changed in the meantime
+ * is never served. The payload of an outdated version is kept until the
+ * current version is built, so that the changes between the two versions can
+ * be determined.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Entity
+@Table(name = "edition_snapshot")
+@NamedQueries({
+    @NamedQuery(name = EditionSnapshot.FIND_VERSION, query = "SELECT s.version FROM EditionSnapshot s WHERE s.editionId = :editionId"),
+    @NamedQuery(name = EditionSnapshot.FIND_PAYLOAD, query = "SELECT s.payload FROM EditionSnapshot s WHERE s.editionId = :editionId AND s.payloadVersion = :version AND s.payload IS NOT NULL"),
+    @NamedQuery(name = EditionSnapshot.FIND_LATEST_PAYLOAD, query = "SELECT s.payload FROM EditionSnapshot s WHERE s.editionId = :editionId AND s.payload IS NOT NULL"),
+    @NamedQuery(name = EditionSnapshot.STORE, query = "UPDATE EditionSnapshot s SET s.payload = :payload, s.payloadVersion = :version, s.built = :built WHERE s.editionId = :editionId AND s.version = :version"),
+    @NamedQuery(name = EditionSnapshot.INVALIDATE, query = "UPDATE EditionSnapshot s SET s.version = s.version + 1 WHERE s.editionId = :editionId"),
+    @NamedQuery(name = EditionSnapshot.INVALIDATE_BY_NEWS_ITEM, query = "UPDATE EditionSnapshot s SET s.version = s.version + 1 WHERE s.editionId IN (SELECT p.edition.id FROM NewsItemPlacement p WHERE p.newsItem.id = :newsItemId)"),
+    @NamedQuery(name = EditionSnapshot.INVALIDATE_BY_PLACEMENT, query = "UPDATE EditionSnapshot s SET s.version = s.version + 1 WHERE s.editionId IN (SELECT p.edition.id FROM NewsItemPlacement p WHERE p.id = :placementId)"),
+    @NamedQuery(name = EditionSnapshot.INVALIDATE_BY_MEDIA_ITEM, query = "UPDATE EditionSnapshot s SET s.version = s.version + 1 WHERE s.editionId IN (SELECT p.edition.id FROM NewsItemPlacement p, NewsItemMediaAttachment a WHERE p.newsItem = a.newsItem AND a.mediaItem.id = :mediaItemId)"),
+    @NamedQuery(name = EditionSnapshot.DELETE, query = "DELETE FROM EditionSnapshot s WHERE s.editionId = :editionId")
+})
+public class EditionSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Query for finding the current version of the snapshot of an edition. */
+    public static final String FIND_VERSION = "EditionSnapshot.findVersion";
+
+    /** Query for finding the payload of a given version of the snapshot of an edition. */
+    public static final String FIND_PAYLOAD = "EditionSnapshot.findPayload";
+
+    /** Query for finding the payload of the snapshot of an edition, regardless of its version. */
+    public static final String FIND_LATEST_PAYLOAD = "EditionSnapshot.findLatestPayload";
+
+    /** Query for storing the payload of the snapshot of an edition, if the version is unchanged. */
+    public static final String STORE = "EditionSnapshot.store";
+
+    /** Query for invalidating the snapshot of an edition. */
+    public static final String INVALIDATE = "EditionSnapshot.invalidate";
+
+    /** Query for invalidating the snapshots of the editions in which a news item is placed. */
+    public static final String INVALIDATE_BY_NEWS_ITEM = "EditionSnapshot.invalidateByNewsItem";
+
+    /** Query for invalidating the snapshot of the edition of a placement. */
+    public static final String INVALIDATE_BY_PLACEMENT = "EditionSnapshot.invalidateByPlacement";
+
+    /** Query for invalidating the snapshots of the editions in which a media item is attached to a news item. */
+    public static final String INVALIDATE_BY_MEDIA_ITEM = "EditionSnapshot.invalidateByMediaItem";
+
+    /** Query for deleting the snapshot of an edition. */
+    public static final String DELETE = "EditionSnapshot.delete";
+
+    @Id
+    @Column(name = "edition_id")
+    private Long editionId;
+
+    @Column(name = "version")
+    private Long version = 1L;
+
+    @Column(name = "payload_version")
+    private Long payloadVersion;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "payload")
+    private byte[] payload;
+
+    @Column(name = "built")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar built;
+
+    /**
+     * Creates a new instance of {@link EditionSnapshot}.
+     */
+    public EditionSnapshot() {
+    }
+
+    /**
+     * Creates a new instance of {@link EditionSnapshot} without a payload.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     */
+    public EditionSnapshot(Long editionId) {
+        this.editionId = editionId;
+    }
+
+    public Long getEditionId() {
+        return editionId;
+    }
+
+    public void setEditionId(Long editionId) {
+        this.editionId = editionId;
+    }
+
+    /**
+     * Gets the version of the snapshot. The version is incremented every time
+     * the snapshot is invalidated.
+     *
+     * @return Version of the snapshot
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    /**
+     * Gets the version of the snapshot from which the payload was built.
+     *
+     * @return Version of the payload, or {@code null} if the snapshot has
+     *         never been built
+     */
+    public Long getPayloadVersion() {
+        return payloadVersion;
+    }
+
+    public void setPayloadVersion(Long payloadVersion) {
+        this.payloadVersion = payloadVersion;
+    }
+
+    /**
+     * Gets the serialized payload of the snapshot. The payload is outdated
+     * if its version differs from the version of the snapshot.
+     *
+     * @return Serialized payload, or {@code null} if the snapshot has never
+     *         been built
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * Gets the time the payload was built.
+     *
+     * @return Time the payload was built, or {@code null} if the snapshot has
+     *         never been built
+     */
+    public Calendar getBuilt() {
+        return built;
+    }
+
+    public void setBuilt(Calendar built) {
+        this.built = built;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final EditionSnapshot other = (EditionSnapshot) obj;
+        if (this.editionId != other.editionId && (this.editionId == null
+                || !this.editionId.equals(other.editionId))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 41 * hash + (this.editionId != null ? this.editionId.hashCode()
+                : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[editionId=" + editionId + ", version="
+                + version + "]";
+    }
+}
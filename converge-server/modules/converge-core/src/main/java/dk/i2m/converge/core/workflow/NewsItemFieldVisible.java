@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.content.NewsItemField;
 import java.io.Serializable;
 import javax.persistence.Column;
@@ -33,6 +34,7 @@ import javax.persistence.Table;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "workflow_state_visible")
 public class NewsItemFieldVisible implements Serializable {
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.content.Language;
 import dk.i2m.converge.core.security.UserRole;
 import dk.i2m.converge.core.subscriber.OutletSubscriber;
@@ -33,6 +34,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "outlet")
 @NamedQueries({})
@@ -16,7 +16,9 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.plugin.EditionAction;
+import dk.i2m.converge.core.plugin.PluginManager;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -41,6 +43,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "outlet_edition_action")
 public class OutletEditionAction implements Serializable {
@@ -149,9 +152,7 @@ public class OutletEditionAction implements Serializable {
      */
     public EditionAction getAction() throws EditionActionException {
         try {
-            Class c = Class.forName(getActionClass());
-            EditionAction action = (EditionAction) c.newInstance();
-            return action;
+            return PluginManager.newInstance(getActionClass(), EditionAction.class);
         } catch (ClassNotFoundException ex) {
             throw new EditionActionException("Could not find action: " + getActionClass(), ex);
         } catch (InstantiationException ex) {
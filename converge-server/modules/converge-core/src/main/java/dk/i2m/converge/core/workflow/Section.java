@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import java.io.Serializable;
 import javax.persistence.*;
 
@@ -24,6 +25,7 @@ import javax.persistence.*;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "outlet_section")
 @NamedQueries({
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.security.UserRole;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import javax.persistence.Table;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "workflow")
 public class Workflow implements Serializable {
@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
 import dk.i2m.converge.core.security.UserRole;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -44,6 +45,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "workflow_state")
 @NamedQueries({
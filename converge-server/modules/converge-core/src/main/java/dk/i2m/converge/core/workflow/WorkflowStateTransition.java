@@ -30,6 +30,8 @@ import javax.persistence.Id;
 import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -41,10 +43,16 @@ import javax.persistence.TemporalType;
  */
 @Entity
 @Table(name = "news_item_workflow_state_transition")
+@NamedQueries({
+    @NamedQuery(name = WorkflowStateTransition.FIND_BY_NEWS_ITEM, query = "SELECT t FROM WorkflowStateTransition AS t WHERE t.newsItem = :newsItem ORDER BY t.timestamp DESC")
+})
 public class WorkflowStateTransition implements Serializable {
 
     private static final long serialVersionUID = 2L;
 
+    /** Query for finding the transitions of a given {@code newsItem}, latest first. */
+    public static final String FIND_BY_NEWS_ITEM = "WorkflowStateTransition.findByNewsItem";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id")
@@ -16,6 +16,8 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
+import dk.i2m.converge.core.plugin.PluginManager;
 import dk.i2m.converge.core.plugin.WorkflowAction;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -40,6 +42,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "workflow_step_action")
 public class WorkflowStepAction implements Serializable {
@@ -62,6 +65,15 @@ public class WorkflowStepAction implements Serializable {
     @Column(name = "action_class")
     private String actionClass = null;
 
+    @Column(name = "asynchronous")
+    private boolean asynchronous = false;
+
+    @Column(name = "execution_timeout")
+    private Integer timeout = 0;
+
+    @Column(name = "max_attempts")
+    private Integer maxAttempts = 0;
+
     @OneToMany(mappedBy = "workflowStepAction", cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     @PrivateOwned
     private List<WorkflowStepActionProperty> properties = new ArrayList<WorkflowStepActionProperty>();
@@ -113,9 +125,7 @@ public class WorkflowStepAction implements Serializable {
      */
     public WorkflowAction getAction() throws WorkflowActionException {
         try {
-            Class c = Class.forName(getActionClass());
-            WorkflowAction action = (WorkflowAction) c.newInstance();
-            return action;
+            return PluginManager.newInstance(getActionClass(), WorkflowAction.class);
         } catch (ClassNotFoundException ex) {
             throw new WorkflowActionException("Could not find action: " + getActionClass(), ex);
         } catch (InstantiationException ex) {
@@ -125,6 +135,57 @@ public class WorkflowStepAction implements Serializable {
         }
     }
 
+    /**
+     * Determines if the action should be executed asynchronously after the
+     * step has been committed, rather than in the transaction of the step.
+     *
+     * @return {@code true} if the action should be executed asynchronously,
+     *         otherwise {@code false}
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    /**
+     * Sets the type of operation for the action.
+     *
+     * @param asynchronous {@code true} if the action should be executed
+     *                     asynchronously, otherwise {@code false}
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Gets the number of seconds an asynchronous execution of the action may
+     * take before it is abandoned.
+     *
+     * @return Number of seconds before the execution times out, or {@code 0}
+     *         for the system default
+     */
+    public Integer getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Integer timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Gets the maximum number of attempts at executing the action
+     * asynchronously before giving up.
+     *
+     * @return Maximum number of attempts, or {@code 0} for the system
+     *         default
+     */
+    public Integer getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(Integer maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
     public String getLabel() {
         return label;
     }
@@ -0,0 +1,300 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.workflow;
+
+import dk.i2m.converge.core.security.UserAccount;
+import java.io.Serializable;
+import java.util.Calendar;
+import javax.persistence.*;
+
+/**
+ * Outcome log of an asynchronous execution of a {@link WorkflowStepAction}.
+ * An execution is created when the step is taken and updated on every
+ * attempt at executing the action.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Entity
+@Table(name = "workflow_step_action_execution")
+@NamedQueries({
+    @NamedQuery(name = WorkflowStepActionExecution.FIND_BY_NEWS_ITEM, query = "SELECT e FROM WorkflowStepActionExecution e WHERE e.newsItemId = :newsItemId ORDER BY e.queued DESC"),
+    @NamedQuery(name = WorkflowStepActionExecution.FIND_DUE_RETRIES, query = "SELECT e FROM WorkflowStepActionExecution e WHERE e.status = :status AND e.nextAttempt <= :now ORDER BY e.nextAttempt ASC"),
+    @NamedQuery(name = WorkflowStepActionExecution.FIND_STALLED, query = "SELECT e FROM WorkflowStepActionExecution e WHERE e.status = :status AND e.started < :expired"),
+    @NamedQuery(name = WorkflowStepActionExecution.FIND_UNDELIVERED, query = "SELECT e FROM WorkflowStepActionExecution e WHERE e.status = :status AND e.queued < :expired"),
+    @NamedQuery(name = WorkflowStepActionExecution.FIND_INTERRUPTED, query = "SELECT e FROM WorkflowStepActionExecution e WHERE e.status = :status AND e.owner = :owner AND e.started < :started"),
+    @NamedQuery(name = WorkflowStepActionExecution.CLAIM, query = "UPDATE WorkflowStepActionExecution e SET e.status = :running, e.owner = :owner, e.attempts = e.attempts + 1, e.started = :now, e.finished = NULL, e.nextAttempt = NULL WHERE e.id = :id AND e.status = :queued"),
+    @NamedQuery(name = WorkflowStepActionExecution.REQUEUE, query = "UPDATE WorkflowStepActionExecution e SET e.status = :queued, e.queued = :now WHERE e.id = :id AND e.status = :status AND (e.queued IS NULL OR e.queued < :expired)")
+})
+public class WorkflowStepActionExecution implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Query for finding the executions of actions for a given news item. */
+    public static final String FIND_BY_NEWS_ITEM = "WorkflowStepActionExecution.findByNewsItem";
+
+    /** Query for finding the executions with a given status due to be retried. */
+    public static final String FIND_DUE_RETRIES = "WorkflowStepActionExecution.findDueRetries";
+
+    /** Query for finding the executions with a given status started before a given time. */
+    public static final String FIND_STALLED = "WorkflowStepActionExecution.findStalled";
+
+    /** Query for finding the executions with a given status queued before a given time. */
+    public static final String FIND_UNDELIVERED = "WorkflowStepActionExecution.findUndelivered";
+
+    /** Query for finding the executions with a given status and owner started before a given time. */
+    public static final String FIND_INTERRUPTED = "WorkflowStepActionExecution.findInterrupted";
+
+    /** Query for starting a queued execution. Updates no rows if the execution is no longer queued. */
+    public static final String CLAIM = "WorkflowStepActionExecution.claim";
+
+    /** Query for queuing an execution with a given status again. Updates no rows if its status changed or it was queued after a given time. */
+    public static final String REQUEUE = "WorkflowStepActionExecution.requeue";
+
+    /**
+     * Status of an execution.
+     */
+    public enum Status {
+
+        /** The execution is waiting to be started. */
+        QUEUED,
+        /** The action is being executed. */
+        RUNNING,
+        /** The action was executed successfully. */
+        COMPLETED,
+        /** The last attempt failed and the action will be retried. */
+        RETRYING,
+        /** All attempts failed. */
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "workflow_step_action_id")
+    private WorkflowStepAction stepAction;
+
+    @Column(name = "news_item_id")
+    private Long newsItemId;
+
+    @ManyToOne
+    @JoinColumn(name = "user_account_id")
+    private UserAccount user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private Status status = Status.QUEUED;
+
+    @Column(name = "attempts")
+    private Integer attempts = 0;
+
+    /** Server instance executing the action, or that last executed it. */
+    @Column(name = "owner")
+    private String owner;
+
+    @Column(name = "queued")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar queued;
+
+    @Column(name = "started")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar started;
+
+    @Column(name = "finished")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar finished;
+
+    @Column(name = "next_attempt")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Calendar nextAttempt;
+
+    @Column(name = "message") @Lob
+    private String message = "";
+
+    /**
+     * Creates a new instance of {@link WorkflowStepActionExecution}.
+     */
+    public WorkflowStepActionExecution() {
+    }
+
+    /**
+     * Creates a new queued {@link WorkflowStepActionExecution}.
+     *
+     * @param stepAction {@link WorkflowStepAction} to execute
+     * @param newsItemId Unique identifier of the news item
+     * @param user       {@link UserAccount} that took the step
+     */
+    public WorkflowStepActionExecution(WorkflowStepAction stepAction,
+            Long newsItemId, UserAccount user) {
+        this.stepAction = stepAction;
+        this.newsItemId = newsItemId;
+        this.user = user;
+        this.status = Status.QUEUED;
+        this.queued = Calendar.getInstance();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public WorkflowStepAction getStepAction() {
+        return stepAction;
+    }
+
+    public void setStepAction(WorkflowStepAction stepAction) {
+        this.stepAction = stepAction;
+    }
+
+    public Long getNewsItemId() {
+        return newsItemId;
+    }
+
+    public void setNewsItemId(Long newsItemId) {
+        this.newsItemId = newsItemId;
+    }
+
+    public UserAccount getUser() {
+        return user;
+    }
+
+    public void setUser(UserAccount user) {
+        this.user = user;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    /**
+     * Gets the number of attempts made at executing the action.
+     *
+     * @return Number of attempts made
+     */
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public Calendar getQueued() {
+        return queued;
+    }
+
+    public void setQueued(Calendar queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * Gets the time when the last attempt was started.
+     *
+     * @return Time when the last attempt was started
+     */
+    public Calendar getStarted() {
+        return started;
+    }
+
+    public void setStarted(Calendar started) {
+        this.started = started;
+    }
+
+    /**
+     * Gets the time when the last attempt finished.
+     *
+     * @return Time when the last attempt finished
+     */
+    public Calendar getFinished() {
+        return finished;
+    }
+
+    public void setFinished(Calendar finished) {
+        this.finished = finished;
+    }
+
+    /**
+     * Gets the time when the action will be retried.
+     *
+     * @return Time of the next attempt, or {@code null} if the action will
+     *         not be retried
+     */
+    public Calendar getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(Calendar nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    /**
+     * Gets the outcome message of the last attempt.
+     *
+     * @return Outcome message of the last attempt
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final WorkflowStepActionExecution other = (WorkflowStepActionExecution) obj;
+        if (this.id != other.id && (this.id == null || !this.id.equals(other.id))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 7;
+        hash = 67 * hash + (this.id != null ? this.id.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[id=" + id + "]";
+    }
+}
@@ -16,6 +16,8 @@
  */
 package dk.i2m.converge.core.workflow;
 
+import dk.i2m.converge.core.annotations.ReferenceData;
+import dk.i2m.converge.core.plugin.PluginManager;
 import dk.i2m.converge.core.plugin.WorkflowValidator;
 import dk.i2m.converge.core.plugin.WorkflowValidatorException;
 import java.io.Serializable;
@@ -41,6 +43,7 @@ import org.eclipse.persistence.annotations.PrivateOwned;
  *
  * @author Allan Lykke Christensen
  */
+@ReferenceData
 @Entity
 @Table(name = "workflow_step_validator")
 public class WorkflowStepValidator implements Serializable {
@@ -135,9 +138,7 @@ public class WorkflowStepValidator implements Serializable {
      */
     public WorkflowValidator getValidator() throws WorkflowValidatorException {
         try {
-            Class c = Class.forName(getValidatorClass());
-            WorkflowValidator validator = (WorkflowValidator) c.newInstance();
-            return validator;
+            return PluginManager.newInstance(getValidatorClass(), WorkflowValidator.class);
         } catch (ClassNotFoundException ex) {
             throw new WorkflowValidatorException("Could not find validator: " + getValidatorClass(), ex);
         } catch (InstantiationException ex) {
@@ -0,0 +1,115 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.job;
+
+import dk.i2m.converge.core.job.Job.Parameter;
+import dk.i2m.converge.core.job.Job.Queue;
+import dk.i2m.converge.core.job.Job.Status;
+import dk.i2m.converge.core.job.Job.Type;
+import dk.i2m.converge.core.plugin.CatalogueEvent;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link Job}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class JobTest {
+
+    @Test
+    public void testPlacementAction() {
+        Job job = Job.placementAction(1L, 2L, 3L, "jdoe");
+        assertEquals(Type.PLACEMENT_ACTION, job.getType());
+        assertEquals(Queue.EDITION, job.getQueue());
+        assertEquals(Status.PENDING, job.getStatus());
+        assertEquals(Long.valueOf(1), job.getLongParameter(Parameter.EDITION_ID));
+        assertEquals(Long.valueOf(2), job.getLongParameter(Parameter.ACTION_ID));
+        assertEquals(Long.valueOf(3), job.getLongParameter(
+                Parameter.NEWS_ITEM_PLACEMENT_ID));
+        assertEquals("jdoe", job.getParameter(Parameter.USER_ACCOUNT_ID));
+        assertNull(job.getParameter(Parameter.OUTLET_ID));
+    }
+
+    @Test
+    public void testDeduplicationKey() {
+        Job first = Job.editionAction(1L, 2L, "jdoe");
+        Job second = Job.editionAction(1L, 2L, "admin");
+        Job other = Job.editionAction(1L, 3L, "jdoe");
+        assertEquals(first.getDeduplicationKey(),
+                second.getDeduplicationKey());
+        assertFalse(first.getDeduplicationKey().equals(
+                other.getDeduplicationKey()));
+        assertFalse(first.getDeduplicationKey().equals(
+                Job.outletAction(1L, 2L, "jdoe").getDeduplicationKey()));
+    }
+
+    @Test
+    public void testActiveKey() {
+        Job job = Job.newswireFetch(1L);
+        assertEquals(job.getDeduplicationKey(), job.getActiveKey());
+        job.setStatus(Status.QUEUED);
+        assertEquals(job.getDeduplicationKey(), job.getActiveKey());
+        job.setStatus(Status.RUNNING);
+        assertNull(job.getActiveKey());
+        job.setStatus(Status.RETRYING);
+        assertEquals(job.getDeduplicationKey(), job.getActiveKey());
+        job.setStatus(Status.FAILED);
+        assertNull(job.getActiveKey());
+        job.setStatus(Status.COMPLETED);
+        assertNull(job.getActiveKey());
+    }
+
+    @Test
+    public void testCatalogueHook() {
+        Job job = Job.catalogueHook(4L, 5L, CatalogueEvent.Event.UpdateRendition);
+        assertEquals(Queue.CATALOGUE_HOOK, job.getQueue());
+        assertEquals("UpdateRendition", job.getParameter(Parameter.EVENT_TYPE));
+        assertEquals(CatalogueEvent.Event.UpdateRendition, job.getParameter(
+                Parameter.EVENT_TYPE, CatalogueEvent.Event.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParameterOfWrongType() {
+        Job.newswireFetch(1L).setParameter(Parameter.USER_ACCOUNT_ID, 2L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetParameterAsWrongType() {
+        Job.newswireFetch(1L).getParameter(Parameter.NEWSWIRE_SERVICE_ID,
+                String.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingParameter() {
+        Job.editionAction(1L, null, "jdoe");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLineBreakInParameter() {
+        Job.newswireFetch(1L).setParameter(Parameter.USER_ACCOUNT_ID,
+                "jdoe\nEDITION_ID=2");
+    }
+
+    @Test
+    public void testRemoveParameter() {
+        Job job = Job.outletAction(1L, 2L, "jdoe");
+        job.setParameter(Parameter.USER_ACCOUNT_ID, null);
+        assertNull(job.getParameter(Parameter.USER_ACCOUNT_ID));
+        assertEquals(Long.valueOf(1), job.getLongParameter(Parameter.OUTLET_ID));
+    }
+}
@@ -17,6 +17,8 @@
 package dk.i2m.converge.core.plugin;
 
 import dk.i2m.converge.core.plugin.PluginManager;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Ignore;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -57,4 +59,22 @@ public class PluginManagerTest {
             fail("Alert Action was not discovered by plug-in manager");
         }
     }
+
+    @Test
+    public void testNewInstance() throws Exception {
+        List first = PluginManager.newInstance(ArrayList.class.getName(), List.class);
+        List second = PluginManager.newInstance(ArrayList.class.getName(), List.class);
+        assertNotNull(first);
+        assertNotSame("Plug-ins must be instantiated for every invocation", first, second);
+    }
+
+    @Test(expected = InstantiationException.class)
+    public void testNewInstanceOfWrongType() throws Exception {
+        PluginManager.newInstance(ArrayList.class.getName(), Plugin.class);
+    }
+
+    @Test(expected = ClassNotFoundException.class)
+    public void testNewInstanceOfUnknownClass() throws Exception {
+        PluginManager.newInstance("dk.i2m.converge.plugins.UnknownPlugin", Plugin.class);
+    }
 }
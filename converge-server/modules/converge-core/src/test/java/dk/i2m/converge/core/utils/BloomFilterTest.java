@@ -0,0 +1,67 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link BloomFilter}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("urn:newsml:item:" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("urn:newsml:item:" + i));
+        }
+        assertEquals(1000, filter.getCount());
+        assertFalse(filter.isOverCapacity());
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("urn:newsml:item:" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 1000; i < 11000; i++) {
+            if (filter.mightContain("urn:newsml:item:" + i)) {
+                falsePositives++;
+            }
+        }
+        // Allow a generous margin over the requested 1%
+        assertTrue("False positives: " + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void testOverCapacity() {
+        BloomFilter filter = new BloomFilter(2, 0.01);
+        filter.add("a");
+        filter.add("b");
+        assertFalse(filter.isOverCapacity());
+        filter.add("c");
+        assertTrue(filter.isOverCapacity());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ChunkedUpload}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ChunkedUploadTest {
+
+    /** MD5 checksum of {@code "0123456789"}. */
+    private static final String CHECKSUM = "781e5e245d69b566979b86e28d23f2c7";
+
+    private File directory;
+
+    private ChunkedUpload upload;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = File.createTempFile("converge", "");
+        directory.delete();
+        directory.mkdirs();
+        upload = new ChunkedUpload(directory, "user/video 1.mp4");
+    }
+
+    @After
+    public void tearDown() {
+        upload.delete();
+        directory.delete();
+    }
+
+    @Test
+    public void testWriteChunks() throws Exception {
+        assertEquals(directory, upload.getFile().getParentFile());
+        assertEquals(4, upload.write(chunk("0123"), 0, null));
+        assertEquals(6, upload.write(chunk("456789"), 4, null));
+        assertEquals(10, upload.getLength());
+        assertEquals(CHECKSUM, upload.getChecksum());
+    }
+
+    @Test
+    public void testResendChunk() throws Exception {
+        upload.write(chunk("0123"), 0, null);
+        upload.write(chunk("4xxxxx"), 4, null);
+        upload.write(chunk("456789"), 4, null);
+        assertEquals(CHECKSUM, upload.getChecksum());
+
+        // Resending an earlier chunk discards the bytes received after it
+        upload.write(chunk("0123"), 0, null);
+        assertEquals(4, upload.getLength());
+    }
+
+    @Test
+    public void testChunkChecksum() throws Exception {
+        upload.write(chunk("0123"), 0, null);
+        try {
+            upload.write(chunk("45678x"), 4, CHECKSUM);
+            fail("Chunk not matching its checksum was accepted");
+        } catch (IOException ex) {
+            assertEquals(4, upload.getLength());
+        }
+        upload.write(chunk("0123456789"), 0, CHECKSUM);
+        assertEquals(10, upload.getLength());
+    }
+
+    @Test(expected = IOException.class)
+    public void testGap() throws Exception {
+        upload.write(chunk("0123"), 0, null);
+        upload.write(chunk("89"), 8, null);
+    }
+
+    private static ByteArrayInputStream chunk(String data) {
+        return new ByteArrayInputStream(data.getBytes());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ImageRenditionEngine}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ImageRenditionEngineTest {
+
+    @Test
+    public void testMultipleRenditionsInOriginalFormat() throws Exception {
+        byte[] original = createImage(4000, 3000,
+                BufferedImage.TYPE_INT_RGB, "jpg");
+
+        ByteArrayOutputStream thumbnail = new ByteArrayOutputStream();
+        ByteArrayOutputStream preview = new ByteArrayOutputStream();
+        ImageRenditionEngine.Target thumbnailTarget =
+                new ImageRenditionEngine.Target(150, 150, 80, thumbnail);
+        ImageRenditionEngine.Target previewTarget =
+                new ImageRenditionEngine.Target(1024, 1024, 90, preview);
+        ImageRenditionEngine.getInstance().render(original,
+                Arrays.asList(thumbnailTarget, previewTarget));
+
+        assertEquals(150, thumbnailTarget.getWidth());
+        assertEquals(113, thumbnailTarget.getHeight());
+        assertEquals("jpg", thumbnailTarget.getFormat());
+        assertEquals(1024, previewTarget.getWidth());
+        assertEquals(768, previewTarget.getHeight());
+
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(
+                preview.toByteArray()));
+        assertEquals(1024, decoded.getWidth());
+        assertEquals(768, decoded.getHeight());
+    }
+
+    @Test
+    public void testTransparentImageKeepsFormat() throws Exception {
+        byte[] original = createImage(300, 100,
+                BufferedImage.TYPE_INT_ARGB, "png");
+
+        ImageRenditionEngine.Target target = new ImageRenditionEngine.Target(
+                150, 150, 80, new ByteArrayOutputStream());
+        ImageRenditionEngine.getInstance().render(original,
+                Collections.singletonList(target));
+
+        assertEquals(150, target.getWidth());
+        assertEquals(50, target.getHeight());
+        assertEquals("png", target.getFormat());
+    }
+
+    @Test
+    public void testSmallImageIsNotEnlarged() throws Exception {
+        byte[] original = createImage(100, 80,
+                BufferedImage.TYPE_INT_RGB, "jpg");
+
+        ImageRenditionEngine.Target target = new ImageRenditionEngine.Target(
+                640, 480, 80, new ByteArrayOutputStream());
+        ImageRenditionEngine.getInstance().render(original,
+                Collections.singletonList(target));
+
+        assertEquals(100, target.getWidth());
+        assertEquals(80, target.getHeight());
+    }
+
+    @Test
+    public void testSubsampling() {
+        assertEquals(1, ImageRenditionEngine.getSubsampling(800, 600, 640, 480));
+        assertEquals(16, ImageRenditionEngine.getSubsampling(7360, 4912, 150, 150));
+        assertEquals(3, ImageRenditionEngine.getSubsampling(7360, 4912, 1024, 768));
+    }
+
+    private byte[] createImage(int width, int height, int type, String format)
+            throws Exception {
+        BufferedImage image = new BufferedImage(width, height, type);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.core.utils;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link LatencySampler}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class LatencySamplerTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencySampler sampler = new LatencySampler(100);
+        for (int i = 100; i > 0; i--) {
+            sampler.add(i);
+        }
+        long[] percentiles = sampler.getPercentiles(50, 90, 99, 100);
+        assertEquals(50, percentiles[0]);
+        assertEquals(90, percentiles[1]);
+        assertEquals(99, percentiles[2]);
+        assertEquals(100, percentiles[3]);
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencySampler sampler = new LatencySampler(10);
+        assertEquals(0, sampler.getSize());
+        assertEquals(0, sampler.getPercentiles(50)[0]);
+    }
+
+    @Test
+    public void testOldestReplaced() {
+        LatencySampler sampler = new LatencySampler(3);
+        sampler.add(1000);
+        sampler.add(1);
+        sampler.add(2);
+        sampler.add(3);
+        assertEquals(3, sampler.getSize());
+        assertEquals(3, sampler.getPercentiles(100)[0]);
+        assertEquals(1, sampler.getPercentiles(0)[0]);
+    }
+
+    @Test
+    public void testClear() {
+        LatencySampler sampler = new LatencySampler(3);
+        sampler.add(5);
+        sampler.clear();
+        assertEquals(0, sampler.getSize());
+        assertEquals(0, sampler.getPercentiles(50)[0]);
+    }
+}
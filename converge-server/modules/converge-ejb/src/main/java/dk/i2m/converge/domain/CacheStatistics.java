@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.domain;
+
+/**
+ * Value object containing a snapshot of the counters of an in-memory cache.
+ * The counters are accumulated since the application was deployed.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class CacheStatistics {
+
+    private String name = "";
+
+    private long size = 0;
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    private long invalidations = 0;
+
+    /**
+     * Creates a new instance of {@link CacheStatistics}.
+     */
+    public CacheStatistics() {
+    }
+
+    /**
+     * Creates a new instance of {@link CacheStatistics}.
+     *
+     * @param name          Name of the cache
+     * @param size          Number of entries in the cache
+     * @param hits          Number of lookups served from the cache
+     * @param misses        Number of lookups that had to be loaded
+     * @param invalidations Number of entries invalidated
+     */
+    public CacheStatistics(String name, long size, long hits, long misses,
+            long invalidations) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.invalidations = invalidations;
+    }
+
+    /**
+     * Gets the name of the cache.
+     *
+     * @return Name of the cache
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the number of entries in the cache.
+     *
+     * @return Number of entries in the cache
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * Gets the number of lookups served from the cache.
+     *
+     * @return Number of lookups served from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    /**
+     * Gets the number of lookups that were not in the cache and had to be
+     * loaded from the database.
+     *
+     * @return Number of lookups that had to be loaded
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    /**
+     * Gets the number of entries invalidated in the cache.
+     *
+     * @return Number of entries invalidated
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    public void setInvalidations(long invalidations) {
+        this.invalidations = invalidations;
+    }
+
+    /**
+     * Gets the ratio of lookups served from the cache.
+     *
+     * @return Ratio between {@code 0} and {@code 1} of lookups served from
+     *         the cache
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hits / lookups;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.domain;
+
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Status;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Value object containing the number of jobs of each {@link Status} on a
+ * {@link Job.Queue}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class JobQueueStatistics {
+
+    private Job.Queue queue;
+
+    private Map<Status, Long> counts = new EnumMap<Status, Long>(Status.class);
+
+    /**
+     * Creates a new instance of {@link JobQueueStatistics}.
+     *
+     * @param queue Queue of the statistics
+     */
+    public JobQueueStatistics(Job.Queue queue) {
+        this.queue = queue;
+    }
+
+    public Job.Queue getQueue() {
+        return queue;
+    }
+
+    /**
+     * Gets the number of jobs with a given status.
+     *
+     * @param status Status of the jobs
+     * @return Number of jobs with the given status
+     */
+    public long getCount(Status status) {
+        Long count = counts.get(status);
+        return count == null ? 0 : count;
+    }
+
+    public void setCount(Status status, long count) {
+        counts.put(status, count);
+    }
+
+    /**
+     * Gets the number of jobs waiting for a free slot on the queue.
+     *
+     * @return Number of pending jobs
+     */
+    public long getPending() {
+        return getCount(Status.PENDING);
+    }
+
+    /**
+     * Gets the number of jobs sent to the queue but not yet started.
+     *
+     * @return Number of queued jobs
+     */
+    public long getQueued() {
+        return getCount(Status.QUEUED);
+    }
+
+    /**
+     * Gets the number of jobs being executed.
+     *
+     * @return Number of running jobs
+     */
+    public long getRunning() {
+        return getCount(Status.RUNNING);
+    }
+
+    /**
+     * Gets the number of failed jobs waiting to be retried.
+     *
+     * @return Number of jobs waiting to be retried
+     */
+    public long getRetrying() {
+        return getCount(Status.RETRYING);
+    }
+
+    /**
+     * Gets the number of jobs that failed permanently.
+     *
+     * @return Number of failed jobs
+     */
+    public long getFailed() {
+        return getCount(Status.FAILED);
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.domain;
+
+import java.util.Date;
+
+/**
+ * Value object containing a snapshot of the execution counters of a
+ * background task. The counters are accumulated since the application was
+ * deployed or the counters were reset. Percentiles are calculated from the
+ * most recent executions.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class TaskStatistics {
+
+    /**
+     * Categories of instrumented background tasks.
+     */
+    public enum Category {
+
+        /** Execution of a periodic timer. */
+        TIMER,
+        /** Download of a newswire service. */
+        NEWSWIRE_FETCH,
+        /** Batch of the search engine indexing queue. */
+        INDEXING,
+        /** Execution of an edition action. */
+        EDITION_ACTION,
+        /** Execution of a catalogue hook. */
+        CATALOGUE_HOOK
+    }
+
+    private Category category;
+
+    private String name = "";
+
+    private long running = 0;
+
+    private long queued = 0;
+
+    private long totalQueueTime = 0;
+
+    private long invocations = 0;
+
+    private long items = 0;
+
+    private long errors = 0;
+
+    private long totalTime = 0;
+
+    private long lastTime = 0;
+
+    private long maxTime = 0;
+
+    private long percentile50 = 0;
+
+    private long percentile90 = 0;
+
+    private long percentile99 = 0;
+
+    private Date lastStarted;
+
+    private Date lastFinished;
+
+    /**
+     * Creates a new instance of {@link TaskStatistics}.
+     */
+    public TaskStatistics() {
+    }
+
+    /**
+     * Gets the category of the task.
+     *
+     * @return Category of the task
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    public void setCategory(Category category) {
+        this.category = category;
+    }
+
+    /**
+     * Gets the name of the task within its category, e.g. the name of the
+     * timer or newswire service.
+     *
+     * @return Name of the task
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the number of executions currently running.
+     *
+     * @return Number of executions currently running
+     */
+    public long getRunning() {
+        return running;
+    }
+
+    public void setRunning(long running) {
+        this.running = running;
+    }
+
+    /**
+     * Gets the number of executions waiting to be started, e.g. newswire
+     * downloads sent to the newswire queue or entries in the indexing queue.
+     *
+     * @return Number of executions waiting to be started
+     */
+    public long getQueued() {
+        return queued;
+    }
+
+    public void setQueued(long queued) {
+        this.queued = queued;
+    }
+
+    /**
+     * Gets the total time in milliseconds the started executions waited to
+     * be started.
+     *
+     * @return Total time in milliseconds waited in the queue
+     */
+    public long getTotalQueueTime() {
+        return totalQueueTime;
+    }
+
+    public void setTotalQueueTime(long totalQueueTime) {
+        this.totalQueueTime = totalQueueTime;
+    }
+
+    /**
+     * Gets the number of completed executions.
+     *
+     * @return Number of completed executions
+     */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    public void setInvocations(long invocations) {
+        this.invocations = invocations;
+    }
+
+    /**
+     * Gets the total number of items processed by the completed executions.
+     *
+     * @return Number of items processed
+     */
+    public long getItems() {
+        return items;
+    }
+
+    public void setItems(long items) {
+        this.items = items;
+    }
+
+    /**
+     * Gets the total number of errors reported by the completed executions.
+     *
+     * @return Number of errors
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    public void setErrors(long errors) {
+        this.errors = errors;
+    }
+
+    /**
+     * Gets the total time in milliseconds spent executing.
+     *
+     * @return Total execution time in milliseconds
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    public void setTotalTime(long totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Gets the time in milliseconds of the last execution.
+     *
+     * @return Time in milliseconds of the last execution
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(long lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    /**
+     * Gets the longest execution time in milliseconds.
+     *
+     * @return Longest execution time in milliseconds
+     */
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public void setMaxTime(long maxTime) {
+        this.maxTime = maxTime;
+    }
+
+    /**
+     * Gets the median execution time in milliseconds of the recent executions.
+     *
+     * @return Median execution time in milliseconds
+     */
+    public long getPercentile50() {
+        return percentile50;
+    }
+
+    public void setPercentile50(long percentile50) {
+        this.percentile50 = percentile50;
+    }
+
+    /**
+     * Gets the 90th percentile execution time in milliseconds of the recent
+     * executions.
+     *
+     * @return 90th percentile execution time in milliseconds
+     */
+    public long getPercentile90() {
+        return percentile90;
+    }
+
+    public void setPercentile90(long percentile90) {
+        this.percentile90 = percentile90;
+    }
+
+    /**
+     * Gets the 99th percentile execution time in milliseconds of the recent
+     * executions.
+     *
+     * @return 99th percentile execution time in milliseconds
+     */
+    public long getPercentile99() {
+        return percentile99;
+    }
+
+    public void setPercentile99(long percentile99) {
+        this.percentile99 = percentile99;
+    }
+
+    /**
+     * Gets the time the last execution started.
+     *
+     * @return Time the last execution started, or {@code null} if
+     *         the task has not been executed
+     */
+    public Date getLastStarted() {
+        return lastStarted;
+    }
+
+    public void setLastStarted(Date lastStarted) {
+        this.lastStarted = lastStarted;
+    }
+
+    /**
+     * Gets the time the last execution finished.
+     *
+     * @return Time the last execution finished, or {@code null} if
+     *         no execution has finished
+     */
+    public Date getLastFinished() {
+        return lastFinished;
+    }
+
+    public void setLastFinished(Date lastFinished) {
+        this.lastFinished = lastFinished;
+    }
+
+    /**
+     * Gets the average execution time in milliseconds.
+     *
+     * @return Average execution time in milliseconds
+     */
+    public long getAverageTime() {
+        if (invocations == 0) {
+            return 0;
+        }
+        return totalTime / invocations;
+    }
+
+    /**
+     * Gets the number of items processed per second of execution time.
+     *
+     * @return Number of items processed per second
+     */
+    public double getThroughput() {
+        if (totalTime == 0) {
+            return 0;
+        }
+        return items * 1000.0 / totalTime;
+    }
+}
@@ -30,6 +30,7 @@ import dk.i2m.converge.core.search.QueueEntryOperation;
 import dk.i2m.converge.core.search.QueueEntryType;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.utils.StringUtils;
+import dk.i2m.converge.core.workflow.Section;
 import dk.i2m.converge.ejb.services.*;
 import java.io.File;
 import java.io.IOException;
@@ -40,6 +41,9 @@ import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
@@ -71,8 +75,14 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
 
     @EJB private CatalogueServiceLocal catalogueService;
 
+    @EJB private EditionSnapshotServiceLocal editionSnapshotService;
+
+    @EJB private ReferenceDataServiceLocal referenceDataService;
+
     @Resource private SessionContext ctx;
 
+    @Resource private TransactionSynchronizationRegistry txRegistry;
+
     /** {@inheritDoc } */
     @Override
     public Catalogue create(Catalogue catalogue) {
@@ -251,7 +261,7 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         String path = archive(file, catalogue, mediaItemRendition);
 
         // Load meta data into the rendition
-        fillWithMetadata(mediaItemRendition);
+        fillWithMetadata(mediaItemRendition, file);
 
         // Store the rendition in the database
         if (mediaItemRendition.getId() == null) {
@@ -259,27 +269,11 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         } else {
             mediaItemRendition = daoService.update(mediaItemRendition);
         }
+        editionSnapshotService.invalidateByMediaItem(item.getId());
 
         // Execute hooks
         if (executeHooks) {
-            for (CatalogueHookInstance hookInstance : catalogue.getHooks()) {
-                if (!hookInstance.isManual()) {
-                    try {
-                        if (hookInstance.isAsynchronous()) {
-                            catalogueService.executeAsynchronousHook(
-                                    item.getId(),
-                                    hookInstance.getId(),
-                                    CatalogueEvent.Event.UploadRendition);
-                        } else {
-                            catalogueService.executeHook(item.getId(),
-                                    hookInstance.getId(),
-                                    CatalogueEvent.Event.UploadRendition);
-                        }
-                    } catch (DataNotFoundException ex) {
-                        LOG.log(Level.SEVERE, ex.getMessage(), ex);
-                    }
-                }
-            }
+            executeHooks(item, CatalogueEvent.Event.UploadRendition);
         }
 
         return mediaItemRendition;
@@ -307,40 +301,61 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         // Store file
         archive(file, catalogue, mediaItemRendition);
 
-        fillWithMetadata(mediaItemRendition);
+        fillWithMetadata(mediaItemRendition, file);
 
         // Store rendition in database
         mediaItemRendition = daoService.update(mediaItemRendition);
+        editionSnapshotService.invalidateByMediaItem(mediaItemRendition.
+                getMediaItem().getId());
 
         // Execute hooks
         if (executeHooks) {
-            for (CatalogueHookInstance hookInstance : catalogue.getHooks()) {
-                if (!hookInstance.isManual()) {
-                    try {
-                        if (hookInstance.isAsynchronous()) {
-                            catalogueService.executeAsynchronousHook(
-                                    mediaItemRendition.getMediaItem().
-                                    getId(), hookInstance.getId(),
-                                    CatalogueEvent.Event.UpdateRendition);
-                        } else {
-                            catalogueService.executeHook(mediaItemRendition.
-                                    getMediaItem().
-                                    getId(), hookInstance.getId(),
-                                    CatalogueEvent.Event.UpdateRendition);
-                        }
-                    } catch (DataNotFoundException ex) {
-                        LOG.log(Level.SEVERE, ex.getMessage());
+            executeHooks(mediaItemRendition.getMediaItem(),
+                    CatalogueEvent.Event.UpdateRendition);
+        }
+        return mediaItemRendition;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void executeHooks(Long mediaItemId, CatalogueEvent.Event event)
+            throws DataNotFoundException {
+        executeHooks(daoService.findById(MediaItem.class, mediaItemId), event);
+    }
+
+    /**
+     * Executes the {@link CatalogueHookInstance}s of the {@link Catalogue}
+     * of a {@link MediaItem} that are not manual.
+     *
+     * @param item  {@link MediaItem} on which to execute the hooks
+     * @param event Event causing the execution of the hooks
+     */
+    private void executeHooks(MediaItem item, CatalogueEvent.Event event) {
+        for (CatalogueHookInstance hookInstance : item.getCatalogue().
+                getHooks()) {
+            if (!hookInstance.isManual()) {
+                try {
+                    if (hookInstance.isAsynchronous()) {
+                        catalogueService.executeAsynchronousHook(item.getId(),
+                                hookInstance.getId(), event);
+                    } else {
+                        catalogueService.executeHook(item.getId(),
+                                hookInstance.getId(), event);
                     }
+                } catch (DataNotFoundException ex) {
+                    LOG.log(Level.SEVERE, ex.getMessage(), ex);
                 }
             }
         }
-        return mediaItemRendition;
     }
 
     /** {@inheritDoc } */
     @Override
     public MediaItemRendition update(MediaItemRendition mir) {
-        return daoService.update(mir);
+        mir = daoService.update(mir);
+        editionSnapshotService.invalidateByMediaItem(mir.getMediaItem().
+                getId());
+        return mir;
     }
 
     /** {@inheritDoc} */
@@ -403,10 +418,12 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         systemFacade.removeBackgroundTask(taskId);
     }
 
-    private void fillWithMetadata(MediaItemRendition mediaItemRendition) {
-        // Discover meta data and format info
+    private void fillWithMetadata(MediaItemRendition mediaItemRendition,
+            File file) {
+        // Discover meta data and format info from the file being archived, as
+        // uploaded files are only moved to the catalogue upon commit
         Map<String, String> metaData =
-                metaDataService.extract(mediaItemRendition.getFileLocation());
+                metaDataService.extract(file.getAbsolutePath());
 
         for (String key : metaData.keySet()) {
             if (key.equalsIgnoreCase("width")) {
@@ -422,6 +439,13 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         }
     }
 
+    /** {@inheritDoc } */
+    @Override
+    public MediaItemRendition findMediaItemRenditionById(Long id) throws
+            DataNotFoundException {
+        return daoService.findById(MediaItemRendition.class, id);
+    }
+
     /**
      * Deletes an existing {@link MediaItemRendition} from a {@link MediaItem}.
      * <p/>
@@ -441,6 +465,8 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
                         getAbsoluteFile().toString());
             }
 
+            editionSnapshotService.invalidateByMediaItem(mir.getMediaItem().
+                    getId());
             daoService.delete(MediaItemRendition.class, id);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, "MediaItemRendition #{0} does not exist", id);
@@ -479,6 +505,7 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
     public MediaItem update(MediaItem mediaItem) {
         mediaItem.setUpdated(Calendar.getInstance());
         mediaItem = daoService.update(mediaItem);
+        editionSnapshotService.invalidateByMediaItem(mediaItem.getId());
 
         if (mediaItem.getStatus() == null || !mediaItem.getStatus().equals(
                 MediaItemStatus.APPROVED)) {
@@ -636,6 +663,9 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         searchEngine.addToIndexQueue(QueueEntryType.MEDIA_ITEM, id,
                 QueueEntryOperation.REMOVE);
 
+        // Invalidated while the attachments to news items still exist
+        editionSnapshotService.invalidateByMediaItem(id);
+
         // Remove renditions
         try {
             MediaItem mi = daoService.findById(MediaItem.class, id);
@@ -769,7 +799,11 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
                             getTime());
                     usage.setOutlet(
                             placement.getEdition().getOutlet().getTitle());
-                    usage.setSection(placement.getSection().getFullName());
+                    if (placement.getSectionId() != null) {
+                        usage.setSection(referenceDataService.findById(
+                                Section.class, placement.getSectionId()).
+                                getFullName());
+                    }
                     usage.setStart(placement.getStart());
                     usage.setPosition(placement.getPosition());
                     usage.setPublished(!placement.getEdition().isOpen());
@@ -870,7 +904,7 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         // Move file to the new location
         LOG.log(Level.FINE, "Archiving {0} at {1}", new Object[]{file.
                     getAbsolutePath(), mediaFile.getAbsolutePath()});
-        FileUtils.copyFile(file, mediaFile);
+        store(file, catalogue, mediaFile);
 
         rendition.setPath(cataloguePath.toString());
 
@@ -915,11 +949,78 @@ public class CatalogueFacadeBean implements CatalogueFacadeLocal {
         File mediaFile = new File(dir, fileName);
 
         // Move file to the new location
-        FileUtils.copyFile(file, mediaFile);
+        store(file, catalogue, mediaFile);
 
         return cataloguePath.toString();
     }
 
+    /**
+     * Stores a file in a {@link Catalogue}. Files uploaded to the
+     * {@link Catalogue#getUploadLocation() upload folder} of the
+     * {@link Catalogue} are moved once the transaction has been committed,
+     * so that neither the upload nor the file it replaces is lost if the
+     * transaction is rolled back. Other files are copied immediately.
+     *
+     * @param file      File to store
+     * @param catalogue Catalogue in which the file is stored
+     * @param mediaFile Location of the file in the {@link Catalogue}
+     * @throws IOException If the file could not be stored
+     */
+    private void store(final File file, Catalogue catalogue,
+            final File mediaFile) throws IOException {
+        File uploadLocation = new File(catalogue.getUploadLocation()).
+                getAbsoluteFile();
+        if (!uploadLocation.equals(file.getAbsoluteFile().getParentFile())) {
+            FileUtils.copyFile(file, mediaFile);
+        } else if (txRegistry.getTransactionKey() == null) {
+            move(file, mediaFile);
+        } else {
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != Status.STATUS_COMMITTED) {
+                        return;
+                    }
+                    try {
+                        move(file, mediaFile);
+                    } catch (IOException ex) {
+                        LOG.log(Level.SEVERE, "Could not archive "
+                                + file.getAbsolutePath() + " at "
+                                + mediaFile.getAbsolutePath(), ex);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Moves an uploaded file to its location in a {@link Catalogue},
+     * replacing any existing file. The file is copied if it could not be
+     * moved.
+     *
+     * @param file      Uploaded file
+     * @param mediaFile Location of the file in the {@link Catalogue}
+     * @throws IOException If the file could not be copied
+     */
+    private static void move(File file, File mediaFile) throws IOException {
+        if (mediaFile.exists()) {
+            mediaFile.delete();
+        }
+        if (file.renameTo(mediaFile)) {
+            return;
+        }
+        LOG.log(Level.WARNING, "Could not move {0} to {1}. Copying file",
+                new Object[]{file.getAbsolutePath(), mediaFile.
+                    getAbsolutePath()});
+        FileUtils.copyFile(file, mediaFile);
+        file.delete();
+    }
+
     @Override
     public CatalogueHookInstance createCatalogueAction(
             CatalogueHookInstance action) {
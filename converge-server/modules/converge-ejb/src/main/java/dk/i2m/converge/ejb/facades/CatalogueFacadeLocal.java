@@ -19,6 +19,7 @@ package dk.i2m.converge.ejb.facades;
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.content.catalogue.*;
 import dk.i2m.converge.core.newswire.NewswireItem;
+import dk.i2m.converge.core.plugin.CatalogueEvent;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.ejb.services.InvalidMediaRepositoryException;
 import dk.i2m.converge.ejb.services.MediaRepositoryIndexingException;
@@ -163,6 +164,18 @@ public interface CatalogueFacadeLocal {
 
     void deleteMediaItemRenditionById(java.lang.Long id);
 
+    /**
+     * Finds a {@link MediaItemRendition} by its unique identifier.
+     *
+     * @param id
+     *          Unique identifier of the {@link MediaItemRendition}
+     * @return {@link MediaItemRendition} matching the unique {@code id}
+     * @throws DataNotFoundException
+     *          If the {@link MediaItemRendition} could not be found
+     */
+    MediaItemRendition findMediaItemRenditionById(Long id) throws
+            DataNotFoundException;
+
     /**
      * Creates a new {@link MediaItemRendition} based on a {@link File} and
      * {@link MediaItem}.
@@ -229,6 +242,24 @@ public interface CatalogueFacadeLocal {
     void executeHook(java.lang.Long mediaItemId, java.lang.Long hookInstanceId)
             throws dk.i2m.converge.core.DataNotFoundException;
 
+    /**
+     * Executes the {@link CatalogueHookInstance}s of the {@link Catalogue} of
+     * a {@link MediaItem} that are not manual. Files uploaded to the
+     * {@link Catalogue} are only moved in place once the transaction storing
+     * them has been committed, so hooks for uploaded files should be executed
+     * by this method rather than upon creating or updating the
+     * {@link MediaItemRendition}.
+     *
+     * @param mediaItemId
+     *          Unique identifier of the {@link MediaItem}
+     * @param event
+     *          Event causing the execution of the hooks
+     * @throws DataNotFoundException
+     *          If the given {@code mediaItemId} was invalid
+     */
+    void executeHooks(Long mediaItemId, CatalogueEvent.Event event) throws
+            DataNotFoundException;
+
     /**
      * Finds a {@link List} of {@link Catalogue}s accessible to a given
      * {@link UserAccount}.
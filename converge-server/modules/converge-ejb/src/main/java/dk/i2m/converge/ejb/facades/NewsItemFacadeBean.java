@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.ejb.facades;
 
+import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.content.*;
 import dk.i2m.converge.core.content.catalogue.MediaItem;
@@ -31,14 +32,13 @@ import dk.i2m.converge.core.views.CurrentAssignment;
 import dk.i2m.converge.core.views.InboxView;
 import dk.i2m.converge.core.workflow.*;
 import dk.i2m.converge.ejb.services.*;
-import java.text.MessageFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.ejb.*;
 import javax.persistence.OptimisticLockException;
+import org.eclipse.persistence.indirection.IndirectContainer;
 
 /**
  * Enterprise session bean providing a facade to working with {@link NewsItem}s.
@@ -51,10 +51,23 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     private static final Logger LOG = Logger.getLogger(NewsItemFacadeBean.class.
             getName());
 
+    /** Batch size used if the configured batch size is invalid. */
+    private static final int DEFAULT_PRECALCULATED_FIELDS_BATCH_SIZE = 100;
+
+    /**
+     * Query for finding the news items in the outlets of a user where the
+     * user is the current actor. The outlets are matched against the named
+     * parameters inserted in place of {@code {outlets}}, e.g.
+     * {@code :outlet0, :outlet1}, as collection parameters are not supported.
+     */
+    private static final String FIND_ACTIVE_BY_USER = "SELECT n FROM NewsItem AS n WHERE n.outlet.id IN ({outlets}) AND n.currentState.workflow.endState <> n.currentState AND n.currentState.workflow.trashState <> n.currentState AND ((n.currentState.permission = dk.i2m.converge.core.workflow.WorkflowStatePermission.GROUP AND :user MEMBER OF n.currentState.actorRole.userAccounts) OR (n.currentState.permission = dk.i2m.converge.core.workflow.WorkflowStatePermission.USER AND EXISTS (SELECT a FROM NewsItemActor a WHERE a.newsItem = n AND a.user = :user AND a.role = n.currentState.actorRole))) ORDER BY n.updated DESC";
+
     @EJB private ConfigurationServiceLocal cfgService;
 
     @EJB private DaoServiceLocal daoService;
 
+    @EJB private EditionSnapshotServiceLocal editionSnapshotService;
+
     @EJB private UserFacadeLocal userFacade;
 
     @EJB private UserServiceLocal userService;
@@ -69,6 +82,10 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
 
     @EJB private SystemFacadeLocal systemFacade;
 
+    @EJB private WorkflowActionServiceLocal workflowActionService;
+
+    @EJB private ReferenceDataServiceLocal referenceDataService;
+
     @Resource private SessionContext ctx;
 
     /**
@@ -147,48 +164,11 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
 
             newsItem.setUpdated(now);
             newsItem.setCreated(now);
-            newsItem.setPrecalculatedWordCount(newsItem.getWordCount());
-            newsItem.setPrecalculatedCurrentActor(newsItem.getCurrentActor());
 
             newsItem = daoService.create(newsItem);
 
-            List<UserAccount> usersToNotify = new ArrayList<UserAccount>();
-            WorkflowState state = newsItem.getCurrentState();
-
-            switch (state.getPermission()) {
-                case USER:
-                    for (NewsItemActor actor : newsItem.getActors()) {
-                        if (actor.getRole().equals(state.getActorRole())) {
-                            usersToNotify.add(actor.getUser());
-                        }
-                    }
-                    break;
-                case GROUP:
-                    for (UserAccount actor : userService.findAll()) {
-                        if (actor.getUserRoles().contains(state.getActorRole())) {
-                            usersToNotify.add(actor);
-                        }
-                    }
-                    break;
-            }
-
-            for (UserAccount userToNotify : usersToNotify) {
-                if (!userToNotify.equals(ua)) {
-                    String msgPattern = cfgService.getMessage(
-                            "notification_MSG_STORY_ASSIGNED");
-                    SimpleDateFormat sdf = new SimpleDateFormat(cfgService.
-                            getMessage("FORMAT_SHORT_DATE_AND_TIME"));
-                    sdf.setTimeZone(userToNotify.getTimeZone());
-
-                    String date = sdf.format(newsItem.getDeadline().getTime());
-
-                    Object[] args = new Object[]{newsItem.getTitle(), date, ua.
-                        getFullName()};
-                    String msg = MessageFormat.format(msgPattern, args);
-
-                    notificationService.create(userToNotify, msg);
-                }
-            }
+            notificationService.notifyCurrentActors(newsItem,
+                    NewsItemNotification.STORY_ASSIGNED, ua);
             return newsItem;
 
         } catch (Exception ex) {
@@ -268,16 +248,14 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         // Strip unwanted characters
         newsItem.setStory(newsItem.getStory().replaceAll("\\p{Cntrl}", " "));
         newsItem.setCurrentState(nextState);
-        newsItem.getHistory().add(transition);
         newsItem.setUpdated(now);
-        newsItem.setPrecalculatedWordCount(newsItem.getWordCount());
-        newsItem.setPrecalculatedCurrentActor(newsItem.getCurrentActor());
 
         try {
             newsItem = checkin(newsItem);
         } catch (LockingException ex) {
             throw new WorkflowStateTransitionException(ex);
         }
+        addTransition(newsItem, transition);
 
         // Actions
         pluginContext.log(LogSeverity.INFO, "Executing workflow step actions",
@@ -285,6 +263,11 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         //LOG.log(Level.INFO, "Executing workflow step actions");
 
         for (WorkflowStepAction action : transitionStep.getActions()) {
+            if (action.isAsynchronous()) {
+                workflowActionService.queue(newsItem, action, ua);
+                continue;
+            }
+
             try {
                 WorkflowAction act = action.getAction();
                 act.execute(pluginContext, newsItem, action, ua);
@@ -333,17 +316,38 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         transition.setBriefVersion(newsItem.getBrief());
         transition.setComment(comment);
         newsItem.setCurrentState(nextState);
-        newsItem.getHistory().add(transition);
         newsItem.setUpdated(now);
         try {
             newsItem = checkin(newsItem);
         } catch (LockingException ex) {
             throw new WorkflowStateTransitionException(ex);
         }
+        addTransition(newsItem, transition);
 
         return newsItem;
     }
 
+    /**
+     * Adds a transition to the history of a checked-in {@link NewsItem}. The
+     * history is fetched lazily, so unless it has already been loaded the
+     * transition is persisted on its own rather than loading the entire
+     * history of the {@link NewsItem}.
+     *
+     * @param newsItem   Managed {@link NewsItem} that made the transition
+     * @param transition New {@link WorkflowStateTransition}
+     */
+    private void addTransition(NewsItem newsItem,
+            WorkflowStateTransition transition) {
+        transition.setNewsItem(newsItem);
+        List<WorkflowStateTransition> history = newsItem.getHistory();
+        if (history instanceof IndirectContainer
+                && !((IndirectContainer) history).isInstantiated()) {
+            daoService.create(transition);
+        } else {
+            history.add(transition);
+        }
+    }
+
     /**
      * Finds the current assignments of a given user.
      * <p/>
@@ -413,58 +417,62 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     /** {@inheritDoc } */
     @Override
     public List<NewsItem> findByActiveUser(String username) {
-        List<NewsItem> items = new ArrayList<NewsItem>();
+        return findByActiveUser(username, -1, 0);
+    }
 
+    /** {@inheritDoc } */
+    @Override
+    public List<NewsItem> findByActiveUser(String username, int start,
+            int results) {
         try {
             UserAccount ua = userFacade.findById(username);
-
-            // Go through each privileged outlet
-            List<Outlet> outlets = ua.getPrivilegedOutlets();
-
-            for (Outlet outlet : outlets) {
-
-                // Look at each story in the outlet
-                Map params = QueryBuilder.with("outlet", outlet).parameters();
-                List<NewsItem> itemsInOutlet =
-                        daoService.findWithNamedQuery(NewsItem.FIND_BY_OUTLET,
-                        params);
-
-                for (NewsItem ni : itemsInOutlet) {
-
-                    WorkflowState state = ni.getCurrentState();
-
-                    // Ignore completed and trashed items
-                    if (!state.isWorkflowTrash() && !state.isWorkflowEnd()) {
-
-                        // Check if the NewsItem is currently open for a group or
-                        // for a group attached to the story
-                        switch (state.getPermission()) {
-                            case GROUP:
-                                if (ua.getUserRoles().contains(state.
-                                        getActorRole())) {
-                                    items.add(ni);
-                                }
-                                break;
-
-                            case USER:
-                                // Check all the actors for the news item
-                                for (NewsItemActor actor : ni.getActors()) {
-                                    // If the actor has the role of the state, he is a current actor
-                                    if (actor.getRole().equals(state.
-                                            getActorRole()) && actor.getUser().
-                                            equals(ua)) {
-                                        items.add(ni);
-                                    }
-                                }
-                                break;
-                        }
-                    }
+            Set<Long> outlets = findOutletIds(ua);
+            if (outlets.isEmpty()) {
+                return Collections.EMPTY_LIST;
+            }
+            QueryBuilder qb = QueryBuilder.with("user", ua).batch(
+                    NewsItemFetchProfile.LIST.getCollections("n"));
+            StringBuilder parameters = new StringBuilder();
+            int i = 0;
+            for (Long outlet : outlets) {
+                if (i > 0) {
+                    parameters.append(", ");
                 }
+                parameters.append(":outlet").append(i);
+                qb.and("outlet" + i, outlet);
+                i++;
             }
+            return daoService.findWithQuery(FIND_ACTIVE_BY_USER.replace(
+                    "{outlets}", parameters), qb, start, results);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, "Unknown user", ex);
+            return Collections.EMPTY_LIST;
         }
-        return items;
+    }
+
+    /**
+     * Gets the unique identifiers of the {@link Outlet}s of the roles of a
+     * given user. The outlets of each role are read from the reference data
+     * cache rather than joined in for every query.
+     *
+     * @param ua {@link UserAccount} of the user
+     * @return Unique identifiers of the {@link Outlet}s of the user
+     */
+    private Set<Long> findOutletIds(UserAccount ua) {
+        Set<Long> outlets = new HashSet<Long>();
+        for (UserRole role : ua.getUserRoles()) {
+            try {
+                UserRole cached = referenceDataService.findById(UserRole.class,
+                        role.getId());
+                for (Outlet outlet : cached.getOutlets()) {
+                    outlets.add(outlet.getId());
+                }
+            } catch (DataNotFoundException ex) {
+                LOG.log(Level.FINE, "UserRole #{0} was deleted",
+                        role.getId());
+            }
+        }
+        return outlets;
     }
 
     @Override
@@ -549,7 +557,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
      * @return {@code true} if {@code username} is the original owner of {@code item}
      */
     private boolean isOriginalOwner(NewsItem item, String username) {
-        WorkflowState start = item.getOutlet().getWorkflow().getStartState();
+        WorkflowState start = findWorkflow(item.getOutlet()).getStartState();
         UserRole role = start.getActorRole();
         UserAccount user;
         try {
@@ -567,33 +575,48 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         return false;
     }
 
+    /**
+     * Gets the {@link Workflow} of an {@link Outlet} from the reference data
+     * cache. The {@link Workflow} is only used for comparing states, and must
+     * not be assigned to managed entities.
+     *
+     * @param outlet {@link Outlet} for which to get the {@link Workflow}
+     * @return {@link Workflow} of the {@link Outlet}
+     */
+    private Workflow findWorkflow(Outlet outlet) {
+        try {
+            return referenceDataService.findById(Outlet.class, outlet.getId()).
+                    getWorkflow();
+        } catch (DataNotFoundException ex) {
+            return outlet.getWorkflow();
+        }
+    }
+
     /** {@inheritDoc } */
     @Override
     public List<NewsItem> findByStateAndOutlet(WorkflowState state,
             Outlet outlet) {
-        Map params = QueryBuilder.with("outlet", outlet).and("state", state).
-                parameters();
-        return daoService.findWithNamedQuery(NewsItem.FIND_BY_OUTLET_AND_STATE,
-                params);
+        return findByStateAndOutlet(state, outlet, -1, 0);
     }
 
     /** {@inheritDoc } */
     @Override
     public List<NewsItem> findByStateAndOutlet(String stateName, Outlet outlet) {
-        Map params = QueryBuilder.with("outlet", outlet).and("stateName",
-                stateName).parameters();
+        // Used by plug-ins for publishing the news items in the state
+        QueryBuilder qb = QueryBuilder.with("outlet", outlet).and("stateName",
+                stateName).batch(NewsItemFetchProfile.PUBLISH.getCollections("n"));
         return daoService.findWithNamedQuery(
-                NewsItem.FIND_BY_OUTLET_AND_STATE_NAME, params);
+                NewsItem.FIND_BY_OUTLET_AND_STATE_NAME, qb, -1, 0);
     }
 
     /** {@inheritDoc } */
     @Override
     public List<NewsItem> findByStateAndOutlet(WorkflowState state,
             Outlet outlet, int start, int results) {
-        Map params = QueryBuilder.with("outlet", outlet).and("state", state).
-                parameters();
+        QueryBuilder qb = QueryBuilder.with("outlet", outlet).and("state", state).
+                batch(NewsItemFetchProfile.LIST.getCollections("n"));
         return daoService.findWithNamedQuery(NewsItem.FIND_BY_OUTLET_AND_STATE,
-                params, start, results);
+                qb, start, results);
     }
 
     /** {@inheritDoc } */
@@ -602,7 +625,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
             DataNotFoundException {
         NewsItem newsItem = findNewsItemById(newsItemId);
 
-        if (newsItem.getCurrentState().equals(newsItem.getOutlet().getWorkflow().
+        if (newsItem.getCurrentState().equals(findWorkflow(newsItem.getOutlet()).
                 getEndState())) {
             return true;
         } else {
@@ -613,10 +636,10 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     /** {@inheritDoc } */
     @Override
     public List<NewsItem> findAssignmentsByOutlet(Outlet selectedOutlet) {
-        Map<String, Object> params = QueryBuilder.with("outlet", selectedOutlet).
-                parameters();
+        QueryBuilder qb = QueryBuilder.with("outlet", selectedOutlet).batch(
+                NewsItemFetchProfile.LIST.getCollections("n"));
         return daoService.findWithNamedQuery(NewsItem.FIND_ASSIGNMENTS_BY_OUTLET,
-                params);
+                qb, -1, 0);
     }
 
     /** {@inheritDoc } */
@@ -649,6 +672,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         } else {
             try {
                 NewsItem item = daoService.findById(NewsItem.class, id);
+                editionSnapshotService.invalidateByNewsItem(id);
                 daoService.delete(NewsItem.class, id);
                 // Schedule removal of news item from search engine
                 searchEngine.addToIndexQueue(QueueEntryType.NEWS_ITEM, id,
@@ -666,20 +690,54 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     /** {@inheritDoc} */
     @Override
     public NewsItemActor addActorToNewsItem(NewsItemActor actor) {
-        return daoService.create(actor);
+        NewsItem newsItem = null;
+        if (actor.getNewsItem() != null && actor.getNewsItem().getId() != null) {
+            try {
+                newsItem = daoService.findById(NewsItem.class, actor.
+                        getNewsItem().getId());
+                actor.setNewsItem(newsItem);
+            } catch (DataNotFoundException ex) {
+                LOG.log(Level.WARNING, "Adding actor to unknown news item {0}",
+                        actor.getNewsItem().getId());
+            }
+        }
+        actor = daoService.create(actor);
+
+        // Adding an actor does not change the news item itself, so its
+        // precalculated current actor is updated here
+        if (newsItem != null) {
+            if (!newsItem.getActors().contains(actor)) {
+                newsItem.getActors().add(actor);
+            }
+            newsItem.updatePrecalculatedCurrentActor();
+        }
+        return actor;
     }
 
     /** {@inheritDoc} */
     @Override
     public NewsItem removeActorFromNewsItem(NewsItemActor actor) {
         Long newsItemId = actor.getNewsItem().getId();
-        daoService.delete(NewsItemActor.class, actor.getId());
+        NewsItem newsItem;
         try {
-            return daoService.findById(NewsItem.class, newsItemId);
+            newsItem = daoService.findById(NewsItem.class, newsItemId);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.SEVERE, null, ex);
+            daoService.delete(NewsItemActor.class, actor.getId());
             return null;
         }
+
+        // Removing an actor does not change the news item itself, so its
+        // precalculated current actor is updated here
+        for (Iterator<NewsItemActor> i = newsItem.getActors().iterator(); i.
+                hasNext();) {
+            if (i.next().getId().equals(actor.getId())) {
+                i.remove();
+            }
+        }
+        newsItem.updatePrecalculatedCurrentActor();
+        daoService.delete(NewsItemActor.class, actor.getId());
+        return newsItem;
     }
 
     /** {@inheritDoc} */
@@ -757,9 +815,9 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     }
 
     private List<NewsItem> findVersions(NewsItem newsItem) {
-        Map<String, Object> parameters = QueryBuilder.with("newsItem", newsItem).
-                parameters();
-        return daoService.findWithNamedQuery(NewsItem.FIND_VERSIONS, parameters);
+        QueryBuilder qb = QueryBuilder.with("newsItem", newsItem).batch(
+                NewsItemFetchProfile.LIST.getCollections("n"));
+        return daoService.findWithNamedQuery(NewsItem.FIND_VERSIONS, qb, -1, 0);
     }
 
     /** {@inheritDoc } */
@@ -768,9 +826,11 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         try {
             Calendar now = Calendar.getInstance();
             newsItem.setUpdated(now);
-            newsItem.setPrecalculatedWordCount(newsItem.getWordCount());
-            newsItem.setPrecalculatedCurrentActor(newsItem.getCurrentActor());
-            return daoService.update(newsItem);
+            // Before and after, as the placements may have changed
+            editionSnapshotService.invalidateByNewsItem(newsItem.getId());
+            NewsItem updated = daoService.update(newsItem);
+            editionSnapshotService.invalidateByNewsItem(updated.getId());
+            return updated;
         } catch (Throwable t) {
             throw new LockingException(t);
         }
@@ -820,46 +880,16 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
             newsItem.setUpdated(now);
             newsItem.setCheckedOut(null);
             newsItem.setCheckedOutBy(null);
-            newsItem.setPrecalculatedWordCount(newsItem.getWordCount());
-            newsItem.setPrecalculatedCurrentActor(newsItem.getCurrentActor());
+            // Before and after, as the placements may have changed
+            editionSnapshotService.invalidateByNewsItem(newsItem.getId());
             NewsItem updated = daoService.update(newsItem);
+            editionSnapshotService.invalidateByNewsItem(updated.getId());
 
             // Briefing has changed - notify relevant users
             if (!oldBriefing.equalsIgnoreCase(updated.getAssignmentBriefing())) {
 
-                // Find out which users to notify of the update
-                List<UserAccount> usersToNotify = new ArrayList<UserAccount>();
-                WorkflowState state = newsItem.getCurrentState();
-
-                // Check if the NewsItem is currently open for a group or
-                // for a group attached to the story
-                if (state.getPermission().equals(WorkflowStatePermission.GROUP)) {
-                    List<UserAccount> users = userService.findAll();
-                    for (UserAccount ua : users) {
-                        if (ua.getUserRoles().contains(state.getActorRole())) {
-                            usersToNotify.add(ua);
-                        }
-                    }
-                } else if (state.getPermission().equals(
-                        WorkflowStatePermission.USER)) {
-
-                    // Check all the actors for the news item
-                    for (NewsItemActor actor : updated.getActors()) {
-                        // If the actor has the role of the state, he is a current actor
-                        if (actor.getRole().equals(state.getActorRole())) {
-                            usersToNotify.add(actor.getUser());
-                        }
-                    }
-                }
-
-                String msg = cfgService.getMessage(
-                        "notification_MSG_STORY_BRIEFING_UPDATED");
-                String notifyMsg = MessageFormat.format(msg, newsItem.getTitle(),
-                        updaterUser.getFullName());
-
-                for (UserAccount ua : usersToNotify) {
-                    notificationService.create(ua, notifyMsg);
-                }
+                notificationService.notifyCurrentActors(updated,
+                        NewsItemNotification.BRIEFING_UPDATED, updaterUser);
             }
 
             return updated;
@@ -902,6 +932,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         }
 
         NewsItem newsItem = daoService.findById(NewsItem.class, id);
+        NewsItemFetchProfile.EDIT.fetch(newsItem);
         ContentItemPermission permission = getPermission(newsItem, user);
 
         LOG.log(Level.INFO, "Permission of #{0} for {1} is {2}", new Object[]{id,
@@ -947,9 +978,12 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
 
         List<NewsItem> versions = findVersions(newsItem);
 
-        // Determine if pullback is available
-        if (newsItem.getLatestTransition().getUser().equals(user) && newsItem.
-                getCurrentState().isPullbackEnabled()) {
+        // Determine if pullback is available without loading the history
+        List<WorkflowStateTransition> latest = daoService.findWithNamedQuery(
+                WorkflowStateTransition.FIND_BY_NEWS_ITEM,
+                QueryBuilder.with("newsItem", newsItem).parameters(), 1);
+        if (!latest.isEmpty() && latest.get(0).getUser().equals(user)
+                && newsItem.getCurrentState().isPullbackEnabled()) {
             pullbackAvailable = true;
         }
 
@@ -1090,21 +1124,42 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
     /** {@inheritDoc } */
     @Override
     public NewsItemMediaAttachment create(NewsItemMediaAttachment attachment) {
+        invalidateSnapshots(attachment);
         return daoService.create(attachment);
     }
 
     /** {@inheritDoc } */
     @Override
     public NewsItemMediaAttachment update(NewsItemMediaAttachment attachment) {
+        invalidateSnapshots(attachment);
         return daoService.update(attachment);
     }
 
     /** {@inheritDoc } */
     @Override
     public void deleteMediaAttachmentById(Long id) {
+        try {
+            invalidateSnapshots(daoService.findById(
+                    NewsItemMediaAttachment.class, id));
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.FINE, "Media attachment #{0} does not exist", id);
+        }
         daoService.delete(NewsItemMediaAttachment.class, id);
     }
 
+    /**
+     * Invalidates the snapshots of the editions in which the {@link NewsItem}
+     * of a media attachment is placed.
+     *
+     * @param attachment {@link NewsItemMediaAttachment} being changed
+     */
+    private void invalidateSnapshots(NewsItemMediaAttachment attachment) {
+        if (attachment.getNewsItem() != null) {
+            editionSnapshotService.invalidateByNewsItem(attachment.getNewsItem().
+                    getId());
+        }
+    }
+
     /** {@inheritDoc } */
     @Override
     public NewsItem findNewsItemFromArchive(Long id) throws
@@ -1112,7 +1167,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         NewsItem ni = findNewsItemById(id);
 
         if (ni.getCurrentState().equals(
-                ni.getOutlet().getWorkflow().getEndState())) {
+                findWorkflow(ni.getOutlet()).getEndState())) {
             return ni;
         } else {
             throw new DataNotFoundException();
@@ -1133,16 +1188,21 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         placement.setSection(section);
         placement.setOutlet(newsItem.getOutlet());
         placement.setNewsItem(newsItem);
+        editionSnapshotService.invalidate(nextEdition.getId());
         return daoService.create(placement);
     }
 
     @Override
     public NewsItemPlacement createPlacement(NewsItemPlacement placement) {
+        invalidateSnapshot(placement);
         return daoService.create(placement);
     }
 
     @Override
     public NewsItemPlacement updatePlacement(NewsItemPlacement placement) {
+        // The placement may have been moved to another edition
+        editionSnapshotService.invalidateByPlacement(placement.getId());
+        invalidateSnapshot(placement);
         try {
             return daoService.update(placement);
         } catch (OptimisticLockException ex) {
@@ -1159,6 +1219,7 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
         try {
             NewsItemPlacement nip;
             nip = daoService.findById(NewsItemPlacement.class, placementId);
+            invalidateSnapshot(nip);
             nip.setStart(start);
             nip.setPosition(position);
             return daoService.update(nip);
@@ -1174,14 +1235,89 @@ public class NewsItemFacadeBean implements NewsItemFacadeLocal {
 
     @Override
     public void deletePlacementById(Long id) {
+        editionSnapshotService.invalidateByPlacement(id);
         daoService.delete(NewsItemPlacement.class, id);
     }
 
+    /**
+     * Invalidates the snapshot of the edition of a {@link NewsItemPlacement}.
+     *
+     * @param placement {@link NewsItemPlacement} being changed
+     */
+    private void invalidateSnapshot(NewsItemPlacement placement) {
+        if (placement.getEdition() != null) {
+            editionSnapshotService.invalidate(placement.getEdition().getId());
+        }
+    }
+
+
+    /**
+     * Recalculates the precalculated fields of all {@link NewsItem}s in
+     * batches, each in its own transaction. The identifier of the last
+     * {@link NewsItem} processed is stored after each batch, without being
+     * announced to the cluster, so that an interrupted recalculation is
+     * resumed rather than restarted.
+     */
     @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void updatePrecalculatedFields() {
-        for (NewsItem ni : daoService.findAll(NewsItem.class)) {
-            ni.setPrecalculatedCurrentActor(ni.getCurrentActor());
-            ni.setPrecalculatedWordCount(ni.getWordCount());
+        int batchSize = cfgService.getInteger(
+                ConfigurationKey.PRECALCULATED_FIELDS_BATCH_SIZE);
+        if (batchSize < 1) {
+            batchSize = DEFAULT_PRECALCULATED_FIELDS_BATCH_SIZE;
+        }
+        Long lastId = cfgService.get(Long.class,
+                ConfigurationKey.PRECALCULATED_FIELDS_CHECKPOINT, 0L);
+        long total = daoService.count(NewsItem.class, "id").longValue();
+        long processed = 0;
+
+        NewsItemFacadeLocal self =
+                ctx.getBusinessObject(NewsItemFacadeLocal.class);
+        Long taskId = systemFacade.createBackgroundTask(
+                "Updating precalculated fields of news items");
+        try {
+            if (lastId > 0) {
+                LOG.log(Level.INFO, "Resuming update of precalculated fields "
+                        + "after news item #{0}", lastId);
+            }
+            while (true) {
+                List<NewsItem> batch = self.updatePrecalculatedFields(lastId,
+                        batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                lastId = batch.get(batch.size() - 1).getId();
+                processed += batch.size();
+                systemFacade.updateBackgroundTask(taskId,
+                        "Updating precalculated fields of news items ("
+                        + processed + "/" + total + ")");
+                LOG.log(Level.FINE, "Updated precalculated fields of {0} of "
+                        + "{1} news items", new Object[]{processed, total});
+            }
+            cfgService.store(ConfigurationKey.PRECALCULATED_FIELDS_CHECKPOINT,
+                    "0");
+            LOG.log(Level.INFO, "Updated precalculated fields of {0} news "
+                    + "items", processed);
+        } finally {
+            systemFacade.removeBackgroundTask(taskId);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public List<NewsItem> updatePrecalculatedFields(Long afterId,
+            int batchSize) {
+        QueryBuilder qb = QueryBuilder.with("id", afterId).batch("n.actors");
+        List<NewsItem> batch = daoService.findWithNamedQuery(
+                NewsItem.FIND_AFTER_ID, qb, -1, batchSize);
+        for (NewsItem newsItem : batch) {
+            newsItem.updatePrecalculatedFields();
+        }
+        if (!batch.isEmpty()) {
+            cfgService.store(ConfigurationKey.PRECALCULATED_FIELDS_CHECKPOINT,
+                    String.valueOf(batch.get(batch.size() - 1).getId()));
         }
+        return batch;
     }
 }
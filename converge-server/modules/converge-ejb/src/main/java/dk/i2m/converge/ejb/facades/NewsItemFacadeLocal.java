@@ -163,6 +163,21 @@ public interface NewsItemFacadeLocal {
      */
     List<NewsItem> findByActiveUser(String username);
 
+    /**
+     * Gets a page of the {@link NewsItem}s where the given user is the active
+     * part.
+     *
+     * @param username
+     *          Unique username of the {@link UserAccount}
+     * @param start
+     *          First result to return
+     * @param results
+     *          Number of results to return
+     * @return {@link List} of {@link NewsItem}s where the given user is the
+     *         active part
+     */
+    List<NewsItem> findByActiveUser(String username, int start, int results);
+
     /**
      * Finds assignments (open news items) by {@link Outlet}.
      * 
@@ -327,8 +342,26 @@ public interface NewsItemFacadeLocal {
 
     void deletePlacement(NewsItemPlacement placement);
 
+    /**
+     * Recalculates the precalculated word count and current actor of all
+     * {@link NewsItem}s. The {@link NewsItem}s are processed in batches, each
+     * in its own transaction, and an interrupted recalculation is resumed
+     * from the last completed batch.
+     */
     void updatePrecalculatedFields();
 
+    /**
+     * Recalculates the precalculated word count and current actor of a batch
+     * of {@link NewsItem}s in a new transaction.
+     *
+     * @param afterId   Identifier of the last {@link NewsItem} processed
+     * @param batchSize Maximum number of {@link NewsItem}s to process
+     * @return {@link List} of {@link NewsItem}s processed, ordered by their
+     *         identifier, or an empty {@link List} if there are no more
+     *         {@link NewsItem}s
+     */
+    List<NewsItem> updatePrecalculatedFields(Long afterId, int batchSize);
+
     java.util.List<InboxView> findInbox(java.lang.String username, int start, int limit);
 
     java.util.List<InboxView> findInbox(java.lang.String username);
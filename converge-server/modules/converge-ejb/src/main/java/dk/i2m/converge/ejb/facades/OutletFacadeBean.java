@@ -21,21 +21,22 @@ import dk.i2m.converge.core.content.NewsItemPlacement;
 import dk.i2m.converge.core.dto.EditionAssignmentView;
 import dk.i2m.converge.core.dto.EditionView;
 import dk.i2m.converge.core.dto.OutletActionView;
+import dk.i2m.converge.core.job.Job;
 import dk.i2m.converge.core.security.UserRole;
 import dk.i2m.converge.core.subscriber.OutletSubscriber;
 import dk.i2m.converge.core.utils.BeanComparator;
 import dk.i2m.converge.core.workflow.*;
-import dk.i2m.converge.ejb.messaging.EditionServiceMessageBean;
-import dk.i2m.converge.ejb.messaging.OutletServiceMessageBean;
 import dk.i2m.converge.ejb.services.DaoServiceLocal;
+import dk.i2m.converge.ejb.services.EditionSnapshotServiceLocal;
+import dk.i2m.converge.ejb.services.JobServiceLocal;
 import dk.i2m.converge.ejb.services.QueryBuilder;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import dk.i2m.converge.utils.CalendarUtils;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.ejb.*;
-import javax.jms.*;
 
 /**
  * Stateless session bean providing a facade to working with {@link Outlet}s.
@@ -50,11 +51,11 @@ public class OutletFacadeBean implements OutletFacadeLocal {
 
     @EJB private DaoServiceLocal daoService;
 
-    @Resource(mappedName = "jms/editionServiceQueue") private Destination destination;
+    @EJB private JobServiceLocal jobService;
 
-    @Resource(mappedName = "jms/outletServiceQueue") private Destination outletServiceQueue;
+    @EJB private EditionSnapshotServiceLocal editionSnapshotService;
 
-    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+    @EJB private ReferenceDataServiceLocal referenceDataService;
 
     @Resource private SessionContext ctx;
 
@@ -510,7 +511,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
 
         Outlet outlet;
         try {
-            outlet = daoService.findById(Outlet.class, outletId);
+            outlet = referenceDataService.findById(Outlet.class, outletId);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.SEVERE, ex.getMessage());
             return Collections.EMPTY_LIST;
@@ -619,6 +620,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
      */
     @Override
     public Edition updateEdition(Edition edition) {
+        editionSnapshotService.invalidate(edition.getId());
         return daoService.update(edition);
     }
 
@@ -650,6 +652,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
 
         e.setCloseDate(closeDate);
 
+        editionSnapshotService.invalidate(editionId);
         return daoService.update(e);
     }
 
@@ -659,6 +662,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
     @Override
     public void deleteEdition(Long id) {
         daoService.delete(Edition.class, id);
+        editionSnapshotService.delete(id);
     }
 
     /**
@@ -760,36 +764,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
      */
     @Override
     public void scheduleAction(Long editionId, Long actionId) {
-        Connection connection = null;
-        try {
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-
-            MessageProducer producer = session.createProducer(destination);
-
-            MapMessage message = session.createMapMessage();
-            message.
-                    setLongProperty(EditionServiceMessageBean.Property.EDITION_ID.
-                    name(), editionId);
-            message.
-                    setLongProperty(EditionServiceMessageBean.Property.ACTION_ID.
-                    name(), actionId);
-            producer.send(message);
-
-            session.close();
-            connection.close();
-        } catch (JMSException ex) {
-            Logger.getLogger(OutletFacadeBean.class.getName()).log(Level.SEVERE,
-                    null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
-        }
+        jobService.enqueue(Job.editionAction(editionId, actionId, null));
     }
 
     /**
@@ -799,43 +774,18 @@ public class OutletFacadeBean implements OutletFacadeLocal {
      */
     @Override
     public void scheduleActions(Long editionId) {
-        Connection connection = null;
         try {
             Edition edition = daoService.findById(Edition.class, editionId);
             List<OutletEditionAction> actions = edition.getOutlet().
                     getAutomaticEditionActions();
 
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-
-            MessageProducer producer = session.createProducer(destination);
-
+            List<Job> jobs = new ArrayList<Job>();
             for (OutletEditionAction action : actions) {
-                MapMessage message = session.createMapMessage();
-                message.
-                        setLongProperty(EditionServiceMessageBean.Property.EDITION_ID.
-                        name(), editionId);
-                message.
-                        setLongProperty(EditionServiceMessageBean.Property.ACTION_ID.
-                        name(), action.getId());
-                producer.send(message);
+                jobs.add(Job.editionAction(editionId, action.getId(), null));
             }
-            session.close();
-            connection.close();
-
+            jobService.enqueue(jobs);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, ex.getMessage());
-        } catch (JMSException ex) {
-            Logger.getLogger(OutletFacadeBean.class.getName()).log(Level.SEVERE,
-                    null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
         }
     }
 
@@ -849,8 +799,6 @@ public class OutletFacadeBean implements OutletFacadeLocal {
     @Override
     public void scheduleNewsItemPlacementActions(Long editionId,
             Long newsItemPlacementId) {
-
-        Connection connection = null;
         try {
             Edition edition = daoService.findById(Edition.class, editionId);
             Long outletId = edition.getOutlet().getId();
@@ -858,42 +806,15 @@ public class OutletFacadeBean implements OutletFacadeLocal {
             List<OutletActionView> actions =
                     findOutletPlacementActions(outletId);
 
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-
-            MessageProducer producer = session.createProducer(destination);
-
+            String uid = ctx.getCallerPrincipal().getName();
+            List<Job> jobs = new ArrayList<Job>();
             for (OutletActionView action : actions) {
-                MapMessage message = session.createMapMessage();
-                message.
-                        setLongProperty(EditionServiceMessageBean.Property.EDITION_ID.
-                        name(), editionId);
-                message.
-                        setLongProperty(EditionServiceMessageBean.Property.ACTION_ID.
-                        name(), action.getId());
-                message.
-                        setLongProperty(EditionServiceMessageBean.Property.NEWS_ITEM_PLACEMENT_ID.
-                        name(), newsItemPlacementId);
-                message.
-                        setString(EditionServiceMessageBean.Property.USER_ACCOUNT_ID.
-                        name(), ctx.getCallerPrincipal().getName());
-                producer.send(message);
+                jobs.add(Job.placementAction(editionId, action.getId(),
+                        newsItemPlacementId, uid));
             }
-            session.close();
-            connection.close();
-
+            jobService.enqueue(jobs);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, ex.getMessage());
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
         }
     }
 
@@ -910,42 +831,8 @@ public class OutletFacadeBean implements OutletFacadeLocal {
             Long newsItemPlacementId) {
         LOG.log(Level.INFO, "Called by user: {0}", ctx.getCallerPrincipal().
                 getName());
-        Connection connection = null;
-        try {
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-
-            MessageProducer producer = session.createProducer(destination);
-
-            MapMessage message = session.createMapMessage();
-            message.
-                    setLongProperty(EditionServiceMessageBean.Property.EDITION_ID.
-                    name(), editionId);
-            message.
-                    setLongProperty(EditionServiceMessageBean.Property.ACTION_ID.
-                    name(), actionId);
-            message.
-                    setLongProperty(EditionServiceMessageBean.Property.NEWS_ITEM_PLACEMENT_ID.
-                    name(), newsItemPlacementId);
-            message.
-                    setStringProperty(EditionServiceMessageBean.Property.USER_ACCOUNT_ID.
-                    name(), ctx.getCallerPrincipal().getName());
-            producer.send(message);
-
-            session.close();
-            connection.close();
-
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
-        }
+        jobService.enqueue(Job.placementAction(editionId, actionId,
+                newsItemPlacementId, ctx.getCallerPrincipal().getName()));
     }
 
     /**
@@ -954,49 +841,25 @@ public class OutletFacadeBean implements OutletFacadeLocal {
     @Override
     @TransactionAttribute(TransactionAttributeType.NEVER)
     public void scheduleActionsOnOutlet(Long outletId) {
-        Connection connection = null;
         try {
             Outlet outlet = findOutletById(outletId);
 
             List<Edition> editions = findEditionsByStatus(false, outlet);
 
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-            MessageProducer producer = session.createProducer(destination);
-
+            List<Job> jobs = new ArrayList<Job>();
             for (Edition edition : editions) {
 
                 List<OutletEditionAction> actions = edition.getOutlet().
                         getAutomaticEditionActions();
 
                 for (OutletEditionAction action : actions) {
-                    MapMessage message = session.createMapMessage();
-                    message.
-                            setLongProperty(EditionServiceMessageBean.Property.EDITION_ID.
-                            name(), edition.getId());
-                    message.
-                            setLongProperty(EditionServiceMessageBean.Property.ACTION_ID.
-                            name(), action.getId());
-                    producer.send(message);
+                    jobs.add(Job.editionAction(edition.getId(),
+                            action.getId(), null));
                 }
             }
-            session.close();
-            connection.close();
-
+            jobService.enqueue(jobs);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, ex.getMessage());
-        } catch (JMSException ex) {
-            Logger.getLogger(OutletFacadeBean.class.getName()).log(Level.SEVERE,
-                    null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
         }
     }
 
@@ -1006,40 +869,13 @@ public class OutletFacadeBean implements OutletFacadeLocal {
     @Override
     @TransactionAttribute(TransactionAttributeType.NEVER)
     public void scheduleActionOnOutlet(Long outletId, Long actionId) {
-        Connection connection = null;
-
-        try {
-            connection = jmsConnectionFactory.createConnection();
-            Session session = connection.createSession(true,
-                    Session.AUTO_ACKNOWLEDGE);
-            MessageProducer producer = session.
-                    createProducer(outletServiceQueue);
-
-            MapMessage message = session.createMapMessage();
-            message.setLongProperty(OutletServiceMessageBean.Property.OUTLET_ID.
-                    name(), outletId);
-            message.setLongProperty(OutletServiceMessageBean.Property.ACTION_ID.
-                    name(), actionId);
-            producer.send(message);
-
-            session.close();
-            connection.close();
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
-        }
+        jobService.enqueue(Job.outletAction(outletId, actionId, null));
     }
 
     @Override
     public List<OutletActionView> findOutletActions(Long id) throws
             DataNotFoundException {
-        Outlet o = findOutletById(id);
+        Outlet o = referenceDataService.findById(Outlet.class, id);
         List<OutletEditionAction> actions = o.getEditionActions();
         List<OutletActionView> outletActions = new ArrayList<OutletActionView>();
         for (OutletEditionAction action : actions) {
@@ -1075,7 +911,7 @@ public class OutletFacadeBean implements OutletFacadeLocal {
     @Override
     public List<OutletActionView> findOutletPlacementActions(Long id) throws
             DataNotFoundException {
-        Outlet o = findOutletById(id);
+        Outlet o = referenceDataService.findById(Outlet.class, id);
         List<OutletEditionAction> actions = o.getEditionActions();
         List<OutletActionView> outletActions = new ArrayList<OutletActionView>();
         for (OutletEditionAction action : actions) {
@@ -20,6 +20,7 @@ import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.content.NewsItem;
 import dk.i2m.converge.core.content.NewsItemActor;
+import dk.i2m.converge.core.content.NewsItemFetchProfile;
 import dk.i2m.converge.core.content.NewsItemPlacement;
 import dk.i2m.converge.core.content.catalogue.MediaItem;
 import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
@@ -30,6 +31,8 @@ import dk.i2m.converge.core.search.QueueEntryType;
 import dk.i2m.converge.core.search.SearchEngineIndexingException;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.utils.BeanComparator;
+import dk.i2m.converge.core.workflow.Section;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.domain.search.IndexField;
 import dk.i2m.converge.domain.search.SearchFacet;
 import dk.i2m.converge.domain.search.SearchResult;
@@ -37,13 +40,22 @@ import dk.i2m.converge.domain.search.SearchResults;
 import dk.i2m.converge.ejb.services.*;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
@@ -59,8 +71,6 @@ import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
-import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
@@ -89,15 +99,25 @@ public class SearchEngineBean implements SearchEngineLocal {
 
     @EJB private NewsItemFacadeLocal newsItemFacade;
 
-    @EJB private CatalogueFacadeLocal catalogueFacade;
-
-    @EJB private MetaDataServiceLocal metaDataService;
+    @EJB private ReferenceDataServiceLocal referenceDataService;
 
     @Resource private SessionContext ctx;
 
     private DateFormat solrDateFormat = new SimpleDateFormat(
             "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 
+    private static final int DEFAULT_INDEXING_BATCH_SIZE = 100;
+
+    private static final int DEFAULT_INDEXING_THREADS = 4;
+
+    /** Guard preventing overlapping timer ticks from processing the queue. */
+    private static final AtomicBoolean INDEXING = new AtomicBoolean(false);
+
+    private static ExecutorService indexingWorkers = null;
+
+    /** Name of the indexing batches in the {@link TaskMonitor}. */
+    private static final String INDEXING_TASK = "Indexing queue";
+
     @Override
     public IndexQueueEntry addToIndexQueue(QueueEntryType type, Long id,
             QueueEntryOperation operation) {
@@ -146,61 +166,305 @@ public class SearchEngineBean implements SearchEngineLocal {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void removeFromQueue(Collection<Long> ids) {
+        daoService.deleteByIds(IndexQueueEntry.class, ids);
+    }
+
+    /**
+     * Processes the indexing queue in batches. The queue is paged in the order
+     * the entries were added. For each batch the entities are loaded in bulk,
+     * the content of documents in the catalogue is extracted on a bounded pool
+     * of worker threads while the search engine documents are generated, the
+     * documents are sent to the search engine in a single request
+     * and the completed entries are removed from the queue in a single
+     * statement. Entries that fail are kept in the queue for the next run.
+     * The batches and the remaining backlog are recorded in the
+     * {@link TaskMonitor}.
+     */
     @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void processIndexingQueue() {
-        SolrServer solrServer = getSolrServer();
-        List<IndexQueueEntry> items = getIndexQueue();
-        for (IndexQueueEntry entry : items) {
-            if (entry.getOperation().equals(QueueEntryOperation.REMOVE)) {
+        if (!INDEXING.compareAndSet(false, true)) {
+            LOG.log(Level.FINE, "Indexing queue is already being processed");
+            return;
+        }
+
+        try {
+            SolrServer solrServer = getSolrServer();
+            SearchEngineLocal self = ctx.getBusinessObject(
+                    SearchEngineLocal.class);
+            int batchSize = getIndexingBatchSize();
+            ExecutorService workers = getIndexingWorkers();
+            Long lastId = 0L;
+            List<IndexQueueEntry> batch;
+
+            do {
+                batch = daoService.findWithNamedQuery(
+                        IndexQueueEntry.FIND_AFTER_ID,
+                        QueryBuilder.with("lastId", lastId).parameters(),
+                        batchSize);
+
+                if (!batch.isEmpty()) {
+                    lastId = batch.get(batch.size() - 1).getId();
+                    processIndexingBatch(batch, solrServer, workers, self);
+                }
+            } while (batch.size() == batchSize);
+        } finally {
+            TaskMonitor.getInstance().setQueued(
+                    TaskStatistics.Category.INDEXING, INDEXING_TASK,
+                    daoService.count(IndexQueueEntry.class, "id").longValue());
+            INDEXING.set(false);
+        }
+    }
+
+    /**
+     * Processes a single batch of the indexing queue.
+     *
+     * @param batch      Entries in the batch
+     * @param solrServer Search engine to send the batch to
+     * @param workers    Worker threads for extracting the content of documents
+     * @param self       Business interface of this bean used for removing the
+     *                   completed entries in a separate transaction
+     */
+    private void processIndexingBatch(List<IndexQueueEntry> batch,
+            SolrServer solrServer, ExecutorService workers,
+            SearchEngineLocal self) {
+        long batchStart = TaskMonitor.getInstance().started(
+                TaskStatistics.Category.INDEXING, INDEXING_TASK);
+        long failures = 0;
+        boolean processed = false;
+        try {
+            List<Long> completed = new ArrayList<Long>();
+            List<Long> removeEntries = new ArrayList<Long>();
+            List<String> removeIds = new ArrayList<String>();
+            Map<Long, List<Long>> newsItemEntries =
+                    new LinkedHashMap<Long, List<Long>>();
+            Map<Long, List<Long>> mediaItemEntries =
+                    new LinkedHashMap<Long, List<Long>>();
+
+            for (IndexQueueEntry entry : batch) {
+                if (entry.getOperation().equals(QueueEntryOperation.REMOVE)) {
+                    removeIds.add(String.valueOf(entry.getEntryId()));
+                    removeEntries.add(entry.getId());
+                } else if (entry.getType().equals(QueueEntryType.NEWS_ITEM)) {
+                    queueEntry(newsItemEntries, entry);
+                } else if (entry.getType().equals(QueueEntryType.MEDIA_ITEM)) {
+                    queueEntry(mediaItemEntries, entry);
+                }
+            }
+
+            if (!removeIds.isEmpty()) {
                 try {
-                    solrServer.deleteById(String.valueOf(entry.getEntryId()));
-                    removeFromQueue(entry.getId());
+                    solrServer.deleteById(removeIds);
+                    completed.addAll(removeEntries);
                 } catch (Exception ex) {
-                    LOG.log(Level.WARNING, entry.getType().name()
-                            + " #{0} could not be removed from index", entry.
-                            getEntryId());
+                    LOG.log(Level.WARNING, "{0} items could not be removed from "
+                            + "index", removeIds.size());
+                    LOG.log(Level.WARNING, ex.getMessage(), ex);
+                    failures += removeEntries.size();
+                }
+            }
+
+            List<SolrInputDocument> documents = new ArrayList<SolrInputDocument>();
+            List<Long> documentEntries = new ArrayList<Long>();
+
+            // The content of documents is extracted on the worker threads. The
+            // workers are only given the location of the documents, all access to
+            // entities and beans takes place on the container thread
+            List<MediaItem> mediaItems = new ArrayList<MediaItem>();
+            Map<Long, Future<String>> contents = new HashMap<Long, Future<String>>();
+            if (!mediaItemEntries.isEmpty()) {
+                mediaItems = daoService.findByIds(MediaItem.class,
+                        mediaItemEntries.keySet());
+                for (MediaItem mediaItem : mediaItems) {
+                    if (mediaItem.isOriginalAvailable()
+                            && mediaItem.getOriginal().isDocument()) {
+                        final String contentType = mediaItem.getOriginal().
+                                getContentType();
+                        final String location = mediaItem.getOriginal().
+                                getAbsoluteFilename();
+                        contents.put(mediaItem.getId(), workers.submit(
+                                new Callable<String>() {
+
+                                    @Override
+                                    public String call() throws Exception {
+                                        return MetaDataService.extractContent(
+                                                contentType, location);
+                                    }
+                                }));
+                    }
+                }
+            }
+
+            if (!newsItemEntries.isEmpty()) {
+                List<NewsItem> newsItems = daoService.findByIds(NewsItem.class,
+                        newsItemEntries.keySet(),
+                        NewsItemFetchProfile.INDEX.getCollections("o"));
+                for (NewsItem newsItem : newsItems) {
+                    List<Long> entries = newsItemEntries.remove(newsItem.getId());
+                    try {
+                        NewsItemFetchProfile.INDEX.fetch(newsItem);
+                        documents.add(generateDocument(newsItem));
+                        documentEntries.addAll(entries);
+                    } catch (RuntimeException ex) {
+                        LOG.log(Level.WARNING,
+                                "Queue entries {0} could not be indexed", entries);
+                        LOG.log(Level.WARNING, ex.getMessage(), ex);
+                        failures += entries.size();
+                    }
+                }
+
+                for (Map.Entry<Long, List<Long>> missing : newsItemEntries.
+                        entrySet()) {
+                    LOG.log(Level.WARNING,
+                            "NewsItem #{0} does not exist in the database. Skipping indexing.",
+                            missing.getKey());
+                    completed.addAll(missing.getValue());
+                }
+            }
+
+            for (MediaItem mediaItem : mediaItems) {
+                List<Long> entries = mediaItemEntries.remove(mediaItem.getId());
+                try {
+                    String content = "";
+                    if (contents.containsKey(mediaItem.getId())) {
+                        content = contents.get(mediaItem.getId()).get();
+                    }
+                    SolrInputDocument solrDoc = generateDocument(mediaItem,
+                            content);
+                    // Items without a document (e.g. media items without an
+                    // original) are ignored and removed from the queue
+                    if (solrDoc != null) {
+                        documents.add(solrDoc);
+                    }
+                    documentEntries.addAll(entries);
+                } catch (ExecutionException ex) {
+                    LOG.log(Level.WARNING, "Queue entries {0} could not be indexed",
+                            entries);
+                    LOG.log(Level.WARNING, ex.getCause().getMessage(), ex.
+                            getCause());
+                    failures += entries.size();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    failures += entries.size();
+                } catch (RuntimeException ex) {
+                    LOG.log(Level.WARNING, "Queue entries {0} could not be indexed",
+                            entries);
                     LOG.log(Level.WARNING, ex.getMessage(), ex);
+                    failures += entries.size();
                 }
+            }
+
+            for (Map.Entry<Long, List<Long>> missing : mediaItemEntries.entrySet()) {
+                LOG.log(Level.WARNING,
+                        "MediaItem #{0} does not exist in the database. Skipping indexing.",
+                        missing.getKey());
+                completed.addAll(missing.getValue());
+            }
+
+            if (documents.isEmpty()) {
+                completed.addAll(documentEntries);
             } else {
-                switch (entry.getType()) {
-                    case NEWS_ITEM:
-                        try {
-                            NewsItem newsItem =
-                                    newsItemFacade.findNewsItemById(entry.
-                                    getEntryId());
-                            index(newsItem, solrServer);
-                            removeFromQueue(entry.getId());
-                        } catch (DataNotFoundException ex) {
-                            LOG.log(Level.WARNING,
-                                    "NewsItem #{0} does not exist in the database. Skipping indexing.",
-                                    entry.getEntryId());
-                            removeFromQueue(entry.getId());
-                        } catch (SearchEngineIndexingException ex) {
-                            LOG.log(Level.WARNING,
-                                    "NewsItem #{0} could not be indexed", entry.
-                                    getEntryId());
-                            LOG.log(Level.WARNING, ex.getMessage(), ex);
-                        }
-                        break;
-                    case MEDIA_ITEM:
-                        try {
-                            MediaItem mediaItem = catalogueFacade.
-                                    findMediaItemById(entry.getEntryId());
-                            index(mediaItem, solrServer);
-                            removeFromQueue(entry.getId());
-                        } catch (DataNotFoundException ex) {
-                            LOG.log(Level.WARNING,
-                                    "MediaItem #{0} does not exist in the database. Skipping indexing.",
-                                    entry.getEntryId());
-                            removeFromQueue(entry.getId());
-                        } catch (SearchEngineIndexingException ex) {
-                            LOG.log(Level.WARNING,
-                                    "MediaItem #{0} could not be indexed",
-                                    entry.getEntryId());
-                            LOG.log(Level.WARNING, ex.getMessage(), ex);
-                        }
-                        break;
+                try {
+                    solrServer.add(documents);
+                    completed.addAll(documentEntries);
+                } catch (SolrServerException ex) {
+                    LOG.log(Level.WARNING, "{0} documents could not be indexed",
+                            documents.size());
+                    LOG.log(Level.WARNING, ex.getMessage(), ex);
+                    failures += documentEntries.size();
+                } catch (IOException ex) {
+                    LOG.log(Level.WARNING, "{0} documents could not be indexed",
+                            documents.size());
+                    LOG.log(Level.WARNING, ex.getMessage(), ex);
+                    failures += documentEntries.size();
+                }
+            }
+
+            if (!completed.isEmpty()) {
+                self.removeFromQueue(completed);
+            }
+            processed = true;
+        } finally {
+            long batchTime = System.currentTimeMillis() - batchStart;
+            // A batch that failed as a whole counts every entry as an error
+            long errors = processed ? failures : batch.size();
+            TaskMonitor.getInstance().finished(
+                    TaskStatistics.Category.INDEXING, INDEXING_TASK, batchStart,
+                    batch.size(), errors);
+            LOG.log(Level.FINE, "Processed {0} queue entries in {1} ms",
+                    new Object[]{batch.size(), batchTime});
+        }
+    }
+
+    private void queueEntry(Map<Long, List<Long>> entries,
+            IndexQueueEntry entry) {
+        if (!entries.containsKey(entry.getEntryId())) {
+            entries.put(entry.getEntryId(), new ArrayList<Long>());
+        }
+        entries.get(entry.getEntryId()).add(entry.getId());
+    }
+
+    private int getIndexingBatchSize() {
+        Integer batchSize = cfgService.getInteger(
+                ConfigurationKey.SEARCH_ENGINE_INDEXING_BATCH_SIZE);
+        if (batchSize == null || batchSize < 1) {
+            return DEFAULT_INDEXING_BATCH_SIZE;
+        }
+        return batchSize;
+    }
+
+    /**
+     * Gets the pool of worker threads used for extracting the content of
+     * documents. The pool is shared by all instances of the bean, created
+     * upon first use and shut down by {@link #shutdownIndexing()}. The pool
+     * is bounded; when the work queue is full the calling thread extracts the
+     * content itself.
+     *
+     * @return Pool of worker threads
+     */
+    private ExecutorService getIndexingWorkers() {
+        synchronized (INDEXING) {
+            if (indexingWorkers == null) {
+                Integer threads = cfgService.getInteger(
+                        ConfigurationKey.SEARCH_ENGINE_INDEXING_THREADS);
+                if (threads == null || threads < 1) {
+                    threads = DEFAULT_INDEXING_THREADS;
                 }
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+                        threads, 60L, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<Runnable>(
+                        getIndexingBatchSize()),
+                        new ThreadFactory() {
+
+                            private final AtomicInteger count =
+                                    new AtomicInteger();
+
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                Thread t = new Thread(r, "converge-indexer-"
+                                        + count.incrementAndGet());
+                                t.setDaemon(true);
+                                return t;
+                            }
+                        }, new ThreadPoolExecutor.CallerRunsPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                indexingWorkers = pool;
+            }
+            return indexingWorkers;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void shutdownIndexing() {
+        synchronized (INDEXING) {
+            if (indexingWorkers != null) {
+                indexingWorkers.shutdownNow();
+                indexingWorkers = null;
             }
         }
     }
@@ -578,7 +842,7 @@ public class SearchEngineBean implements SearchEngineLocal {
                             row.createCell(3).setCellValue(nip.getOutlet().
                                     getTitle());
                             row.getCell(3).setCellStyle(style);
-                            row.createCell(4).setCellValue(nip.getSection().
+                            row.createCell(4).setCellValue(findSection(nip).
                                     getFullName());
                             row.getCell(4).setCellStyle(style);
                         } catch (Exception ex) {
@@ -802,51 +1066,14 @@ public class SearchEngineBean implements SearchEngineLocal {
     }
 
     /**
-     * Gets the instance of the Apache Solr server used for indexing.
+     * Gets the shared instance of the Apache Solr server used for indexing.
      *
      * @return Instance of the Apache Solr server
      * @throws IllegalStateException If the search engine is not properly configured
      */
     private SolrServer getSolrServer() {
-        try {
-            String url =
-                    cfgService.getString(ConfigurationKey.SEARCH_ENGINE_URL);
-            Integer socketTimeout = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_SOCKET_TIMEOUT);
-            Integer connectionTimeout = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_CONNECTION_TIMEOUT);
-            Integer maxTotalConnectionsPerHost =
-                    cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST);
-            Integer maxTotalConnections =
-                    cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS);
-            Integer maxRetries = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_RETRIES);
-            Boolean followRedirects = cfgService.getBoolean(
-                    ConfigurationKey.SEARCH_ENGINE_FOLLOW_REDIRECTS);
-            Boolean allowCompression = cfgService.getBoolean(
-                    ConfigurationKey.SEARCH_ENGINE_ALLOW_COMPRESSION);
-
-            CommonsHttpSolrServer solrServer = new CommonsHttpSolrServer(url);
-            solrServer.setRequestWriter(new BinaryRequestWriter());
-            solrServer.setSoTimeout(socketTimeout);
-            solrServer.setConnectionTimeout(connectionTimeout);
-            solrServer.setDefaultMaxConnectionsPerHost(
-                    maxTotalConnectionsPerHost);
-            solrServer.setMaxTotalConnections(maxTotalConnections);
-            solrServer.setFollowRedirects(followRedirects);
-            solrServer.setAllowCompression(allowCompression);
-            solrServer.setMaxRetries(maxRetries);
-
-            return solrServer;
-        } catch (MalformedURLException ex) {
-            LOG.log(Level.SEVERE, "Invalid search engine configuration. {0}",
-                    ex.getMessage());
-            LOG.log(Level.FINE, "", ex);
-            throw new IllegalStateException(
-                    "Invalid search engine configuration", ex);
-        }
+        return SolrServerRegistry.getInstance().getSolrServer(
+                ConfigurationKey.SEARCH_ENGINE_URL, cfgService);
     }
 
     private void generateTags(SearchResult hit, QueryResponse qr,
@@ -878,8 +1105,34 @@ public class SearchEngineBean implements SearchEngineLocal {
         hit.setTags(tags.toArray(new String[tags.size()]));
     }
 
-    private void index(NewsItem ni, SolrServer solrServer) throws
-            SearchEngineIndexingException {
+    /**
+     * Gets the {@link Section} of a {@link NewsItemPlacement} from the
+     * reference data cache.
+     *
+     * @param placement {@link NewsItemPlacement} for which to get the
+     *                  {@link Section}
+     * @return {@link Section} of the {@link NewsItemPlacement}, or
+     *         {@code null} if the placement has no {@link Section}
+     */
+    private Section findSection(NewsItemPlacement placement) {
+        if (placement.getSectionId() == null) {
+            return null;
+        }
+        try {
+            return referenceDataService.findById(Section.class,
+                    placement.getSectionId());
+        } catch (DataNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates the search engine document of a {@link NewsItem}.
+     *
+     * @param ni {@link NewsItem} for which to generate the document
+     * @return Search engine document of the {@link NewsItem}
+     */
+    private SolrInputDocument generateDocument(NewsItem ni) {
 
         SolrInputDocument solrDoc = new SolrInputDocument();
         solrDoc.addField(IndexField.ID.getName(), ni.getId(), 1.0f);
@@ -909,16 +1162,17 @@ public class SearchEngineBean implements SearchEngineLocal {
                 solrDoc.addField(IndexField.EDITION_VOLUME.getName(), placement.
                         getEdition().getVolume());
             }
-            if (placement.getSection() != null) {
-                solrDoc.addField(IndexField.SECTION.getName(), placement.
-                        getSection().getFullName());
+            Section section = findSection(placement);
+            if (section != null) {
+                solrDoc.addField(IndexField.SECTION.getName(),
+                        section.getFullName());
             }
             if (placement.getOutlet() != null) {
                 solrDoc.addField(IndexField.OUTLET.getName(), placement.
                         getOutlet().getTitle());
             }
             solrDoc.addField(IndexField.PLACEMENT.getName(),
-                    placement.toString());
+                    placement.toString(section));
         }
 
 
@@ -964,17 +1218,19 @@ public class SearchEngineBean implements SearchEngineLocal {
             solrDoc.addField(IndexField.CONCEPT.getName(),
                     concept.getFullTitle());
         }
-        try {
-            solrServer.add(solrDoc);
-        } catch (SolrServerException ex) {
-            throw new SearchEngineIndexingException(ex);
-        } catch (IOException ex) {
-            throw new SearchEngineIndexingException(ex);
-        }
+        return solrDoc;
     }
 
-    public void index(MediaItem mi, SolrServer solrServer) throws
-            SearchEngineIndexingException {
+    /**
+     * Generates the search engine document of a {@link MediaItem}.
+     *
+     * @param mi      {@link MediaItem} for which to generate the document
+     * @param content Content extracted from the original rendition if it is a
+     *                document
+     * @return Search engine document of the {@link MediaItem} or
+     *         {@code null} if the original rendition is not available
+     */
+    private SolrInputDocument generateDocument(MediaItem mi, String content) {
 
         if (mi.isOriginalAvailable()) {
 
@@ -996,7 +1252,7 @@ public class SearchEngineBean implements SearchEngineLocal {
                 mediaFormat = "Image";
             } else if (mir.isDocument()) {
                 mediaFormat = "Document";
-                story = metaDataService.extractContent(mir);
+                story = content;
             } else {
                 mediaFormat = "Unknown";
             }
@@ -1059,18 +1315,13 @@ public class SearchEngineBean implements SearchEngineLocal {
                         getFullTitle());
             }
 
-            try {
-                solrServer.add(solrDoc);
-            } catch (SolrServerException ex) {
-                throw new SearchEngineIndexingException(ex);
-            } catch (IOException ex) {
-                throw new SearchEngineIndexingException(ex);
-            }
+            return solrDoc;
         } else {
             LOG.log(Level.FINE,
                     "Ignoring MediaItem #{0}. Missing original {1} rendition",
                     new Object[]{mi.getId(), mi.getCatalogue().
                         getOriginalRendition().getName()});
+            return null;
         }
     }
 }
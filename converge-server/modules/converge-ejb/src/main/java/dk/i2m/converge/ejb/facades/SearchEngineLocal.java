@@ -21,6 +21,7 @@ import dk.i2m.converge.core.search.QueueEntryOperation;
 import dk.i2m.converge.core.search.QueueEntryType;
 import dk.i2m.converge.core.search.SearchEngineIndexingException;
 import dk.i2m.converge.domain.search.SearchResults;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import javax.ejb.Local;
@@ -61,6 +62,14 @@ public interface SearchEngineLocal {
      */
     void removeFromQueue(Long id);
 
+    /**
+     * Removes a batch of items from the indexing queue in a single statement.
+     * 
+     * @param ids
+     *          Unique identifiers of the queue entries to remove
+     */
+    void removeFromQueue(Collection<Long> ids);
+
     /**
      * Queries the search engine.
      *
@@ -102,6 +111,12 @@ public interface SearchEngineLocal {
      */
     void processIndexingQueue();
 
+    /**
+     * Shuts down the worker threads used for processing the indexing queue.
+     * Invoked when the application is undeployed.
+     */
+    void shutdownIndexing();
+
     /**
      * Optimises the search engine index.
      * 
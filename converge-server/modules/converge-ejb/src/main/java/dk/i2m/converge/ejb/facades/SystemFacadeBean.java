@@ -28,6 +28,7 @@ import dk.i2m.converge.core.newswire.NewswireService;
 import dk.i2m.converge.core.plugin.Plugin;
 import dk.i2m.converge.core.plugin.PluginManager;
 import dk.i2m.converge.domain.Property;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.services.*;
 import java.io.File;
 import java.util.ArrayList;
@@ -62,6 +63,14 @@ public class SystemFacadeBean implements SystemFacadeLocal {
 
     @EJB private TimerServiceLocal timerService;
 
+    @EJB private NewswireServiceLocal newswireService;
+
+    @EJB private JobServiceLocal jobService;
+
+    @EJB private WorkflowActionServiceLocal workflowActionService;
+
+    @EJB private SearchEngineLocal searchEngine;
+
     /**
      * Creates a new instance of {@link SystemFacadeBean}.
      */
@@ -75,11 +84,19 @@ public class SystemFacadeBean implements SystemFacadeLocal {
      */
     @Override
     public boolean sanityCheck() {
+        cfgService.reload();
         removeAllBackgroundTasks();
         int reset = removeAllNewswireProcessing();
         LOG.log(Level.INFO,
                 "{0} newswire {0, choice, 0#services|1#service|2#services} reset",
                 reset);
+        newswireService.warmExternalIdIndex();
+        LOG.log(Level.INFO,
+                "{0} interrupted {0, choice, 0#jobs|1#job|2#jobs} retried",
+                jobService.recoverJobs());
+        LOG.log(Level.INFO,
+                "{0} interrupted workflow {0, choice, 0#actions|1#action|2#actions} retried",
+                workflowActionService.recoverExecutions());
         
         int userCount = userService.findAll().size();
         LOG.log(Level.INFO,
@@ -113,6 +130,13 @@ public class SystemFacadeBean implements SystemFacadeLocal {
         return true;
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void shutdown() {
+        searchEngine.shutdownIndexing();
+        SolrServerRegistry.getInstance().shutdown();
+    }
+
     /**
      * {@inheritDoc }
      */
@@ -307,6 +331,25 @@ public class SystemFacadeBean implements SystemFacadeLocal {
         daoService.delete(BackgroundTask.class, id);
     }
 
+    /**
+     * Updates the name of a running {@link BackgroundTask}, for reporting the
+     * progress of the task.
+     *
+     * @param id   Unique identifier of the {@link BackgroundTask}
+     * @param name New name of the {@link BackgroundTask}
+     */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void updateBackgroundTask(Long id, String name) {
+        try {
+            BackgroundTask task = daoService.findById(BackgroundTask.class, id);
+            task.setName(name);
+            daoService.update(task);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.FINE, "Background task #{0} no longer exists", id);
+        }
+    }
+
     /**
      * Gets all running {@link BackgroundTask}s.
      *
@@ -317,6 +360,18 @@ public class SystemFacadeBean implements SystemFacadeLocal {
         return daoService.findAll(BackgroundTask.class);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public List<TaskStatistics> getTaskStatistics() {
+        return TaskMonitor.getInstance().getTaskStatistics();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void resetTaskStatistics() {
+        TaskMonitor.getInstance().reset();
+    }
+
     private void removeAllBackgroundTasks() {
         for (BackgroundTask t : getBackgroundTasks()) {
             removeBackgroundTask(t.getId());
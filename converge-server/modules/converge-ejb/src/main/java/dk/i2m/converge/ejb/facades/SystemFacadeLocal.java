@@ -23,6 +23,7 @@ import dk.i2m.converge.core.content.Language;
 import dk.i2m.converge.core.logging.LogSubject;
 import dk.i2m.converge.core.newswire.NewswireService;
 import dk.i2m.converge.domain.Property;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.core.DataNotFoundException;
 import java.util.List;
 import javax.ejb.Local;
@@ -37,6 +38,11 @@ public interface SystemFacadeLocal {
 
     boolean sanityCheck();
 
+    /**
+     * Releases the resources held by the system upon undeployment.
+     */
+    void shutdown();
+
     List<Property> getSystemProperties();
 
     /**
@@ -137,8 +143,23 @@ public interface SystemFacadeLocal {
 
     void removeBackgroundTask(Long id);
 
+    void updateBackgroundTask(Long id, String name);
+
     java.util.List<dk.i2m.converge.core.BackgroundTask> getBackgroundTasks();
 
+    /**
+     * Gets the execution counters of the instrumented background tasks on
+     * this node.
+     *
+     * @return {@link List} of {@link TaskStatistics}
+     */
+    List<TaskStatistics> getTaskStatistics();
+
+    /**
+     * Resets the execution counters of the background tasks on this node.
+     */
+    void resetTaskStatistics();
+
     java.lang.String getShortApplicationVersion();
 
     void log(dk.i2m.converge.core.logging.LogSeverity severity,
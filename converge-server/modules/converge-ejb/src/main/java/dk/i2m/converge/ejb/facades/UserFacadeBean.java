@@ -268,6 +268,9 @@ public class UserFacadeBean implements UserFacadeLocal {
     @Override
     public void synchroniseWithDirectory() {
         try {
+            // Read the directory once, the members are then synchronised
+            // from the directory cache
+            userService.refreshDirectoryCache();
             for (UserAccount user : userService.getDirectoryMembers()) {
                 try {
                     LOG.log(Level.INFO, "Checking if {0} exists in the database", user.getUsername());
@@ -0,0 +1,89 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.messaging;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.ejb.services.JobServiceLocal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.EJB;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+/**
+ * Base class of the message-driven beans executing {@link Job}s. The message
+ * contains the unique identifier of the job in the {@link Job#MESSAGE_PROPERTY}
+ * property. The job is only executed if it is still queued, so that messages
+ * delivered more than once are ignored, and the outcome of the execution is
+ * recorded on the job.
+ *
+ * @author Allan Lykke Christensen
+ */
+public abstract class AbstractJobMessageBean implements MessageListener {
+
+    private static final Logger LOG =
+            Logger.getLogger(AbstractJobMessageBean.class.getName());
+
+    @EJB private JobServiceLocal jobService;
+
+    @Override
+    public void onMessage(Message msg) {
+        Long jobId;
+        try {
+            jobId = msg.getLongProperty(Job.MESSAGE_PROPERTY);
+        } catch (NumberFormatException ex) {
+            LOG.log(Level.WARNING, "Ignoring message without {0} property",
+                    Job.MESSAGE_PROPERTY);
+            return;
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            return;
+        }
+
+        Job job = jobService.start(jobId);
+        if (job == null) {
+            LOG.log(Level.FINE, "Job #{0} is not queued", jobId);
+            return;
+        }
+
+        try {
+            execute(job);
+            jobService.finish(jobId, true, "");
+        } catch (DataNotFoundException ex) {
+            jobService.abort(jobId, ex.getMessage());
+        } catch (Exception ex) {
+            LOG.log(Level.FINE, "", ex);
+            jobService.finish(jobId, false, ex.getMessage() == null
+                    ? ex.toString() : ex.getMessage());
+        }
+    }
+
+    /**
+     * Executes a {@link Job}.
+     *
+     * @param job Running {@link Job}
+     * @throws DataNotFoundException If the job refers to an object that no
+     *                               longer exist, in which case the job is
+     *                               not retried
+     * @throws Exception             If the execution failed, in which case the
+     *                               job is retried
+     */
+    protected abstract void execute(Job job) throws DataNotFoundException,
+            Exception;
+}
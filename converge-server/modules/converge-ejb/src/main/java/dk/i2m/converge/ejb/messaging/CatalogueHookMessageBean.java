@@ -17,8 +17,8 @@
 package dk.i2m.converge.ejb.messaging;
 
 import dk.i2m.converge.core.DataNotFoundException;
-import dk.i2m.converge.core.content.catalogue.CatalogueHookInstance;
-import dk.i2m.converge.core.content.catalogue.MediaItem;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Parameter;
 import dk.i2m.converge.core.plugin.CatalogueEvent;
 import dk.i2m.converge.core.plugin.CatalogueHook;
 import dk.i2m.converge.ejb.services.CatalogueServiceLocal;
@@ -26,62 +26,38 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
-import javax.jms.JMSException;
-import javax.jms.Message;
-import javax.jms.MessageListener;
 
 /**
  * Message-Driven Bean for asynchronous execution of {@link CatalogueHook}s.
+ * The bean executes {@link Job}s of the type {@link Job.Type#CATALOGUE_HOOK}.
  *
  * @author Allan Lykke Christensen
  */
 @MessageDriven(mappedName = "jms/catalogueHookQueue")
-public class CatalogueHookMessageBean implements MessageListener {
+public class CatalogueHookMessageBean extends AbstractJobMessageBean {
 
     private static final Logger LOG =
             Logger.getLogger(CatalogueHookMessageBean.class.getName());
 
     @EJB private CatalogueServiceLocal catalogueService;
 
-    /**
-     * Available properties for the message.
-     */
-    public enum Property {
-
-        /**
-         * Mandatory property containing the identifier of the
-         * {@link CatalogueHookInstance}.
-         */
-        CATALOGUE_HOOK_INSTANCE_ID,
-        /**
-         * Mandatory property containing the identifier of the
-         * {@link MediaItem}.
-         */
-        MEDIA_ITEM_ID,
-        /**
-         * Mandatory String property containing the type of event. Must match
-         * {@link CatalogueEvent#Event}.
-         */
-        EVENT_TYPE,
-    }
-
     @Override
-    public void onMessage(Message msg) {
+    protected void execute(Job job) throws DataNotFoundException {
+        Long hookId = job.getLongParameter(
+                Parameter.CATALOGUE_HOOK_INSTANCE_ID);
+        Long itemId = job.getLongParameter(Parameter.MEDIA_ITEM_ID);
         try {
-            // Obtain properties from received message
-            Long hookId = msg.getLongProperty(
-                    Property.CATALOGUE_HOOK_INSTANCE_ID.name());
-            Long itemId = msg.getLongProperty(Property.MEDIA_ITEM_ID.name());
-            String type = msg.getStringProperty(Property.EVENT_TYPE.name());
+            CatalogueEvent.Event event;
             try {
-                CatalogueEvent.Event event = CatalogueEvent.Event.valueOf(type);
-                catalogueService.executeHook(itemId, hookId, event);
-            } catch (DataNotFoundException ex) {
-                LOG.log(Level.SEVERE, ex.getMessage());
+                event = job.getParameter(Parameter.EVENT_TYPE,
+                        CatalogueEvent.Event.class);
+            } catch (IllegalArgumentException ex) {
+                throw new DataNotFoundException(ex.getMessage());
             }
-
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, "Asynchronous execution failed", ex);
+            catalogueService.executeHook(itemId, hookId, event);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.SEVERE, ex.getMessage());
+            throw ex;
         }
     }
 }
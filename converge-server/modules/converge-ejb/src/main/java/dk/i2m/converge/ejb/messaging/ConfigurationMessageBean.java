@@ -0,0 +1,79 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.messaging;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.ejb.services.ConfigurationCache;
+import dk.i2m.converge.ejb.services.ConfigurationServiceLocal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+/**
+ * Message-Driven Bean subscribing to configuration changes made on any node
+ * of the cluster. The changed value is reloaded into the
+ * {@link ConfigurationCache} of this node.
+ *
+ * @author Allan Lykke Christensen
+ */
+@MessageDriven(mappedName = "jms/configurationTopic", activationConfig = {
+    @ActivationConfigProperty(propertyName = "destinationType",
+                              propertyValue = "javax.jms.Topic")
+})
+public class ConfigurationMessageBean implements MessageListener {
+
+    private static final Logger LOG =
+            Logger.getLogger(ConfigurationMessageBean.class.getName());
+
+    @EJB private ConfigurationServiceLocal cfgService;
+
+    /**
+     * Available properties for the message.
+     */
+    public enum Property {
+
+        /**
+         * Mandatory String property containing the name of the
+         * {@link ConfigurationKey} that changed.
+         */
+        CONFIGURATION_KEY
+    }
+
+    @Override
+    public void onMessage(Message msg) {
+        try {
+            String name = msg.getStringProperty(
+                    Property.CONFIGURATION_KEY.name());
+            ConfigurationKey key;
+            try {
+                key = ConfigurationKey.valueOf(name);
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Unknown configuration key received: {0}",
+                        name);
+                return;
+            }
+            cfgService.reload(key);
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Configuration change could not be processed", ex);
+        }
+    }
+}
@@ -17,63 +17,38 @@
 package dk.i2m.converge.ejb.messaging;
 
 import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.content.NewsItemFetchProfile;
 import dk.i2m.converge.core.content.NewsItemPlacement;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Parameter;
 import dk.i2m.converge.core.logging.LogSeverity;
 import dk.i2m.converge.core.plugin.EditionAction;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.workflow.Edition;
 import dk.i2m.converge.core.workflow.EditionActionException;
 import dk.i2m.converge.core.workflow.OutletEditionAction;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.facades.UserFacadeLocal;
 import dk.i2m.converge.ejb.services.DaoServiceLocal;
 import dk.i2m.converge.ejb.services.PluginContextBeanLocal;
+import dk.i2m.converge.ejb.services.TaskMonitor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
-import javax.ejb.MessageDrivenContext;
-import javax.jms.JMSException;
-import javax.jms.Message;
-import javax.jms.MessageListener;
 
 /**
  * Message driven bean responding to edition service actions. The bean is
  * capable of executing {@link OutletEditionAction}s for {@link Edition}s and
- * {@link NewsItemPlacement}s. The bean expects the following properties:
- * <ul>
- * <li>editionId</li>
- * <li>actionId</li>
- * <li>newsItemPlacementId (If the bean is to execute the action on a single
- * placement rather than a complete edition)</li>
- * </ul>
+ * {@link NewsItemPlacement}s. The bean executes {@link Job}s of the types
+ * {@link Job.Type#EDITION_ACTION} and {@link Job.Type#PLACEMENT_ACTION}.
  *
  * @author Allan Lykke Christensen
  */
 @MessageDriven(mappedName = "jms/editionServiceQueue")
-public class EditionServiceMessageBean implements MessageListener {
-
-    public enum Property {
-
-        /**
-         * Mandatory property containing the identifier of the {@link UserAccount}.
-         */
-        USER_ACCOUNT_ID,
-        /**
-         * Mandatory property containing the identifier of the {@link Edition}.
-         */
-        EDITION_ID,
-        /**
-         * Mandatory property containing the identifier of the {@link OutletEditionAction}.
-         */
-        ACTION_ID,
-        /**
-         * Optional property containing the identifier of the {@link NewsItemPlacement}.
-         */
-        NEWS_ITEM_PLACEMENT_ID
-    }
+public class EditionServiceMessageBean extends AbstractJobMessageBean {
 
     private static final Logger LOG =
             Logger.getLogger(EditionServiceMessageBean.class.getName());
@@ -88,28 +63,17 @@ public class EditionServiceMessageBean implements MessageListener {
 
     @EJB private UserFacadeLocal userFacade;
 
-    @Resource private MessageDrivenContext mdc;
-
     @Override
-    public void onMessage(Message msg) {
+    protected void execute(Job job) throws DataNotFoundException,
+            EditionActionException {
         Long id = 0L;
-        try {
-            boolean placementExecution = false;
-            Long newsItemPlacementId = 0L;
-
-            Long editionId = msg.getLongProperty(Property.EDITION_ID.name());
-            Long actionId = msg.getLongProperty(Property.ACTION_ID.name());
-            String uid = msg.getStringProperty(Property.USER_ACCOUNT_ID.name());
-
-            try {
-                newsItemPlacementId =
-                        msg.getLongProperty(
-                        Property.NEWS_ITEM_PLACEMENT_ID.name());
-                placementExecution = true;
-            } catch (NumberFormatException ex) {
-                placementExecution = false;
-            }
+        Long editionId = job.getLongParameter(Parameter.EDITION_ID);
+        Long actionId = job.getLongParameter(Parameter.ACTION_ID);
+        Long newsItemPlacementId = job.getLongParameter(
+                Parameter.NEWS_ITEM_PLACEMENT_ID);
+        String uid = job.getParameter(Parameter.USER_ACCOUNT_ID, String.class);
 
+        if (uid != null) {
             try {
                 UserAccount ua = userFacade.findById(uid);
                 pluginContext.setCurrentUserAccount(ua);
@@ -117,38 +81,59 @@ public class EditionServiceMessageBean implements MessageListener {
                 LOG.log(Level.WARNING, "User with ID ''{0}'' could not be set",
                         new Object[]{uid});
             }
+        }
 
-            try {
-                OutletEditionAction action =
-                        daoService.findById(OutletEditionAction.class, actionId);
-                id = systemFacade.createBackgroundTask(action.getAction().
-                        getName() + " - " + action.getLabel());
-                EditionAction editionAction = action.getAction();
-                Edition edition = outletFacade.findEditionById(editionId);
-                // Fetch Placements
-                edition.getPlacements();
+        TaskMonitor monitor = TaskMonitor.getInstance();
+        String taskName = null;
+        long started = 0;
+        long items = 0;
+        long errors = 0;
 
-                if (placementExecution) {
-                    NewsItemPlacement placement =
-                            daoService.findById(NewsItemPlacement.class,
-                            newsItemPlacementId);
-                    editionAction.executePlacement(pluginContext, placement,
-                            edition, action);
-                } else {
-                    editionAction.execute(pluginContext, edition, action);
-                }
+        try {
+            OutletEditionAction action =
+                    daoService.findById(OutletEditionAction.class, actionId);
+            taskName = action.getLabel();
+            started = monitor.started(TaskStatistics.Category.EDITION_ACTION,
+                    taskName);
+            id = systemFacade.createBackgroundTask(action.getAction().
+                    getName() + " - " + action.getLabel());
+            EditionAction editionAction = action.getAction();
+            Edition edition = outletFacade.findEditionById(editionId);
+            // Fetch Placements
+            for (NewsItemPlacement nip : edition.getPlacements()) {
+                NewsItemFetchProfile.PUBLISH.fetch(nip.getNewsItem());
+            }
 
-            } catch (DataNotFoundException ex) {
-                pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
-                        new OutletEditionAction(), actionId);
-            } catch (EditionActionException ex) {
-                pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
-                        new OutletEditionAction(), actionId);
+            if (newsItemPlacementId != null) {
+                NewsItemPlacement placement =
+                        daoService.findById(NewsItemPlacement.class,
+                        newsItemPlacementId);
+                editionAction.executePlacement(pluginContext, placement,
+                        edition, action);
+                items = 1;
+            } else {
+                editionAction.execute(pluginContext, edition, action);
+                items = edition.getPlacements().size();
             }
 
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
+        } catch (DataNotFoundException ex) {
+            errors++;
+            pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
+                    new OutletEditionAction(), actionId);
+            throw ex;
+        } catch (EditionActionException ex) {
+            errors++;
+            pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
+                    new OutletEditionAction(), actionId);
+            throw ex;
+        } catch (RuntimeException ex) {
+            errors++;
+            throw ex;
         } finally {
+            if (taskName != null) {
+                monitor.finished(TaskStatistics.Category.EDITION_ACTION,
+                        taskName, started, items, errors);
+            }
             systemFacade.removeBackgroundTask(id);
         }
     }
@@ -16,39 +16,34 @@
  */
 package dk.i2m.converge.ejb.messaging;
 
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Parameter;
 import dk.i2m.converge.core.logging.LogSeverity;
 import dk.i2m.converge.core.newswire.NewswireDecoderException;
 import dk.i2m.converge.core.newswire.NewswireService;
 import dk.i2m.converge.core.plugin.NewswireDecoder;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.services.DaoServiceLocal;
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.ejb.services.NewswireServiceLocal;
 import dk.i2m.converge.ejb.services.PluginContextBeanLocal;
+import dk.i2m.converge.ejb.services.TaskMonitor;
 import java.util.Calendar;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
-import javax.jms.JMSException;
-import javax.jms.Message;
-import javax.jms.MessageListener;
 
 /**
  * Message-driven bean for processing a {@link NewswireService}. The bean
- * expects a single long property {@code newswireServiceId} containing the
- * unique identifier of the {@link NewswireService} to be processed.
+ * executes {@link Job}s of the type {@link Job.Type#NEWSWIRE_FETCH}. The
+ * processing lease of the service is acquired by the sender and released
+ * by this bean once the service has been processed. A service that could
+ * not be fetched is retried after a short delay.
  *
  * @author Allan Lykke Christensen
  */
 @MessageDriven(mappedName = "jms/newswireServiceQueue")
-public class NewswireDecoderMessageBean implements MessageListener {
-
-    /** Long property for sending the unique identifier of the {@link NewswireService} to be processed. */
-    public static final String NEWSWIRE_SERVICE_ID = "newswireServiceId";
-
-    private static final Logger LOG =
-            Logger.getLogger(NewswireDecoderMessageBean.class.getName());
+public class NewswireDecoderMessageBean extends AbstractJobMessageBean {
 
     @EJB private DaoServiceLocal daoService;
 
@@ -59,29 +54,36 @@ public class NewswireDecoderMessageBean implements MessageListener {
     @EJB private NewswireServiceLocal newswireServiceBean;
 
     @Override
-    public void onMessage(Message msg) {
-        try {
-            Long newswireServiceId;
-            try {
-                newswireServiceId = msg.getLongProperty(NEWSWIRE_SERVICE_ID);
-            } catch (NumberFormatException ex) {
-                // Invalid or missing value sent to bean
-                return;
-            }
-            fetchNewswire(newswireServiceId);
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
+    protected void execute(Job job) throws DataNotFoundException,
+            NewswireDecoderException {
+        long dispatched = 0;
+        if (job.getQueued() != null) {
+            dispatched = job.getQueued().getTimeInMillis();
         }
+        fetchNewswire(job.getLongParameter(Parameter.NEWSWIRE_SERVICE_ID),
+                dispatched);
     }
 
-    private void fetchNewswire(Long id) {
+    private void fetchNewswire(Long id, long dispatched) throws
+            DataNotFoundException, NewswireDecoderException {
         Long taskId = 0L;
+        String source = null;
+        long start = System.currentTimeMillis();
+        boolean successful = false;
 
         try {
             NewswireService service = daoService.findById(NewswireService.class,
                     id);
 
-            newswireServiceBean.startProcessingNewswireService(id);
+            source = service.getSource();
+            if (dispatched > 0) {
+                TaskMonitor.getInstance().started(
+                        TaskStatistics.Category.NEWSWIRE_FETCH, source,
+                        start - dispatched);
+            } else {
+                TaskMonitor.getInstance().started(
+                        TaskStatistics.Category.NEWSWIRE_FETCH, source);
+            }
             pluginContext.log(LogSeverity.INFO,
                     "Fetching newswire service: {0}", new Object[]{service.
                         getSource()}, service, service.getId());
@@ -94,17 +96,26 @@ public class NewswireDecoderMessageBean implements MessageListener {
             pluginContext.log(LogSeverity.INFO,
                     "Finished fetching newswire service: {0}",
                     new Object[]{service.getSource()}, service, service.getId());
+            successful = true;
         } catch (DataNotFoundException ex) {
 //            LOG.log(Level.WARNING, ex.getMessage());
             pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
                     NewswireService.class.getName(), "" + id);
+            throw ex;
         } catch (NewswireDecoderException ex) {
             //LOG.log(Level.SEVERE, null, ex);
             pluginContext.log(LogSeverity.SEVERE, ex.getMessage(),
                     NewswireService.class.getName(), "" + id);
+            throw ex;
         } finally {
+            if (source != null) {
+                // Decoders do not report the number of items downloaded
+                TaskMonitor.getInstance().finished(
+                        TaskStatistics.Category.NEWSWIRE_FETCH, source, start,
+                        0, successful ? 0 : 1);
+            }
             systemFacade.removeBackgroundTask(taskId);
-            newswireServiceBean.stopProcessingNewswireService(id);
+            newswireServiceBean.stopProcessingNewswireService(id, successful);
         }
     }
 }
@@ -0,0 +1,84 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.messaging;
+
+import dk.i2m.converge.ejb.services.NewsItemNotification;
+import dk.i2m.converge.ejb.services.NotificationServiceLocal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+/**
+ * Message-Driven Bean creating the notifications for the current actors of a
+ * news item outside of the transaction that caused the notification.
+ *
+ * @author Allan Lykke Christensen
+ */
+@MessageDriven(mappedName = "jms/notificationQueue")
+public class NotificationMessageBean implements MessageListener {
+
+    private static final Logger LOG =
+            Logger.getLogger(NotificationMessageBean.class.getName());
+
+    @EJB private NotificationServiceLocal notificationService;
+
+    /**
+     * Available properties for the message.
+     */
+    public enum Property {
+
+        /** Mandatory long property containing the ID of the news item. */
+        NEWS_ITEM_ID,
+        /**
+         * Mandatory String property containing the name of the
+         * {@link NewsItemNotification} to send.
+         */
+        NOTIFICATION,
+        /**
+         * Optional String property containing the username of the user
+         * causing the notification.
+         */
+        SENDER_ID
+    }
+
+    @Override
+    public void onMessage(Message msg) {
+        try {
+            Long newsItemId = msg.getLongProperty(Property.NEWS_ITEM_ID.name());
+            String name = msg.getStringProperty(Property.NOTIFICATION.name());
+            String senderId = msg.getStringProperty(Property.SENDER_ID.name());
+
+            NewsItemNotification notification;
+            try {
+                notification = NewsItemNotification.valueOf(name);
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Unknown notification received: {0}",
+                        name);
+                return;
+            }
+
+            notificationService.createCurrentActorsNotifications(newsItemId,
+                    notification, senderId);
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Notification could not be processed", ex);
+        }
+    }
+}
@@ -17,7 +17,8 @@
 package dk.i2m.converge.ejb.messaging;
 
 import dk.i2m.converge.core.DataNotFoundException;
-import dk.i2m.converge.core.content.NewsItemPlacement;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Parameter;
 import dk.i2m.converge.core.logging.LogSeverity;
 import dk.i2m.converge.core.plugin.EditionAction;
 import dk.i2m.converge.core.security.UserAccount;
@@ -25,43 +26,28 @@ import dk.i2m.converge.core.workflow.Edition;
 import dk.i2m.converge.core.workflow.EditionActionException;
 import dk.i2m.converge.core.workflow.Outlet;
 import dk.i2m.converge.core.workflow.OutletEditionAction;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.facades.UserFacadeLocal;
 import dk.i2m.converge.ejb.services.DaoServiceLocal;
 import dk.i2m.converge.ejb.services.PluginContextBeanLocal;
+import dk.i2m.converge.ejb.services.TaskMonitor;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
-import javax.ejb.MessageDrivenContext;
-import javax.jms.JMSException;
-import javax.jms.Message;
-import javax.jms.MessageListener;
 
 /**
- * Message driven bean responding to edition service actions. The bean is
- * capable of executing {@link OutletEditionAction}s for {@link Edition}s and
- * {@link NewsItemPlacement}s. The bean expects the following properties:
- * <ul>
- * <li>editionId</li>
- * <li>actionId</li>
- * <li>newsItemPlacementId (If the bean is to execute the action on a single
- * placement rather than a complete edition)</li>
- * </ul>
+ * Message driven bean executing an {@link OutletEditionAction} on all the
+ * open {@link Edition}s of an {@link Outlet}. The bean executes {@link Job}s
+ * of the type {@link Job.Type#OUTLET_ACTION}.
  *
  * @author Allan Lykke Christensen
  */
 @MessageDriven(mappedName = "jms/outletServiceQueue")
-public class OutletServiceMessageBean implements MessageListener {
-
-    public enum Property {
-
-        USER_ACCOUNT_ID,
-        OUTLET_ID,
-        ACTION_ID,}
+public class OutletServiceMessageBean extends AbstractJobMessageBean {
 
     private static final Logger LOG = Logger.
             getLogger(OutletServiceMessageBean.class.getName());
@@ -77,14 +63,14 @@ public class OutletServiceMessageBean implements MessageListener {
     @EJB private UserFacadeLocal userFacade;
 
     @Override
-    public void onMessage(Message msg) {
+    protected void execute(Job job) throws DataNotFoundException,
+            EditionActionException {
         Long id = 0L;
+        Long outletId = job.getLongParameter(Parameter.OUTLET_ID);
+        Long actionId = job.getLongParameter(Parameter.ACTION_ID);
+        String uid = job.getParameter(Parameter.USER_ACCOUNT_ID, String.class);
 
-        try {
-            Long outletId = msg.getLongProperty(Property.OUTLET_ID.name());
-            Long actionId = msg.getLongProperty(Property.ACTION_ID.name());
-            String uid = msg.getStringProperty(Property.USER_ACCOUNT_ID.name());
-
+        if (uid != null) {
             try {
                 UserAccount ua = userFacade.findById(uid);
                 pluginContext.setCurrentUserAccount(ua);
@@ -92,50 +78,59 @@ public class OutletServiceMessageBean implements MessageListener {
                 LOG.log(Level.WARNING, "User with ID ''{0}'' could not be set",
                         new Object[]{uid});
             }
+        }
 
-            try {
-                Outlet outlet = outletFacade.findOutletById(outletId);
-                OutletEditionAction action = daoService.
-                        findById(OutletEditionAction.class, actionId);
-
-                id = systemFacade.createBackgroundTask(action.getAction().
-                        getName() + " - " + action.getLabel());
-                EditionAction editionAction = action.getAction();
-
-                Long editionTask = 0L;
-                List<Edition> editions = outletFacade.
-                        findEditionsByStatus(false, outlet);
-                int executed = 0;
-                int total = editions.size();
-
-                for (Edition edition : editions) {
-                    try {
-                        executed++;
-
-                        String message = "Executing " + action.getAction().
-                                getName() + " = " + action.getLabel()
-                                + ", Edition = " + edition.getId() + ", Date = "
-                                + edition.getCloseDate() + ", (" + executed
-                                + "/" + total + ")";
-                        editionTask = systemFacade.createBackgroundTask(message);
-                        editionAction.execute(pluginContext, edition, action);
-                    } catch (Exception ex) {
-                        LOG.log(Level.SEVERE, ex.getMessage());
-                        LOG.log(Level.FINEST, "", ex);
-                    } finally {
-                        systemFacade.removeBackgroundTask(editionTask);
-                    }
-
+        try {
+            Outlet outlet = outletFacade.findOutletById(outletId);
+            OutletEditionAction action = daoService.
+                    findById(OutletEditionAction.class, actionId);
+
+            id = systemFacade.createBackgroundTask(action.getAction().
+                    getName() + " - " + action.getLabel());
+            EditionAction editionAction = action.getAction();
+
+            Long editionTask = 0L;
+            List<Edition> editions = outletFacade.
+                    findEditionsByStatus(false, outlet);
+            int executed = 0;
+            int total = editions.size();
+            TaskMonitor monitor = TaskMonitor.getInstance();
+
+            for (Edition edition : editions) {
+                long started = monitor.started(
+                        TaskStatistics.Category.EDITION_ACTION,
+                        action.getLabel());
+                long errors = 0;
+                try {
+                    executed++;
+
+                    String message = "Executing " + action.getAction().
+                            getName() + " = " + action.getLabel()
+                            + ", Edition = " + edition.getId() + ", Date = "
+                            + edition.getCloseDate() + ", (" + executed
+                            + "/" + total + ")";
+                    editionTask = systemFacade.createBackgroundTask(message);
+                    editionAction.execute(pluginContext, edition, action);
+                } catch (Exception ex) {
+                    errors++;
+                    LOG.log(Level.SEVERE, ex.getMessage());
+                    LOG.log(Level.FINEST, "", ex);
+                } finally {
+                    monitor.finished(TaskStatistics.Category.EDITION_ACTION,
+                            action.getLabel(), started,
+                            edition.getPlacements().size(), errors);
+                    systemFacade.removeBackgroundTask(editionTask);
                 }
-            } catch (DataNotFoundException ex) {
-                pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
-                        new OutletEditionAction(), actionId);
-            } catch (EditionActionException ex) {
-                pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
-                        new OutletEditionAction(), actionId);
+
             }
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
+        } catch (DataNotFoundException ex) {
+            pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
+                    new OutletEditionAction(), actionId);
+            throw ex;
+        } catch (EditionActionException ex) {
+            pluginContext.log(LogSeverity.WARNING, ex.getMessage(),
+                    new OutletEditionAction(), actionId);
+            throw ex;
         } finally {
             systemFacade.removeBackgroundTask(id);
         }
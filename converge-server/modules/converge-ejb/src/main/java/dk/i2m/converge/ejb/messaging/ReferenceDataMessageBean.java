@@ -0,0 +1,70 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.messaging;
+
+import dk.i2m.converge.ejb.services.ReferenceDataCache;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+
+/**
+ * Message-Driven Bean subscribing to changes of reference data made on any
+ * node of the cluster. The {@link ReferenceDataCache} of this node is
+ * invalidated.
+ *
+ * @author Allan Lykke Christensen
+ */
+@MessageDriven(mappedName = "jms/referenceDataTopic", activationConfig = {
+    @ActivationConfigProperty(propertyName = "destinationType",
+                              propertyValue = "javax.jms.Topic")
+})
+public class ReferenceDataMessageBean implements MessageListener {
+
+    private static final Logger LOG =
+            Logger.getLogger(ReferenceDataMessageBean.class.getName());
+
+    @EJB private ReferenceDataServiceLocal referenceDataService;
+
+    /**
+     * Available properties for the message.
+     */
+    public enum Property {
+
+        /**
+         * Mandatory String property containing the class name of the entity
+         * that changed.
+         */
+        ENTITY
+    }
+
+    @Override
+    public void onMessage(Message msg) {
+        try {
+            LOG.log(Level.FINE, "Invalidating reference data following change of {0}",
+                    msg.getStringProperty(Property.ENTITY.name()));
+            referenceDataService.invalidate();
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Reference data change could not be processed", ex);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.messaging;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.workflow.WorkflowActionException;
+import dk.i2m.converge.core.workflow.WorkflowStepAction;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution;
+import dk.i2m.converge.ejb.services.WorkflowActionServiceLocal;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.transaction.RollbackException;
+import javax.transaction.UserTransaction;
+
+/**
+ * Message-Driven Bean for asynchronous execution of
+ * {@link WorkflowStepAction}s. The transaction of each attempt is managed by
+ * the bean, so that it can be given the timeout of the action. The number of
+ * actions executed concurrently is limited by the size of the bean pool.
+ *
+ * @author Allan Lykke Christensen
+ */
+@MessageDriven(mappedName = "jms/workflowActionQueue")
+@TransactionManagement(TransactionManagementType.BEAN)
+public class WorkflowActionMessageBean implements MessageListener {
+
+    private static final Logger LOG =
+            Logger.getLogger(WorkflowActionMessageBean.class.getName());
+
+    @EJB private WorkflowActionServiceLocal workflowActionService;
+
+    @Resource private UserTransaction userTransaction;
+
+    /**
+     * Available properties for the message.
+     */
+    public enum Property {
+
+        /**
+         * Mandatory long property containing the identifier of the
+         * {@link WorkflowStepActionExecution}.
+         */
+        EXECUTION_ID
+    }
+
+    @Override
+    public void onMessage(Message msg) {
+        Long executionId;
+        try {
+            executionId = msg.getLongProperty(Property.EXECUTION_ID.name());
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Asynchronous execution failed", ex);
+            return;
+        }
+
+        WorkflowStepActionExecution execution =
+                workflowActionService.start(executionId);
+        if (execution == null) {
+            LOG.log(Level.FINE, "Execution #{0} is not queued", executionId);
+            return;
+        }
+
+        int timeout = workflowActionService.getTimeout(
+                execution.getStepAction());
+        String failure = execute(executionId, timeout);
+        if (failure != null) {
+            workflowActionService.finish(executionId, false, failure);
+        } else {
+            workflowActionService.finish(executionId, true, "");
+        }
+    }
+
+    /**
+     * Executes an action in a transaction that is rolled back if the action
+     * does not complete within its timeout.
+     *
+     * @param executionId Unique identifier of the
+     *                    {@link WorkflowStepActionExecution}
+     * @param timeout     Number of seconds the action may run
+     * @return Reason the attempt failed, or {@code null} if the attempt was
+     *         successful
+     */
+    private String execute(Long executionId, int timeout) {
+        long started = System.currentTimeMillis();
+        try {
+            userTransaction.setTransactionTimeout(timeout);
+            userTransaction.begin();
+            workflowActionService.perform(executionId);
+            userTransaction.commit();
+            return null;
+        } catch (RollbackException ex) {
+            LOG.log(Level.FINE, "", ex);
+            if (System.currentTimeMillis() - started >= timeout * 1000L) {
+                return "Execution timed out after " + timeout + " seconds";
+            }
+            return "Execution was rolled back";
+        } catch (DataNotFoundException ex) {
+            rollback();
+            return ex.getMessage();
+        } catch (WorkflowActionException ex) {
+            rollback();
+            return ex.getMessage();
+        } catch (Exception ex) {
+            rollback();
+            LOG.log(Level.FINE, "", ex);
+            if (System.currentTimeMillis() - started >= timeout * 1000L) {
+                // Failed because the transaction timed out
+                return "Execution timed out after " + timeout + " seconds";
+            }
+            return String.valueOf(ex);
+        } finally {
+            try {
+                userTransaction.setTransactionTimeout(0);
+            } catch (Exception ex) {
+                LOG.log(Level.FINE, "", ex);
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            userTransaction.rollback();
+        } catch (Exception ex) {
+            // Not started or already rolled back
+            LOG.log(Level.FINE, "", ex);
+        }
+    }
+}
@@ -21,17 +21,16 @@ import dk.i2m.converge.core.content.catalogue.Catalogue;
 import dk.i2m.converge.core.content.catalogue.CatalogueHookInstance;
 import dk.i2m.converge.core.content.catalogue.MediaItem;
 import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
+import dk.i2m.converge.core.job.Job;
 import dk.i2m.converge.core.plugin.CatalogueEvent;
 import dk.i2m.converge.core.plugin.CatalogueEventException;
 import dk.i2m.converge.core.plugin.CatalogueHook;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
-import dk.i2m.converge.ejb.messaging.CatalogueHookMessageBean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
-import javax.jms.*;
 
 /**
  * Stateless session bean providing {@link Catalogue} services.
@@ -50,9 +49,7 @@ public class CatalogueServiceBean implements CatalogueServiceLocal {
 
     @EJB private PluginContextBeanLocal pluginContext;
 
-    @Resource(mappedName = "jms/catalogueHookQueue") private Destination queue;
-
-    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jms;
+    @EJB private JobServiceLocal jobService;
 
     /** {@inheritDoc } */
     @Override
@@ -70,16 +67,30 @@ public class CatalogueServiceBean implements CatalogueServiceLocal {
                 + hookInstance.getLabel() + " for Media Item #" + mediaItem.
                 getId());
 
+        TaskMonitor monitor = TaskMonitor.getInstance();
+        long started = monitor.started(TaskStatistics.Category.CATALOGUE_HOOK,
+                hookInstance.getLabel());
+        long items = 0;
+        long errors = 0;
+
         // Process renditions
-        for (MediaItemRendition mir : mediaItem.getRenditions()) {
-            CatalogueEvent event = new CatalogueEvent(eventType, mediaItem, mir);
-            try {
-                CatalogueHook hook = hookInstance.getHook();
-                hook.execute(pluginContext, event, hookInstance);
-            } catch (CatalogueEventException ex) {
-                LOG.log(Level.WARNING, ex.getMessage());
-                LOG.log(Level.FINE, "Could not execute hook", ex);
+        try {
+            for (MediaItemRendition mir : mediaItem.getRenditions()) {
+                CatalogueEvent event =
+                        new CatalogueEvent(eventType, mediaItem, mir);
+                items++;
+                try {
+                    CatalogueHook hook = hookInstance.getHook();
+                    hook.execute(pluginContext, event, hookInstance);
+                } catch (CatalogueEventException ex) {
+                    errors++;
+                    LOG.log(Level.WARNING, ex.getMessage());
+                    LOG.log(Level.FINE, "Could not execute hook", ex);
+                }
             }
+        } finally {
+            monitor.finished(TaskStatistics.Category.CATALOGUE_HOOK,
+                    hookInstance.getLabel(), started, items, errors);
         }
 
         // Remove background task indicator
@@ -90,36 +101,7 @@ public class CatalogueServiceBean implements CatalogueServiceLocal {
     @Override
     public void executeAsynchronousHook(Long mediaItemId, Long hookInstanceId,
             CatalogueEvent.Event eventType) {
-        Connection connection = null;
-        try {
-            connection = jms.createConnection();
-            Session session = connection.createSession(true, Session.AUTO_ACKNOWLEDGE);
-
-            // Prepare message
-            final String PROPERTY_HOOK_ID = CatalogueHookMessageBean.Property.CATALOGUE_HOOK_INSTANCE_ID.name();
-            final String PROPERTY_MEDIA_ITEM_ID = CatalogueHookMessageBean.Property.MEDIA_ITEM_ID.name();
-            final String PROPERTY_EVENT_TYPE = CatalogueHookMessageBean.Property.EVENT_TYPE.name();
-            
-            // Construct and dispatch message
-            MessageProducer producer = session.createProducer(queue);
-            MapMessage message = session.createMapMessage();
-            message.setLongProperty(PROPERTY_HOOK_ID, hookInstanceId);
-            message.setLongProperty(PROPERTY_MEDIA_ITEM_ID, mediaItemId);
-            message.setStringProperty(PROPERTY_EVENT_TYPE, eventType.name());
-            producer.send(message);
-
-            session.close();
-            connection.close();
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (Exception e) {
-                }
-            }
-        }
-
+        jobService.enqueue(Job.catalogueHook(hookInstanceId, mediaItemId,
+                eventType));
     }
 }
@@ -0,0 +1,220 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.domain.CacheStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide cache of the configuration values stored in the database.
+ * <p/>
+ * The cache is loaded by {@link ConfigurationServiceLocal#reload()} when the
+ * application starts and kept up-to-date by
+ * {@link ConfigurationServiceLocal#set(ConfigurationKey, String)} once the
+ * change has been committed. Changes
+ * made on other nodes of the cluster are received through the
+ * {@code jms/configurationTopic} and reloaded from the database. Keys that are
+ * not stored in the database are cached as well, so that the fall-back to
+ * the default configuration does not result in a query on every lookup.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ConfigurationCache {
+
+    private static final Logger LOG = Logger.getLogger(ConfigurationCache.class.
+            getName());
+
+    private static final ConfigurationCache INSTANCE = new ConfigurationCache();
+
+    private final Map<ConfigurationKey, Entry> entries =
+            new ConcurrentHashMap<ConfigurationKey, Entry>();
+
+    private final List<ConfigurationListener> listeners =
+            new CopyOnWriteArrayList<ConfigurationListener>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private ConfigurationCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link ConfigurationCache}.
+     *
+     * @return Singleton instance of {@link ConfigurationCache}
+     */
+    public static ConfigurationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the cached entry of a given {@link ConfigurationKey}.
+     *
+     * @param key {@link ConfigurationKey} of the entry
+     * @return Cached entry, or {@code null} if the key has not been loaded
+     */
+    public Entry get(ConfigurationKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Replaces the content of the cache with the values stored in the
+     * database. Keys missing from {@code values} are cached as not stored.
+     *
+     * @param values Values stored in the database
+     */
+    public void load(Map<ConfigurationKey, String> values) {
+        for (ConfigurationKey key : ConfigurationKey.values()) {
+            entries.put(key, new Entry(values.containsKey(key), values.get(key)));
+        }
+        LOG.log(Level.INFO, "{0} configuration {0, choice, 0#values|1#value|2#values} cached",
+                entries.size());
+    }
+
+    /**
+     * Caches a value loaded from the database without notifying the
+     * listeners.
+     *
+     * @param key    {@link ConfigurationKey} of the value
+     * @param stored {@code true} if the value is stored in the database
+     * @param value  Value stored in the database
+     * @return Cached entry
+     */
+    public Entry put(ConfigurationKey key, boolean stored, String value) {
+        Entry entry = new Entry(stored, value);
+        entries.put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Updates the value of a {@link ConfigurationKey} and notifies the
+     * listeners if the value changed.
+     *
+     * @param key   {@link ConfigurationKey} of the value
+     * @param value New value stored in the database
+     */
+    public void update(ConfigurationKey key, String value) {
+        Entry previous = entries.put(key, new Entry(true, value));
+        if (previous == null || !previous.isStored()
+                || !equals(previous.getValue(), value)) {
+            notifyListeners(key);
+        }
+    }
+
+    /**
+     * Removes a {@link ConfigurationKey} from the cache. The value is loaded
+     * from the database upon the next lookup. The listeners are notified
+     * unless the key was cached as not stored, as the value may have fallen
+     * back to the default configuration.
+     *
+     * @param key {@link ConfigurationKey} to remove
+     */
+    public void invalidate(ConfigurationKey key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            invalidations.incrementAndGet();
+        }
+        if (previous == null || previous.isStored()) {
+            notifyListeners(key);
+        }
+    }
+
+    /**
+     * Adds a listener to be notified when a configuration value changes.
+     *
+     * @param listener Listener to add
+     */
+    public void addListener(ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Gets a snapshot of the cache counters.
+     *
+     * @return Snapshot of the cache counters
+     */
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics("Configuration", entries.size(), hits.get(),
+                misses.get(), invalidations.get());
+    }
+
+    private void notifyListeners(ConfigurationKey key) {
+        for (ConfigurationListener listener : listeners) {
+            try {
+                listener.configurationChanged(key);
+            } catch (RuntimeException ex) {
+                LOG.log(Level.WARNING, "Configuration listener failed for {0}. {1}",
+                        new Object[]{key.name(), ex.getMessage()});
+                LOG.log(Level.FINE, "", ex);
+            }
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Cached configuration value.
+     */
+    public static final class Entry {
+
+        private final boolean stored;
+
+        private final String value;
+
+        private Entry(boolean stored, String value) {
+            this.stored = stored;
+            this.value = value;
+        }
+
+        /**
+         * Determines if the value is stored in the database. If not, the
+         * default configuration should be used.
+         *
+         * @return {@code true} if the value is stored in the database
+         */
+        public boolean isStored() {
+            return stored;
+        }
+
+        /**
+         * Gets the value stored in the database.
+         *
+         * @return Value stored in the database
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -18,17 +18,33 @@ package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.Configuration;
+import dk.i2m.converge.domain.CacheStatistics;
+import dk.i2m.converge.ejb.messaging.ConfigurationMessageBean;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 /**
  * Stateless session bean providing a service for obtaining the application
- * configuration.
+ * configuration. Values are served from the {@link ConfigurationCache}.
  *
  * @author Allan Lykke Christensen
  */
@@ -37,6 +53,12 @@ public class ConfigurationServiceBean implements ConfigurationServiceLocal {
 
     @EJB private DaoServiceLocal daoService;
 
+    @Resource(mappedName = "jms/configurationTopic") private Destination configurationTopic;
+
+    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+
+    @Resource private TransactionSynchronizationRegistry txRegistry;
+
     private ResourceBundle cfg = ResourceBundle.getBundle("dk.i2m.converge.Configuration");
 
     private static final Logger LOG = Logger.getLogger(ConfigurationServiceBean.class.getName());
@@ -51,67 +73,46 @@ public class ConfigurationServiceBean implements ConfigurationServiceLocal {
     /** {@inheritDoc } */
     @Override
     public <T> T get(Class<T> type, ConfigurationKey key, T defaultValue) {
-
-        List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
-                QueryBuilder.with("cfgKey", key).parameters());
-        if (results.size() == 1) {
-            Object obj = results.iterator().next();
+        try {
+            Object obj = lookup(key);
             if (type == Integer.class) {
                 obj = Integer.valueOf((String) obj);
             } else if (type == Long.class) {
                 obj = Long.valueOf((String) obj);
+            } else if (type == Boolean.class) {
+                obj = Boolean.valueOf((String) obj);
             }
             return (T) obj;
-        } else {
-            try {
-                Object obj = cfg.getObject(key.name());
-                if (type == Integer.class) {
-                    obj = Integer.valueOf((String) obj);
-                } else if (type == Long.class) {
-                    obj = Long.valueOf((String) obj);
-                }
-
-                return (T) obj;
-            } catch (Exception ex) {
-                LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
-                return defaultValue;
-            }
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
+            return defaultValue;
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public String getString(ConfigurationKey key) {
-        List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
-                QueryBuilder.with("cfgKey", key).parameters());
-        if (results.size() == 1) {
-            return ((Configuration) results.get(0)).getValue();
-        } else {
-            try {
-                return cfg.getString(key.name());
-            } catch (Exception ex) {
-                LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
-                return key.name();
-            }
+        try {
+            return lookup(key);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
+            return key.name();
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public Integer getInteger(ConfigurationKey key) {
+        String value;
         try {
-            List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
-                    QueryBuilder.with("cfgKey", key).parameters());
-            if (results.size() == 1) {
-                return Integer.valueOf(((Configuration) results.get(0)).getValue());
-            } else {
-                try {
-                    return Integer.valueOf(cfg.getString(key.name()));
-                } catch (Exception ex) {
-                    LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
-                    return -1;
-                }
-            }
+            value = lookup(key);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
+            return -1;
+        }
+
+        try {
+            return Integer.valueOf(value);
         } catch (NumberFormatException ex) {
             LOG.log(Level.WARNING, "Couldn't retrieve configuration: {0}. {1}", new Object[]{key.name(), ex.getMessage()});
             return -1;
@@ -121,23 +122,24 @@ public class ConfigurationServiceBean implements ConfigurationServiceLocal {
     /** {@inheritDoc} */
     @Override
     public Boolean getBoolean(ConfigurationKey key) {
-        List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
-                QueryBuilder.with("cfgKey", key).parameters());
-        if (results.size() == 1) {
-            return Boolean.valueOf(((Configuration) results.get(0)).getValue());
-        } else {
-            try {
-                return Boolean.valueOf(cfg.getString(key.name()));
-            } catch (Exception ex) {
-                LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
-                return false;
-            }
+        try {
+            return Boolean.valueOf(lookup(key));
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Unknown configuration: {0}", new Object[]{key.name()});
+            return false;
         }
     }
 
     /** {@inheritDoc} */
     @Override
     public void set(ConfigurationKey key, String value) {
+        store(key, value);
+        publishChange(key);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void store(final ConfigurationKey key, final String value) {
         List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
                 QueryBuilder.with("cfgKey", key).parameters());
         if (results.size() == 1) {
@@ -150,6 +152,122 @@ public class ConfigurationServiceBean implements ConfigurationServiceLocal {
             entry.setValue(value);
             daoService.create(entry);
         }
+
+        if (txRegistry.getTransactionKey() == null) {
+            ConfigurationCache.getInstance().update(key, value);
+            return;
+        }
+
+        // Listeners must not act on a value that could still be rolled back
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    ConfigurationCache.getInstance().update(key, value);
+                }
+            }
+        });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reload() {
+        List<Configuration> stored = daoService.findAll(Configuration.class);
+        Map<ConfigurationKey, String> values =
+                new EnumMap<ConfigurationKey, String>(ConfigurationKey.class);
+        for (Configuration entry : stored) {
+            values.put(entry.getKey(), entry.getValue());
+        }
+        ConfigurationCache.getInstance().load(values);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reload(ConfigurationKey key) {
+        List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
+                QueryBuilder.with("cfgKey", key).parameters());
+        if (results.size() == 1) {
+            Configuration entry = (Configuration) results.get(0);
+            ConfigurationCache.getInstance().update(key, entry.getValue());
+        } else {
+            ConfigurationCache.getInstance().invalidate(key);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return ConfigurationCache.getInstance().getStatistics();
+    }
+
+    /**
+     * Looks up the value of a {@link ConfigurationKey} in the
+     * {@link ConfigurationCache}. The value is loaded from the database if it
+     * has not been cached. If the value is not stored in the database, the
+     * default configuration is used.
+     *
+     * @param key {@link ConfigurationKey} to look up
+     * @return Value of the {@link ConfigurationKey}
+     * @throws MissingResourceException If the value is neither stored in the
+     *                                  database nor in the default
+     *                                  configuration
+     */
+    private String lookup(ConfigurationKey key) throws MissingResourceException {
+        ConfigurationCache cache = ConfigurationCache.getInstance();
+        ConfigurationCache.Entry entry = cache.get(key);
+        if (entry == null) {
+            List results = daoService.findWithNamedQuery(Configuration.FIND_BY_KEY,
+                    QueryBuilder.with("cfgKey", key).parameters());
+            if (results.size() == 1) {
+                entry = cache.put(key, true, ((Configuration) results.get(0)).getValue());
+            } else {
+                entry = cache.put(key, false, null);
+            }
+        }
+
+        if (entry.isStored()) {
+            return entry.getValue();
+        } else {
+            return cfg.getString(key.name());
+        }
+    }
+
+    /**
+     * Notifies the other nodes of the cluster that the value of a
+     * {@link ConfigurationKey} has changed. The message is sent when the
+     * current transaction commits.
+     *
+     * @param key {@link ConfigurationKey} that changed
+     */
+    private void publishChange(ConfigurationKey key) {
+        Connection connection = null;
+        try {
+            connection = jmsConnectionFactory.createConnection();
+            Session session = connection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(configurationTopic);
+            MapMessage message = session.createMapMessage();
+            message.setStringProperty(
+                    ConfigurationMessageBean.Property.CONFIGURATION_KEY.name(),
+                    key.name());
+            producer.send(message);
+            session.close();
+        } catch (JMSException ex) {
+            LOG.log(Level.WARNING, "Could not notify the cluster about the changed configuration {0}. {1}",
+                    new Object[]{key.name(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                }
+            }
+        }
     }
 
     /** {@inheritDoc} */
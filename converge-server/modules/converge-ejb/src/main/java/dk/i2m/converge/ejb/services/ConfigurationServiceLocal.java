@@ -17,6 +17,7 @@
 package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.domain.CacheStatistics;
 import java.util.Locale;
 import javax.ejb.Local;
 
@@ -85,7 +86,9 @@ public interface ConfigurationServiceLocal {
 
     /**
      * Updates the value of a configuration. The updated value is stored in the
-     * persisted storage.
+     * persisted storage. Once the transaction commits, the value is put in
+     * the configuration cache and announced to the other nodes of the
+     * cluster.
      *
      * @param key
      *          Key of the configuration
@@ -94,6 +97,43 @@ public interface ConfigurationServiceLocal {
      */
     void set(ConfigurationKey key, String value);
 
+    /**
+     * Updates the value of a configuration without announcing it to the other
+     * nodes of the cluster. The updated value is stored in the persisted
+     * storage and put in the configuration cache of this node once the
+     * transaction commits. Used for values that are only read by the node
+     * writing them, such as progress checkpoints.
+     *
+     * @param key
+     *          Key of the configuration
+     * @param value
+     *          Value of the configuration
+     */
+    void store(ConfigurationKey key, String value);
+
+    /**
+     * Loads all the configuration values stored in the database into the
+     * configuration cache.
+     */
+    void reload();
+
+    /**
+     * Reloads a single configuration value from the database into the
+     * configuration cache. Invoked when the value was changed on another
+     * node of the cluster.
+     *
+     * @param key
+     *          Key of the configuration
+     */
+    void reload(ConfigurationKey key);
+
+    /**
+     * Gets the hit and miss counters of the configuration cache.
+     *
+     * @return Snapshot of the configuration cache counters
+     */
+    CacheStatistics getCacheStatistics();
+
     /**
      * Gets the {@link Locale} of the application.
      *
@@ -17,6 +17,7 @@
 package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.core.DataNotFoundException;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.OptimisticLockException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import org.eclipse.persistence.config.QueryHints;
 
 /**
  * Stateless session bean providing a data access object service for accessing
@@ -42,6 +44,8 @@ public class DaoServiceBean implements DaoServiceLocal {
     @PersistenceContext(unitName = "converge-ejbPU")
     private EntityManager em;
 
+    @EJB private ReferenceDataServiceLocal referenceDataService;
+
     /**
      * Stores a given object in the data store.
      *
@@ -56,6 +60,7 @@ public class DaoServiceBean implements DaoServiceLocal {
         this.em.persist(t);
         this.em.flush();
         this.em.refresh(t);
+        referenceDataChanged(t.getClass());
         return t;
     }
     
@@ -107,13 +112,16 @@ public class DaoServiceBean implements DaoServiceLocal {
         Object obj = this.em.find(type, id);
         if (obj != null) {
             this.em.remove(obj);
+            referenceDataChanged(type);
         }
     }
 
     /** {@inheritDoc } */
     @Override
     public <T> T update(T t) throws OptimisticLockException {
-        return this.em.merge(t);
+        T merged = this.em.merge(t);
+        referenceDataChanged(t.getClass());
+        return merged;
     }
 
     /** {@inheritDoc } */
@@ -249,6 +257,26 @@ public class DaoServiceBean implements DaoServiceLocal {
         return query.getResultList();
     }
 
+    /** {@inheritDoc } */
+    @Override
+    public List findWithNamedQuery(String namedQueryName, QueryBuilder queryBuilder, int start, int resultLimit) {
+        Query query = this.em.createNamedQuery(namedQueryName);
+        if (start > -1) {
+            query.setFirstResult(start);
+        }
+        if (resultLimit > 0) {
+            query.setMaxResults(resultLimit);
+        }
+
+        for (Entry<String, Object> entry : queryBuilder.parameters().entrySet()) {
+            query.setParameter(entry.getKey(), entry.getValue());
+        }
+        for (String attribute : queryBuilder.batchAttributes()) {
+            query.setHint(QueryHints.BATCH, attribute);
+        }
+        return query.getResultList();
+    }
+
     /**
      * Finds a {@link List} of entities returned from the given native SQL
      * query.
@@ -264,6 +292,36 @@ public class DaoServiceBean implements DaoServiceLocal {
         return this.em.createNativeQuery(sql, type).getResultList();
     }
 
+    /** {@inheritDoc } */
+    @Override
+    public List findWithQuery(String query, Map<String, Object> parameters) {
+        Query q = this.em.createQuery(query);
+        for (Entry<String, Object> entry : parameters.entrySet()) {
+            q.setParameter(entry.getKey(), entry.getValue());
+        }
+        return q.getResultList();
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public List findWithQuery(String query, QueryBuilder queryBuilder, int start, int resultLimit) {
+        Query q = this.em.createQuery(query);
+        if (start > -1) {
+            q.setFirstResult(start);
+        }
+        if (resultLimit > 0) {
+            q.setMaxResults(resultLimit);
+        }
+
+        for (Entry<String, Object> entry : queryBuilder.parameters().entrySet()) {
+            q.setParameter(entry.getKey(), entry.getValue());
+        }
+        for (String attribute : queryBuilder.batchAttributes()) {
+            q.setHint(QueryHints.BATCH, attribute);
+        }
+        return q.getResultList();
+    }
+
     /**
      * Finds all the entities of a given type.
      *
@@ -295,6 +353,81 @@ public class DaoServiceBean implements DaoServiceLocal {
        return new LinkedList(this.em.createQuery("SELECT o from " + type.getSimpleName() + " AS o ORDER BY o." + orderBy + " " + direction).setFirstResult(start).setMaxResults(resultLimit).getResultList());
     }
     
+    /** {@inheritDoc } */
+    @Override
+    public <T> List<T> findByIds(Class<T> type, Collection<?> ids) {
+        return findByIds(type, ids, new String[0]);
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public <T> List<T> findByIds(Class<T> type, Collection<?> ids, String... batchAttributes) {
+        if (ids == null || ids.isEmpty()) {
+            return new LinkedList<T>();
+        }
+        Query query = this.em.createQuery("SELECT o FROM " + type.getSimpleName()
+                + " AS o WHERE o.id IN (" + idParameters(ids.size()) + ")");
+        setIdParameters(query, ids);
+        for (String attribute : batchAttributes) {
+            query.setHint(QueryHints.BATCH, attribute);
+        }
+        return new LinkedList(query.getResultList());
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public int deleteByIds(Class type, Collection<?> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+        Query query = this.em.createQuery("DELETE FROM " + type.getSimpleName()
+                + " AS o WHERE o.id IN (" + idParameters(ids.size()) + ")");
+        setIdParameters(query, ids);
+        int deleted = query.executeUpdate();
+        referenceDataChanged(type);
+        return deleted;
+    }
+
+    /**
+     * Invalidates the cached reference data if a given type of entity is
+     * reference data.
+     *
+     * @param type
+     *          Type of entity created, updated or deleted
+     */
+    private void referenceDataChanged(Class<?> type) {
+        if (ReferenceDataCache.isReferenceData(type)) {
+            referenceDataService.changed(type);
+        }
+    }
+
+    /**
+     * Generates the list of named parameters used for matching a set of
+     * unique identifiers, e.g. {@code :id0, :id1, :id2}.
+     *
+     * @param count
+     *          Number of parameters to generate
+     * @return Comma-separated list of named parameters
+     */
+    private String idParameters(int count) {
+        StringBuilder parameters = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                parameters.append(", ");
+            }
+            parameters.append(":id").append(i);
+        }
+        return parameters.toString();
+    }
+
+    private void setIdParameters(Query query, Collection<?> ids) {
+        int i = 0;
+        for (Object id : ids) {
+            query.setParameter("id" + i, id);
+            i++;
+        }
+    }
+
     @Override
     public <T> Number count(Class<T> type, String field) {
         return (Number)this.em.createQuery("SELECT COUNT(o." + field + ") from " + type.getSimpleName() + " o").getSingleResult();
@@ -17,6 +17,7 @@
 package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.core.DataNotFoundException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import javax.ejb.Local;
@@ -70,6 +71,50 @@ public interface DaoServiceLocal {
 
      <T> Number count(Class<T> type, String field);
 
+    /**
+     * Finds the entities of a given type matching a set of unique
+     * identifiers in a single query. Identifiers that do not match an entity
+     * are ignored.
+     *
+     * @param <T>
+     *          Type of entity
+     * @param type
+     *          Type of entity
+     * @param ids
+     *          Unique identifiers of the entities to find
+     * @return {@link List} of entities matching the unique identifiers
+     */
+     <T> List<T> findByIds(Class<T> type, Collection<?> ids);
+
+    /**
+     * Finds the entities matching a collection of unique identifiers using a
+     * single query, fetching the given relationships in batches.
+     *
+     * @param <T>
+     *          Type of entity
+     * @param type
+     *          Type of entity
+     * @param ids
+     *          Unique identifiers of the entities to find
+     * @param batchAttributes
+     *          Relationships to batch fetch, prefixed with the identification
+     *          variable {@code o}, e.g. {@code o.actors}
+     * @return {@link List} of entities matching the unique identifiers
+     */
+     <T> List<T> findByIds(Class<T> type, Collection<?> ids, String... batchAttributes);
+
+    /**
+     * Removes the entities of a given type matching a set of unique
+     * identifiers in a single statement. Cascades are not applied.
+     *
+     * @param type
+     *          Type of entity
+     * @param ids
+     *          Unique identifiers of the entities to remove
+     * @return Number of removed entities
+     */
+    int deleteByIds(Class type, Collection<?> ids);
+
     /**
      * Finds a given entity in the data store.
      *
@@ -97,6 +142,34 @@ public interface DaoServiceLocal {
      */
     List findByNativeQuery(String sql, Class type);
 
+    /**
+     * Finds a {@link List} of results returned from the given JPQL query.
+     *
+     * @param query
+     * JPQL query
+     * @param parameters
+     * Parameters of the query
+     * @return {@link List} of results returned from the given query
+     */
+    List findWithQuery(String query, Map<String, Object> parameters);
+
+    /**
+     * Finds a {@link List} of results returned from the given JPQL query. The
+     * relationships added to the {@link QueryBuilder} with
+     * {@link QueryBuilder#batch(java.lang.String[])} are fetched in batches.
+     *
+     * @param query
+     *          JPQL query
+     * @param queryBuilder
+     *          QueryBuilder containing the parameters
+     * @param start
+     *          First result to return, or {@code -1} to start from the first
+     * @param resultLimit
+     *          Maximum number of results, or {@code 0} for all results
+     * @return {@link List} of results returned from the given query
+     */
+    List findWithQuery(String query, QueryBuilder queryBuilder, int start, int resultLimit);
+
     /**
      * Finds a {@link List} of entity returned by the given named query.
      *
@@ -177,6 +250,23 @@ public interface DaoServiceLocal {
 
     List findWithNamedQuery(String namedQueryName, Map<String, Object> parameters, int start, int resultLimit);
 
+    /**
+     * Finds a {@link List} of entity returned by the given named query. The
+     * relationships added to the {@link QueryBuilder} with
+     * {@link QueryBuilder#batch(java.lang.String[])} are fetched in batches.
+     *
+     * @param namedQueryName
+     *          Name of the query
+     * @param queryBuilder
+     *          QueryBuilder containing the parameters
+     * @param start
+     *          First result to return, or {@code -1} to start from the first
+     * @param resultLimit
+     *          Maximum number of results, or {@code 0} for all results
+     * @return {@link List} of entities returned by the given query
+     */
+    List findWithNamedQuery(String namedQueryName, QueryBuilder queryBuilder, int start, int resultLimit);
+
     /**
      * Updates an existing entity in the database.
      *
@@ -0,0 +1,301 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.domain.CacheStatistics;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.naming.directory.Attributes;
+
+/**
+ * Singleton caching the user entries and group memberships read from the
+ * LDAP directory. Entries expire after a time-to-live and the least recently
+ * used entries are evicted when the cache is full. The cache is refreshed in
+ * the background by the {@link PeriodicTimer#DIRECTORY_SYNC} timer, so that
+ * users and groups are normally resolved without calling the directory.
+ * User identifiers that could not be found in the directory are remembered
+ * for a shorter time-to-live, so that repeated requests for an unknown user
+ * do not each search the directory.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class DirectoryCache {
+
+    private static final DirectoryCache INSTANCE = new DirectoryCache();
+
+    private final LinkedHashMap<String, DirectoryEntry> usernames =
+            new LinkedHashMap<String, DirectoryEntry>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, DirectoryEntry> names =
+            new LinkedHashMap<String, DirectoryEntry>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Long> unknown =
+            new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    private final Map<String, Group> groups =
+            new LinkedHashMap<String, Group>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private DirectoryCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link DirectoryCache}.
+     *
+     * @return Singleton instance of {@link DirectoryCache}
+     */
+    public static DirectoryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the entry of a user by its username.
+     *
+     * @param username Username of the user
+     * @return Cached entry of the user, or {@code null} if the entry is not
+     *         cached or has expired
+     */
+    public DirectoryEntry getByUsername(String username) {
+        synchronized (this) {
+            return hitOrMiss(usernames, normalise(username));
+        }
+    }
+
+    /**
+     * Gets the entry of a user by its distinguished name.
+     *
+     * @param dn Distinguished name of the user
+     * @return Cached entry of the user, or {@code null} if the entry is not
+     *         cached or has expired
+     */
+    public DirectoryEntry getByDistinguishedName(String dn) {
+        synchronized (this) {
+            return hitOrMiss(names, normalise(dn));
+        }
+    }
+
+    /**
+     * Caches the entry of a user.
+     *
+     * @param username   Username of the user
+     * @param dn         Distinguished name of the user
+     * @param attributes Attributes of the user
+     * @param ttl        Milliseconds before the entry expires
+     * @param maxSize    Maximum number of users cached
+     */
+    public synchronized void put(String username, String dn,
+            Attributes attributes, long ttl, int maxSize) {
+        DirectoryEntry entry = new DirectoryEntry(dn, attributes,
+                System.currentTimeMillis() + ttl);
+        usernames.put(normalise(username), entry);
+        names.put(normalise(dn), entry);
+        unknown.remove(normalise(username));
+        evict(usernames, maxSize);
+        evict(names, maxSize);
+    }
+
+    /**
+     * Determines if a user was recently found not to exist in the directory.
+     *
+     * @param username Username of the user
+     * @return {@code true} if the user is cached as unknown and the entry
+     *         has not expired
+     */
+    public synchronized boolean isUnknown(String username) {
+        String key = normalise(username);
+        Long expires = unknown.get(key);
+        if (expires == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() > expires) {
+            unknown.remove(key);
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Caches that a user does not exist in the directory.
+     *
+     * @param username Username of the user
+     * @param ttl      Milliseconds before the entry expires
+     * @param maxSize  Maximum number of unknown users cached
+     */
+    public synchronized void putUnknown(String username, long ttl,
+            int maxSize) {
+        unknown.put(normalise(username), System.currentTimeMillis() + ttl);
+        evict(unknown, maxSize);
+    }
+
+    /**
+     * Gets the distinguished names of the members of a group.
+     *
+     * @param groupDn Distinguished name of the group
+     * @return Distinguished names of the members, or {@code null} if the
+     *         members are not cached or have expired
+     */
+    public List<String> getMembers(String groupDn) {
+        Group group;
+        synchronized (this) {
+            group = groups.get(normalise(groupDn));
+        }
+        if (group == null || group.isExpired()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return group.members;
+    }
+
+    /**
+     * Caches the distinguished names of the members of a group.
+     *
+     * @param groupDn Distinguished name of the group
+     * @param members Distinguished names of the members
+     * @param ttl     Milliseconds before the members expire
+     */
+    public synchronized void putMembers(String groupDn, List<String> members,
+            long ttl) {
+        groups.put(normalise(groupDn), new Group(members,
+                System.currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Removes all entries and groups from the cache.
+     */
+    public synchronized void invalidateAll() {
+        invalidations.addAndGet(usernames.size() + unknown.size()
+                + groups.size());
+        usernames.clear();
+        names.clear();
+        unknown.clear();
+        groups.clear();
+    }
+
+    /**
+     * Gets a snapshot of the cache counters.
+     *
+     * @return Snapshot of the cache counters
+     */
+    public CacheStatistics getStatistics() {
+        int size;
+        synchronized (this) {
+            size = usernames.size() + unknown.size() + groups.size();
+        }
+        return new CacheStatistics("Directory", size, hits.get(),
+                misses.get(), invalidations.get());
+    }
+
+    private DirectoryEntry hitOrMiss(Map<String, DirectoryEntry> map,
+            String key) {
+        DirectoryEntry entry = map.get(key);
+        if (entry == null || entry.isExpired()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    private void evict(LinkedHashMap<String, ?> map, int maxSize) {
+        Iterator<String> eldest = map.keySet().iterator();
+        while (map.size() > Math.max(0, maxSize) && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            invalidations.incrementAndGet();
+        }
+    }
+
+    /**
+     * Directory names and user identifiers are case insensitive.
+     */
+    private static String normalise(String key) {
+        return key == null ? "" : key.trim().toLowerCase();
+    }
+
+    /**
+     * User entry read from the directory.
+     */
+    public static class DirectoryEntry {
+
+        private final String distinguishedName;
+
+        private final Attributes attributes;
+
+        private final long expires;
+
+        DirectoryEntry(String distinguishedName, Attributes attributes,
+                long expires) {
+            this.distinguishedName = distinguishedName;
+            this.attributes = (Attributes) attributes.clone();
+            this.expires = expires;
+        }
+
+        /**
+         * Gets the distinguished name of the user.
+         *
+         * @return Distinguished name of the user
+         */
+        public String getDistinguishedName() {
+            return distinguishedName;
+        }
+
+        /**
+         * Gets a copy of the attributes of the user.
+         *
+         * @return Attributes of the user
+         */
+        public Attributes getAttributes() {
+            return (Attributes) attributes.clone();
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+
+    /**
+     * Members of a group read from the directory.
+     */
+    private static class Group {
+
+        private final List<String> members;
+
+        private final long expires;
+
+        Group(List<String> members, long expires) {
+            this.members = Collections.unmodifiableList(
+                    new ArrayList<String>(members));
+            this.expires = expires;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+/**
+ * Singleton pool of connections to the LDAP directory shared by the
+ * instances of {@link UserServiceBean}. Idle connections are kept open
+ * between requests and validated before being reused if they have been idle
+ * for longer than the validation interval. A connection that failed is
+ * discarded by {@link #invalidate(DirContext)} rather than being returned to
+ * the pool.
+ * <p/>
+ * The pool is reset when the connection environment changes, e.g. after the
+ * directory settings were changed by an administrator.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class DirectoryConnectionPool {
+
+    private static final Logger LOG = Logger.getLogger(
+            DirectoryConnectionPool.class.getName());
+
+    private static final DirectoryConnectionPool INSTANCE =
+            new DirectoryConnectionPool();
+
+    /** Attribute requested when validating a connection, i.e. none. */
+    private static final String[] NO_ATTRIBUTES = new String[]{"1.1"};
+
+    private final LinkedList<Connection> idle = new LinkedList<Connection>();
+
+    /** Borrowed connections and the generation of the pool they belong to. */
+    private final Map<DirContext, Long> borrowed =
+            new IdentityHashMap<DirContext, Long>();
+
+    private Hashtable<String, String> environment = null;
+
+    private long generation = 0;
+
+    private int maxIdle = 10;
+
+    private long validationInterval = 60000L;
+
+    private long created = 0;
+
+    private long reused = 0;
+
+    private long discarded = 0;
+
+    private DirectoryConnectionPool() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link DirectoryConnectionPool}.
+     *
+     * @return Singleton instance of {@link DirectoryConnectionPool}
+     */
+    public static DirectoryConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets the number of idle connections kept in the pool and the number of
+     * milliseconds a connection may be idle before it is validated.
+     *
+     * @param maxIdle            Maximum number of idle connections
+     * @param validationInterval Milliseconds before an idle connection is
+     *                           validated
+     */
+    public synchronized void configure(int maxIdle, long validationInterval) {
+        this.maxIdle = Math.max(0, maxIdle);
+        this.validationInterval = Math.max(0, validationInterval);
+        while (idle.size() > this.maxIdle) {
+            close(idle.removeLast().context);
+        }
+    }
+
+    /**
+     * Borrows a connection from the pool. A new connection is established if
+     * no idle connection is available. The connection must be returned with
+     * {@link #release(DirContext)} or {@link #invalidate(DirContext)}.
+     *
+     * @param env Environment of the connection
+     * @return Connection to the directory
+     * @throws NamingException If a new connection could not be established
+     */
+    public DirContext borrow(Hashtable<String, String> env) throws
+            NamingException {
+        while (true) {
+            Connection connection;
+            long current;
+            synchronized (this) {
+                if (!env.equals(environment)) {
+                    reset();
+                    if (environment != null) {
+                        // Entries read from another directory are stale
+                        DirectoryCache.getInstance().invalidateAll();
+                    }
+                    environment = new Hashtable<String, String>(env);
+                }
+                connection = idle.poll();
+                current = generation;
+            }
+
+            if (connection == null) {
+                DirContext ctx = new InitialDirContext(
+                        new Hashtable<String, String>(env));
+                synchronized (this) {
+                    created++;
+                    borrowed.put(ctx, current);
+                }
+                return ctx;
+            }
+
+            if (isValid(connection)) {
+                synchronized (this) {
+                    reused++;
+                    borrowed.put(connection.context, current);
+                }
+                return connection.context;
+            }
+            close(connection.context);
+        }
+    }
+
+    /**
+     * Returns a healthy connection to the pool.
+     *
+     * @param ctx Connection borrowed from the pool
+     */
+    public void release(DirContext ctx) {
+        if (ctx == null) {
+            return;
+        }
+        synchronized (this) {
+            Long owner = borrowed.remove(ctx);
+            if (owner != null && owner == generation && idle.size() < maxIdle) {
+                idle.addFirst(new Connection(ctx));
+                return;
+            }
+        }
+        close(ctx);
+    }
+
+    /**
+     * Discards a connection that failed.
+     *
+     * @param ctx Connection borrowed from the pool
+     */
+    public void invalidate(DirContext ctx) {
+        if (ctx != null) {
+            synchronized (this) {
+                borrowed.remove(ctx);
+            }
+            close(ctx);
+        }
+    }
+
+    /**
+     * Closes all idle connections. Connections currently borrowed are closed
+     * when they are returned.
+     */
+    public synchronized void reset() {
+        for (Connection connection : idle) {
+            close(connection.context);
+        }
+        idle.clear();
+        generation++;
+    }
+
+    /**
+     * Gets the number of idle connections in the pool.
+     *
+     * @return Number of idle connections
+     */
+    public synchronized int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * Gets the number of connections currently borrowed from the pool.
+     *
+     * @return Number of connections borrowed
+     */
+    public synchronized int getBorrowed() {
+        return borrowed.size();
+    }
+
+    /**
+     * Gets the number of connections established by the pool.
+     *
+     * @return Number of connections established
+     */
+    public synchronized long getCreated() {
+        return created;
+    }
+
+    /**
+     * Gets the number of times an idle connection was reused.
+     *
+     * @return Number of times an idle connection was reused
+     */
+    public synchronized long getReused() {
+        return reused;
+    }
+
+    /**
+     * Gets the number of connections discarded, either because they failed
+     * or because the pool was full.
+     *
+     * @return Number of connections discarded
+     */
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+
+    /**
+     * Validates an idle connection by reading the entry at the root of the
+     * connection, if the connection has been idle for longer than the
+     * validation interval.
+     */
+    private boolean isValid(Connection connection) {
+        long idleTime;
+        synchronized (this) {
+            idleTime = System.currentTimeMillis() - connection.released;
+            if (idleTime < validationInterval) {
+                return true;
+            }
+        }
+        try {
+            connection.context.getAttributes("", NO_ATTRIBUTES);
+            return true;
+        } catch (NamingException ex) {
+            LOG.log(Level.FINE, "Discarding directory connection idle for {0}"
+                    + " ms. {1}", new Object[]{idleTime, ex.getMessage()});
+            return false;
+        }
+    }
+
+    private void close(DirContext ctx) {
+        synchronized (this) {
+            discarded++;
+        }
+        try {
+            ctx.close();
+        } catch (NamingException ex) {
+            LOG.log(Level.FINE, "Could not close directory connection. {0}",
+                    ex.getMessage());
+        }
+    }
+
+    /**
+     * Idle connection in the pool.
+     */
+    private static class Connection {
+
+        private final DirContext context;
+
+        private final long released = System.currentTimeMillis();
+
+        Connection(DirContext context) {
+            this.context = context;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.workflow.Edition;
+import dk.i2m.converge.core.workflow.EditionSnapshot;
+import java.util.Calendar;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+/**
+ * Stateless session bean storing the {@link EditionSnapshot}s of published
+ * {@link Edition}s. Snapshots are invalidated in the transaction changing the
+ * edition, its placements, the news items placed in it or the media items
+ * attached to them.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Stateless
+public class EditionSnapshotServiceBean implements EditionSnapshotServiceLocal {
+
+    private static final Logger LOG =
+            Logger.getLogger(EditionSnapshotServiceBean.class.getName());
+
+    @EJB private DaoServiceLocal daoService;
+
+    @Resource private SessionContext ctx;
+
+    /** {@inheritDoc} */
+    @Override
+    public long getVersion(Long editionId) throws DataNotFoundException {
+        Long version = findVersion(editionId);
+        if (version != null) {
+            return version;
+        }
+
+        // Only create snapshots of existing editions
+        daoService.findById(Edition.class, editionId);
+        try {
+            ctx.getBusinessObject(EditionSnapshotServiceLocal.class).create(
+                    editionId);
+        } catch (EJBException ex) {
+            LOG.log(Level.FINE, "Snapshot of Edition #{0} created concurrently",
+                    editionId);
+        }
+
+        version = findVersion(editionId);
+        if (version == null) {
+            throw new DataNotFoundException("Snapshot of Edition #"
+                    + editionId + " could not be created");
+        }
+        return version;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] findPayload(Long editionId, long version) {
+        List results = daoService.findWithNamedQuery(
+                EditionSnapshot.FIND_PAYLOAD, QueryBuilder.with("editionId",
+                editionId).and("version", version).parameters());
+        if (results.isEmpty()) {
+            return null;
+        }
+        return (byte[]) results.get(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public byte[] findLatestPayload(Long editionId) {
+        List results = daoService.findWithNamedQuery(
+                EditionSnapshot.FIND_LATEST_PAYLOAD, QueryBuilder.with(
+                "editionId", editionId).parameters());
+        if (results.isEmpty()) {
+            return null;
+        }
+        return (byte[]) results.get(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean store(Long editionId, long version, byte[] payload) {
+        int updated = daoService.executeQuery(EditionSnapshot.STORE,
+                QueryBuilder.with("payload", payload).and("built", Calendar.
+                getInstance()).and("editionId", editionId).and("version",
+                version));
+        return updated > 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void create(Long editionId) {
+        daoService.create(new EditionSnapshot(editionId));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidate(Long editionId) {
+        if (editionId != null) {
+            daoService.executeQuery(EditionSnapshot.INVALIDATE, QueryBuilder.
+                    with("editionId", editionId));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateByNewsItem(Long newsItemId) {
+        if (newsItemId != null) {
+            daoService.executeQuery(EditionSnapshot.INVALIDATE_BY_NEWS_ITEM,
+                    QueryBuilder.with("newsItemId", newsItemId));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateByPlacement(Long placementId) {
+        if (placementId != null) {
+            daoService.executeQuery(EditionSnapshot.INVALIDATE_BY_PLACEMENT,
+                    QueryBuilder.with("placementId", placementId));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidateByMediaItem(Long mediaItemId) {
+        if (mediaItemId != null) {
+            daoService.executeQuery(EditionSnapshot.INVALIDATE_BY_MEDIA_ITEM,
+                    QueryBuilder.with("mediaItemId", mediaItemId));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void delete(Long editionId) {
+        daoService.executeQuery(EditionSnapshot.DELETE, QueryBuilder.with(
+                "editionId", editionId));
+    }
+
+    private Long findVersion(Long editionId) {
+        List results = daoService.findWithNamedQuery(
+                EditionSnapshot.FIND_VERSION, QueryBuilder.with("editionId",
+                editionId).parameters());
+        if (results.isEmpty()) {
+            return null;
+        }
+        return ((Number) results.get(0)).longValue();
+    }
+}
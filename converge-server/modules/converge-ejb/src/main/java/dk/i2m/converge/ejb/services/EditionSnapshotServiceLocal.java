@@ -0,0 +1,119 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.workflow.Edition;
+import dk.i2m.converge.core.workflow.EditionSnapshot;
+import javax.ejb.Local;
+
+/**
+ * Local interface for the service storing the {@link EditionSnapshot}s of
+ * published {@link Edition}s.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Local
+public interface EditionSnapshotServiceLocal {
+
+    /**
+     * Gets the current version of the snapshot of an {@link Edition}. The
+     * snapshot is created if the edition does not have one.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     * @return Current version of the snapshot
+     * @throws DataNotFoundException If the {@link Edition} does not exist
+     */
+    long getVersion(Long editionId) throws DataNotFoundException;
+
+    /**
+     * Gets the payload of a given version of the snapshot of an
+     * {@link Edition}.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     * @param version   Version of the snapshot
+     * @return Serialized payload, or {@code null} if the snapshot has not been
+     *         built or the version is no longer current
+     */
+    byte[] findPayload(Long editionId, long version);
+
+    /**
+     * Gets the payload of the latest version of the snapshot of an
+     * {@link Edition} that was built, which may be outdated.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     * @return Serialized payload, or {@code null} if the snapshot has never
+     *         been built
+     */
+    byte[] findLatestPayload(Long editionId);
+
+    /**
+     * Stores the payload of the snapshot of an {@link Edition}. The payload
+     * is discarded if the snapshot was invalidated while it was being built.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     * @param version   Version of the snapshot the payload was built for
+     * @param payload   Serialized payload
+     * @return {@code true} if the payload was stored
+     */
+    boolean store(Long editionId, long version, byte[] payload);
+
+    /**
+     * Creates an empty snapshot of an {@link Edition} in a new transaction.
+     * Used by {@link #getVersion(Long)}.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     */
+    void create(Long editionId);
+
+    /**
+     * Invalidates the snapshot of an {@link Edition}.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     */
+    void invalidate(Long editionId);
+
+    /**
+     * Invalidates the snapshots of the {@link Edition}s in which a news item
+     * is placed.
+     *
+     * @param newsItemId Unique identifier of the news item
+     */
+    void invalidateByNewsItem(Long newsItemId);
+
+    /**
+     * Invalidates the snapshot of the {@link Edition} of a stored placement.
+     *
+     * @param placementId Unique identifier of the placement
+     */
+    void invalidateByPlacement(Long placementId);
+
+    /**
+     * Invalidates the snapshots of the {@link Edition}s containing news items
+     * to which a media item is attached.
+     *
+     * @param mediaItemId Unique identifier of the media item
+     */
+    void invalidateByMediaItem(Long mediaItemId);
+
+    /**
+     * Deletes the snapshot of an {@link Edition}.
+     *
+     * @param editionId Unique identifier of the {@link Edition}
+     */
+    void delete(Long editionId);
+}
@@ -0,0 +1,249 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.utils.BloomFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Singleton holding an in-memory index of the external identifiers of the
+ * downloaded newswire items, used for detecting duplicates without querying
+ * the database for every incoming item.
+ * <p/>
+ * Each newswire service has a {@link BloomFilter} of all its committed
+ * external identifiers. An identifier rejected by the Bloom filter is known
+ * not to exist, every other identifier is only a candidate that must be
+ * confirmed against the database. The index of a service is synchronised
+ * incrementally from the database using the highest item identifier indexed,
+ * so that items downloaded on other nodes of the cluster are included.
+ * <p/>
+ * The number of services indexed is bounded. When the bound is exceeded the
+ * index of the least recently used service is discarded and rebuilt on its
+ * next lookup.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ExternalIdIndex {
+
+    private static final ExternalIdIndex INSTANCE = new ExternalIdIndex();
+
+    /** Probability of false positives of the Bloom filters. */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /** Minimum number of identifiers a Bloom filter is sized for. */
+    private static final int MINIMUM_CAPACITY = 10000;
+
+    /** Indices of the services in the order they were last used. */
+    private final Map<Long, ServiceIndex> indices =
+            new LinkedHashMap<Long, ServiceIndex>(16, 0.75f, true);
+
+    private ExternalIdIndex() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link ExternalIdIndex}.
+     *
+     * @return Singleton instance of {@link ExternalIdIndex}
+     */
+    public static ExternalIdIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the highest newswire item identifier indexed for a service.
+     *
+     * @param serviceId Unique identifier of the newswire service
+     * @return Highest newswire item identifier indexed, or {@code 0} if
+     *         the service has not been indexed
+     */
+    public long getLastItemId(Long serviceId) {
+        ServiceIndex index = get(serviceId);
+        if (index == null) {
+            return 0;
+        }
+        synchronized (index) {
+            return index.lastItemId;
+        }
+    }
+
+    /**
+     * Determines if the index of a service must be rebuilt, either because
+     * it has not been built or because it holds more identifiers than its
+     * Bloom filter was sized for.
+     *
+     * @param serviceId Unique identifier of the newswire service
+     * @return {@code true} if the index of the service must be rebuilt
+     */
+    public boolean isRebuildRequired(Long serviceId) {
+        ServiceIndex index = get(serviceId);
+        if (index == null) {
+            return true;
+        }
+        synchronized (index) {
+            return index.filter.isOverCapacity();
+        }
+    }
+
+    /**
+     * Creates an empty index for rebuilding the index of a service. The
+     * identifiers are added to the new index in pages using
+     * {@link ServiceIndex#add(Collection, long)}, and the index is put in
+     * place using {@link #rebuild(Long, ServiceIndex, int)} once complete, so
+     * that lookups never see a partial index.
+     *
+     * @param expectedSize Number of identifiers expected in the index
+     * @return Empty index
+     */
+    ServiceIndex createIndex(long expectedSize) {
+        return new ServiceIndex((int) Math.min(Integer.MAX_VALUE / 2,
+                Math.max(MINIMUM_CAPACITY, expectedSize * 2)));
+    }
+
+    /**
+     * Replaces the index of a service. The index of the least recently used
+     * service is discarded if more than {@code maxSize} services are indexed.
+     *
+     * @param serviceId Unique identifier of the newswire service
+     * @param index     Complete index of the service
+     * @param maxSize   Maximum number of services indexed
+     */
+    void rebuild(Long serviceId, ServiceIndex index, int maxSize) {
+        synchronized (indices) {
+            indices.put(serviceId, index);
+            Iterator<Long> eldest = indices.keySet().iterator();
+            while (indices.size() > Math.max(1, maxSize)) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Adds the external identifiers of newly downloaded items to the index of
+     * a service. Must only be invoked once the items have been committed.
+     *
+     * @param serviceId   Unique identifier of the newswire service
+     * @param externalIds External identifiers to add
+     * @param lastItemId  Highest newswire item identifier included, or
+     *                    {@code 0} if unknown
+     */
+    public void add(Long serviceId, Collection<String> externalIds,
+            long lastItemId) {
+        ServiceIndex index = get(serviceId);
+        if (index == null) {
+            return;
+        }
+        index.add(externalIds, lastItemId);
+    }
+
+    /**
+     * Checks a batch of external identifiers against the index of a service.
+     * Identifiers that might exist are returned and must be checked against
+     * the database.
+     *
+     * @param serviceId   Unique identifier of the newswire service
+     * @param externalIds External identifiers to check
+     * @return {@link List} of identifiers that might exist
+     */
+    public List<String> findCandidates(Long serviceId,
+            Collection<String> externalIds) {
+        List<String> candidates = new ArrayList<String>();
+        ServiceIndex index = get(serviceId);
+        if (index == null) {
+            for (String externalId : externalIds) {
+                if (externalId != null) {
+                    candidates.add(externalId);
+                }
+            }
+            return candidates;
+        }
+
+        synchronized (index) {
+            for (String externalId : externalIds) {
+                if (externalId != null && index.filter.mightContain(
+                        externalId)) {
+                    candidates.add(externalId);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Discards the index of a service. The index is rebuilt on the next
+     * lookup. Must be invoked when items are removed from the service, as
+     * identifiers cannot be removed from a {@link BloomFilter}.
+     *
+     * @param serviceId Unique identifier of the newswire service
+     */
+    public void invalidate(Long serviceId) {
+        synchronized (indices) {
+            indices.remove(serviceId);
+        }
+    }
+
+    /**
+     * Discards the indices of all services.
+     */
+    public void invalidateAll() {
+        synchronized (indices) {
+            indices.clear();
+        }
+    }
+
+    private ServiceIndex get(Long serviceId) {
+        synchronized (indices) {
+            return indices.get(serviceId);
+        }
+    }
+
+    /**
+     * Index of the external identifiers of a single newswire service.
+     */
+    static class ServiceIndex {
+
+        private final BloomFilter filter;
+
+        private long lastItemId = 0;
+
+        ServiceIndex(int capacity) {
+            this.filter = new BloomFilter(capacity, FALSE_POSITIVE_PROBABILITY);
+        }
+
+        /**
+         * Adds external identifiers to the index.
+         *
+         * @param externalIds External identifiers to add
+         * @param lastItemId  Highest newswire item identifier included, or
+         *                    {@code 0} if unknown
+         */
+        synchronized void add(Collection<String> externalIds,
+                long lastItemId) {
+            for (String externalId : externalIds) {
+                if (externalId != null) {
+                    filter.add(externalId);
+                }
+            }
+            this.lastItemId = Math.max(this.lastItemId, lastItemId);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.core.job.Job.Status;
+import dk.i2m.converge.domain.JobQueueStatistics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Stateless session bean managing the persistent queue of asynchronous
+ * {@link Job}s.
+ * <p/>
+ * Jobs are persisted when enqueued and only their identifiers are sent to the
+ * JMS queues, inside the transaction of the caller. A job is dispatched only
+ * while its queue has fewer queued and running jobs than its concurrency
+ * limit, otherwise it stays pending until a job on the queue finishes or the
+ * {@link PeriodicTimer#JOB} timer runs. Failed jobs are retried with an
+ * exponentially increasing delay and kept as failed once all attempts are
+ * exhausted, so that they can be inspected and retried by an administrator.
+ * <p/>
+ * Status changes that may race with another node or delivery are made with
+ * conditional updates, so that a job is only queued and started once. Only
+ * one identical job can be waiting to be executed, as enforced by the unique
+ * active key of the job. Jobs are stored in a transaction of their own, so
+ * that an identical job enqueued concurrently is found rather than failing
+ * the transaction of the caller. A running job is owned by the server instance
+ * executing it and is only retried once that instance has restarted, as its
+ * execution cannot be interrupted.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Stateless
+public class JobServiceBean implements JobServiceLocal {
+
+    private static final Logger LOG =
+            Logger.getLogger(JobServiceBean.class.getName());
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final int DEFAULT_RETRY_DELAY = 60;
+
+    private static final int DEFAULT_TIMEOUT = 60;
+
+    private static final int DEFAULT_RETENTION = 7;
+
+    @EJB private DaoServiceLocal daoService;
+
+    @EJB private ConfigurationServiceLocal cfgService;
+
+    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+
+    @Resource(mappedName = "jms/editionServiceQueue") private Destination editionServiceQueue;
+
+    @Resource(mappedName = "jms/outletServiceQueue") private Destination outletServiceQueue;
+
+    @Resource(mappedName = "jms/newswireServiceQueue") private Destination newswireServiceQueue;
+
+    @Resource(mappedName = "jms/catalogueHookQueue") private Destination catalogueHookQueue;
+
+    @Resource private SessionContext ctx;
+
+    /** {@inheritDoc} */
+    @Override
+    public Job enqueue(Job job) {
+        return enqueue(Arrays.asList(job)).get(0);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Job> enqueue(List<Job> jobs) {
+        JobServiceLocal self = ctx.getBusinessObject(JobServiceLocal.class);
+        List<Job> enqueued = new ArrayList<Job>();
+        Set<Job.Queue> queues = EnumSet.noneOf(Job.Queue.class);
+        for (Job job : jobs) {
+            job.setStatus(Status.PENDING);
+            Job existing = findActive(job.getDeduplicationKey());
+            Job created = null;
+            if (existing == null) {
+                created = self.insert(job);
+            }
+            if (existing == null && created == null) {
+                // Enqueued concurrently and committed since the current
+                // transaction last read the job table
+                existing = self.findActive(job.getDeduplicationKey());
+                if (existing == null) {
+                    // ... and already started
+                    created = self.insert(job);
+                }
+            }
+
+            if (created != null) {
+                enqueued.add(created);
+                queues.add(job.getQueue());
+            } else if (existing != null) {
+                LOG.log(Level.FINE,
+                        "{0} is already waiting to be executed as job #{1}",
+                        new Object[]{job.getDeduplicationKey(),
+                            existing.getId()});
+                enqueued.add(existing);
+            } else {
+                LOG.log(Level.WARNING, "{0} could not be enqueued as it was "
+                        + "enqueued and started concurrently",
+                        job.getDeduplicationKey());
+                enqueued.add(job);
+            }
+        }
+        dispatch(queues);
+        return enqueued;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Job insert(Job job) {
+        try {
+            return daoService.create(job);
+        } catch (EJBException ex) {
+            // The unique active key was violated by an identical job
+            // enqueued concurrently
+            LOG.log(Level.FINE, "", ex);
+            ctx.setRollbackOnly();
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Job start(Long jobId) {
+        // Claimed by a single conditional update, so that the job is only
+        // started once if it is delivered more than once
+        int claimed = daoService.executeQuery(Job.CLAIM, QueryBuilder.with(
+                "id", jobId).and("queued", Status.QUEUED).and("running",
+                Status.RUNNING).and("owner", ServerInstance.NAME).and("now",
+                Calendar.getInstance()));
+        if (claimed == 0) {
+            return null;
+        }
+
+        try {
+            return daoService.findById(Job.class, jobId);
+        } catch (DataNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void finish(Long jobId, boolean successful, String message) {
+        Job job;
+        try {
+            job = daoService.findById(Job.class, jobId);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Job #{0} no longer exist", jobId);
+            return;
+        }
+
+        Calendar now = Calendar.getInstance();
+        job.setFinished(now);
+        job.setMessage(message);
+
+        int maxAttempts = job.getType() != null && job.getType().isRetryable()
+                ? getMaxAttempts() : 1;
+
+        Job waiting = findActive(job.getDeduplicationKey());
+
+        if (successful) {
+            job.setStatus(Status.COMPLETED);
+            job.setNextAttempt(null);
+        } else if (waiting != null && !waiting.equals(job)) {
+            // An identical job was enqueued while this one was running
+            job.setStatus(Status.FAILED);
+            job.setNextAttempt(null);
+            job.setMessage(message + " (superseded by job #" + waiting.getId()
+                    + ")");
+            LOG.log(Level.WARNING,
+                    "Job #{0} ({1}) failed and is superseded by job #{2}. {3}",
+                    new Object[]{job.getId(), job.getDeduplicationKey(),
+                        waiting.getId(), message});
+        } else if (job.getAttempts() < maxAttempts) {
+            // Exponential backoff: delay, 2 x delay, 4 x delay, ...
+            long delay = (long) getInteger(ConfigurationKey.JOB_RETRY_DELAY,
+                    DEFAULT_RETRY_DELAY) << Math.min(16, job.getAttempts() - 1);
+            Calendar next = (Calendar) now.clone();
+            next.add(Calendar.SECOND, (int) Math.min(Integer.MAX_VALUE, delay));
+            job.setStatus(Status.RETRYING);
+            job.setNextAttempt(next);
+            LOG.log(Level.WARNING,
+                    "Job #{0} ({1}) failed (attempt {2}), retrying at {3}. {4}",
+                    new Object[]{job.getId(), job.getDeduplicationKey(),
+                        job.getAttempts(), next.getTime(), message});
+        } else {
+            job.setStatus(Status.FAILED);
+            job.setNextAttempt(null);
+            LOG.log(Level.SEVERE, "Job #{0} ({1}) failed after {2} attempts. {3}",
+                    new Object[]{job.getId(), job.getDeduplicationKey(),
+                        job.getAttempts(), message});
+        }
+
+        daoService.update(job);
+        dispatch(EnumSet.of(job.getQueue()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void abort(Long jobId, String message) {
+        Job job;
+        try {
+            job = daoService.findById(Job.class, jobId);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Job #{0} no longer exist", jobId);
+            return;
+        }
+
+        job.setStatus(Status.FAILED);
+        job.setFinished(Calendar.getInstance());
+        job.setNextAttempt(null);
+        job.setMessage(message);
+        daoService.update(job);
+        LOG.log(Level.WARNING, "Job #{0} ({1}) was aborted. {2}",
+                new Object[]{job.getId(), job.getDeduplicationKey(), message});
+        dispatch(EnumSet.of(job.getQueue()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void retry(Long jobId) throws DataNotFoundException {
+        Job job = daoService.findById(Job.class, jobId);
+        if (job.getStatus() != Status.FAILED
+                && job.getStatus() != Status.RETRYING) {
+            return;
+        }
+        Job waiting = findActive(job.getDeduplicationKey());
+        if (waiting != null && !waiting.equals(job)) {
+            LOG.log(Level.INFO, "{0} is already waiting to be executed as job #{1}",
+                    new Object[]{job.getDeduplicationKey(), waiting.getId()});
+            return;
+        }
+        job.setStatus(Status.PENDING);
+        job.setAttempts(0);
+        job.setNextAttempt(null);
+        job.setMessage("");
+        daoService.update(job);
+        dispatch(EnumSet.of(job.getQueue()));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int processJobs() {
+        Calendar now = Calendar.getInstance();
+        Calendar expired = (Calendar) now.clone();
+        expired.add(Calendar.MINUTE, -getInteger(ConfigurationKey.JOB_TIMEOUT,
+                DEFAULT_TIMEOUT));
+
+        int interrupted = recoverJobs();
+
+        // Running jobs cannot be interrupted, so jobs running for too long
+        // are only reported. They are retried once their server instance
+        // has restarted
+        List<Job> stalled = daoService.findWithNamedQuery(Job.FIND_STALLED,
+                QueryBuilder.with("status", Status.RUNNING).and("expired",
+                expired).parameters());
+        for (Job job : stalled) {
+            LOG.log(Level.WARNING,
+                    "Job #{0} ({1}) has been running on {2} since {3}",
+                    new Object[]{job.getId(), job.getDeduplicationKey(),
+                        job.getOwner(), job.getStarted().getTime()});
+        }
+
+        // Dispatch jobs again if their message was lost. Should the original
+        // message still arrive, only one of the messages starts the job
+        int undelivered = daoService.executeQuery(Job.REQUEUE_UNDELIVERED,
+                QueryBuilder.with("queued", Status.QUEUED).and("pending",
+                Status.PENDING).and("expired", expired));
+
+        int due = daoService.executeQuery(Job.REQUEUE_DUE_RETRIES,
+                QueryBuilder.with("retrying", Status.RETRYING).and("pending",
+                Status.PENDING).and("now", now));
+
+        int dispatched = dispatch(EnumSet.allOf(Job.Queue.class));
+
+        Calendar retention = (Calendar) now.clone();
+        retention.add(Calendar.DAY_OF_MONTH, -getInteger(
+                ConfigurationKey.JOB_RETENTION, DEFAULT_RETENTION));
+        int purged = daoService.executeQuery(Job.DELETE_FINISHED,
+                QueryBuilder.with("status", Status.COMPLETED).and("before",
+                retention));
+
+        LOG.log(Level.FINE,
+                "{0} jobs dispatched, {1} interrupted, {2} stalled, {3} undelivered, {4} retried, {5} purged",
+                new Object[]{dispatched, interrupted, stalled.size(),
+                    undelivered, due, purged});
+        return dispatched;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int recoverJobs() {
+        JobServiceLocal self = ctx.getBusinessObject(JobServiceLocal.class);
+        List<Job> interrupted = daoService.findWithNamedQuery(
+                Job.FIND_INTERRUPTED, QueryBuilder.with("status",
+                Status.RUNNING).and("owner", ServerInstance.NAME).and("started",
+                ServerInstance.STARTED).
+                parameters());
+        for (Job job : interrupted) {
+            self.finish(job.getId(), false, "Job was interrupted by a restart");
+        }
+        return interrupted.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Job> findJobs(Status status, int start, int rows) {
+        return daoService.findWithNamedQuery(Job.FIND_BY_STATUS,
+                QueryBuilder.with("status", status), start, rows);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<JobQueueStatistics> getStatistics() {
+        Map<Job.Queue, JobQueueStatistics> statistics =
+                new EnumMap<Job.Queue, JobQueueStatistics>(Job.Queue.class);
+        for (Job.Queue queue : Job.Queue.values()) {
+            statistics.put(queue, new JobQueueStatistics(queue));
+        }
+
+        List rows = daoService.findWithNamedQuery(
+                Job.COUNT_BY_QUEUE_AND_STATUS);
+        for (Object row : rows) {
+            Object[] columns = (Object[]) row;
+            if (columns[0] != null && columns[1] != null) {
+                statistics.get((Job.Queue) columns[0]).setCount(
+                        (Status) columns[1], ((Number) columns[2]).longValue());
+            }
+        }
+        return new ArrayList<JobQueueStatistics>(statistics.values());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public Job findActive(String deduplicationKey) {
+        if (deduplicationKey == null) {
+            return null;
+        }
+        List<Job> jobs = daoService.findWithNamedQuery(
+                Job.FIND_ACTIVE_BY_DEDUPLICATION_KEY, QueryBuilder.with(
+                "deduplicationKey", deduplicationKey).parameters(), 1);
+        return jobs.isEmpty() ? null : jobs.get(0);
+    }
+
+    /**
+     * Dispatches the pending jobs of the given queues, in order of priority,
+     * within the concurrency limit of each queue.
+     *
+     * @param queues Queues to dispatch
+     * @return Number of jobs dispatched
+     */
+    private int dispatch(Collection<Job.Queue> queues) {
+        List<Job> jobs = new ArrayList<Job>();
+        for (Job.Queue queue : queues) {
+            int slots = getAvailableSlots(queue);
+            if (slots == 0) {
+                continue;
+            }
+            Map<String, Object> params = QueryBuilder.with("queue", queue).
+                    and("status", Status.PENDING).parameters();
+            if (slots < 0) {
+                jobs.addAll(daoService.findWithNamedQuery(Job.FIND_PENDING,
+                        params));
+            } else {
+                jobs.addAll(daoService.findWithNamedQuery(Job.FIND_PENDING,
+                        params, slots));
+            }
+        }
+        return send(jobs);
+    }
+
+    /**
+     * Gets the number of jobs that can be dispatched to a queue without
+     * exceeding its concurrency limit.
+     *
+     * @param queue Queue to check
+     * @return Number of jobs that can be dispatched, or {@code -1} if the
+     *         queue has no limit
+     */
+    private int getAvailableSlots(Job.Queue queue) {
+        int limit = getInteger(queue.getConcurrency(), 0);
+        if (limit <= 0) {
+            return -1;
+        }
+        List result = daoService.findWithNamedQuery(Job.COUNT_ACTIVE,
+                QueryBuilder.with("queue", queue).and("queued", Status.QUEUED).
+                and("running", Status.RUNNING).parameters());
+        long active = result.isEmpty() ? 0
+                : ((Number) result.get(0)).longValue();
+        return (int) Math.max(0, limit - active);
+    }
+
+    /**
+     * Sends jobs to their queues using a single JMS session. The messages are
+     * delivered when the current transaction commits. Jobs that could not be
+     * sent stay pending and are dispatched again by the job timer.
+     *
+     * @param jobs {@link Job}s to send
+     * @return Number of jobs sent
+     */
+    private int send(List<Job> jobs) {
+        if (jobs.isEmpty()) {
+            return 0;
+        }
+
+        int sent = 0;
+        Connection connection = null;
+        try {
+            connection = jmsConnectionFactory.createConnection();
+            Session session = connection.createSession(true,
+                    Session.AUTO_ACKNOWLEDGE);
+            Map<Job.Queue, MessageProducer> producers =
+                    new EnumMap<Job.Queue, MessageProducer>(Job.Queue.class);
+
+            for (Job job : jobs) {
+                MessageProducer producer = producers.get(job.getQueue());
+                if (producer == null) {
+                    producer = session.createProducer(getDestination(
+                            job.getQueue()));
+                    producers.put(job.getQueue(), producer);
+                }
+                int priority = job.getPriority() == null ? 4
+                        : Math.max(0, Math.min(9, job.getPriority()));
+
+                // Skipped if already queued by a concurrent dispatch
+                int queued = daoService.executeQuery(Job.MARK_QUEUED,
+                        QueryBuilder.with("id", job.getId()).and("pending",
+                        Status.PENDING).and("queued", Status.QUEUED).and("now",
+                        Calendar.getInstance()));
+                if (queued == 0) {
+                    continue;
+                }
+
+                MapMessage message = session.createMapMessage();
+                message.setLongProperty(Job.MESSAGE_PROPERTY, job.getId());
+                producer.send(message, DeliveryMode.PERSISTENT, priority, 0);
+                sent++;
+            }
+            session.close();
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Could not send {0} of {1} jobs. {2}",
+                    new Object[]{jobs.size() - sent, jobs.size(),
+                        ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+        return sent;
+    }
+
+    private Destination getDestination(Job.Queue queue) {
+        switch (queue) {
+            case EDITION:
+                return editionServiceQueue;
+            case OUTLET:
+                return outletServiceQueue;
+            case NEWSWIRE:
+                return newswireServiceQueue;
+            case CATALOGUE_HOOK:
+                return catalogueHookQueue;
+            default:
+                throw new IllegalArgumentException("Unknown queue " + queue);
+        }
+    }
+
+    private int getMaxAttempts() {
+        return getInteger(ConfigurationKey.JOB_MAX_ATTEMPTS,
+                DEFAULT_MAX_ATTEMPTS);
+    }
+
+    private int getInteger(ConfigurationKey key, int defaultValue) {
+        Integer value = cfgService.getInteger(key);
+        if (value == null || value < 0) {
+            return defaultValue;
+        }
+        return value;
+    }
+}
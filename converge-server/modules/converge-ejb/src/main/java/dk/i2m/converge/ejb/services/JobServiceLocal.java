@@ -0,0 +1,153 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.domain.JobQueueStatistics;
+import java.util.List;
+import javax.ejb.Local;
+
+/**
+ * Local interface for the service managing the persistent queue of
+ * asynchronous {@link Job}s.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Local
+public interface JobServiceLocal {
+
+    /**
+     * Enqueues a {@link Job}. The job is not enqueued if an identical job is
+     * already waiting to be executed. The job is stored in a transaction of
+     * its own, so that an identical job enqueued concurrently is detected by
+     * the unique active key of the job without failing the current
+     * transaction. The job is delivered to its queue when the current
+     * transaction commits, or by {@link #processJobs()} should the current
+     * transaction roll back.
+     *
+     * @param job {@link Job} to enqueue
+     * @return Enqueued {@link Job}, or the identical {@link Job} already
+     *         waiting to be executed
+     */
+    Job enqueue(Job job);
+
+    /**
+     * Enqueues a batch of {@link Job}s using a single JMS session.
+     *
+     * @param jobs {@link Job}s to enqueue
+     * @return Enqueued {@link Job}s, or the identical {@link Job}s already
+     *         waiting to be executed
+     * @see #enqueue(Job)
+     */
+    List<Job> enqueue(List<Job> jobs);
+
+    /**
+     * Stores a pending {@link Job} in a new transaction. Invoked by
+     * {@link #enqueue(List)}.
+     *
+     * @param job Pending {@link Job} to store
+     * @return Stored {@link Job}, or {@code null} if an identical job is
+     *         already waiting to be executed
+     */
+    Job insert(Job job);
+
+    /**
+     * Finds the {@link Job} waiting to be executed with a given
+     * deduplication key, in a new transaction so that jobs committed
+     * concurrently are found.
+     *
+     * @param deduplicationKey Deduplication key of the job
+     * @return {@link Job} waiting to be executed, or {@code null} if no job
+     *         with the key is waiting
+     */
+    Job findActive(String deduplicationKey);
+
+    /**
+     * Marks a queued {@link Job} as running. Invoked by the message-driven
+     * bean processing the queue before executing the job.
+     *
+     * @param jobId Unique identifier of the {@link Job}
+     * @return Running {@link Job}, or {@code null} if the job does not exist
+     *         or is not queued, in which case it must not be executed
+     */
+    Job start(Long jobId);
+
+    /**
+     * Records the outcome of an attempt at executing a {@link Job}. Failed
+     * jobs are retried with an exponentially increasing delay until the
+     * maximum number of attempts is reached.
+     *
+     * @param jobId      Unique identifier of the {@link Job}
+     * @param successful {@code true} if the attempt was successful
+     * @param message    Outcome message
+     */
+    void finish(Long jobId, boolean successful, String message);
+
+    /**
+     * Marks a {@link Job} as failed without retrying it, e.g. because the
+     * object it was to be executed on no longer exist.
+     *
+     * @param jobId   Unique identifier of the {@link Job}
+     * @param message Reason for the failure
+     */
+    void abort(Long jobId, String message);
+
+    /**
+     * Retries a failed {@link Job}.
+     *
+     * @param jobId Unique identifier of the {@link Job}
+     * @throws DataNotFoundException If the {@link Job} does not exist
+     */
+    void retry(Long jobId) throws DataNotFoundException;
+
+    /**
+     * Dispatches pending jobs, re-queues failed jobs due to be retried,
+     * recovers lost jobs, reports jobs running for too long and purges
+     * completed jobs. Invoked by the
+     * {@link PeriodicTimer#JOB} timer.
+     *
+     * @return Number of jobs dispatched
+     */
+    int processJobs();
+
+    /**
+     * Retries the {@link Job}s that were running on this server instance
+     * before it was restarted. Invoked when the server starts and by the
+     * {@link PeriodicTimer#JOB} timer.
+     *
+     * @return Number of interrupted jobs
+     */
+    int recoverJobs();
+
+    /**
+     * Gets the jobs with a given status, most recent first.
+     *
+     * @param status Status of the jobs
+     * @param start  First job to return
+     * @param rows   Maximum number of jobs to return
+     * @return {@link List} of {@link Job}s with the given status
+     */
+    List<Job> findJobs(Job.Status status, int start, int rows);
+
+    /**
+     * Gets the number of jobs of each status on each queue.
+     *
+     * @return {@link List} of {@link JobQueueStatistics}, one for each queue
+     */
+    List<JobQueueStatistics> getStatistics();
+}
@@ -0,0 +1,125 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.domain.CacheStatistics;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton caching the meta data extracted from files by the checksum of
+ * their content, so that uploading the same file again or regenerating its
+ * renditions does not extract the meta data again. The least recently used
+ * entries are evicted when the cache is full.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class MetaDataCache {
+
+    private static final MetaDataCache INSTANCE = new MetaDataCache();
+
+    private final LinkedHashMap<String, Map<String, String>> entries =
+            new LinkedHashMap<String, Map<String, String>>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private MetaDataCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link MetaDataCache}.
+     *
+     * @return Singleton instance of {@link MetaDataCache}
+     */
+    public static MetaDataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the meta data extracted from a file.
+     *
+     * @param checksum Checksum of the content of the file
+     * @return Copy of the cached meta data, or {@code null} if the meta data
+     *         of the file is not cached
+     */
+    public Map<String, String> get(String checksum) {
+        Map<String, String> metaData;
+        synchronized (entries) {
+            metaData = entries.get(checksum);
+        }
+        if (metaData == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new HashMap<String, String>(metaData);
+    }
+
+    /**
+     * Caches the meta data extracted from a file.
+     *
+     * @param checksum Checksum of the content of the file
+     * @param metaData Meta data extracted from the file
+     * @param maxSize  Maximum number of files cached
+     */
+    public void put(String checksum, Map<String, String> metaData,
+            int maxSize) {
+        Map<String, String> copy = Collections.unmodifiableMap(
+                new HashMap<String, String>(metaData));
+        synchronized (entries) {
+            entries.put(checksum, copy);
+            Iterator<String> eldest = entries.keySet().iterator();
+            while (entries.size() > Math.max(0, maxSize) && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    /**
+     * Gets a snapshot of the cache counters.
+     *
+     * @return Snapshot of the cache counters
+     */
+    public CacheStatistics getStatistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStatistics("Meta data", size, hits.get(),
+                misses.get(), invalidations.get());
+    }
+}
@@ -27,6 +27,7 @@ import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.EnrichException;
 import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
 import dk.i2m.converge.core.metadata.*;
+import dk.i2m.converge.domain.CacheStatistics;
 import dk.i2m.converge.ejb.facades.MetaDataFacadeLocal;
 import java.io.File;
 import java.io.IOException;
@@ -55,6 +56,7 @@ import org.apache.sanselan.common.IImageMetadata;
 import org.apache.sanselan.common.ImageMetadata;
 import org.apache.sanselan.formats.tiff.TiffImageMetadata;
 import org.apache.sanselan.formats.tiff.TiffImageMetadata.Item;
+import org.apache.tika.Tika;
 import org.blinkenlights.jid3.ID3Exception;
 import org.blinkenlights.jid3.ID3Tag;
 import org.blinkenlights.jid3.MP3File;
@@ -84,46 +86,152 @@ public class MetaDataService implements MetaDataServiceLocal {
     private static final String NS_PHOTOSHOP =
             "http://ns.adobe.com/photoshop/1.0/";
 
+    /** Detector of the content type of files. */
+    private static final Tika TIKA = new Tika();
+
     @EJB private ConfigurationServiceLocal cfgService;
 
     @EJB private MetaDataFacadeLocal metaDataFacade;
 
-    /** {@inheritDoc } */
+    /**
+     * Extracts the meta data of a file. The content type of the file is
+     * detected from its header, and only the extractors handling the content
+     * type are used. Image meta data is parsed from the header bytes read
+     * when the checksum was calculated rather than by reopening the file for
+     * each extractor. The meta data is cached by the checksum of the file.
+     *
+     * @param location Location of the file
+     * @return {@link Map} of meta data extracted from the file
+     */
     @Override
     public Map<String, String> extract(String location) {
-        Map<String, String> metaData = new HashMap<String, String>();
-
+        MetaDataSource source;
         try {
-            metaData.putAll(extractFromMp3(location));
-        } catch (CannotExtractMetaDataException ex) {
-            LOG.log(Level.FINE, ex.getMessage());
+            source = MetaDataSource.open(new File(location));
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Could not read {0}. {1}",
+                    new Object[]{location, ex.getMessage()});
+            return new HashMap<String, String>();
         }
 
-        try {
-            metaData.putAll(extractXmp(location));
-        } catch (CannotExtractMetaDataException ex) {
-            LOG.log(Level.FINE, ex.getMessage());
+        MetaDataCache cache = MetaDataCache.getInstance();
+        Map<String, String> metaData = cache.get(source.getChecksum());
+        if (metaData != null) {
+            return metaData;
         }
 
-        try {
-            metaData.putAll(extractIPTC(location));
-        } catch (CannotExtractMetaDataException ex) {
-            LOG.log(Level.FINE, ex.getMessage());
+        String contentType = TIKA.detect(source.getHeader(),
+                source.getFile().getName());
+        LOG.log(Level.FINE, "Extracting meta data from {0} [{1}]",
+                new Object[]{location, contentType});
+
+        metaData = new HashMap<String, String>();
+        for (MetaDataExtractor extractor : getExtractors(contentType)) {
+            try {
+                switch (extractor) {
+                    case MP3:
+                        metaData.putAll(extractFromMp3(location));
+                        break;
+                    case IMAGE:
+                        metaData.putAll(extractImage(source));
+                        break;
+                    case MEDIA_CONTAINER:
+                        metaData.putAll(extractMediaContainer(location));
+                        break;
+                }
+            } catch (CannotExtractMetaDataException ex) {
+                LOG.log(Level.FINE, ex.getMessage());
+            }
         }
 
+        cache.put(source.getChecksum(), metaData, cfgService.getInteger(
+                ConfigurationKey.METADATA_CACHE_SIZE));
+        return metaData;
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return MetaDataCache.getInstance().getStatistics();
+    }
+
+    /**
+     * Determines the extractors handling a given content type. Files of an
+     * unknown content type are passed to all the extractors.
+     *
+     * @param contentType Content type detected from the header of the file
+     * @return Extractors handling the content type
+     */
+    static EnumSet<MetaDataExtractor> getExtractors(String contentType) {
+        if (contentType == null
+                || contentType.equals("application/octet-stream")) {
+            return EnumSet.allOf(MetaDataExtractor.class);
+        } else if (contentType.startsWith("image/")) {
+            return EnumSet.of(MetaDataExtractor.IMAGE);
+        } else if (contentType.equals("audio/mpeg")) {
+            return EnumSet.of(MetaDataExtractor.MP3,
+                    MetaDataExtractor.MEDIA_CONTAINER);
+        } else if (contentType.startsWith("audio/")
+                || contentType.startsWith("video/")
+                || contentType.equals("application/mp4")
+                || contentType.equals("application/ogg")
+                || contentType.equals("application/x-shockwave-flash")) {
+            return EnumSet.of(MetaDataExtractor.MEDIA_CONTAINER);
+        }
+        // Documents and other files without extractable meta data
+        return EnumSet.noneOf(MetaDataExtractor.class);
+    }
+
+    /**
+     * Extracts the XMP, IPTC and image information of an image from the
+     * bytes of the {@link MetaDataSource}, falling back to the file if the
+     * image could not be parsed from a truncated header.
+     *
+     * @param source {@link MetaDataSource} of the image
+     * @return {@link Map} of image meta data
+     * @throws CannotExtractMetaDataException If the image information could
+     *                                        not be extracted
+     */
+    private Map<String, String> extractImage(MetaDataSource source) throws
+            CannotExtractMetaDataException {
+        byte[] bytes = source.getImageBytes();
+        if (bytes != null) {
+            try {
+                return extractImage(new ImageSource(bytes));
+            } catch (CannotExtractMetaDataException ex) {
+                if (!source.isImageBytesTruncated()) {
+                    throw ex;
+                }
+                LOG.log(Level.FINE, "Could not parse the header of {0}. {1}",
+                        new Object[]{source.getFile(), ex.getMessage()});
+            }
+        }
+        return extractImage(new ImageSource(source.getFile()));
+    }
+
+    /**
+     * Extracts the XMP, IPTC and image information of an image.
+     *
+     * @param image Image to extract the meta data from
+     * @return {@link Map} of image meta data
+     * @throws CannotExtractMetaDataException If the image information could
+     *                                        not be extracted
+     */
+    private Map<String, String> extractImage(ImageSource image) throws
+            CannotExtractMetaDataException {
+        Map<String, String> properties = new HashMap<String, String>();
         try {
-            metaData.putAll(extractImageInfo(location));
+            properties.putAll(extractXmp(image));
         } catch (CannotExtractMetaDataException ex) {
             LOG.log(Level.FINE, ex.getMessage());
         }
-
         try {
-            metaData.putAll(extractMediaContainer(location));
+            properties.putAll(extractIPTC(image));
         } catch (CannotExtractMetaDataException ex) {
             LOG.log(Level.FINE, ex.getMessage());
         }
-
-        return metaData;
+        properties.putAll(extractImageInfo(image));
+        return properties;
     }
 
     /** {@inheritDoc } */
@@ -176,9 +284,14 @@ public class MetaDataService implements MetaDataServiceLocal {
     @Override
     public Map<String, String> extractXmp(String location) throws
             CannotExtractMetaDataException {
+        return extractXmp(new ImageSource(new File(location)));
+    }
+
+    private Map<String, String> extractXmp(ImageSource image) throws
+            CannotExtractMetaDataException {
         Map<String, String> properties = new HashMap<String, String>();
         try {
-            String xml = Sanselan.getXmpXml(new File(location));
+            String xml = image.getXmpXml();
 
             if (xml == null) {
                 return properties;
@@ -239,10 +352,15 @@ public class MetaDataService implements MetaDataServiceLocal {
     @Override
     public Map<String, String> extractIPTC(String location) throws
             CannotExtractMetaDataException {
+        return extractIPTC(new ImageSource(new File(location)));
+    }
+
+    private Map<String, String> extractIPTC(ImageSource image) throws
+            CannotExtractMetaDataException {
         Map<String, String> properties = new HashMap<String, String>();
 
         try {
-            IImageMetadata meta = Sanselan.getMetadata(new File(location));
+            IImageMetadata meta = image.getMetadata();
 
             if (meta != null) {
                 ArrayList items = meta.getItems();
@@ -277,10 +395,15 @@ public class MetaDataService implements MetaDataServiceLocal {
     @Override
     public Map<String, String> extractImageInfo(String location) throws
             CannotExtractMetaDataException {
+        return extractImageInfo(new ImageSource(new File(location)));
+    }
+
+    private Map<String, String> extractImageInfo(ImageSource image) throws
+            CannotExtractMetaDataException {
         Map<String, String> properties = new HashMap<String, String>();
 
         try {
-            ImageInfo imageInfo = Sanselan.getImageInfo(new File(location));
+            ImageInfo imageInfo = image.getImageInfo();
 
             if (imageInfo != null) {
                 properties.put("colourSpace",
@@ -576,7 +699,20 @@ public class MetaDataService implements MetaDataServiceLocal {
     /** {@inheritDoc } */
     @Override
     public String extractContent(MediaItemRendition mir) {
-        String contentType = mir.getContentType();
+        return extractContent(mir.getContentType(), mir.getAbsoluteFilename());
+    }
+
+    /**
+     * Extracts the content of a document. This is only possible for Microsoft
+     * Word and Adobe PDF documents containing text. The extraction only
+     * depends on its arguments, so it can be done outside the container,
+     * e.g. on a worker thread.
+     *
+     * @param contentType Content type of the document
+     * @param location    URL of the document
+     * @return Extractable content of the document
+     */
+    public static String extractContent(String contentType, String location) {
         String story = "";
 
         if (contentType == null) {
@@ -587,7 +723,7 @@ public class MetaDataService implements MetaDataServiceLocal {
         if (contentType.equals("application/pdf")) {
             // Extract text in PDF
             try {
-                URL originalFile = new URL(mir.getAbsoluteFilename());
+                URL originalFile = new URL(location);
                 PDDocument doc = null;
                 try {
                     // Read PDF
@@ -618,7 +754,7 @@ public class MetaDataService implements MetaDataServiceLocal {
                 || contentType.equals(
                 "application/vnd.openxmlformats-officedocument.wordprocessingml.document")) {
             try {
-                URL originalFile = new URL(mir.getAbsoluteFilename());
+                URL originalFile = new URL(location);
                 HWPFDocument doc = new HWPFDocument(originalFile.openStream());
                 WordExtractor extractor = new WordExtractor(doc);
                 story = extractor.getText();
@@ -628,4 +764,52 @@ public class MetaDataService implements MetaDataServiceLocal {
         }
         return story;
     }
+
+    /**
+     * Extractors used by {@link #extract(java.lang.String)}.
+     */
+    enum MetaDataExtractor {
+
+        /** ID3 tags of MP3 files. */
+        MP3,
+        /** XMP, IPTC and image information of images. */
+        IMAGE,
+        /** Streams and meta data of audio and video containers. */
+        MEDIA_CONTAINER
+    }
+
+    /**
+     * Image parsed by Sanselan, either from bytes in memory or from a file.
+     */
+    private static class ImageSource {
+
+        private final byte[] bytes;
+
+        private final File file;
+
+        ImageSource(byte[] bytes) {
+            this.bytes = bytes;
+            this.file = null;
+        }
+
+        ImageSource(File file) {
+            this.bytes = null;
+            this.file = file;
+        }
+
+        String getXmpXml() throws ImageReadException, IOException {
+            return bytes != null ? Sanselan.getXmpXml(bytes)
+                    : Sanselan.getXmpXml(file);
+        }
+
+        IImageMetadata getMetadata() throws ImageReadException, IOException {
+            return bytes != null ? Sanselan.getMetadata(bytes)
+                    : Sanselan.getMetadata(file);
+        }
+
+        ImageInfo getImageInfo() throws ImageReadException, IOException {
+            return bytes != null ? Sanselan.getImageInfo(bytes)
+                    : Sanselan.getImageInfo(file);
+        }
+    }
 }
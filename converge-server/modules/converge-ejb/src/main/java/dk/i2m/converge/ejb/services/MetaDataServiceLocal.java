@@ -100,4 +100,11 @@ public interface MetaDataServiceLocal {
      */
     java.lang.String extractContent(
             dk.i2m.converge.core.content.catalogue.MediaItemRendition mir);
+
+    /**
+     * Gets the hit and miss counters of the meta data cache.
+     *
+     * @return Snapshot of the meta data cache counters
+     */
+    dk.i2m.converge.domain.CacheStatistics getCacheStatistics();
 }
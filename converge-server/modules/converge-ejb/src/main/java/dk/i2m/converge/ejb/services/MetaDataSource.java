@@ -0,0 +1,229 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * View of a file from which meta data is extracted. The file is read once
+ * through a memory-mapped buffer to calculate its checksum, and the header
+ * bytes are retained for detecting the content type and for parsing image
+ * meta data without reopening the file.
+ *
+ * @author Allan Lykke Christensen
+ */
+class MetaDataSource {
+
+    /** Number of bytes retained for detecting the content type. */
+    static final int HEADER_SIZE = 8 * 1024;
+
+    /** Number of bytes mapped into memory at a time. */
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final File file;
+
+    private final long size;
+
+    private final String checksum;
+
+    /** First window of the file, or {@code null} if the file is empty. */
+    private final ByteBuffer start;
+
+    private MetaDataSource(File file, long size, String checksum,
+            ByteBuffer start) {
+        this.file = file;
+        this.size = size;
+        this.checksum = checksum;
+        this.start = start;
+    }
+
+    /**
+     * Opens a file and calculates its checksum.
+     *
+     * @param file File to open
+     * @return {@link MetaDataSource} of the file
+     * @throws IOException If the file could not be read
+     */
+    static MetaDataSource open(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex.getMessage());
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            ByteBuffer start = null;
+            for (long position = 0; position < size; position += WINDOW_SIZE) {
+                MappedByteBuffer window = channel.map(
+                        FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(WINDOW_SIZE, size - position));
+                if (start == null) {
+                    start = window.duplicate();
+                }
+                digest.update(window);
+            }
+            return new MetaDataSource(file, size, toHex(digest.digest()),
+                    start);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Gets the file of the source.
+     *
+     * @return File of the source
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the MD5 checksum of the content of the file.
+     *
+     * @return Hexadecimal MD5 checksum of the file
+     */
+    String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Gets the first {@link #HEADER_SIZE} bytes of the file.
+     *
+     * @return Header bytes of the file
+     */
+    byte[] getHeader() {
+        return copy(Math.min(HEADER_SIZE, getStartLength()));
+    }
+
+    /**
+     * Gets the bytes needed for parsing the meta data of an image without
+     * reopening the file. For JPEG images only the segments preceding the
+     * image data are returned, as they hold all the meta data. Other images
+     * are returned in full if they fit in the mapped window.
+     *
+     * @return Bytes of the image meta data, or {@code null} if the image must
+     *         be parsed from the file
+     */
+    byte[] getImageBytes() {
+        int length = getJpegHeaderLength();
+        if (length > 0) {
+            byte[] bytes = new byte[length + 2];
+            ByteBuffer view = start.duplicate();
+            view.position(0);
+            view.get(bytes, 0, length);
+            // Terminate the truncated image with an End Of Image marker
+            bytes[length] = (byte) 0xFF;
+            bytes[length + 1] = (byte) 0xD9;
+            return bytes;
+        }
+        if (start != null && size == getStartLength()) {
+            return copy(getStartLength());
+        }
+        return null;
+    }
+
+    /**
+     * Determines if {@link #getImageBytes()} only contains the header of the
+     * image.
+     *
+     * @return {@code true} if the image bytes are truncated
+     */
+    boolean isImageBytesTruncated() {
+        return getJpegHeaderLength() > 0;
+    }
+
+    /**
+     * Finds the length of the JPEG segments up to and including the Start Of
+     * Scan segment.
+     *
+     * @return Length of the JPEG header, or {@code -1} if the file is not a
+     *         JPEG image or the header is not within the mapped window
+     */
+    int getJpegHeaderLength() {
+        int limit = getStartLength();
+        if (limit < 4 || unsigned(0) != 0xFF || unsigned(1) != 0xD8) {
+            return -1;
+        }
+        int position = 2;
+        while (position + 4 <= limit) {
+            if (unsigned(position) != 0xFF) {
+                return -1;
+            }
+            int marker = unsigned(position + 1);
+            if (marker == 0xFF) {
+                // Fill byte
+                position++;
+            } else if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                // Stand-alone markers without a length
+                position += 2;
+            } else if (marker == 0xD9) {
+                return -1;
+            } else {
+                int length = (unsigned(position + 2) << 8)
+                        | unsigned(position + 3);
+                int end = position + 2 + length;
+                if (length < 2 || end > limit) {
+                    return -1;
+                }
+                if (marker == 0xDA) {
+                    return end;
+                }
+                position = end;
+            }
+        }
+        return -1;
+    }
+
+    private int getStartLength() {
+        return start == null ? 0 : start.limit();
+    }
+
+    private int unsigned(int index) {
+        return start.get(index) & 0xFF;
+    }
+
+    private byte[] copy(int length) {
+        byte[] bytes = new byte[length];
+        if (length > 0) {
+            ByteBuffer view = start.duplicate();
+            view.position(0);
+            view.get(bytes);
+        }
+        return bytes;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
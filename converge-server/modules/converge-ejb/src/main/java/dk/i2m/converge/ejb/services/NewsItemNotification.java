@@ -0,0 +1,55 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+/**
+ * Enumeration of notifications sent to the current actors of a news item and
+ * the message bundle key containing the message of the notification.
+ *
+ * @author Allan Lykke Christensen
+ */
+public enum NewsItemNotification {
+
+    /**
+     * The news item was assigned to the current actors. The message is
+     * formatted with the title, deadline and sender of the news item. The
+     * sender is not notified.
+     */
+    STORY_ASSIGNED("notification_MSG_STORY_ASSIGNED", false),
+    /**
+     * The briefing of the news item was updated. The message is formatted
+     * with the title and sender of the news item.
+     */
+    BRIEFING_UPDATED("notification_MSG_STORY_BRIEFING_UPDATED", true);
+
+    private final String messageKey;
+
+    private final boolean notifySender;
+
+    NewsItemNotification(String messageKey, boolean notifySender) {
+        this.messageKey = messageKey;
+        this.notifySender = notifySender;
+    }
+
+    public String messageKey() {
+        return messageKey;
+    }
+
+    public boolean notifySender() {
+        return notifySender;
+    }
+}
@@ -19,20 +19,22 @@ package dk.i2m.converge.ejb.services;
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.content.ContentTag;
+import dk.i2m.converge.core.job.Job;
 import dk.i2m.converge.core.newswire.*;
 import dk.i2m.converge.core.plugin.NewswireDecoder;
 import dk.i2m.converge.core.plugin.PluginManager;
 import dk.i2m.converge.core.search.SearchEngineIndexingException;
 import dk.i2m.converge.core.security.UserAccount;
 import dk.i2m.converge.core.security.UserRole;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.domain.search.SearchFacet;
 import dk.i2m.converge.domain.search.SearchResult;
 import dk.i2m.converge.domain.search.SearchResults;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.facades.UserFacadeLocal;
-import dk.i2m.converge.ejb.messaging.NewswireDecoderMessageBean;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.net.URL;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.text.ParseException;
@@ -42,14 +44,14 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.ejb.*;
-import javax.jms.*;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 import org.apache.commons.lang.StringUtils;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.SolrServer;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
-import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
 import org.apache.solr.client.solrj.response.FacetField;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
@@ -67,6 +69,14 @@ public class NewswireServiceBean implements NewswireServiceLocal {
     private static final Logger LOG =
             Logger.getLogger(NewswireServiceBean.class.getName());
 
+    private static final Random RANDOM = new Random();
+
+    /** Maximum number of external identifiers checked in a single query. */
+    private static final int EXTERNAL_ID_LOOKUP_SIZE = 500;
+
+    /** Maximum number of external identifiers loaded in a single query. */
+    private static final int EXTERNAL_ID_PAGE_SIZE = 5000;
+
     private ResourceBundle msgs = ResourceBundle.getBundle(
             "dk.i2m.converge.i18n.ServiceMessages");
 
@@ -82,11 +92,11 @@ public class NewswireServiceBean implements NewswireServiceLocal {
 
     @EJB private SystemFacadeLocal systemFacade;
 
-    @Resource private SessionContext ctx;
+    @EJB private JobServiceLocal jobService;
 
-    @Resource(mappedName = "jms/newswireServiceQueue") private Destination destination;
+    @Resource private SessionContext ctx;
 
-    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+    @Resource private TransactionSynchronizationRegistry txRegistry;
 
     @Override
     public NewswireBasket createBasket(NewswireBasket basket) {
@@ -309,6 +319,7 @@ public class NewswireServiceBean implements NewswireServiceLocal {
                 QueryBuilder qb = QueryBuilder.with("id", newswireServiceId).and(
                         "expirationDate", expirationDate);
                 daoService.executeQuery(NewswireService.DELETE_EXPIRED_ITEMS, qb);
+                ExternalIdIndex.getInstance().invalidate(newswireServiceId);
 
             } catch (SolrServerException ex) {
                 LOG.log(Level.SEVERE,
@@ -388,18 +399,26 @@ public class NewswireServiceBean implements NewswireServiceLocal {
     }
 
     /**
-     * Schedules the download of all active newswire services.
+     * Schedules the download of all active newswire services, regardless of
+     * when they are due. Services already being downloaded are skipped.
      */
     @Override
     public void downloadNewswireServices() {
-        List<NewswireService> services = findActiveNewswireServices();
-        for (NewswireService service : services) {
-            try {
-                downloadNewswireService(service.getId());
-            } catch (DataNotFoundException ex) {
-                // Unknown newswire
-            }
-        }
+        dispatch(findActiveNewswireServices());
+    }
+
+    /**
+     * Schedules the download of the active newswire services that are due.
+     * Services that would exceed the global or per-host concurrency limits
+     * are deferred to the next run.
+     */
+    @Override
+    public void downloadDueNewswireServices() {
+        List<NewswireService> services = daoService.findWithNamedQuery(
+                NewswireService.FIND_DUE,
+                QueryBuilder.with("now", Calendar.getInstance()).and("expired",
+                getLeaseExpiration()).parameters());
+        dispatch(services);
     }
 
     /**
@@ -413,39 +432,187 @@ public class NewswireServiceBean implements NewswireServiceLocal {
 
         NewswireService service = findById(id);
 
-        if (service.isProcessing()) {
+        NewswireServiceLocal self = ctx.getBusinessObject(
+                NewswireServiceLocal.class);
+        if (!self.acquireProcessingLease(id)) {
             LOG.log(Level.INFO, "{0} is already being downloaded", service.
                     getSource());
             return;
-        } else {
-            startProcessingNewswireService(id);
         }
 
-        Connection conn = null;
+        sendFetchMessage(service, self);
+    }
+
+    /**
+     * Dispatches the download of the given {@link NewswireService}s within
+     * the configured concurrency limits.
+     *
+     * @param services Candidate {@link NewswireService}s
+     */
+    private void dispatch(List<NewswireService> services) {
+        if (services.isEmpty()) {
+            return;
+        }
+
+        int maxFetches = cfgService.getInteger(
+                ConfigurationKey.NEWSWIRE_MAX_CONCURRENT_FETCHES);
+        int maxFetchesPerHost = cfgService.getInteger(
+                ConfigurationKey.NEWSWIRE_MAX_CONCURRENT_FETCHES_PER_HOST);
+
+        List<NewswireService> leased = daoService.findWithNamedQuery(
+                NewswireService.FIND_LEASED, QueryBuilder.with("expired",
+                getLeaseExpiration()).parameters());
+
+        int fetching = leased.size();
+        Map<String, Integer> fetchingPerHost = new HashMap<String, Integer>();
+        for (NewswireService service : leased) {
+            countHost(fetchingPerHost, getHost(service));
+        }
+
+        NewswireServiceLocal self = ctx.getBusinessObject(
+                NewswireServiceLocal.class);
+        int dispatched = 0;
+        int deferred = 0;
+        for (NewswireService service : services) {
+            if (maxFetches > 0 && fetching >= maxFetches) {
+                deferred++;
+                continue;
+            }
+
+            String host = getHost(service);
+            if (host != null && maxFetchesPerHost > 0
+                    && countHost(fetchingPerHost, host, 0) >= maxFetchesPerHost) {
+                deferred++;
+                continue;
+            }
+
+            if (self.acquireProcessingLease(service.getId())
+                    && sendFetchMessage(service, self)) {
+                fetching++;
+                countHost(fetchingPerHost, host);
+                dispatched++;
+            }
+        }
+
+        LOG.log(Level.FINE,
+                "{0} newswire services dispatched, {1} deferred, {2} being fetched",
+                new Object[]{dispatched, deferred, fetching});
+    }
+
+    /**
+     * Enqueues a job requesting the download of a {@link NewswireService}.
+     * The processing lease of the service must be held. It is released when
+     * the download completes, or expires if the job is never executed. If
+     * the job could not be enqueued, the lease is released and the service
+     * is retried after a short delay.
+     *
+     * @param service {@link NewswireService} to download
+     * @param self    Business object of this bean, for releasing the lease in
+     *                a new transaction
+     * @return {@code true} if the job was enqueued
+     */
+    private boolean sendFetchMessage(NewswireService service,
+            NewswireServiceLocal self) {
         try {
-            conn = jmsConnectionFactory.createConnection();
-            Session session = conn.createSession(true, Session.AUTO_ACKNOWLEDGE);
+            jobService.enqueue(Job.newswireFetch(service.getId()));
+        } catch (RuntimeException ex) {
+            LOG.log(Level.SEVERE, "Could not dispatch newswire service {0}. {1}",
+                    new Object[]{service.getSource(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+            self.stopProcessingNewswireService(service.getId(), false);
+            return false;
+        }
+        TaskMonitor.getInstance().queued(
+                TaskStatistics.Category.NEWSWIRE_FETCH, service.getSource());
+        return true;
+    }
+
+    /**
+     * Gets the time before which processing leases are considered expired.
+     *
+     * @return Time before which processing leases are expired
+     */
+    private Calendar getLeaseExpiration() {
+        Calendar expired = Calendar.getInstance();
+        expired.add(Calendar.MINUTE, -cfgService.getInteger(
+                ConfigurationKey.NEWSWIRE_LEASE_TIMEOUT));
+        return expired;
+    }
 
-            MessageProducer producer = session.createProducer(destination);
+    /**
+     * Calculates the time of the next fetch of a {@link NewswireService}. The
+     * interval of the service is randomly varied by
+     * {@link ConfigurationKey#NEWSWIRE_FETCH_JITTER} percent so that services
+     * with the same interval do not stay aligned.
+     *
+     * @param service {@link NewswireService} that was fetched
+     * @return Time of the next fetch
+     */
+    private Calendar getNextFetch(NewswireService service) {
+        int interval = service.getFetchInterval() == null ? 0 : service.
+                getFetchInterval();
+        if (interval < 1) {
+            interval = cfgService.getInteger(ConfigurationKey.NEWSWIRE_INTERVAL);
+        }
+        int jitter = cfgService.getInteger(ConfigurationKey.NEWSWIRE_FETCH_JITTER);
 
-            MapMessage msg = session.createMapMessage();
-            msg.setLongProperty(NewswireDecoderMessageBean.NEWSWIRE_SERVICE_ID,
-                    id);
-            producer.send(msg);
+        long delay = interval * 60L * 1000L;
+        if (jitter > 0) {
+            double variation = (RANDOM.nextDouble() * 2 - 1) * jitter / 100d;
+            delay += (long) (delay * variation);
+        }
 
-            session.close();
-            conn.close();
-        } catch (JMSException ex) {
-            LOG.log(Level.SEVERE, null, ex);
-        } finally {
-            if (conn != null) {
-                try {
-                    conn.close();
-                } catch (Exception e) {
+        Calendar nextFetch = Calendar.getInstance();
+        nextFetch.setTimeInMillis(nextFetch.getTimeInMillis() + delay);
+        return nextFetch;
+    }
+
+    /**
+     * Determines the host contacted by a {@link NewswireService}. The host is
+     * taken from the first property containing a URL, or alternatively a
+     * property with a key containing {@code HOST} or {@code SERVER}.
+     *
+     * @param service {@link NewswireService} for which to determine the host
+     * @return Host contacted by the {@link NewswireService} or {@code null}
+     *         if the host could not be determined
+     */
+    private String getHost(NewswireService service) {
+        for (NewswireServiceProperty property : service.getProperties()) {
+            String value = property.getValue();
+            if (StringUtils.isBlank(value)) {
+                continue;
+            }
+            try {
+                String host = new URL(value.trim()).getHost();
+                if (!StringUtils.isBlank(host)) {
+                    return host.toLowerCase();
                 }
+            } catch (MalformedURLException ex) {
+                // Not a URL
+            }
+        }
+
+        for (NewswireServiceProperty property : service.getProperties()) {
+            String key = property.getKey() == null ? "" : property.getKey().
+                    toUpperCase();
+            if ((key.contains("HOST") || key.contains("SERVER"))
+                    && !StringUtils.isBlank(property.getValue())) {
+                return property.getValue().trim().toLowerCase();
             }
         }
-        stopProcessingNewswireService(id);
+        return null;
+    }
+
+    private void countHost(Map<String, Integer> hosts, String host) {
+        if (host != null) {
+            hosts.put(host, countHost(hosts, host, 0) + 1);
+        }
+    }
+
+    private int countHost(Map<String, Integer> hosts, String host,
+            int defaultValue) {
+        Integer count = hosts.get(host);
+        return count == null ? defaultValue : count;
     }
 
     @Override
@@ -703,8 +870,11 @@ public class NewswireServiceBean implements NewswireServiceLocal {
                 }
             }
 
-            return daoService.executeQuery(NewswireItem.DELETE_BY_SERVICE,
+            affectedRecords = daoService.executeQuery(
+                    NewswireItem.DELETE_BY_SERVICE,
                     QueryBuilder.with("newswireService", ns));
+            ExternalIdIndex.getInstance().invalidate(id);
+            return affectedRecords;
         } catch (DataNotFoundException ex) {
             return affectedRecords;
         }
@@ -719,10 +889,129 @@ public class NewswireServiceBean implements NewswireServiceLocal {
                 params);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Set<String> findExistingExternalIds(Long newswireServiceId,
+            Collection<String> externalIds) {
+        ExternalIdIndex index = ExternalIdIndex.getInstance();
+        syncExternalIdIndex(newswireServiceId);
+
+        List<String> candidates = index.findCandidates(newswireServiceId,
+                externalIds);
+        Set<String> found = new HashSet<String>();
+
+        for (int start = 0; start < candidates.size();
+                start += EXTERNAL_ID_LOOKUP_SIZE) {
+            List<String> chunk = candidates.subList(start, Math.min(
+                    start + EXTERNAL_ID_LOOKUP_SIZE, candidates.size()));
+
+            StringBuilder query = new StringBuilder(
+                    "SELECT n.externalId FROM NewswireItem n WHERE n.newswireService.id = :id AND n.externalId IN (");
+            Map<String, Object> params = QueryBuilder.with("id",
+                    newswireServiceId).parameters();
+            for (int i = 0; i < chunk.size(); i++) {
+                if (i > 0) {
+                    query.append(", ");
+                }
+                query.append(":externalId").append(i);
+                params.put("externalId" + i, chunk.get(i));
+            }
+            query.append(")");
+
+            found.addAll(daoService.findWithQuery(query.toString(), params));
+        }
+
+        return found;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void warmExternalIdIndex() {
+        for (NewswireService service : getNewswireServices()) {
+            syncExternalIdIndex(service.getId());
+        }
+    }
+
+    /**
+     * Brings the {@link ExternalIdIndex} of a {@link NewswireService} up to
+     * date with the database. The index is rebuilt if it does not exist or
+     * has outgrown its capacity, otherwise only the items added since the
+     * last synchronisation are loaded. The identifiers are loaded in pages so
+     * that the identifiers of a large service are never all held in memory.
+     *
+     * @param newswireServiceId Unique identifier of the {@link NewswireService}
+     */
+    private void syncExternalIdIndex(Long newswireServiceId) {
+        ExternalIdIndex index = ExternalIdIndex.getInstance();
+        boolean rebuild = index.isRebuildRequired(newswireServiceId);
+        long lastId = rebuild ? 0 : index.getLastItemId(newswireServiceId);
+        ExternalIdIndex.ServiceIndex rebuilt = null;
+
+        if (rebuild) {
+            List count = daoService.findWithNamedQuery(
+                    NewswireItem.COUNT_BY_SERVICE, QueryBuilder.with(
+                    "newswireServiceId", newswireServiceId).parameters());
+            rebuilt = index.createIndex(count.isEmpty() ? 0
+                    : ((Number) count.get(0)).longValue());
+        }
+
+        long loaded = 0;
+        List<Object[]> rows;
+        do {
+            rows = daoService.findWithNamedQuery(
+                    NewswireItem.FIND_EXTERNAL_IDS_AFTER_ID, QueryBuilder.with(
+                    "newswireServiceId", newswireServiceId).and("lastId",
+                    lastId).parameters(), EXTERNAL_ID_PAGE_SIZE);
+
+            List<String> page = new ArrayList<String>(rows.size());
+            for (Object[] row : rows) {
+                lastId = Math.max(lastId, ((Number) row[0]).longValue());
+                if (row[1] != null) {
+                    page.add((String) row[1]);
+                }
+            }
+
+            if (rebuilt != null) {
+                rebuilt.add(page, lastId);
+            } else if (!page.isEmpty()) {
+                index.add(newswireServiceId, page, lastId);
+            }
+            loaded += page.size();
+        } while (rows.size() == EXTERNAL_ID_PAGE_SIZE);
+
+        if (rebuilt != null) {
+            index.rebuild(newswireServiceId, rebuilt, cfgService.getInteger(
+                    ConfigurationKey.NEWSWIRE_EXTERNAL_ID_INDEX_SIZE));
+            LOG.log(Level.FINE,
+                    "External identifier index of newswire service #{0} built with {1} identifiers",
+                    new Object[]{newswireServiceId, loaded});
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public NewswireItem create(NewswireItem item) {
-        return daoService.create(item);
+        final NewswireItem created = daoService.create(item);
+        if (created.getNewswireService() != null) {
+            // Indexed once committed, a rolled back item must not be
+            // mistaken for an existing one
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        ExternalIdIndex.getInstance().add(created.
+                                getNewswireService().getId(), Collections.
+                                singleton(created.getExternalId()), 0);
+                    }
+                }
+            });
+        }
+        return created;
     }
 
     /** {@inheritDoc} */
@@ -732,51 +1021,14 @@ public class NewswireServiceBean implements NewswireServiceLocal {
     }
 
     /**
-     * Gets the instance of the Apache Solr server used for indexing.
+     * Gets the shared instance of the Apache Solr server used for indexing.
      *
      * @return Instance of the Apache Solr server
      * @throws IllegalStateException If the search engine is not properly configured
      */
     private SolrServer getSolrServer() {
-        try {
-            String url = cfgService.getString(
-                    ConfigurationKey.SEARCH_ENGINE_NEWSWIRE_URL);
-            Integer socketTimeout = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_SOCKET_TIMEOUT);
-            Integer connectionTimeout = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_CONNECTION_TIMEOUT);
-            Integer maxTotalConnectionsPerHost =
-                    cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST);
-            Integer maxTotalConnections =
-                    cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS);
-            Integer maxRetries = cfgService.getInteger(
-                    ConfigurationKey.SEARCH_ENGINE_MAX_RETRIES);
-            Boolean followRedirects = cfgService.getBoolean(
-                    ConfigurationKey.SEARCH_ENGINE_FOLLOW_REDIRECTS);
-            Boolean allowCompression = cfgService.getBoolean(
-                    ConfigurationKey.SEARCH_ENGINE_ALLOW_COMPRESSION);
-
-            CommonsHttpSolrServer solrServer = new CommonsHttpSolrServer(url);
-            solrServer.setRequestWriter(new BinaryRequestWriter());
-            solrServer.setSoTimeout(socketTimeout);
-            solrServer.setConnectionTimeout(connectionTimeout);
-            solrServer.setDefaultMaxConnectionsPerHost(
-                    maxTotalConnectionsPerHost);
-            solrServer.setMaxTotalConnections(maxTotalConnections);
-            solrServer.setFollowRedirects(followRedirects);
-            solrServer.setAllowCompression(allowCompression);
-            solrServer.setMaxRetries(maxRetries);
-
-            return solrServer;
-        } catch (MalformedURLException ex) {
-            LOG.log(Level.SEVERE, "Invalid search engine configuration. {0}",
-                    ex.getMessage());
-            LOG.log(Level.FINE, "", ex);
-            throw new java.lang.IllegalStateException(
-                    "Invalid search engine configuration", ex);
-        }
+        return SolrServerRegistry.getInstance().getSolrServer(
+                ConfigurationKey.SEARCH_ENGINE_NEWSWIRE_URL, cfgService);
     }
 
     @Override
@@ -1080,6 +1332,15 @@ public class NewswireServiceBean implements NewswireServiceLocal {
      */
     @Override
     public void removeItem(Long id) {
+        try {
+            NewswireItem item = daoService.findById(NewswireItem.class, id);
+            if (item.getNewswireService() != null) {
+                ExternalIdIndex.getInstance().invalidate(
+                        item.getNewswireService().getId());
+            }
+        } catch (DataNotFoundException ex) {
+            // Already removed
+        }
         daoService.delete(NewswireItem.class, id);
         SolrServer solr = getSolrServer();
         try {
@@ -1100,22 +1361,55 @@ public class NewswireServiceBean implements NewswireServiceLocal {
             NewswireService service = daoService.findById(NewswireService.class,
                     id);
             service.setProcessing(true);
+            service.setProcessingSince(Calendar.getInstance());
             daoService.update(service);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, ex.getMessage());
         }
     }
 
+    /**
+     * Releases the processing lease of a {@link NewswireService} and
+     * schedules its next fetch.
+     *
+     * @param id Unique identifier of the {@link NewswireService}
+     */
     @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     @Override
     public void stopProcessingNewswireService(Long id) {
+        stopProcessingNewswireService(id, true);
+    }
+
+    /** {@inheritDoc } */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public void stopProcessingNewswireService(Long id, boolean fetched) {
         try {
             NewswireService service = daoService.findById(NewswireService.class,
                     id);
-            service.setProcessing(false);
-            daoService.update(service);
+            Calendar nextFetch = getNextFetch(service);
+            if (!fetched) {
+                Calendar retry = Calendar.getInstance();
+                retry.add(Calendar.MINUTE, cfgService.getInteger(
+                        ConfigurationKey.NEWSWIRE_RETRY_DELAY));
+                if (retry.before(nextFetch)) {
+                    nextFetch = retry;
+                }
+            }
+            daoService.executeQuery(NewswireService.RELEASE_LEASE,
+                    QueryBuilder.with("id", id).and("nextFetch", nextFetch));
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, ex.getMessage());
         }
     }
+
+    /** {@inheritDoc } */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public boolean acquireProcessingLease(Long id) {
+        Calendar now = Calendar.getInstance();
+        QueryBuilder qb = QueryBuilder.with("id", id).and("now", now).and(
+                "expired", getLeaseExpiration());
+        return daoService.executeQuery(NewswireService.ACQUIRE_LEASE, qb) == 1;
+    }
 }
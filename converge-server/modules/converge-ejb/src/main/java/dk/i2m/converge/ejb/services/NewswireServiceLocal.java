@@ -108,8 +108,26 @@ public interface NewswireServiceLocal {
 
     void downloadNewswireServices();
 
+    /**
+     * Schedules the download of the active {@link NewswireService}s that are
+     * due, within the configured concurrency limits.
+     */
+    void downloadDueNewswireServices();
+
     void downloadNewswireService(Long id) throws DataNotFoundException;
 
+    /**
+     * Acquires the processing lease of a {@link NewswireService}. The lease
+     * is granted if the service is not being processed or if the current
+     * lease has expired.
+     *
+     * @param id Unique identifier of the {@link NewswireService}
+     * @return {@code true} if the lease was acquired
+     */
+    @javax.ejb.TransactionAttribute(value =
+    javax.ejb.TransactionAttributeType.REQUIRES_NEW)
+    boolean acquireProcessingLease(java.lang.Long id);
+
     /**
      * Searches the subscribed {@link NewswireService}s.
      * <p/>
@@ -132,6 +150,26 @@ public interface NewswireServiceLocal {
     java.util.List<dk.i2m.converge.core.newswire.NewswireItem> findByExternalId(
             java.lang.String externalId);
 
+    /**
+     * Finds which of the given external identifiers have already been
+     * downloaded for a {@link NewswireService}.
+     *
+     * @param newswireServiceId
+     *          Unique identifier of the {@link NewswireService}
+     * @param externalIds
+     *          External identifiers to check
+     * @return {@link java.util.Set} of the external identifiers that already
+     *         exist
+     */
+    java.util.Set<String> findExistingExternalIds(Long newswireServiceId,
+            java.util.Collection<String> externalIds);
+
+    /**
+     * Loads the external identifiers of the downloaded newswire items into
+     * the in-memory duplicate detection index.
+     */
+    void warmExternalIdIndex();
+
     /**
      * Creates a new {@link NewswireItem} in the database.
      * <p/>
@@ -185,6 +223,19 @@ public interface NewswireServiceLocal {
     javax.ejb.TransactionAttributeType.REQUIRES_NEW)
     void stopProcessingNewswireService(java.lang.Long id);
 
+    /**
+     * Releases the processing lease of a {@link NewswireService} and
+     * schedules its next fetch. A service that could not be fetched is
+     * retried after {@link dk.i2m.converge.core.ConfigurationKey#NEWSWIRE_RETRY_DELAY}
+     * minutes rather than after its full interval.
+     *
+     * @param id      Unique identifier of the {@link NewswireService}
+     * @param fetched {@code true} if the service was fetched successfully
+     */
+    @javax.ejb.TransactionAttribute(value =
+    javax.ejb.TransactionAttributeType.REQUIRES_NEW)
+    void stopProcessingNewswireService(java.lang.Long id, boolean fetched);
+
     @javax.ejb.TransactionAttribute(value =
     javax.ejb.TransactionAttributeType.REQUIRES_NEW)
     public void startProcessingNewswireService(java.lang.Long id);
@@ -16,14 +16,37 @@
  */
 package dk.i2m.converge.ejb.services;
 
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.Notification;
+import dk.i2m.converge.core.content.NewsItem;
 import dk.i2m.converge.core.security.UserAccount;
+import dk.i2m.converge.core.workflow.WorkflowState;
+import dk.i2m.converge.ejb.messaging.NotificationMessageBean;
+import java.text.MessageFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageProducer;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Multipart;
@@ -42,10 +65,20 @@ import javax.mail.internet.MimeMultipart;
 @Stateless
 public class NotificationServiceBean implements NotificationServiceLocal {
 
+    private static final Logger LOG = Logger.getLogger(NotificationServiceBean.class.getName());
+
     @EJB private DaoServiceLocal daoService;
 
+    @EJB private ConfigurationServiceLocal cfgService;
+
     @Resource(name = "mail/converge") private javax.mail.Session mailSession;
 
+    @Resource(mappedName = "jms/notificationQueue") private Destination notificationQueue;
+
+    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+
+    @Resource private SessionContext ctx;
+
     /** {@inheritDoc } */
     @Override
     public void dispatchMail(String to, String from, String subject, String content) {
@@ -131,6 +164,194 @@ public class NotificationServiceBean implements NotificationServiceLocal {
         return daoService.create(notification);
     }
 
+    /** {@inheritDoc } */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void create(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            daoService.create(notification);
+        }
+    }
+
+    /**
+     * Notifies the current actors of a {@link NewsItem} asynchronously. The
+     * notification is queued on the notification queue and delivered when the
+     * current transaction commits. Failing to queue the notification is
+     * logged but does not affect the current transaction.
+     *
+     * @param newsItem     {@link NewsItem} about which to notify
+     * @param notification Notification to send
+     * @param sender       {@link UserAccount} causing the notification
+     */
+    @Override
+    public void notifyCurrentActors(NewsItem newsItem, NewsItemNotification notification, UserAccount sender) {
+        Connection connection = null;
+        try {
+            connection = jmsConnectionFactory.createConnection();
+            javax.jms.Session session = connection.createSession(true, javax.jms.Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(notificationQueue);
+            MapMessage message = session.createMapMessage();
+            message.setLongProperty(NotificationMessageBean.Property.NEWS_ITEM_ID.name(), newsItem.getId());
+            message.setStringProperty(NotificationMessageBean.Property.NOTIFICATION.name(), notification.name());
+            if (sender != null) {
+                message.setStringProperty(NotificationMessageBean.Property.SENDER_ID.name(), sender.getUsername());
+            }
+            producer.send(message);
+            session.close();
+        } catch (JMSException ex) {
+            LOG.log(Level.WARNING, "Could not queue {0} notification for news item #{1}. {2}",
+                    new Object[]{notification.name(), newsItem.getId(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the notifications for the current actors of a
+     * {@link NewsItem}. The actors are resolved with a single query, the
+     * notifications are created in batches of
+     * {@link ConfigurationKey#NOTIFICATION_BATCH_SIZE} and notifications
+     * identical to notifications created for the same actor within the last
+     * {@link ConfigurationKey#NOTIFICATION_COALESCE_WINDOW} seconds are
+     * skipped.
+     *
+     * @param newsItemId   Unique identifier of the {@link NewsItem}
+     * @param notification Notification to send
+     * @param senderId     Username of the {@link UserAccount} causing the
+     *                     notification, or {@code null} if unknown
+     * @return Number of notifications created
+     */
+    @Override
+    public int createCurrentActorsNotifications(Long newsItemId, NewsItemNotification notification, String senderId) {
+        NewsItem newsItem;
+        try {
+            newsItem = daoService.findById(NewsItem.class, newsItemId);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "News item #{0} no longer exist. {1} notification was not sent",
+                    new Object[]{newsItemId, notification.name()});
+            return 0;
+        }
+
+        UserAccount sender = null;
+        if (senderId != null) {
+            try {
+                sender = daoService.findObjectWithNamedQuery(UserAccount.class,
+                        UserAccount.FIND_BY_UID, QueryBuilder.with("username", senderId));
+            } catch (DataNotFoundException ex) {
+                LOG.log(Level.WARNING, "Unknown sender {0}", senderId);
+            }
+        }
+
+        WorkflowState state = newsItem.getCurrentState();
+        List<UserAccount> recipients;
+        switch (state.getPermission()) {
+            case USER:
+                recipients = daoService.findWithNamedQuery(UserAccount.FIND_ACTORS_BY_NEWS_ITEM_AND_USER_ROLE,
+                        QueryBuilder.with("newsItem", newsItem).and("userRole", state.getActorRole()).parameters());
+                break;
+            case GROUP:
+                recipients = daoService.findWithNamedQuery(UserAccount.FIND_MEMBERS_OF_USER_ROLE,
+                        QueryBuilder.with("userRole", state.getActorRole()).parameters());
+                break;
+            default:
+                return 0;
+        }
+
+        String link = "NewsItem.xhtml?id=" + newsItem.getId();
+        Map<Long, Set<String>> recent = findRecentNotifications(link);
+        String pattern = cfgService.getMessage(notification.messageKey());
+        String senderName = sender == null ? "" : sender.getFullName();
+        Map<TimeZone, String> deadlines = new HashMap<TimeZone, String>();
+
+        List<Notification> notifications = new ArrayList<Notification>();
+        for (UserAccount recipient : recipients) {
+            if (!notification.notifySender() && recipient.equals(sender)) {
+                continue;
+            }
+
+            String msg;
+            if (notification == NewsItemNotification.STORY_ASSIGNED) {
+                msg = MessageFormat.format(pattern, newsItem.getTitle(),
+                        formatDeadline(newsItem, recipient.getTimeZone(), deadlines), senderName);
+            } else {
+                msg = MessageFormat.format(pattern, newsItem.getTitle(), senderName);
+            }
+
+            Set<String> sent = recent.get(recipient.getId());
+            if (sent != null && sent.contains(msg)) {
+                continue;
+            }
+
+            notifications.add(new Notification(msg, link, recipient, sender));
+        }
+
+        int batchSize = cfgService.getInteger(ConfigurationKey.NOTIFICATION_BATCH_SIZE);
+        if (batchSize < 1) {
+            batchSize = notifications.size();
+        }
+
+        NotificationServiceLocal self = ctx.getBusinessObject(NotificationServiceLocal.class);
+        for (int i = 0; i < notifications.size(); i += batchSize) {
+            self.create(notifications.subList(i, Math.min(notifications.size(), i + batchSize)));
+        }
+
+        LOG.log(Level.FINE, "{0} {1} notifications created for news item #{2}",
+                new Object[]{notifications.size(), notification.name(), newsItemId});
+        return notifications.size();
+    }
+
+    /**
+     * Finds the messages of the notifications with a given link created
+     * within the coalescing window.
+     *
+     * @param link Link of the notifications
+     * @return {@link Map} of recipient identifiers and their messages
+     */
+    private Map<Long, Set<String>> findRecentNotifications(String link) {
+        Map<Long, Set<String>> recent = new HashMap<Long, Set<String>>();
+        int window = cfgService.getInteger(ConfigurationKey.NOTIFICATION_COALESCE_WINDOW);
+        if (window < 1) {
+            return recent;
+        }
+
+        Calendar since = Calendar.getInstance();
+        since.add(Calendar.SECOND, -window);
+        List<Object[]> rows = daoService.findWithNamedQuery(Notification.FIND_RECENT_BY_LINK,
+                QueryBuilder.with("link", link).and("since", since).parameters());
+        for (Object[] row : rows) {
+            Long recipientId = (Long) row[0];
+            if (!recent.containsKey(recipientId)) {
+                recent.put(recipientId, new HashSet<String>());
+            }
+            recent.get(recipientId).add((String) row[1]);
+        }
+        return recent;
+    }
+
+    /**
+     * Formats the deadline of a {@link NewsItem} in a given time zone. The
+     * formatted deadline is cached for each time zone.
+     */
+    private String formatDeadline(NewsItem newsItem, TimeZone timeZone, Map<TimeZone, String> deadlines) {
+        if (newsItem.getDeadline() == null) {
+            return "";
+        }
+        String deadline = deadlines.get(timeZone);
+        if (deadline == null) {
+            SimpleDateFormat sdf = new SimpleDateFormat(cfgService.getMessage("FORMAT_SHORT_DATE_AND_TIME"));
+            sdf.setTimeZone(timeZone);
+            deadline = sdf.format(newsItem.getDeadline().getTime());
+            deadlines.put(timeZone, deadline);
+        }
+        return deadline;
+    }
+
     /** {@inheritDoc } */
     @Override
     public void dismiss(Notification notification) {
@@ -17,7 +17,9 @@
 package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.core.Notification;
+import dk.i2m.converge.core.content.NewsItem;
 import dk.i2m.converge.core.security.UserAccount;
+import java.util.List;
 import javax.ejb.Local;
 
 /**
@@ -48,6 +50,42 @@ public interface NotificationServiceLocal {
      */
     Notification create(UserAccount recipient, String message);
 
+    /**
+     * Creates a batch of {@link Notification}s in a new transaction.
+     *
+     * @param notifications
+     *          {@link Notification}s to create
+     */
+    void create(List<Notification> notifications);
+
+    /**
+     * Queues a notification for the current actors of a {@link NewsItem}.
+     * The notifications are created asynchronously after the current
+     * transaction commits.
+     *
+     * @param newsItem
+     *          {@link NewsItem} about which to notify
+     * @param notification
+     *          Notification to send
+     * @param sender
+     *          {@link UserAccount} causing the notification
+     */
+    void notifyCurrentActors(NewsItem newsItem, NewsItemNotification notification, UserAccount sender);
+
+    /**
+     * Creates the {@link Notification}s for the current actors of a
+     * {@link NewsItem}. Invoked by the notification queue.
+     *
+     * @param newsItemId
+     *          Unique identifier of the {@link NewsItem}
+     * @param notification
+     *          Notification to send
+     * @param senderId
+     *          Username of the {@link UserAccount} causing the notification
+     * @return Number of {@link Notification}s created
+     */
+    int createCurrentActorsNotifications(Long newsItemId, NewsItemNotification notification, String senderId);
+
     /**
      * Dismisses an existing {@link Notification}.
      *
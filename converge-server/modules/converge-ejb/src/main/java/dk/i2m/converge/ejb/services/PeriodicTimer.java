@@ -26,12 +26,15 @@ import dk.i2m.converge.core.ConfigurationKey;
  */
 public enum PeriodicTimer {
 
-    NEWSWIRE(ConfigurationKey.NEWSWIRE_INTERVAL),
+    NEWSWIRE(ConfigurationKey.NEWSWIRE_SCHEDULER_INTERVAL),
     EDITION(ConfigurationKey.EDITION_INTERVAL),
     CATALOGUE_WATCH(ConfigurationKey.CATALOGUE_WATCH_INTERVAL),
     SEARCH_ENGINE_INDEXING(ConfigurationKey.SEARCH_ENGINE_INDEXING_INTERVAL),
     NEWSWIRE_BASKET(ConfigurationKey.NEWSWIRE_BASKET_INTERVAL),
-    NEWSWIRE_PURGE(ConfigurationKey.NEWSWIRE_PURGE_INTERVAL);
+    NEWSWIRE_PURGE(ConfigurationKey.NEWSWIRE_PURGE_INTERVAL),
+    WORKFLOW_ACTION_RETRY(ConfigurationKey.WORKFLOW_ACTION_RETRY_INTERVAL),
+    DIRECTORY_SYNC(ConfigurationKey.LDAP_SYNC_INTERVAL),
+    JOB(ConfigurationKey.JOB_INTERVAL);
 
     private final ConfigurationKey interval;
 
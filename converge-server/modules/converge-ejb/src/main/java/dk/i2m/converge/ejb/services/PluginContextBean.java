@@ -46,8 +46,10 @@ import dk.i2m.converge.ejb.facades.*;
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
@@ -117,6 +119,13 @@ public class PluginContextBean implements PluginContextBeanLocal {
         return newswireService.findByExternalId(externalId);
     }
 
+    @Override
+    public Set<String> findNewswireItemExternalIds(NewswireService service,
+            Collection<String> externalIds) {
+        return newswireService.findExistingExternalIds(service.getId(),
+                externalIds);
+    }
+
     @Override
     public void fetch(NewswireService service) throws NewswireDecoderException {
         try {
@@ -321,12 +330,20 @@ public class PluginContextBean implements PluginContextBeanLocal {
     public NewsItemEditionState addNewsItemEditionState(Long editionId,
             Long newsItemId,
             String property, String value) {
+        return addNewsItemEditionState(editionId, newsItemId, "", property,
+                value);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public NewsItemEditionState addNewsItemEditionState(Long editionId,
+            Long newsItemId, String label, String property, String value) {
         try {
             Edition edition = outletFacade.findEditionById(editionId);
             NewsItem newsitem = newsItemFacade.findNewsItemById(newsItemId);
 
             NewsItemEditionState editionState = new NewsItemEditionState(edition,
-                    newsitem, "", property, value, false);
+                    newsitem, label, property, value, false);
 
             return daoService.create(editionState);
         } catch (DataNotFoundException ex) {
@@ -343,4 +360,14 @@ public class PluginContextBean implements PluginContextBeanLocal {
             NewsItemEditionState newsItemEditionState) {
         return daoService.update(newsItemEditionState);
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<NewsItemEditionState> findNewsItemEditionStates(Long editionId,
+            String label, String property) {
+        return daoService.findWithNamedQuery(
+                NewsItemEditionState.FIND_BY_EDITION_PLACEMENTS_AND_PROPERTY,
+                QueryBuilder.with("edition", editionId).and("label", label).
+                and("property", property).parameters());
+    }
 }
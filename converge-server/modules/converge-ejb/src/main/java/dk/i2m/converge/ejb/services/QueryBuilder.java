@@ -16,7 +16,10 @@
  */
 package dk.i2m.converge.ejb.services;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,6 +30,9 @@ import java.util.Map;
  *  <h2>Advanced example (multiple conditions)</h2>
  * <p><code>QueryBuilder.with("fieldName", "fieldValue").and("fieldName2",
  * "fieldValue2").and("fieldName3", "fieldValue3")</code></p>
+ * <h2>Batch fetching of relationships</h2>
+ * <p><code>QueryBuilder.with("fieldName", "fieldValue").batch("n.actors",
+ * "n.concepts")</code></p>
  *
  * @author Allan Lykke Christensen
  */
@@ -35,6 +41,9 @@ public class QueryBuilder {
     /** Internal holder of parameters. */
     private Map<String, Object> parameters = null;
 
+    /** Internal holder of relationships to batch fetch. */
+    private List<String> batchAttributes = new ArrayList<String>();
+
     /**
      * Creates a instance of {@link QueryBuilder}. The constructor is only
      * accessible from the static methods
@@ -78,6 +87,30 @@ public class QueryBuilder {
         return this;
     }
 
+    /**
+     * Adds relationships to be fetched in batches. Each relationship is
+     * loaded for all the results of the query with a single additional query
+     * when first accessed, rather than with one query for each result.
+     *
+     * @param attributes
+     *          Relationships to batch fetch, prefixed with the
+     *          identification variable of the query, e.g. {@code n.actors}
+     * @return {@link QueryBuilder} with the given relationships added
+     */
+    public QueryBuilder batch(String... attributes) {
+        this.batchAttributes.addAll(Arrays.asList(attributes));
+        return this;
+    }
+
+    /**
+     * Relationships to be fetched in batches.
+     *
+     * @return {@link List} of relationships to batch fetch
+     */
+    public List<String> batchAttributes() {
+        return this.batchAttributes;
+    }
+
     /**
      * Parameters contained in the {@link QueryBuilder}.
      *
@@ -0,0 +1,626 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.annotations.ReferenceData;
+import dk.i2m.converge.domain.CacheStatistics;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+import org.eclipse.persistence.indirection.IndirectContainer;
+import org.eclipse.persistence.indirection.ValueHolder;
+import org.eclipse.persistence.indirection.ValueHolderInterface;
+
+/**
+ * Process-wide cache of the entities annotated with {@link ReferenceData}.
+ * <p/>
+ * The shared cache of EclipseLink is disabled for the persistence unit, and
+ * cannot be enabled selectively for the reference data as EclipseLink does
+ * not allow shared entities to reference isolated entities (e.g.
+ * {@code Outlet} references its editions, which reference news items).
+ * Instead, detached reference entities are kept in this cache, with a region
+ * and a set of counters for each entity type.
+ * <p/>
+ * Reference data is related, e.g. a workflow state belongs to a workflow and
+ * references a user role, so any change to reference data invalidates all
+ * regions. Entities loaded while the cache was being invalidated are not
+ * cached, as they may have been loaded before the change was committed.
+ * <p/>
+ * The cache and every caller hold their own deep copy of the entity, so
+ * that a caller modifying the entity, or anything it references, does not
+ * affect the other callers:
+ * <ul>
+ * <li>Lazy relations of the entity to other reference data are loaded
+ * before the entity is cached, and copied with it.</li>
+ * <li>Lazy relations that have not been loaded, e.g. the editions of an
+ * outlet, are not shared with the EclipseLink value holders of the cached
+ * entity. Each copy loads them separately on first access.</li>
+ * </ul>
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ReferenceDataCache {
+
+    private static final Logger LOG =
+            Logger.getLogger(ReferenceDataCache.class.getName());
+
+    private static final ReferenceDataCache INSTANCE = new ReferenceDataCache();
+
+    /** Prefix of the fields added to entities by EclipseLink weaving. */
+    private static final String WOVEN_PREFIX = "_persistence_";
+
+    /** Suffix of the woven value holders of lazy relations. */
+    private static final String WOVEN_VALUE_HOLDER_SUFFIX = "_vh";
+
+    private static final ConcurrentMap<Class<?>, Field[]> FIELDS =
+            new ConcurrentHashMap<Class<?>, Field[]>();
+
+    private final ConcurrentMap<Class<?>, Region> regions =
+            new ConcurrentHashMap<Class<?>, Region>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private ReferenceDataCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link ReferenceDataCache}.
+     *
+     * @return Singleton instance of {@link ReferenceDataCache}
+     */
+    public static ReferenceDataCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Determines if entities of a given type are reference data.
+     *
+     * @param type Type of entity
+     * @return {@code true} if the type is annotated with
+     *         {@link ReferenceData}
+     */
+    public static boolean isReferenceData(Class<?> type) {
+        return type != null && type.isAnnotationPresent(ReferenceData.class);
+    }
+
+    /**
+     * Gets the generation of the cache. The generation is incremented every
+     * time the cache is invalidated and must be obtained before loading an
+     * entity to be cached.
+     *
+     * @return Generation of the cache
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Gets a cached entity.
+     *
+     * @param <T>  Type of entity
+     * @param type Type of entity
+     * @param id   Unique identifier of the entity
+     * @return Copy of the cached entity, or {@code null} if the entity is
+     *         not cached or has expired
+     */
+    public <T> T get(Class<T> type, Object id) {
+        Region region = getRegion(type);
+        Entry entry = region.entries.get(id);
+        if (entry == null) {
+            region.misses.incrementAndGet();
+            return null;
+        }
+        if (entry.expires < System.currentTimeMillis()) {
+            region.entries.remove(id, entry);
+            region.misses.incrementAndGet();
+            return null;
+        }
+        T copy = type.cast(copy(entry.entity, null));
+        if (copy == null) {
+            region.entries.remove(id, entry);
+            region.misses.incrementAndGet();
+            return null;
+        }
+        region.hits.incrementAndGet();
+        return copy;
+    }
+
+    /**
+     * Caches a copy of an entity, unless the cache was invalidated since the
+     * entity was loaded or the region of the entity is full. Lazy relations
+     * of the entity to other reference data are loaded, so the entity must
+     * still be able to load its relations.
+     *
+     * @param type       Type of entity
+     * @param id         Unique identifier of the entity
+     * @param entity     Detached entity to cache
+     * @param generation Generation of the cache obtained before loading the
+     *                   entity
+     * @param timeToLive Number of seconds the entity may be cached
+     * @param maxSize    Maximum number of entities cached of the type
+     * @param emf        Factory of the entity managers used by the copies
+     *                   for loading the relations that were not cached
+     */
+    public void put(Class<?> type, Object id, Object entity, long generation,
+            int timeToLive, int maxSize, EntityManagerFactory emf) {
+        Region region = getRegion(type);
+        if (this.generation.get() != generation
+                || region.entries.size() >= maxSize) {
+            return;
+        }
+        Object cached = copy(entity, emf);
+        if (cached == null) {
+            return;
+        }
+        region.entries.put(id, new Entry(cached, System.currentTimeMillis()
+                + timeToLive * 1000L));
+        if (this.generation.get() != generation) {
+            // Invalidated while the entity was loaded
+            region.entries.remove(id);
+        }
+    }
+
+    /**
+     * Removes all entities from the cache.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (Region region : regions.values()) {
+            int size = region.entries.size();
+            region.entries.clear();
+            region.invalidations.addAndGet(size);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the counters of each entity type.
+     *
+     * @return {@link List} of counter snapshots
+     */
+    public List<CacheStatistics> getStatistics() {
+        List<CacheStatistics> statistics = new ArrayList<CacheStatistics>();
+        for (Class<?> type : regions.keySet()) {
+            Region r = regions.get(type);
+            statistics.add(new CacheStatistics(type.getSimpleName(),
+                    r.entries.size(), r.hits.get(), r.misses.get(),
+                    r.invalidations.get()));
+        }
+        return statistics;
+    }
+
+    /**
+     * Creates a deep copy of an entity.
+     *
+     * @param entity Entity to copy
+     * @param emf    Factory of entity managers if the entity is being cached,
+     *               in which case its lazy relations to reference data are
+     *               loaded first, or {@code null} if a cached entity is
+     *               being copied
+     * @return Copy of the entity, or {@code null} if it could not be copied
+     */
+    private static Object copy(Object entity, EntityManagerFactory emf) {
+        try {
+            if (emf != null) {
+                loadReferences(entity);
+            }
+            return new Copier(emf).copyEntity(entity);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Could not copy cached {0}. {1}",
+                    new Object[]{entity.getClass().getName(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the lazy relations of an entity to other reference data.
+     *
+     * @param entity Entity for which to load the relations
+     * @throws IllegalAccessException If a field could not be read
+     */
+    private static void loadReferences(Object entity) throws
+            IllegalAccessException {
+        for (Field field : getFields(entity.getClass())) {
+            Object value = field.get(entity);
+            if (!isReferenceData(getTargetType(field))) {
+                continue;
+            }
+            if (value instanceof ValueHolderInterface) {
+                ((ValueHolderInterface) value).getValue();
+            } else if (value instanceof IndirectContainer) {
+                size(value);
+            }
+        }
+    }
+
+    /**
+     * Gets the type of entity referenced by a field. For collections this is
+     * the type of the elements, and for woven value holders the type of the
+     * relation.
+     */
+    private static Class<?> getTargetType(Field field) {
+        if (isWovenValueHolder(field)) {
+            Field relation = getField(field.getDeclaringClass(),
+                    getRelationName(field));
+            return relation == null ? null : relation.getType();
+        }
+        Type type = field.getGenericType();
+        if (!(type instanceof ParameterizedType)) {
+            return field.getType();
+        }
+        Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+        Type target = arguments[arguments.length - 1];
+        return target instanceof Class ? (Class<?>) target : null;
+    }
+
+    private static boolean isWovenValueHolder(Field field) {
+        return field.getName().startsWith(WOVEN_PREFIX)
+                && field.getName().endsWith(WOVEN_VALUE_HOLDER_SUFFIX);
+    }
+
+    private static String getRelationName(Field valueHolder) {
+        String name = valueHolder.getName();
+        return name.substring(WOVEN_PREFIX.length(), name.length()
+                - WOVEN_VALUE_HOLDER_SUFFIX.length());
+    }
+
+    private static int size(Object container) {
+        if (container instanceof Map) {
+            return ((Map<?, ?>) container).size();
+        }
+        return ((Collection<?>) container).size();
+    }
+
+    private static boolean isEntity(Class<?> type) {
+        return type.isAnnotationPresent(Entity.class)
+                || type.isAnnotationPresent(Embeddable.class);
+    }
+
+    private static Object getId(Object entity) throws IllegalAccessException {
+        for (Field field : getFields(entity.getClass())) {
+            if (field.isAnnotationPresent(Id.class)) {
+                return field.get(entity);
+            }
+        }
+        return null;
+    }
+
+    private static Field getField(Class<?> type, String name) {
+        for (Field field : getFields(type)) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the instance fields of a class and its super classes.
+     */
+    private static Field[] getFields(Class<?> type) {
+        Field[] fields = FIELDS.get(type);
+        if (fields == null) {
+            List<Field> found = new ArrayList<Field>();
+            for (Class<?> c = type; c != null && c != Object.class;
+                    c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        found.add(field);
+                    }
+                }
+            }
+            fields = found.toArray(new Field[found.size()]);
+            FIELDS.putIfAbsent(type, fields);
+        }
+        return fields;
+    }
+
+    /**
+     * Deep copy of an entity graph. Entities referenced more than once are
+     * copied once.
+     */
+    private static class Copier {
+
+        private final Map<Object, Object> copies =
+                new IdentityHashMap<Object, Object>();
+
+        private final EntityManagerFactory emf;
+
+        Copier(EntityManagerFactory emf) {
+            this.emf = emf;
+        }
+
+        Object copy(Object value) throws Exception {
+            if (value == null) {
+                return null;
+            }
+            if (isEntity(value.getClass())) {
+                return copyEntity(value);
+            }
+            if (value instanceof List) {
+                List<Object> list = new ArrayList<Object>();
+                for (Object element : (Collection<?>) value) {
+                    list.add(copy(element));
+                }
+                return list;
+            }
+            if (value instanceof Set) {
+                Set<Object> set = new LinkedHashSet<Object>();
+                for (Object element : (Collection<?>) value) {
+                    set.add(copy(element));
+                }
+                return set;
+            }
+            if (value instanceof Map) {
+                Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                    map.put(copy(e.getKey()), copy(e.getValue()));
+                }
+                return map;
+            }
+            if (value instanceof Date) {
+                return ((Date) value).clone();
+            }
+            if (value instanceof Calendar) {
+                return ((Calendar) value).clone();
+            }
+            return value;
+        }
+
+        Object copyEntity(Object entity) throws Exception {
+            Object copy = copies.get(entity);
+            if (copy != null) {
+                return copy;
+            }
+            Constructor<?> constructor =
+                    entity.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            copy = constructor.newInstance();
+            copies.put(entity, copy);
+
+            Object id = getId(entity);
+            Field[] fields = getFields(entity.getClass());
+            for (Field field : fields) {
+                if (field.getName().startsWith(WOVEN_PREFIX)) {
+                    // Change listeners and fetch groups of the original are
+                    // not copied, value holders are copied below
+                    field.set(copy, null);
+                    continue;
+                }
+                Object value = field.get(entity);
+                if (value instanceof IndirectContainer
+                        && !((IndirectContainer) value).isInstantiated()) {
+                    field.set(copy, copyContainer(entity.getClass(), id, field,
+                            (IndirectContainer) value));
+                } else {
+                    field.set(copy, copy(value));
+                }
+            }
+            for (Field field : fields) {
+                if (!isWovenValueHolder(field)
+                        || !(field.get(entity) instanceof ValueHolderInterface)) {
+                    continue;
+                }
+                ValueHolderInterface holder =
+                        (ValueHolderInterface) field.get(entity);
+                Field relation = getField(entity.getClass(),
+                        getRelationName(field));
+                if (relation == null) {
+                    continue;
+                }
+                if (holder.isInstantiated()) {
+                    // Weaving creates a new value holder for the copied value
+                    relation.set(copy, copy(holder.getValue()));
+                } else {
+                    relation.set(copy, null);
+                    field.set(copy, lazyRelation(entity.getClass(), id,
+                            relation.getName(), null, holder));
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * Copies a collection that has not been loaded into a new container
+         * of the same type, which loads the collection on first access.
+         */
+        private Object copyContainer(Class<?> owner, Object id, Field field,
+                IndirectContainer container) throws Exception {
+            IndirectContainer copy = container.getClass().newInstance();
+            copy.setValueHolder(lazyRelation(owner, id, field.getName(),
+                    container.getClass(), container.getValueHolder()));
+            return copy;
+        }
+
+        private LazyRelation lazyRelation(Class<?> owner, Object id,
+                String relation, Class<?> container,
+                ValueHolderInterface holder) {
+            if (holder instanceof LazyRelation) {
+                return ((LazyRelation) holder).copy();
+            }
+            return new LazyRelation(emf, owner, id, relation, container);
+        }
+    }
+
+    /**
+     * Value holder of a relation of a copied entity that had not been loaded
+     * when the entity was copied. The relation is loaded from a new entity
+     * manager on first access, so that the value holders of EclipseLink are
+     * never shared between copies.
+     */
+    private static class LazyRelation extends ValueHolder {
+
+        private transient EntityManagerFactory emf;
+
+        private final Class<?> owner;
+
+        private final Object id;
+
+        private final String relation;
+
+        private final Class<?> container;
+
+        private boolean loaded = false;
+
+        LazyRelation(EntityManagerFactory emf, Class<?> owner, Object id,
+                String relation, Class<?> container) {
+            this.emf = emf;
+            this.owner = owner;
+            this.id = id;
+            this.relation = relation;
+            this.container = container;
+        }
+
+        /**
+         * Creates a copy of the relation that has not been loaded.
+         */
+        LazyRelation copy() {
+            return new LazyRelation(emf, owner, id, relation, container);
+        }
+
+        @Override
+        public synchronized Object getValue() {
+            if (!loaded) {
+                super.setValue(load());
+                loaded = true;
+            }
+            return super.getValue();
+        }
+
+        @Override
+        public synchronized void setValue(Object value) {
+            super.setValue(value);
+            loaded = true;
+        }
+
+        @Override
+        public synchronized boolean isInstantiated() {
+            return loaded;
+        }
+
+        private Object load() {
+            Object value = null;
+            if (emf != null && id != null) {
+                EntityManager em = emf.createEntityManager();
+                try {
+                    Object entity = em.find(owner, id);
+                    if (entity != null) {
+                        value = read(entity);
+                    }
+                } catch (Exception ex) {
+                    LOG.log(Level.WARNING, "Could not load {0} of {1} #{2}. {3}",
+                            new Object[]{relation, owner.getName(), id,
+                                ex.getMessage()});
+                    LOG.log(Level.FINE, "", ex);
+                } finally {
+                    em.close();
+                }
+            }
+            if (container == null) {
+                return value;
+            } else if (Map.class.isAssignableFrom(container)) {
+                return value == null ? new Hashtable<Object, Object>()
+                        : new Hashtable<Object, Object>((Map<?, ?>) value);
+            } else if (Set.class.isAssignableFrom(container)) {
+                return value == null ? new HashSet<Object>()
+                        : new HashSet<Object>((Collection<?>) value);
+            } else {
+                return value == null ? new Vector<Object>()
+                        : new Vector<Object>((Collection<?>) value);
+            }
+        }
+
+        private Object read(Object entity) throws IllegalAccessException {
+            Field holder = getField(owner, WOVEN_PREFIX + relation
+                    + WOVEN_VALUE_HOLDER_SUFFIX);
+            if (holder != null
+                    && holder.get(entity) instanceof ValueHolderInterface) {
+                return ((ValueHolderInterface) holder.get(entity)).getValue();
+            }
+            Object value = getField(owner, relation).get(entity);
+            if (value instanceof IndirectContainer) {
+                size(value);
+            }
+            return value;
+        }
+    }
+
+    private Region getRegion(Class<?> type) {
+        Region region = regions.get(type);
+        if (region == null) {
+            regions.putIfAbsent(type, new Region());
+            region = regions.get(type);
+        }
+        return region;
+    }
+
+    /**
+     * Cached entities and counters of a single entity type.
+     */
+    private static class Region {
+
+        private final ConcurrentMap<Object, Entry> entries =
+                new ConcurrentHashMap<Object, Entry>();
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private final AtomicLong invalidations = new AtomicLong();
+    }
+
+    /**
+     * Cached entity.
+     */
+    private static class Entry {
+
+        private final Object entity;
+
+        private final long expires;
+
+        Entry(Object entity, long expires) {
+            this.entity = entity;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.domain.CacheStatistics;
+import dk.i2m.converge.ejb.messaging.ReferenceDataMessageBean;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Stateless session bean providing cached access to reference data. Changes
+ * to reference data are published on the {@code jms/referenceDataTopic} so
+ * that all nodes of the cluster, including this one, invalidate their
+ * {@link ReferenceDataCache} once the change has been committed. The local
+ * cache is also invalidated when the change is made and again when the
+ * transaction commits, so that an entity read in between by another
+ * transaction is not left in the cache until the message arrives.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Stateless
+public class ReferenceDataServiceBean implements ReferenceDataServiceLocal {
+
+    private static final Logger LOG =
+            Logger.getLogger(ReferenceDataServiceBean.class.getName());
+
+    @PersistenceContext(unitName = "converge-ejbPU")
+    private EntityManager em;
+
+    @PersistenceUnit(unitName = "converge-ejbPU")
+    private EntityManagerFactory emf;
+
+    @EJB private ConfigurationServiceLocal cfgService;
+
+    @Resource(mappedName = "jms/referenceDataTopic") private Destination referenceDataTopic;
+
+    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+
+    @Resource private TransactionSynchronizationRegistry txRegistry;
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public <T> T findById(Class<T> type, Object id) throws DataNotFoundException {
+        if (id == null) {
+            throw new DataNotFoundException("null is not a valid primary key for " + type.getName());
+        }
+
+        boolean cacheable = ReferenceDataCache.isReferenceData(type);
+        ReferenceDataCache cache = ReferenceDataCache.getInstance();
+        long generation = cache.getGeneration();
+        if (cacheable) {
+            T entity = cache.get(type, id);
+            if (entity != null) {
+                return entity;
+            }
+        }
+
+        // Outside a transaction the entity is detached as soon as it is found
+        T entity = em.find(type, id);
+        if (entity == null) {
+            throw new DataNotFoundException(type.getName() + " with ID " + id + " not found");
+        }
+
+        if (cacheable) {
+            cache.put(type, id, entity, generation,
+                    cfgService.getInteger(ConfigurationKey.REFERENCE_DATA_CACHE_TTL),
+                    cfgService.getInteger(ConfigurationKey.REFERENCE_DATA_CACHE_SIZE),
+                    emf);
+        }
+        return entity;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void changed(Class<?> type) {
+        ReferenceDataCache.getInstance().invalidateAll();
+        if (txRegistry.getTransactionKey() != null
+                && txRegistry.getResource(ReferenceDataCache.class) == null) {
+            // Once per transaction, however many entities it changes
+            txRegistry.putResource(ReferenceDataCache.class, Boolean.TRUE);
+            txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        ReferenceDataCache.getInstance().invalidateAll();
+                    }
+                }
+            });
+        }
+
+        Connection connection = null;
+        try {
+            connection = jmsConnectionFactory.createConnection();
+            Session session = connection.createSession(true, Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(referenceDataTopic);
+            MapMessage message = session.createMapMessage();
+            message.setStringProperty(
+                    ReferenceDataMessageBean.Property.ENTITY.name(),
+                    type.getName());
+            producer.send(message);
+            session.close();
+        } catch (JMSException ex) {
+            LOG.log(Level.WARNING, "Could not notify the cluster about the changed {0}. {1}",
+                    new Object[]{type.getName(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void invalidate() {
+        ReferenceDataCache.getInstance().invalidateAll();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<CacheStatistics> getStatistics() {
+        return ReferenceDataCache.getInstance().getStatistics();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.annotations.ReferenceData;
+import dk.i2m.converge.domain.CacheStatistics;
+import java.util.List;
+import javax.ejb.Local;
+
+/**
+ * Local interface for the service bean providing cached access to the
+ * entities annotated with {@link ReferenceData}.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Local
+public interface ReferenceDataServiceLocal {
+
+    /**
+     * Finds a reference data entity by its unique identifier. The entity is
+     * served from the {@link ReferenceDataCache} if cached. The returned
+     * entity is a detached copy that is not shared with other callers,
+     * including its related entities, but it must not be assigned to a
+     * managed entity. Relations to entities that are not reference data are
+     * loaded when first accessed. Entities of
+     * types not annotated with {@link ReferenceData} are loaded without being
+     * cached.
+     *
+     * @param <T>
+     *          Type of entity
+     * @param type
+     *          Type of entity
+     * @param id
+     *          Unique identifier of the entity
+     * @return Entity matching the unique identifier
+     * @throws DataNotFoundException
+     *          If no match could be found
+     */
+    <T> T findById(Class<T> type, Object id) throws DataNotFoundException;
+
+    /**
+     * Invalidates the {@link ReferenceDataCache} following a change to a
+     * reference data entity and notifies the other nodes of the cluster. The
+     * notification is sent when the current transaction commits.
+     *
+     * @param type
+     *          Type of entity that changed
+     */
+    void changed(Class<?> type);
+
+    /**
+     * Invalidates the {@link ReferenceDataCache} of this node.
+     */
+    void invalidate();
+
+    /**
+     * Gets the counters of the {@link ReferenceDataCache} for each type of
+     * entity.
+     *
+     * @return {@link List} of {@link CacheStatistics}
+     */
+    List<CacheStatistics> getStatistics();
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Calendar;
+
+/**
+ * Identity of the server instance running the application. Work recorded as
+ * running on the instance before it was started was interrupted by a restart
+ * and can safely be retried, whereas work running on other instances might
+ * still be in progress.
+ *
+ * @author Allan Lykke Christensen
+ */
+final class ServerInstance {
+
+    /** Name of the server instance. */
+    static final String NAME = getInstanceName();
+
+    /**
+     * Time the server instance was started, truncated to the second as
+     * stored in the database.
+     */
+    static final Calendar STARTED = getStartTime();
+
+    private ServerInstance() {
+    }
+
+    private static String getInstanceName() {
+        String name = System.getProperty("com.sun.aas.instanceName");
+        if (name != null) {
+            return name;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException ex) {
+            return "localhost";
+        }
+    }
+
+    private static Calendar getStartTime() {
+        Calendar started = Calendar.getInstance();
+        started.set(Calendar.MILLISECOND, 0);
+        return started;
+    }
+}
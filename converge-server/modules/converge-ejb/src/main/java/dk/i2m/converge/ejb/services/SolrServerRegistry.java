@@ -0,0 +1,300 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.impl.BinaryRequestWriter;
+import org.apache.solr.client.solrj.impl.CommonsHttpSolrServer;
+
+/**
+ * Singleton holding the shared clients of the Apache Solr search engines.
+ * <p/>
+ * {@link CommonsHttpSolrServer} is thread-safe and is backed by a pooled
+ * HTTP connection manager, so a single client is created per configured
+ * search engine URL and shared by all the session beans. The clients are
+ * discarded by {@link #invalidate()} when a {@code SEARCH_ENGINE_*}
+ * configuration key is changed and rebuilt upon the next request. The
+ * connection managers of the discarded clients are shut down once their
+ * requests in progress have completed.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class SolrServerRegistry implements ConfigurationListener {
+
+    private static final Logger LOG = Logger.getLogger(SolrServerRegistry.class.
+            getName());
+
+    private static final SolrServerRegistry INSTANCE = new SolrServerRegistry();
+
+    /** Prefix of the configuration keys used for setting up the clients. */
+    private static final String CONFIGURATION_PREFIX = "SEARCH_ENGINE_";
+
+    /** Seconds between checks for drained connection managers. */
+    private static final long DRAIN_INTERVAL = 5;
+
+    /**
+     * Milliseconds after which a discarded connection manager is shut down,
+     * even if requests are still in progress.
+     */
+    private static final long DRAIN_TIMEOUT = 5 * 60 * 1000L;
+
+    private final Map<ConfigurationKey, CommonsHttpSolrServer> servers =
+            new EnumMap<ConfigurationKey, CommonsHttpSolrServer>(
+            ConfigurationKey.class);
+
+    private final List<Retired> retired = new ArrayList<Retired>();
+
+    private ScheduledExecutorService drainer;
+
+    private ScheduledFuture<?> draining;
+
+    private SolrServerRegistry() {
+        ConfigurationCache.getInstance().addListener(this);
+    }
+
+    /**
+     * Gets the singleton instance of {@link SolrServerRegistry}.
+     *
+     * @return Singleton instance of {@link SolrServerRegistry}
+     */
+    public static SolrServerRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Determines if a change to a given {@link ConfigurationKey} affects the
+     * search engine clients.
+     *
+     * @param key {@link ConfigurationKey} to check
+     * @return {@code true} if the clients must be rebuilt when the key changes
+     */
+    public static boolean isSearchEngineConfiguration(ConfigurationKey key) {
+        return key.name().startsWith(CONFIGURATION_PREFIX);
+    }
+
+    /**
+     * Gets the shared client of the search engine located at the URL
+     * configured in {@code urlKey}. The client is created upon first request.
+     *
+     * @param urlKey    {@link ConfigurationKey} containing the URL of the
+     *                  search engine
+     * @param cfgService Configuration service used for setting up the client
+     * @return Shared client of the search engine
+     * @throws IllegalStateException If the search engine is not properly
+     *                               configured
+     */
+    public synchronized SolrServer getSolrServer(ConfigurationKey urlKey,
+            ConfigurationServiceLocal cfgService) {
+        CommonsHttpSolrServer server = servers.get(urlKey);
+        if (server == null) {
+            server = createSolrServer(urlKey, cfgService);
+            servers.put(urlKey, server);
+        }
+        return server;
+    }
+
+    /**
+     * Discards the shared clients when a search engine configuration changes.
+     *
+     * @param key {@link ConfigurationKey} that changed
+     */
+    @Override
+    public void configurationChanged(ConfigurationKey key) {
+        if (isSearchEngineConfiguration(key)) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Discards the shared clients. Requests in progress on the discarded
+     * clients are completed, while their idle connections are closed. The
+     * connection manager of a discarded client is shut down once all its
+     * connections have been released, or after {@link #DRAIN_TIMEOUT}.
+     */
+    public synchronized void invalidate() {
+        if (servers.isEmpty()) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        for (CommonsHttpSolrServer server : servers.values()) {
+            retired.add(new Retired(getConnectionManager(server), deadline));
+        }
+        LOG.log(Level.INFO, "{0} search engine {0, choice, 0#clients|1#client|2#clients} discarded",
+                servers.size());
+        servers.clear();
+
+        drain();
+        if (!retired.isEmpty() && draining == null) {
+            draining = getDrainer().scheduleWithFixedDelay(new Runnable() {
+
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Shuts down the connection managers of all the clients, including the
+     * discarded clients still draining. Invoked when the application is
+     * stopped.
+     */
+    public synchronized void shutdown() {
+        for (CommonsHttpSolrServer server : servers.values()) {
+            getConnectionManager(server).shutdown();
+        }
+        servers.clear();
+        for (Retired r : retired) {
+            r.manager.shutdown();
+        }
+        retired.clear();
+        if (drainer != null) {
+            drainer.shutdownNow();
+            drainer = null;
+            draining = null;
+        }
+    }
+
+    /**
+     * Shuts down the connection managers of the discarded clients that have
+     * no connections in use or have exceeded the {@link #DRAIN_TIMEOUT}.
+     */
+    private synchronized void drain() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Retired> i = retired.iterator(); i.hasNext();) {
+            Retired r = i.next();
+            // Closed idle connections are removed from the pool, leaving
+            // only the connections in use
+            r.manager.closeIdleConnections(0);
+            int inUse = r.manager.getConnectionsInPool();
+            if (inUse == 0 || r.deadline < now) {
+                if (inUse > 0) {
+                    LOG.log(Level.WARNING, "Shutting down discarded search engine client with {0} {0, choice, 0#requests|1#request|2#requests} in progress",
+                            inUse);
+                }
+                r.manager.shutdown();
+                i.remove();
+            }
+        }
+        if (retired.isEmpty() && draining != null) {
+            draining.cancel(false);
+            draining = null;
+        }
+    }
+
+    private ScheduledExecutorService getDrainer() {
+        if (drainer == null) {
+            drainer = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactory() {
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "converge-solr-drainer");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+        }
+        return drainer;
+    }
+
+    private static MultiThreadedHttpConnectionManager getConnectionManager(
+            CommonsHttpSolrServer server) {
+        return (MultiThreadedHttpConnectionManager) server.getHttpClient().
+                getHttpConnectionManager();
+    }
+
+    private CommonsHttpSolrServer createSolrServer(ConfigurationKey urlKey,
+            ConfigurationServiceLocal cfgService) {
+        try {
+            String url = cfgService.getString(urlKey);
+            Integer socketTimeout = cfgService.getInteger(
+                    ConfigurationKey.SEARCH_ENGINE_SOCKET_TIMEOUT);
+            Integer connectionTimeout = cfgService.getInteger(
+                    ConfigurationKey.SEARCH_ENGINE_CONNECTION_TIMEOUT);
+            Integer maxTotalConnectionsPerHost =
+                    cfgService.getInteger(
+                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS_PER_HOST);
+            Integer maxTotalConnections =
+                    cfgService.getInteger(
+                    ConfigurationKey.SEARCH_ENGINE_MAX_TOTAL_CONNECTIONS);
+            Integer maxRetries = cfgService.getInteger(
+                    ConfigurationKey.SEARCH_ENGINE_MAX_RETRIES);
+            Boolean followRedirects = cfgService.getBoolean(
+                    ConfigurationKey.SEARCH_ENGINE_FOLLOW_REDIRECTS);
+            Boolean allowCompression = cfgService.getBoolean(
+                    ConfigurationKey.SEARCH_ENGINE_ALLOW_COMPRESSION);
+
+            HttpClient httpClient = new HttpClient(
+                    new MultiThreadedHttpConnectionManager());
+            CommonsHttpSolrServer solrServer =
+                    new CommonsHttpSolrServer(url, httpClient);
+            solrServer.setRequestWriter(new BinaryRequestWriter());
+            solrServer.setSoTimeout(socketTimeout);
+            solrServer.setConnectionTimeout(connectionTimeout);
+            solrServer.setDefaultMaxConnectionsPerHost(
+                    maxTotalConnectionsPerHost);
+            solrServer.setMaxTotalConnections(maxTotalConnections);
+            solrServer.setFollowRedirects(followRedirects);
+            solrServer.setAllowCompression(allowCompression);
+            solrServer.setMaxRetries(maxRetries);
+
+            LOG.log(Level.INFO, "Search engine client created for {0}", url);
+
+            return solrServer;
+        } catch (MalformedURLException ex) {
+            LOG.log(Level.SEVERE, "Invalid search engine configuration. {0}",
+                    ex.getMessage());
+            LOG.log(Level.FINE, "", ex);
+            throw new IllegalStateException(
+                    "Invalid search engine configuration", ex);
+        }
+    }
+
+    /**
+     * Connection manager of a discarded client waiting for its requests in
+     * progress to complete.
+     */
+    private static class Retired {
+
+        private final MultiThreadedHttpConnectionManager manager;
+
+        private final long deadline;
+
+        Retired(MultiThreadedHttpConnectionManager manager, long deadline) {
+            this.manager = manager;
+            this.deadline = deadline;
+        }
+    }
+}
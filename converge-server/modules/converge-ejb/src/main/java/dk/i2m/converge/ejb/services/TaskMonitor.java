@@ -0,0 +1,298 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.utils.LatencySampler;
+import dk.i2m.converge.domain.TaskStatistics;
+import dk.i2m.converge.domain.TaskStatistics.Category;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Singleton collecting the execution counters of the background tasks on
+ * this node, i.e. timer executions, newswire downloads, indexing batches,
+ * edition actions and catalogue hooks. Unlike the background tasks created
+ * through the {@code SystemFacade}, which only show what is currently
+ * running, the monitor keeps the number of executions waiting in queues,
+ * items processed, errors, queue time and execution time percentiles of each
+ * task.
+ * <p/>
+ * The counters are available through JMX as {@value #OBJECT_NAME}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class TaskMonitor implements TaskMonitorMXBean {
+
+    /** Name of the MBean exposing the counters. */
+    public static final String OBJECT_NAME = "dk.i2m.converge:type=TaskMonitor";
+
+    private static final Logger LOG = Logger.getLogger(TaskMonitor.class.
+            getName());
+
+    /** Number of recent executions used for calculating percentiles. */
+    private static final int SAMPLE_SIZE = 1000;
+
+    private static final TaskMonitor INSTANCE = new TaskMonitor();
+
+    static {
+        INSTANCE.register();
+    }
+
+    private final ConcurrentMap<String, Counters> counters =
+            new ConcurrentHashMap<String, Counters>();
+
+    private TaskMonitor() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link TaskMonitor}.
+     *
+     * @return Singleton instance of {@link TaskMonitor}
+     */
+    public static TaskMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records that the execution of a task started.
+     *
+     * @param category Category of the task
+     * @param name     Name of the task
+     * @return Time the execution started, to be passed to
+     *         {@link #finished(Category, String, long, long, long)}
+     */
+    public long started(Category category, String name) {
+        long started = System.currentTimeMillis();
+        Counters c = getCounters(category, name);
+        synchronized (c) {
+            c.running++;
+            c.lastStarted = started;
+        }
+        return started;
+    }
+
+    /**
+     * Records that the execution of a queued task started.
+     *
+     * @param category  Category of the task
+     * @param name      Name of the task
+     * @param queueTime Time in milliseconds the execution waited in the queue
+     * @return Time the execution started, to be passed to
+     *         {@link #finished(Category, String, long, long, long)}
+     */
+    public long started(Category category, String name, long queueTime) {
+        Counters c = getCounters(category, name);
+        synchronized (c) {
+            // Executions queued by another node may be started on this node
+            c.queued = Math.max(0, c.queued - 1);
+            c.totalQueueTime += Math.max(0, queueTime);
+        }
+        return started(category, name);
+    }
+
+    /**
+     * Records that the execution of a task was queued.
+     *
+     * @param category Category of the task
+     * @param name     Name of the task
+     */
+    public void queued(Category category, String name) {
+        Counters c = getCounters(category, name);
+        synchronized (c) {
+            c.queued++;
+        }
+    }
+
+    /**
+     * Sets the number of executions or items waiting to be processed by a
+     * task, e.g. the number of entries in the indexing queue.
+     *
+     * @param category Category of the task
+     * @param name     Name of the task
+     * @param queued   Number of executions or items waiting
+     */
+    public void setQueued(Category category, String name, long queued) {
+        Counters c = getCounters(category, name);
+        synchronized (c) {
+            c.queued = queued;
+        }
+    }
+
+    /**
+     * Records that the execution of a task finished.
+     *
+     * @param category Category of the task
+     * @param name     Name of the task
+     * @param started  Time the execution started, as returned by
+     *                 {@link #started(Category, String)}
+     * @param items    Number of items processed
+     * @param errors   Number of errors encountered
+     */
+    public void finished(Category category, String name, long started,
+            long items, long errors) {
+        long finished = System.currentTimeMillis();
+        long time = finished - started;
+        Counters c = getCounters(category, name);
+        synchronized (c) {
+            c.running = Math.max(0, c.running - 1);
+            c.invocations++;
+            c.items += items;
+            c.errors += errors;
+            c.totalTime += time;
+            c.lastTime = time;
+            c.maxTime = Math.max(c.maxTime, time);
+            c.lastFinished = finished;
+            c.sampler.add(time);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<TaskStatistics> getTaskStatistics() {
+        List<TaskStatistics> statistics = new ArrayList<TaskStatistics>();
+        for (Counters c : counters.values()) {
+            TaskStatistics s = new TaskStatistics();
+            s.setCategory(c.category);
+            s.setName(c.name);
+            synchronized (c) {
+                s.setRunning(c.running);
+                s.setQueued(c.queued);
+                s.setTotalQueueTime(c.totalQueueTime);
+                s.setInvocations(c.invocations);
+                s.setItems(c.items);
+                s.setErrors(c.errors);
+                s.setTotalTime(c.totalTime);
+                s.setLastTime(c.lastTime);
+                s.setMaxTime(c.maxTime);
+                if (c.lastStarted > 0) {
+                    s.setLastStarted(new Date(c.lastStarted));
+                }
+                if (c.lastFinished > 0) {
+                    s.setLastFinished(new Date(c.lastFinished));
+                }
+                long[] percentiles = c.sampler.getPercentiles(50, 90, 99);
+                s.setPercentile50(percentiles[0]);
+                s.setPercentile90(percentiles[1]);
+                s.setPercentile99(percentiles[2]);
+            }
+            statistics.add(s);
+        }
+
+        Collections.sort(statistics, new Comparator<TaskStatistics>() {
+
+            @Override
+            public int compare(TaskStatistics s1, TaskStatistics s2) {
+                int result = s1.getCategory().compareTo(s2.getCategory());
+                if (result == 0) {
+                    result = s1.getName().compareTo(s2.getName());
+                }
+                return result;
+            }
+        });
+        return statistics;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void reset() {
+        // Counters of running and queued tasks are kept so that they can
+        // finish
+        for (String key : counters.keySet()) {
+            Counters c = counters.get(key);
+            synchronized (c) {
+                if (c.running == 0 && c.queued == 0) {
+                    counters.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the monitor with the platform MBean server, replacing the
+     * monitor of a previous deployment.
+     */
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Could not register {0}. {1}",
+                    new Object[]{OBJECT_NAME, ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        }
+    }
+
+    private Counters getCounters(Category category, String name) {
+        String key = category.name() + ":" + name;
+        Counters c = counters.get(key);
+        if (c == null) {
+            counters.putIfAbsent(key, new Counters(category, name));
+            c = counters.get(key);
+        }
+        return c;
+    }
+
+    private static class Counters {
+
+        private final Category category;
+
+        private final String name;
+
+        private final LatencySampler sampler = new LatencySampler(SAMPLE_SIZE);
+
+        private long running = 0;
+
+        private long queued = 0;
+
+        private long totalQueueTime = 0;
+
+        private long invocations = 0;
+
+        private long items = 0;
+
+        private long errors = 0;
+
+        private long totalTime = 0;
+
+        private long lastTime = 0;
+
+        private long maxTime = 0;
+
+        private long lastStarted = 0;
+
+        private long lastFinished = 0;
+
+        Counters(Category category, String name) {
+            this.category = category;
+            this.name = name == null ? "" : name;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.domain.TaskStatistics;
+import java.util.List;
+
+/**
+ * Management interface of the {@link TaskMonitor}, registered with the
+ * platform MBean server as {@value TaskMonitor#OBJECT_NAME}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public interface TaskMonitorMXBean {
+
+    /**
+     * Gets a snapshot of the counters of each instrumented background task.
+     *
+     * @return {@link List} of counter snapshots
+     */
+    List<TaskStatistics> getTaskStatistics();
+
+    /**
+     * Resets the counters of all background tasks.
+     */
+    void reset();
+}
@@ -17,9 +17,11 @@
 package dk.i2m.converge.ejb.services;
 
 import dk.i2m.converge.domain.SystemTimer;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.CatalogueFacadeLocal;
 import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
 import dk.i2m.converge.ejb.facades.SearchEngineLocal;
+import dk.i2m.converge.ejb.facades.UserFacadeLocal;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -51,6 +53,12 @@ public class TimerServiceBean implements TimerServiceLocal {
 
     @EJB private SearchEngineLocal searchEngineService;
 
+    @EJB private WorkflowActionServiceLocal workflowActionService;
+
+    @EJB private UserFacadeLocal userFacade;
+
+    @EJB private JobServiceLocal jobService;
+
     /** {@inheritDoc} */
     @Override
     public void startTimer(PeriodicTimer timer) {
@@ -158,9 +166,15 @@ public class TimerServiceBean implements TimerServiceLocal {
     public void executeTimer(Timer timer) {
         LOG.log(Level.FINE, "Executing timer [{0}]", new Object[]{timer.getInfo()});
 
+        TaskMonitor monitor = TaskMonitor.getInstance();
+        String name = String.valueOf(timer.getInfo());
+        long started = monitor.started(TaskStatistics.Category.TIMER, name);
+        long items = 0;
+        long errors = 0;
+
         try {
             if (timer.getInfo().equals(PeriodicTimer.NEWSWIRE.name())) {
-                newswireService.downloadNewswireServices();
+                newswireService.downloadDueNewswireServices();
             }else if (timer.getInfo().equals(PeriodicTimer.NEWSWIRE_PURGE.name())) {
                 newswireService.purgeNewswires();
             } else if (timer.getInfo().equals(PeriodicTimer.EDITION.name())) {
@@ -171,11 +185,21 @@ public class TimerServiceBean implements TimerServiceLocal {
                 searchEngineService.processIndexingQueue();
             } else if (PeriodicTimer.NEWSWIRE_BASKET.name().equals(timer.getInfo())) {
                 newswireService.dispatchBaskets();
+            } else if (PeriodicTimer.WORKFLOW_ACTION_RETRY.name().equals(timer.getInfo())) {
+                workflowActionService.retryDueExecutions();
+            } else if (PeriodicTimer.DIRECTORY_SYNC.name().equals(timer.getInfo())) {
+                userFacade.synchroniseWithDirectory();
+            } else if (PeriodicTimer.JOB.name().equals(timer.getInfo())) {
+                items = jobService.processJobs();
             } else {
                 LOG.log(Level.WARNING, "Ignoring unknown timer [{0}]", new Object[]{timer.getInfo()});
             }
         } catch (Throwable t) {
             LOG.log(Level.SEVERE, t.getMessage(), t);
+            errors++;
+        } finally {
+            monitor.finished(TaskStatistics.Category.TIMER, name, started,
+                    items, errors);
         }
     }
 
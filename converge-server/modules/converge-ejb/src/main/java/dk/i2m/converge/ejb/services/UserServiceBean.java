@@ -22,6 +22,8 @@ import dk.i2m.converge.core.security.*;
 import dk.i2m.converge.core.utils.BeanComparator;
 import dk.i2m.converge.core.workflow.Department;
 import dk.i2m.converge.core.workflow.Outlet;
+import dk.i2m.converge.domain.CacheStatistics;
+import dk.i2m.converge.ejb.services.DirectoryCache.DirectoryEntry;
 import dk.i2m.jndi.ldap.LdapUtils;
 import java.util.*;
 import java.util.logging.Level;
@@ -129,78 +131,146 @@ public class UserServiceBean implements UserServiceLocal {
     public List<UserAccount> getMembers(String groupDn) throws NamingException {
         // Field containing the user unique identifier
         String uid = getFieldMapping(LdapFieldMapping.USER_MAPPING_USERNAME);
-        // Field containinf the "member of" a group
-        String memberOf = getFieldMapping(
-                LdapFieldMapping.GROUP_MAPPING_MEMBEROF);
 
         List<UserAccount> members = new LinkedList<UserAccount>();
 
-        // Set up attributes to search for
-        String[] searchAttributes = new String[1];
-        searchAttributes[0] = memberOf;
-
-        DirContext dirCtx = getDirectoryConnection();
-
-        // Get all the memberOf attributes of the "group of users"
-        Attributes groupAttrs = dirCtx.getAttributes(groupDn, searchAttributes);
-        if (groupAttrs != null) {
-
-            Attribute memberAttrs = groupAttrs.get(memberOf);
-            if (memberAttrs != null) {
-
-                NamingEnumeration vals = memberAttrs.getAll();
-                while (vals.hasMoreElements()) {
-                    UserAccount ua;
-
-                    // Get the DN of the next group member
-                    String userDn = (String) vals.nextElement();
-
-                    // Get all the attributes of the given user
-                    try {
-                        Attributes attrs = dirCtx.getAttributes(userDn);
-
-                        // Get the UID of the user
-                        String username = (String) attrs.get(uid).get();
-
-                        // Look up user by UID in local database
-                        Map<String, Object> params = QueryBuilder.with(
-                                "username", username).parameters();
-                        List<UserAccount> result =
-                                daoService.findWithNamedQuery(
-                                UserAccount.FIND_BY_UID, params);
-
-                        if (result.isEmpty()) {
-                            LOG.log(Level.FINE,
-                                    "User {0} has not been setup in the local database, using information from directory",
-                                    username);
-                            ua = new UserAccount();
-                        } else {
-                            ua = result.iterator().next();
-                        }
-
-                        // Add LDAP directory attributes to user
-                        updateUser(ua, attrs);
-                        ua.setDistinguishedName(userDn);
-
-                        // Add to results list
-                        members.add(ua);
-                    } catch (NamingException ex) {
-                        LOG.log(Level.WARNING, "User {0} does not exist in LDAP",
-                                userDn);
-                    }
-                }
+        Map<String, Attributes> entries = loadMembers(groupDn, false);
+        for (String userDn : entries.keySet()) {
+            UserAccount ua;
+            Attributes attrs = entries.get(userDn);
+
+            // Get the UID of the user
+            String username = LdapUtils.validateAttribute(attrs.get(uid));
+
+            // Look up user by UID in local database
+            Map<String, Object> params = QueryBuilder.with(
+                    "username", username).parameters();
+            List<UserAccount> result = daoService.findWithNamedQuery(
+                    UserAccount.FIND_BY_UID, params);
+
+            if (result.isEmpty()) {
+                LOG.log(Level.FINE,
+                        "User {0} has not been setup in the local database, using information from directory",
+                        username);
+                ua = new UserAccount();
+            } else {
+                ua = result.iterator().next();
             }
-        } else {
-            LOG.log(Level.SEVERE, "Couldn't find search attributes ({0}) in {1}",
-                    new Object[]{memberOf, groupOfUsers});
+
+            // Add LDAP directory attributes to user
+            updateUser(ua, attrs);
+            ua.setDistinguishedName(userDn);
+
+            // Add to results list
+            members.add(ua);
         }
-        closeDirectoryConnection(dirCtx);
 
         Collections.sort(members, new BeanComparator("fullName"));
 
         return members;
     }
 
+    /** {@inheritDoc } */
+    @Override
+    public void refreshDirectoryCache() throws NamingException {
+        loadMembers(groupOfUsers, true);
+        if (!StringUtils.isBlank(groupOfAdministrators)) {
+            loadMembers(groupOfAdministrators, true);
+        }
+    }
+
+    /** {@inheritDoc } */
+    @Override
+    public CacheStatistics getCacheStatistics() {
+        return DirectoryCache.getInstance().getStatistics();
+    }
+
+    /**
+     * Loads the entries of the members of a group. The members and entries
+     * are taken from the {@link DirectoryCache} if available and otherwise
+     * read from the directory and cached.
+     *
+     * @param groupDn Distinguished name of the group
+     * @param refresh {@code true} to read the members and entries from the
+     *                directory even if they are cached
+     * @return Attributes of the members of the group keyed by their
+     *         distinguished names
+     * @throws NamingException If the directory could not be read
+     */
+    private Map<String, Attributes> loadMembers(String groupDn,
+            boolean refresh) throws NamingException {
+        DirectoryCache cache = DirectoryCache.getInstance();
+        String uid = getFieldMapping(LdapFieldMapping.USER_MAPPING_USERNAME);
+        // Field containinf the "member of" a group
+        String memberOf = getFieldMapping(
+                LdapFieldMapping.GROUP_MAPPING_MEMBEROF);
+
+        Map<String, Attributes> entries =
+                new LinkedHashMap<String, Attributes>();
+        List<String> memberDns = refresh ? null : cache.getMembers(groupDn);
+        DirContext dirCtx = null;
+        try {
+            if (memberDns == null) {
+                memberDns = new ArrayList<String>();
+                dirCtx = getDirectoryConnection();
+
+                // Get all the memberOf attributes of the group
+                Attributes groupAttrs = dirCtx.getAttributes(groupDn,
+                        new String[]{memberOf});
+                Attribute memberAttrs = groupAttrs == null ? null
+                        : groupAttrs.get(memberOf);
+                if (memberAttrs != null) {
+                    NamingEnumeration vals = memberAttrs.getAll();
+                    while (vals.hasMoreElements()) {
+                        memberDns.add((String) vals.nextElement());
+                    }
+                } else {
+                    LOG.log(Level.SEVERE,
+                            "Couldn't find search attributes ({0}) in {1}",
+                            new Object[]{memberOf, groupDn});
+                }
+                cache.putMembers(groupDn, memberDns, getCacheTimeToLive());
+            }
+
+            for (String userDn : memberDns) {
+                DirectoryEntry entry = refresh ? null
+                        : cache.getByDistinguishedName(userDn);
+                if (entry != null) {
+                    entries.put(userDn, entry.getAttributes());
+                    continue;
+                }
+
+                if (dirCtx == null) {
+                    dirCtx = getDirectoryConnection();
+                }
+
+                // Get all the attributes of the given user
+                try {
+                    Attributes attrs = dirCtx.getAttributes(userDn);
+                    String username = (String) attrs.get(uid).get();
+                    cache.put(username, userDn, attrs, getCacheTimeToLive(),
+                            getCacheSize());
+                    entries.put(userDn, attrs);
+                } catch (CommunicationException ex) {
+                    throw ex;
+                } catch (NamingException ex) {
+                    LOG.log(Level.WARNING, "User {0} does not exist in LDAP",
+                            userDn);
+                } catch (NullPointerException ex) {
+                    LOG.log(Level.WARNING, "User {0} does not have a {1}",
+                            new Object[]{userDn, uid});
+                }
+            }
+        } catch (NamingException ex) {
+            invalidateDirectoryConnection(dirCtx);
+            dirCtx = null;
+            throw ex;
+        } finally {
+            closeDirectoryConnection(dirCtx);
+        }
+        return entries;
+    }
+
     /** {@inheritDoc} */
     @Override
     public List<UserAccount> findAll() {
@@ -219,6 +289,12 @@ public class UserServiceBean implements UserServiceLocal {
      */
     @Override
     public boolean exists(String id) {
+        DirectoryEntry entry = DirectoryCache.getInstance().getByUsername(id);
+        if (entry != null && entry.getDistinguishedName().toLowerCase().
+                endsWith(this.groupOfUsers.toLowerCase())) {
+            return true;
+        }
+
         this.sc.setSearchScope(SearchControls.SUBTREE_SCOPE);
 
         String uid = getFieldMapping(LdapFieldMapping.USER_MAPPING_USERNAME);
@@ -226,13 +302,21 @@ public class UserServiceBean implements UserServiceLocal {
         String filter = "(" + uid + "=" + id + ")";
 
         boolean exists = false;
+        DirContext dirCtx = null;
         try {
-            DirContext dirCtx = getDirectoryConnection();
+            dirCtx = getDirectoryConnection();
             NamingEnumeration results = dirCtx.search(this.groupOfUsers, filter,
                     this.sc);
-            exists = results.hasMore();
+            if (results.hasMore()) {
+                SearchResult sr = (SearchResult) results.next();
+                DirectoryCache.getInstance().put(id, sr.getNameInNamespace(),
+                        sr.getAttributes(), getCacheTimeToLive(),
+                        getCacheSize());
+                exists = true;
+            }
             closeDirectoryConnection(dirCtx);
         } catch (NamingException e) {
+            invalidateDirectoryConnection(dirCtx);
             LOG.log(Level.WARNING, "", e);
         }
 
@@ -256,6 +340,13 @@ public class UserServiceBean implements UserServiceLocal {
         String id = userAccount.getUsername();
         String uid = getFieldMapping(LdapFieldMapping.USER_MAPPING_USERNAME);
 
+        DirectoryEntry entry = DirectoryCache.getInstance().getByUsername(id);
+        if (entry != null) {
+            updateUser(userAccount, entry.getAttributes());
+            userAccount.setDistinguishedName(entry.getDistinguishedName());
+            return userAccount;
+        }
+
         DirContext dirCtx = null;
         try {
             String base = cfgService.getString(ConfigurationKey.LDAP_BASE);
@@ -266,6 +357,9 @@ public class UserServiceBean implements UserServiceLocal {
             if (results.hasMoreElements() && !found) {
                 SearchResult sr = (SearchResult) results.next();
 
+                DirectoryCache.getInstance().put(id, sr.getNameInNamespace(),
+                        sr.getAttributes(), getCacheTimeToLive(),
+                        getCacheSize());
                 updateUser(userAccount, sr.getAttributes());
                 userAccount.setDistinguishedName(sr.getNameInNamespace());
                 found = true;
@@ -273,10 +367,10 @@ public class UserServiceBean implements UserServiceLocal {
 
             closeDirectoryConnection(dirCtx);
         } catch (CommunicationException e) {
-            closeDirectoryConnection(dirCtx);
+            invalidateDirectoryConnection(dirCtx);
             throw new DirectoryException("Could not connect to directory", e);
         } catch (NamingException e) {
-            closeDirectoryConnection(dirCtx);
+            invalidateDirectoryConnection(dirCtx);
             throw new DirectoryException("Could not connect to directory", e);
         }
 
@@ -320,11 +414,22 @@ public class UserServiceBean implements UserServiceLocal {
             ua.setUsername(id);
             ua.setTimeZoneAsString(cfgService.getString(
                     ConfigurationKey.TIME_ZONE));
+            if (DirectoryCache.getInstance().isUnknown(id)) {
+                throw new UserNotFoundException("User [" + id
+                        + "] was not found in directory nor database");
+            }
             try {
                 ua = syncWithDirectory(ua);
                 LOG.log(Level.FINE, "Creating user account in database for {0}",
                         id);
                 return daoService.create(ua);
+            } catch (UserNotFoundException ex) {
+                DirectoryCache.getInstance().putUnknown(id,
+                        cfgService.getInteger(
+                        ConfigurationKey.LDAP_CACHE_UNKNOWN_TTL) * 1000L,
+                        getCacheSize());
+                throw new UserNotFoundException("User [" + id
+                        + "] was not found in directory nor database", ex);
             } catch (Exception ex) {
                 throw new UserNotFoundException("User [" + id
                         + "] was not found in directory nor database", ex);
@@ -535,9 +640,30 @@ public class UserServiceBean implements UserServiceLocal {
         return getFieldMapping(fieldMapping.name());
     }
 
+    /**
+     * Gets the number of milliseconds directory entries are cached.
+     *
+     * @return Milliseconds directory entries are cached
+     */
+    private long getCacheTimeToLive() {
+        return cfgService.getInteger(ConfigurationKey.LDAP_CACHE_TTL) * 1000L;
+    }
+
+    /**
+     * Gets the maximum number of directory entries cached.
+     *
+     * @return Maximum number of directory entries cached
+     */
+    private int getCacheSize() {
+        return cfgService.getInteger(ConfigurationKey.LDAP_CACHE_SIZE);
+    }
+
     /**
      * Obtains the connection to the LDAP directory used for storing users and
-     * user groups.
+     * user groups. The connection is borrowed from the
+     * {@link DirectoryConnectionPool} and must be returned using
+     * {@link #closeDirectoryConnection(DirContext)}, or
+     * {@link #invalidateDirectoryConnection(DirContext)} if it failed.
      *
      * @return Established connection to the used LDAP directory
      * @throws NamingException
@@ -547,7 +673,7 @@ public class UserServiceBean implements UserServiceLocal {
         LOG.log(Level.FINE, "Opening directory connection");
         DirContext dirContext = null;
 
-        Properties p = new Properties();
+        Hashtable<String, String> p = new Hashtable<String, String>();
         p.put(Context.INITIAL_CONTEXT_FACTORY,
                 cfgService.getString(ConfigurationKey.LDAP_CONNECTION_FACTORY));
         p.put("com.sun.jndi.ldap.connect.pool", "true");
@@ -568,15 +694,15 @@ public class UserServiceBean implements UserServiceLocal {
 
         if (LOG.isLoggable(Level.FINE)) {
             LOG.log(Level.FINE, "INITIAL_CONTEXT_FACTORY: {0}",
-                    p.getProperty(Context.INITIAL_CONTEXT_FACTORY));
-            LOG.log(Level.FINE, "PROVIDER_URL: {0}", p.getProperty(
+                    p.get(Context.INITIAL_CONTEXT_FACTORY));
+            LOG.log(Level.FINE, "PROVIDER_URL: {0}", p.get(
                     Context.PROVIDER_URL));
             LOG.log(Level.FINE, "SECURITY_AUTHENTICATION: {0}",
-                    p.getProperty(Context.SECURITY_AUTHENTICATION));
+                    p.get(Context.SECURITY_AUTHENTICATION));
             LOG.log(Level.FINE, "SECURITY_PRINCIPAL: {0}",
-                    p.getProperty(Context.SECURITY_PRINCIPAL));
+                    p.get(Context.SECURITY_PRINCIPAL));
             LOG.log(Level.FINE, "SECURITY_CREDENTIALS: {0}",
-                    p.getProperty(Context.SECURITY_CREDENTIALS));
+                    p.get(Context.SECURITY_CREDENTIALS));
             LOG.log(Level.FINE, "LDAP_BASE: {0}",
                     cfgService.getString(ConfigurationKey.LDAP_BASE));
             LOG.log(Level.FINE, "LDAP_CONNECTION_TIMEOUT: {0}", cfgService.
@@ -585,23 +711,42 @@ public class UserServiceBean implements UserServiceLocal {
                     cfgService.getString(ConfigurationKey.LDAP_READ_TIMEOUT));
         }
 
-        dirContext = new InitialDirContext(p);
+        DirectoryConnectionPool pool = DirectoryConnectionPool.getInstance();
+        pool.configure(cfgService.getInteger(ConfigurationKey.LDAP_POOL_SIZE),
+                cfgService.getInteger(
+                ConfigurationKey.LDAP_POOL_VALIDATION_INTERVAL) * 1000L);
+        dirContext = pool.borrow(p);
 
         return dirContext;
     }
 
+    /**
+     * Returns a connection to the {@link DirectoryConnectionPool}.
+     *
+     * @param dirContext Connection to return, or {@code null} if no
+     *                   connection was obtained
+     */
     private void closeDirectoryConnection(DirContext dirContext) {
-        LOG.log(Level.FINE, "Closing directory connection");
         if (dirContext == null) {
-            LOG.log(Level.WARNING, "Could not close DirContext as it is null");
             return;
         }
+        LOG.log(Level.FINE, "Closing directory connection");
+        DirectoryConnectionPool.getInstance().release(dirContext);
+    }
 
-        try {
-            dirContext.close();
-        } catch (NamingException ex) {
-            LOG.log(Level.SEVERE, "Could not close DirContext. ", ex);
+    /**
+     * Discards a connection that failed rather than returning it to the
+     * {@link DirectoryConnectionPool}.
+     *
+     * @param dirContext Connection to discard, or {@code null} if no
+     *                   connection was obtained
+     */
+    private void invalidateDirectoryConnection(DirContext dirContext) {
+        if (dirContext == null) {
+            return;
         }
+        LOG.log(Level.FINE, "Discarding directory connection");
+        DirectoryConnectionPool.getInstance().invalidate(dirContext);
     }
 
     /** {@inheritDoc } */
@@ -161,4 +161,20 @@ public interface UserServiceLocal {
     java.util.List<dk.i2m.converge.core.security.UserAccount> getRoleMembers(java.lang.Long roleId);
 
     public java.util.List<dk.i2m.converge.core.security.UserAccount> getDirectoryMembers() throws javax.naming.NamingException;
+
+    /**
+     * Reads the members of the groups of users and administrators from the
+     * LDAP directory and replaces their entries in the directory cache.
+     *
+     * @throws NamingException
+     *          If the LDAP directory could not be read
+     */
+    void refreshDirectoryCache() throws NamingException;
+
+    /**
+     * Gets the hit and miss counters of the directory cache.
+     *
+     * @return Snapshot of the directory cache counters
+     */
+    dk.i2m.converge.domain.CacheStatistics getCacheStatistics();
 }
@@ -0,0 +1,373 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.content.NewsItem;
+import dk.i2m.converge.core.logging.LogSeverity;
+import dk.i2m.converge.core.plugin.WorkflowAction;
+import dk.i2m.converge.core.security.UserAccount;
+import dk.i2m.converge.core.workflow.WorkflowActionException;
+import dk.i2m.converge.core.workflow.WorkflowStepAction;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution.Status;
+import dk.i2m.converge.ejb.messaging.WorkflowActionMessageBean;
+import java.util.Calendar;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+/**
+ * Stateless session bean executing asynchronous {@link WorkflowStepAction}s.
+ * <p/>
+ * Asynchronous actions are queued on the workflow action queue when a step is
+ * taken and executed once the step has been committed. Each attempt runs on
+ * the thread delivering the message, in a transaction that is rolled back if
+ * the action does not complete within its timeout. Failed attempts are
+ * retried with an exponentially increasing delay. The outcome of every
+ * attempt is recorded in a {@link WorkflowStepActionExecution}.
+ * <p/>
+ * An execution is started by a conditional update, so that it only runs once
+ * if it is delivered more than once. Executions whose message was lost are
+ * queued again, and executions interrupted by a restart of their server
+ * instance are retried.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Stateless
+public class WorkflowActionServiceBean implements WorkflowActionServiceLocal {
+
+    private static final Logger LOG =
+            Logger.getLogger(WorkflowActionServiceBean.class.getName());
+
+    private static final int DEFAULT_TIMEOUT = 300;
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final int DEFAULT_RETRY_DELAY = 60;
+
+    @EJB private DaoServiceLocal daoService;
+
+    @EJB private ConfigurationServiceLocal cfgService;
+
+    @EJB private PluginContextBeanLocal pluginContext;
+
+    @Resource(mappedName = "jms/workflowActionQueue") private Destination workflowActionQueue;
+
+    @Resource(mappedName = "jms/connectionFactory") private ConnectionFactory jmsConnectionFactory;
+
+    @Resource private SessionContext ctx;
+
+    /** {@inheritDoc} */
+    @Override
+    public WorkflowStepActionExecution queue(NewsItem newsItem,
+            WorkflowStepAction stepAction, UserAccount user) {
+        WorkflowStepActionExecution execution = daoService.create(
+                new WorkflowStepActionExecution(stepAction, newsItem.getId(),
+                user));
+        dispatch(execution);
+        return execution;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.MANDATORY)
+    public void perform(Long executionId) throws DataNotFoundException,
+            WorkflowActionException {
+        WorkflowStepActionExecution execution = daoService.findById(
+                WorkflowStepActionExecution.class, executionId);
+        WorkflowStepAction stepAction = execution.getStepAction();
+        UserAccount user = execution.getUser();
+        NewsItem newsItem;
+        try {
+            newsItem = daoService.findById(NewsItem.class,
+                    execution.getNewsItemId());
+        } catch (DataNotFoundException ex) {
+            throw new DataNotFoundException("News item #"
+                    + execution.getNewsItemId() + " no longer exist");
+        }
+        WorkflowAction action = stepAction.getAction();
+
+        pluginContext.setCurrentUserAccount(user);
+        action.execute(pluginContext, newsItem, stepAction, user);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public WorkflowStepActionExecution start(Long executionId) {
+        // Claimed by a single conditional update, so that the execution is
+        // only started once if it is delivered more than once
+        int claimed = daoService.executeQuery(WorkflowStepActionExecution.CLAIM,
+                QueryBuilder.with("id", executionId).and("queued",
+                Status.QUEUED).and("running", Status.RUNNING).and("owner",
+                ServerInstance.NAME).and("now", Calendar.getInstance()));
+        if (claimed == 0) {
+            return null;
+        }
+
+        try {
+            return daoService.findById(WorkflowStepActionExecution.class,
+                    executionId);
+        } catch (DataNotFoundException ex) {
+            return null;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void finish(Long executionId, boolean successful, String message) {
+        WorkflowStepActionExecution execution;
+        try {
+            execution = daoService.findById(WorkflowStepActionExecution.class,
+                    executionId);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Execution #{0} no longer exist", executionId);
+            return;
+        }
+
+        Calendar now = Calendar.getInstance();
+        execution.setFinished(now);
+        execution.setMessage(message);
+
+        WorkflowStepAction stepAction = execution.getStepAction();
+        String label = stepAction == null ? "" : stepAction.getLabel();
+
+        if (successful) {
+            execution.setStatus(Status.COMPLETED);
+            execution.setNextAttempt(null);
+        } else if (stepAction != null
+                && execution.getAttempts() < getMaxAttempts(stepAction)) {
+            // Exponential backoff: delay, 2 x delay, 4 x delay, ...
+            long delay = (long) getRetryDelay()
+                    << Math.min(16, execution.getAttempts() - 1);
+            Calendar next = (Calendar) now.clone();
+            next.add(Calendar.SECOND, (int) Math.min(Integer.MAX_VALUE, delay));
+            execution.setStatus(Status.RETRYING);
+            execution.setNextAttempt(next);
+            LOG.log(Level.WARNING,
+                    "Action {0} on news item #{1} failed (attempt {2}), retrying at {3}. {4}",
+                    new Object[]{label, execution.getNewsItemId(),
+                        execution.getAttempts(), next.getTime(), message});
+        } else {
+            execution.setStatus(Status.FAILED);
+            execution.setNextAttempt(null);
+            pluginContext.log(LogSeverity.SEVERE,
+                    "Could not execute action {0} after {1} attempts. {2}",
+                    new Object[]{label, execution.getAttempts(), message},
+                    new NewsItem(), execution.getNewsItemId());
+        }
+
+        daoService.update(execution);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int retryDueExecutions() {
+        Calendar now = Calendar.getInstance();
+        Calendar expired = (Calendar) now.clone();
+        expired.add(Calendar.SECOND, -getDefaultTimeout());
+
+        recoverExecutions();
+
+        // Running actions cannot be stopped, so actions running for twice
+        // their timeout are only reported
+        List<WorkflowStepActionExecution> running =
+                daoService.findWithNamedQuery(
+                WorkflowStepActionExecution.FIND_STALLED,
+                QueryBuilder.with("status", Status.RUNNING).and("expired",
+                expired).parameters());
+        for (WorkflowStepActionExecution execution : running) {
+            long runtime = now.getTimeInMillis()
+                    - execution.getStarted().getTimeInMillis();
+            if (runtime > 2000L * getTimeout(execution.getStepAction())) {
+                LOG.log(Level.WARNING,
+                        "Execution #{0} has been running on {1} since {2}",
+                        new Object[]{execution.getId(), execution.getOwner(),
+                            execution.getStarted().getTime()});
+            }
+        }
+
+        int requeued = 0;
+
+        // Queued again if the message was lost, e.g. because it could not be
+        // sent. Should both messages arrive, only one starts the execution
+        List<WorkflowStepActionExecution> undelivered =
+                daoService.findWithNamedQuery(
+                WorkflowStepActionExecution.FIND_UNDELIVERED,
+                QueryBuilder.with("status", Status.QUEUED).and("expired",
+                expired).parameters());
+        for (WorkflowStepActionExecution execution : undelivered) {
+            if (requeue(execution, Status.QUEUED, expired)) {
+                requeued++;
+            }
+        }
+
+        List<WorkflowStepActionExecution> due = daoService.findWithNamedQuery(
+                WorkflowStepActionExecution.FIND_DUE_RETRIES,
+                QueryBuilder.with("status", Status.RETRYING).and("now", now).
+                parameters());
+        for (WorkflowStepActionExecution execution : due) {
+            if (requeue(execution, Status.RETRYING, now)) {
+                requeued++;
+            }
+        }
+
+        return requeued;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int recoverExecutions() {
+        WorkflowActionServiceLocal self =
+                ctx.getBusinessObject(WorkflowActionServiceLocal.class);
+        List<WorkflowStepActionExecution> interrupted =
+                daoService.findWithNamedQuery(
+                WorkflowStepActionExecution.FIND_INTERRUPTED,
+                QueryBuilder.with("status", Status.RUNNING).and("owner",
+                ServerInstance.NAME).and("started", ServerInstance.STARTED).
+                parameters());
+        for (WorkflowStepActionExecution execution : interrupted) {
+            self.finish(execution.getId(), false,
+                    "Execution was interrupted by a restart");
+        }
+        return interrupted.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<WorkflowStepActionExecution> findExecutions(Long newsItemId) {
+        return daoService.findWithNamedQuery(
+                WorkflowStepActionExecution.FIND_BY_NEWS_ITEM,
+                QueryBuilder.with("newsItemId", newsItemId).parameters());
+    }
+
+    /**
+     * Queues an execution again, unless its status has changed or it was
+     * queued again concurrently.
+     *
+     * @param execution {@link WorkflowStepActionExecution} to queue
+     * @param status    Expected status of the execution
+     * @param before    Time the execution must have been queued before
+     * @return {@code true} if the execution was queued
+     */
+    private boolean requeue(WorkflowStepActionExecution execution,
+            Status status, Calendar before) {
+        int updated = daoService.executeQuery(
+                WorkflowStepActionExecution.REQUEUE, QueryBuilder.with("id",
+                execution.getId()).and("status", status).and("queued",
+                Status.QUEUED).and("expired", before).and("now",
+                Calendar.getInstance()));
+        if (updated == 0) {
+            return false;
+        }
+        dispatch(execution);
+        return true;
+    }
+
+    /**
+     * Sends an execution to the workflow action queue. The message is
+     * delivered when the current transaction commits. Should the message not
+     * be sent, the execution is queued again by
+     * {@link #retryDueExecutions()}.
+     *
+     * @param execution {@link WorkflowStepActionExecution} to dispatch
+     */
+    private void dispatch(WorkflowStepActionExecution execution) {
+        Connection connection = null;
+        try {
+            connection = jmsConnectionFactory.createConnection();
+            Session session = connection.createSession(true,
+                    Session.AUTO_ACKNOWLEDGE);
+            MessageProducer producer = session.createProducer(
+                    workflowActionQueue);
+            MapMessage message = session.createMapMessage();
+            message.setLongProperty(
+                    WorkflowActionMessageBean.Property.EXECUTION_ID.name(),
+                    execution.getId());
+            producer.send(message);
+            session.close();
+        } catch (JMSException ex) {
+            LOG.log(Level.SEVERE, "Could not queue execution #{0}. {1}",
+                    new Object[]{execution.getId(), ex.getMessage()});
+            LOG.log(Level.FINE, "", ex);
+        } finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getTimeout(WorkflowStepAction stepAction) {
+        if (stepAction != null && stepAction.getTimeout() != null
+                && stepAction.getTimeout() > 0) {
+            return stepAction.getTimeout();
+        }
+        return getDefaultTimeout();
+    }
+
+    private int getDefaultTimeout() {
+        Integer timeout = cfgService.getInteger(
+                ConfigurationKey.WORKFLOW_ACTION_TIMEOUT);
+        if (timeout == null || timeout < 1) {
+            return DEFAULT_TIMEOUT;
+        }
+        return timeout;
+    }
+
+    private int getMaxAttempts(WorkflowStepAction stepAction) {
+        if (stepAction.getMaxAttempts() != null
+                && stepAction.getMaxAttempts() > 0) {
+            return stepAction.getMaxAttempts();
+        }
+        Integer attempts = cfgService.getInteger(
+                ConfigurationKey.WORKFLOW_ACTION_MAX_ATTEMPTS);
+        if (attempts == null || attempts < 1) {
+            return DEFAULT_MAX_ATTEMPTS;
+        }
+        return attempts;
+    }
+
+    private int getRetryDelay() {
+        Integer delay = cfgService.getInteger(
+                ConfigurationKey.WORKFLOW_ACTION_RETRY_DELAY);
+        if (delay == null || delay < 1) {
+            return DEFAULT_RETRY_DELAY;
+        }
+        return delay;
+    }
+}
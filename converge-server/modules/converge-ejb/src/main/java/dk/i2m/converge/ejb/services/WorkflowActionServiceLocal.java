@@ -0,0 +1,123 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.content.NewsItem;
+import dk.i2m.converge.core.security.UserAccount;
+import dk.i2m.converge.core.workflow.WorkflowActionException;
+import dk.i2m.converge.core.workflow.WorkflowStepAction;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution;
+import java.util.List;
+import javax.ejb.Local;
+
+/**
+ * Local interface for the service executing asynchronous
+ * {@link WorkflowStepAction}s.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Local
+public interface WorkflowActionServiceLocal {
+
+    /**
+     * Queues the asynchronous execution of a {@link WorkflowStepAction}. The
+     * action is executed after the current transaction commits.
+     *
+     * @param newsItem   {@link NewsItem} on which to execute the action
+     * @param stepAction {@link WorkflowStepAction} to execute
+     * @param user       {@link UserAccount} that took the step
+     * @return {@link WorkflowStepActionExecution} logging the outcome of the
+     *         execution
+     */
+    WorkflowStepActionExecution queue(NewsItem newsItem,
+            WorkflowStepAction stepAction, UserAccount user);
+
+    /**
+     * Executes the action of a running {@link WorkflowStepActionExecution}.
+     * Invoked by the workflow action queue, within a transaction that is
+     * rolled back if the action does not complete within its timeout.
+     *
+     * @param executionId Unique identifier of the
+     *                    {@link WorkflowStepActionExecution}
+     * @throws DataNotFoundException   If the execution or its
+     *                                 {@link NewsItem} no longer exist
+     * @throws WorkflowActionException If the action could not be
+     *                                 instantiated
+     */
+    void perform(Long executionId) throws DataNotFoundException,
+            WorkflowActionException;
+
+    /**
+     * Gets the number of seconds a {@link WorkflowStepAction} may run.
+     *
+     * @param stepAction {@link WorkflowStepAction} for which to get the
+     *                   timeout
+     * @return Timeout of the action, or the default timeout if the action
+     *         has no timeout
+     */
+    int getTimeout(WorkflowStepAction stepAction);
+
+    /**
+     * Marks a queued {@link WorkflowStepActionExecution} as running.
+     *
+     * @param executionId Unique identifier of the
+     *                    {@link WorkflowStepActionExecution}
+     * @return Running {@link WorkflowStepActionExecution}, or {@code null}
+     *         if the execution is unknown or not queued
+     */
+    WorkflowStepActionExecution start(Long executionId);
+
+    /**
+     * Records the outcome of an attempt at executing a
+     * {@link WorkflowStepActionExecution}. Failed attempts are scheduled for
+     * retry until the maximum number of attempts has been made.
+     *
+     * @param executionId Unique identifier of the
+     *                    {@link WorkflowStepActionExecution}
+     * @param successful  {@code true} if the attempt was successful
+     * @param message     Outcome message of the attempt
+     */
+    void finish(Long executionId, boolean successful, String message);
+
+    /**
+     * Re-queues failed executions due to be retried and executions whose
+     * message was lost, retries executions interrupted by a restart and
+     * reports executions that stalled.
+     *
+     * @return Number of executions re-queued
+     */
+    int retryDueExecutions();
+
+    /**
+     * Retries the {@link WorkflowStepActionExecution}s that were running on
+     * this server instance before it was restarted.
+     *
+     * @return Number of interrupted executions
+     */
+    int recoverExecutions();
+
+    /**
+     * Finds the asynchronous executions of actions on a given
+     * {@link NewsItem}.
+     *
+     * @param newsItemId Unique identifier of the {@link NewsItem}
+     * @return {@link List} of {@link WorkflowStepActionExecution}s, latest
+     *         first
+     */
+    List<WorkflowStepActionExecution> findExecutions(Long newsItemId);
+}
@@ -78,8 +78,13 @@ public abstract class EjbTestCase {
         p.put("jms/connectionFactory", "new://Resource?type=javax.jms.ConnectionFactory");
         p.put("jms/connectionFactory.ResourceAdapter", "MyJmsResourceAdapter");
         p.put("jms/editionServiceQueue", "new://Resource?type=javax.jms.Queue");
+        p.put("jms/outletServiceQueue", "new://Resource?type=javax.jms.Queue");
         p.put("jms/newswireServiceQueue", "new://Resource?type=javax.jms.Queue");
         p.put("jms/catalogueHookQueue", "new://Resource?type=javax.jms.Queue");
+        p.put("jms/configurationTopic", "new://Resource?type=javax.jms.Topic");
+        p.put("jms/referenceDataTopic", "new://Resource?type=javax.jms.Topic");
+        p.put("jms/notificationQueue", "new://Resource?type=javax.jms.Queue");
+        p.put("jms/workflowActionQueue", "new://Resource?type=javax.jms.Queue");
         p.put("converge-ejbPU.eclipselink.target-server", "org.apache.openejb.eclipselink.JTATransactionController");
         p.put("converge-ejbPU.eclipselink.ddl-generation", "drop-and-create-tables");
 
@@ -0,0 +1,83 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ConfigurationCache}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ConfigurationCacheTest {
+
+    private static final List<ConfigurationKey> CHANGED =
+            new ArrayList<ConfigurationKey>();
+
+    private static boolean listening = false;
+
+    private ConfigurationCache cache;
+
+    @Before
+    public void setUp() {
+        cache = ConfigurationCache.getInstance();
+        if (!listening) {
+            cache.addListener(new ConfigurationListener() {
+
+                @Override
+                public void configurationChanged(ConfigurationKey key) {
+                    CHANGED.add(key);
+                }
+            });
+            listening = true;
+        }
+        cache.put(ConfigurationKey.VERSION, false, null);
+        CHANGED.clear();
+    }
+
+    @Test
+    public void testUpdateNotifiesChange() {
+        cache.update(ConfigurationKey.VERSION, "1.0");
+        cache.update(ConfigurationKey.VERSION, "1.0");
+
+        assertEquals(1, CHANGED.size());
+        assertEquals("1.0", cache.get(ConfigurationKey.VERSION).getValue());
+    }
+
+    @Test
+    public void testInvalidateStoredNotifiesChange() {
+        cache.update(ConfigurationKey.VERSION, "1.0");
+        CHANGED.clear();
+
+        cache.invalidate(ConfigurationKey.VERSION);
+
+        assertEquals(1, CHANGED.size());
+        assertNull(cache.get(ConfigurationKey.VERSION));
+    }
+
+    @Test
+    public void testInvalidateNotStored() {
+        cache.invalidate(ConfigurationKey.VERSION);
+
+        assertTrue(CHANGED.isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import javax.naming.directory.BasicAttributes;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link DirectoryCache}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class DirectoryCacheTest {
+
+    private DirectoryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = DirectoryCache.getInstance();
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void testUnknown() {
+        cache.putUnknown("JDoe", 60000L, 10);
+
+        assertTrue(cache.isUnknown("jdoe"));
+        assertFalse(cache.isUnknown("asmith"));
+    }
+
+    @Test
+    public void testUnknownExpires() throws Exception {
+        cache.putUnknown("jdoe", 0L, 10);
+        Thread.sleep(5);
+
+        assertFalse(cache.isUnknown("jdoe"));
+    }
+
+    @Test
+    public void testUnknownUntilFound() {
+        cache.putUnknown("jdoe", 60000L, 10);
+        cache.put("jdoe", "uid=jdoe,ou=users", new BasicAttributes(), 60000L,
+                10);
+
+        assertFalse(cache.isUnknown("jdoe"));
+        assertNotNull(cache.getByUsername("jdoe"));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.putUnknown("jdoe", 60000L, 10);
+        cache.invalidateAll();
+
+        assertFalse(cache.isUnknown("jdoe"));
+    }
+}
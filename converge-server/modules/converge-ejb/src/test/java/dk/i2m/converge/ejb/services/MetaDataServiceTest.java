@@ -0,0 +1,103 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.EjbTestCase;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.junit.Assume;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests and benchmark of {@link MetaDataService}.
+ * <p/>
+ * The benchmark extracts the meta data of the sample files in the directory
+ * given by the {@code converge.metadata.corpus} system property, e.g.
+ * {@code mvn test -Dconverge.metadata.corpus=/path/to/samples}, and prints
+ * the cost per file with an empty cache and with the meta data cached.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class MetaDataServiceTest extends EjbTestCase {
+
+    public static final String BEAN_INTERFACE = "MetaDataServiceLocal";
+
+    private static final String CORPUS_PROPERTY = "converge.metadata.corpus";
+
+    @Test
+    public void testExtractImageInfo() throws Exception {
+        MetaDataServiceLocal service = (MetaDataServiceLocal) getInitialContext().
+                lookup(BEAN_INTERFACE);
+
+        File file = File.createTempFile("converge", ".jpg");
+        file.deleteOnExit();
+        ImageIO.write(new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB),
+                "jpg", file);
+
+        Map<String, String> metaData = service.extract(file.getAbsolutePath());
+        assertEquals("320", metaData.get("width"));
+        assertEquals("240", metaData.get("height"));
+
+        long hits = service.getCacheStatistics().getHits();
+        assertEquals(metaData, service.extract(file.getAbsolutePath()));
+        assertEquals(hits + 1, service.getCacheStatistics().getHits());
+    }
+
+    @Test
+    public void testGetExtractors() {
+        assertEquals(MetaDataService.MetaDataExtractor.values().length,
+                MetaDataService.getExtractors(null).size());
+        assertTrue(MetaDataService.getExtractors("image/jpeg").contains(
+                MetaDataService.MetaDataExtractor.IMAGE));
+        assertTrue(MetaDataService.getExtractors("audio/mpeg").contains(
+                MetaDataService.MetaDataExtractor.MP3));
+        assertTrue(MetaDataService.getExtractors("video/mp4").contains(
+                MetaDataService.MetaDataExtractor.MEDIA_CONTAINER));
+        assertTrue(MetaDataService.getExtractors("application/pdf").isEmpty());
+    }
+
+    @Test
+    public void benchmarkExtract() throws Exception {
+        String corpus = System.getProperty(CORPUS_PROPERTY);
+        Assume.assumeTrue(corpus != null && new File(corpus).isDirectory());
+
+        MetaDataServiceLocal service = (MetaDataServiceLocal) getInitialContext().
+                lookup(BEAN_INTERFACE);
+
+        for (File file : new File(corpus).listFiles()) {
+            if (!file.isFile()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            Map<String, String> metaData = service.extract(file.
+                    getAbsolutePath());
+            long cold = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            service.extract(file.getAbsolutePath());
+            long cached = System.nanoTime() - start;
+
+            System.out.println(String.format(
+                    "%-40s %8d bytes %4d properties %8.2f ms %8.2f ms cached",
+                    file.getName(), file.length(), metaData.size(),
+                    cold / 1000000.0, cached / 1000000.0));
+        }
+    }
+}
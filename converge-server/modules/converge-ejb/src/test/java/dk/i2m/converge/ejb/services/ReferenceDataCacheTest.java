@@ -0,0 +1,228 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.core.annotations.ReferenceData;
+import java.util.ArrayList;
+import java.util.List;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+import org.eclipse.persistence.indirection.IndirectContainer;
+import org.eclipse.persistence.indirection.IndirectList;
+import org.eclipse.persistence.indirection.ValueHolder;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link ReferenceDataCache}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class ReferenceDataCacheTest {
+
+    private ReferenceDataCache cache;
+
+    @Before
+    public void setUp() {
+        cache = ReferenceDataCache.getInstance();
+        cache.invalidateAll();
+    }
+
+    @Test
+    public void testGetReturnsCopy() {
+        Reference reference = new Reference(1L, "Original");
+        reference.getChildren().add(new Child("Child"));
+        cache.put(Reference.class, 1L, reference, cache.getGeneration(), 60,
+                10, null);
+
+        Reference first = cache.get(Reference.class, 1L);
+        first.setName("Modified");
+        first.getChildren().add(new Child("Added"));
+        reference.setName("Changed after caching");
+
+        Reference second = cache.get(Reference.class, 1L);
+        assertNotSame(first, second);
+        assertEquals("Original", second.getName());
+        assertEquals(1, second.getChildren().size());
+    }
+
+    @Test
+    public void testGetReturnsCopyOfRelatedEntities() {
+        Reference reference = new Reference(1L, "Original");
+        reference.getChildren().add(new Child("Child"));
+        cache.put(Reference.class, 1L, reference, cache.getGeneration(), 60,
+                10, null);
+
+        Reference first = cache.get(Reference.class, 1L);
+        first.getChildren().get(0).setName("Modified");
+        reference.getChildren().get(0).setName("Changed after caching");
+
+        Reference second = cache.get(Reference.class, 1L);
+        assertNotSame(first.getChildren().get(0), second.getChildren().get(0));
+        assertEquals("Child", second.getChildren().get(0).getName());
+    }
+
+    @Test
+    public void testLazyRelationNotShared() {
+        Reference loaded = new Reference(1L, "Loaded");
+        loaded.getChildren().add(new Child("Loaded child"));
+        Reference reference = new Reference(1L, "Original");
+        reference.setChildren(new LazyList());
+        cache.put(Reference.class, 1L, reference, cache.getGeneration(), 60,
+                10, new Factory(loaded));
+
+        Reference first = cache.get(Reference.class, 1L);
+        Reference second = cache.get(Reference.class, 1L);
+        IndirectContainer firstChildren =
+                (IndirectContainer) first.getChildren();
+        IndirectContainer secondChildren =
+                (IndirectContainer) second.getChildren();
+        assertNotSame(firstChildren.getValueHolder(),
+                secondChildren.getValueHolder());
+        assertFalse(firstChildren.isInstantiated());
+
+        first.getChildren().add(new Child("Added"));
+
+        assertTrue(firstChildren.isInstantiated());
+        assertEquals(2, first.getChildren().size());
+        assertFalse(secondChildren.isInstantiated());
+        assertEquals(1, second.getChildren().size());
+        assertEquals(1, loaded.getChildren().size());
+    }
+
+    @Test
+    public void testPutAfterInvalidation() {
+        long generation = cache.getGeneration();
+        cache.invalidateAll();
+        cache.put(Reference.class, 1L, new Reference(1L, "Stale"), generation,
+                60, 10, null);
+
+        assertNull(cache.get(Reference.class, 1L));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(Reference.class, 1L, new Reference(1L, "Original"),
+                cache.getGeneration(), 60, 10, null);
+        cache.invalidateAll();
+
+        assertNull(cache.get(Reference.class, 1L));
+    }
+
+    @Entity
+    @ReferenceData
+    public static class Reference {
+
+        @Id
+        private Long id;
+
+        private String name;
+
+        private List<Child> children = new ArrayList<Child>();
+
+        protected Reference() {
+        }
+
+        public Reference(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<Child> getChildren() {
+            return children;
+        }
+
+        public void setChildren(List<Child> children) {
+            this.children = children;
+        }
+    }
+
+    @Entity
+    public static class Child {
+
+        private String name;
+
+        protected Child() {
+        }
+
+        public Child(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Collection that has not been loaded.
+     */
+    public static class LazyList extends IndirectList {
+
+        public LazyList() {
+            setValueHolder(new ValueHolder() {
+
+                @Override
+                public boolean isInstantiated() {
+                    return false;
+                }
+            });
+        }
+    }
+
+    /**
+     * Factory of entity managers finding a single entity.
+     */
+    private static class Factory implements EntityManagerFactory {
+
+        private final Object entity;
+
+        Factory(Object entity) {
+            this.entity = entity;
+        }
+
+        @Override
+        public EntityManager createEntityManager() {
+            return new EntityManager() {
+
+                @Override
+                public <T> T find(Class<T> type, Object id) {
+                    return type.cast(entity);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.domain.TaskStatistics;
+import dk.i2m.converge.domain.TaskStatistics.Category;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link TaskMonitor}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class TaskMonitorTest {
+
+    private TaskMonitor monitor;
+
+    @Before
+    public void setUp() {
+        monitor = TaskMonitor.getInstance();
+        monitor.reset();
+    }
+
+    @Test
+    public void testFinished() {
+        long started = monitor.started(Category.INDEXING, "Indexing");
+        monitor.finished(Category.INDEXING, "Indexing", started, 10, 2);
+        started = monitor.started(Category.INDEXING, "Indexing");
+        monitor.finished(Category.INDEXING, "Indexing", started, 5, 0);
+
+        TaskStatistics s = find(Category.INDEXING, "Indexing");
+        assertEquals(0, s.getRunning());
+        assertEquals(2, s.getInvocations());
+        assertEquals(15, s.getItems());
+        assertEquals(2, s.getErrors());
+    }
+
+    @Test
+    public void testRunning() {
+        long started = monitor.started(Category.TIMER, "JOB");
+
+        assertEquals(1, find(Category.TIMER, "JOB").getRunning());
+        assertEquals(0, find(Category.TIMER, "JOB").getInvocations());
+
+        monitor.finished(Category.TIMER, "JOB", started, 0, 0);
+        assertEquals(0, find(Category.TIMER, "JOB").getRunning());
+    }
+
+    @Test
+    public void testResetKeepsRunningTasks() {
+        long started = monitor.started(Category.EDITION_ACTION, "Running");
+        long other = monitor.started(Category.EDITION_ACTION, "Finished");
+        monitor.finished(Category.EDITION_ACTION, "Finished", other, 1, 0);
+
+        monitor.reset();
+
+        assertNotNull(find(Category.EDITION_ACTION, "Running"));
+        assertNull(find(Category.EDITION_ACTION, "Finished"));
+        monitor.finished(Category.EDITION_ACTION, "Running", started, 1, 1);
+        assertEquals(1, find(Category.EDITION_ACTION, "Running").getErrors());
+    }
+
+    @Test
+    public void testQueued() {
+        monitor.queued(Category.NEWSWIRE_FETCH, "Feed");
+        monitor.queued(Category.NEWSWIRE_FETCH, "Feed");
+        assertEquals(2, find(Category.NEWSWIRE_FETCH, "Feed").getQueued());
+
+        long started = monitor.started(Category.NEWSWIRE_FETCH, "Feed", 250);
+        assertEquals(1, find(Category.NEWSWIRE_FETCH, "Feed").getQueued());
+        assertEquals(250, find(Category.NEWSWIRE_FETCH, "Feed").
+                getTotalQueueTime());
+        monitor.finished(Category.NEWSWIRE_FETCH, "Feed", started, 0, 0);
+
+        // Executions queued on another node do not make the count negative
+        started = monitor.started(Category.NEWSWIRE_FETCH, "Feed", 100);
+        monitor.finished(Category.NEWSWIRE_FETCH, "Feed", started, 0, 0);
+        started = monitor.started(Category.NEWSWIRE_FETCH, "Feed", 100);
+        monitor.finished(Category.NEWSWIRE_FETCH, "Feed", started, 0, 0);
+        assertEquals(0, find(Category.NEWSWIRE_FETCH, "Feed").getQueued());
+        assertEquals(450, find(Category.NEWSWIRE_FETCH, "Feed").
+                getTotalQueueTime());
+    }
+
+    @Test
+    public void testResetKeepsQueuedTasks() {
+        monitor.setQueued(Category.INDEXING, "Backlog", 42);
+        monitor.setQueued(Category.INDEXING, "Empty", 0);
+
+        monitor.reset();
+
+        assertEquals(42, find(Category.INDEXING, "Backlog").getQueued());
+        assertNull(find(Category.INDEXING, "Empty"));
+    }
+
+    @Test
+    public void testSeparateCategories() {
+        long started = monitor.started(Category.CATALOGUE_HOOK, "Task");
+        monitor.finished(Category.CATALOGUE_HOOK, "Task", started, 1, 0);
+        started = monitor.started(Category.NEWSWIRE_FETCH, "Task");
+        monitor.finished(Category.NEWSWIRE_FETCH, "Task", started, 3, 1);
+
+        assertEquals(1, find(Category.CATALOGUE_HOOK, "Task").getItems());
+        assertEquals(3, find(Category.NEWSWIRE_FETCH, "Task").getItems());
+        assertEquals(0, find(Category.CATALOGUE_HOOK, "Task").getErrors());
+    }
+
+    private TaskStatistics find(Category category, String name) {
+        for (TaskStatistics s : monitor.getTaskStatistics()) {
+            if (s.getCategory() == category && s.getName().equals(name)) {
+                return s;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ejb.services;
+
+import dk.i2m.converge.EjbTestCase;
+import dk.i2m.converge.core.workflow.WorkflowStepAction;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution;
+import dk.i2m.converge.core.workflow.WorkflowStepActionExecution.Status;
+import java.util.Calendar;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link WorkflowActionServiceBean}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class WorkflowActionServiceBeanTest extends EjbTestCase {
+
+    public static final String BEAN_INTERFACE =
+            "WorkflowActionServiceBeanLocal";
+
+    public static final String DAO_INTERFACE = "DaoServiceBeanLocal";
+
+    @Test
+    public void testStartedOnce() throws Exception {
+        WorkflowActionServiceLocal service = getService();
+        WorkflowStepActionExecution execution = createExecution();
+
+        WorkflowStepActionExecution started = service.start(execution.getId());
+        assertNotNull(started);
+        assertEquals(Status.RUNNING, started.getStatus());
+        assertEquals(Integer.valueOf(1), started.getAttempts());
+
+        assertNull("Execution must only be started once",
+                service.start(execution.getId()));
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        WorkflowActionServiceLocal service = getService();
+        DaoServiceLocal daoService = getDaoService();
+        WorkflowStepActionExecution execution = createExecution();
+
+        assertNotNull(service.start(execution.getId()));
+        service.finish(execution.getId(), false, "Execution timed out");
+
+        execution = daoService.findById(WorkflowStepActionExecution.class,
+                execution.getId());
+        assertEquals(Status.RETRYING, execution.getStatus());
+        assertNotNull(execution.getNextAttempt());
+
+        Calendar due = Calendar.getInstance();
+        due.add(Calendar.MINUTE, -1);
+        execution.setNextAttempt(due);
+        daoService.update(execution);
+
+        assertTrue(service.retryDueExecutions() >= 1);
+        execution = daoService.findById(WorkflowStepActionExecution.class,
+                execution.getId());
+        assertFalse(Status.RETRYING == execution.getStatus());
+    }
+
+    @Test
+    public void testFailedAfterMaxAttempts() throws Exception {
+        WorkflowActionServiceLocal service = getService();
+        DaoServiceLocal daoService = getDaoService();
+        WorkflowStepActionExecution execution = createExecution();
+
+        execution.setAttempts(2);
+        daoService.update(execution);
+        assertNotNull(service.start(execution.getId()));
+        service.finish(execution.getId(), false, "Execution timed out");
+
+        execution = daoService.findById(WorkflowStepActionExecution.class,
+                execution.getId());
+        assertEquals(Status.FAILED, execution.getStatus());
+        assertNull(execution.getNextAttempt());
+    }
+
+    private WorkflowStepActionExecution createExecution() throws Exception {
+        DaoServiceLocal daoService = getDaoService();
+        WorkflowStepAction stepAction = new WorkflowStepAction();
+        stepAction.setLabel("Test Action");
+        stepAction.setMaxAttempts(3);
+        stepAction = daoService.create(stepAction);
+        return daoService.create(new WorkflowStepActionExecution(stepAction,
+                1L, null));
+    }
+
+    private WorkflowActionServiceLocal getService() throws Exception {
+        return (WorkflowActionServiceLocal) getInitialContext().lookup(
+                BEAN_INTERFACE);
+    }
+
+    private DaoServiceLocal getDaoService() throws Exception {
+        return (DaoServiceLocal) getInitialContext().lookup(DAO_INTERFACE);
+    }
+}
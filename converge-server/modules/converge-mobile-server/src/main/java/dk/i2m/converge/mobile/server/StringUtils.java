@@ -47,6 +47,32 @@ public final class StringUtils {
     private StringUtils() {
     }
 
+    /**
+     * Replaces the HTML entities for typographic quotes, dashes and
+     * non-breaking spaces with their plain text equivalents, and line breaks
+     * with spaces.
+     *
+     * @param input
+     *          {@link String} containing HTML entities
+     * @return String with HTML entities replaced, or {@code null} if
+     *         {@code input} is {@code null}
+     */
+    public static String replaceHtmlEntities(String input) {
+        if (input == null) {
+            return null;
+        }
+        input = input.replaceAll("&rsquo;", "'");
+        input = input.replaceAll("&lsquo;", "'");
+        input = input.replaceAll("&rdquo;", "\"");
+        input = input.replaceAll("&ldquo;", "\"");
+        input = input.replaceAll("&nbsp;", " ");
+        input = input.replaceAll("&ndash;", "-");
+        input = input.replaceAll("&mdash;", "-");
+        input = input.replaceAll("\r\n", " ");
+        input = input.replaceAll("\n", " ");
+        return input;
+    }
+
     /**
      * Strips HTML tags from a {@link String}.
      *
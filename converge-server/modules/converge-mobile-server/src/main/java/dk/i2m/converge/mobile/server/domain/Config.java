@@ -38,7 +38,8 @@ public class Config implements Serializable {
         RENDITION_STORY,
         IMAGE_LOCATION,
         IMAGE_URL,
-        IMAGE_DOWNLOAD_TIMEOUT
+        IMAGE_DOWNLOAD_TIMEOUT,
+        IMAGE_DOWNLOAD_THREADS
     }
 
     @Id
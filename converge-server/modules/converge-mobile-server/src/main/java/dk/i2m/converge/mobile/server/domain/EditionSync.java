@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.mobile.server.domain;
+
+import java.io.Serializable;
+import java.util.Date;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+
+/**
+ * State of the synchronisation of an {@link Outlet} with <em>Converge
+ * Editorial</em>. Records the edition and version last synchronised, so
+ * that only the changes since that version are downloaded on the next
+ * synchronisation.
+ *
+ * @author Allan Lykke Christensen
+ */
+@Entity
+@Table(name = "edition_sync")
+public class EditionSync implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "outlet_id")
+    private Long outletId;
+
+    @Column(name = "edition_id")
+    private Long editionId;
+
+    @Column(name = "edition_version")
+    private String version;
+
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    @Column(name = "synchronised")
+    private Date synchronised;
+
+    public EditionSync() {
+    }
+
+    public EditionSync(Long outletId) {
+        this.outletId = outletId;
+    }
+
+    public Long getOutletId() {
+        return outletId;
+    }
+
+    public void setOutletId(Long outletId) {
+        this.outletId = outletId;
+    }
+
+    /**
+     * Gets the unique identifier of the edition on <em>Converge
+     * Editorial</em> last synchronised.
+     *
+     * @return Unique identifier of the edition last synchronised
+     */
+    public Long getEditionId() {
+        return editionId;
+    }
+
+    public void setEditionId(Long editionId) {
+        this.editionId = editionId;
+    }
+
+    /**
+     * Gets the version of the edition last synchronised, as returned by
+     * <em>Converge Editorial</em>.
+     *
+     * @return Version of the edition last synchronised
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public Date getSynchronised() {
+        return synchronised;
+    }
+
+    public void setSynchronised(Date synchronised) {
+        this.synchronised = synchronised;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (outletId != null ? outletId.hashCode() : 0);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof EditionSync)) {
+            return false;
+        }
+        EditionSync other = (EditionSync) object;
+        if ((this.outletId == null && other.outletId != null)
+                || (this.outletId != null && !this.outletId.equals(
+                other.outletId))) {
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "dk.i2m.converge.mobile.server.domain.EditionSync[ outletId="
+                + outletId + " ]";
+    }
+}
@@ -17,10 +17,13 @@
 package dk.i2m.converge.mobile.server.facades;
 
 import dk.i2m.converge.mobile.server.domain.Section;
+import dk.i2m.converge.mobile.server.service.NewsFeedCache;
+import javax.annotation.Resource;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 /**
  *
@@ -33,6 +36,9 @@ public class SectionFacade extends AbstractFacade<Section> implements
     @PersistenceContext(unitName = "cmsPU")
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
     @Override
     protected EntityManager getEntityManager() {
         return em;
@@ -42,6 +48,24 @@ public class SectionFacade extends AbstractFacade<Section> implements
         super(Section.class);
     }
 
+    @Override
+    public void create(Section entity) {
+        super.create(entity);
+        NewsFeedCache.getInstance().invalidateOnCommit(txRegistry);
+    }
+
+    @Override
+    public void edit(Section entity) {
+        super.edit(entity);
+        NewsFeedCache.getInstance().invalidateOnCommit(txRegistry);
+    }
+
+    @Override
+    public void remove(Section entity) {
+        super.remove(entity);
+        NewsFeedCache.getInstance().invalidateOnCommit(txRegistry);
+    }
+
     @Override
     public Section findByExternalId(Long id) {
         TypedQuery<Section> q = em.createQuery("SELECT s FROM Section s WHERE s.externalId = :externalId", Section.class);
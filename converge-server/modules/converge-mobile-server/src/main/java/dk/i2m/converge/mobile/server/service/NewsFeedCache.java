@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.mobile.server.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Singleton caching the serialized news feeds served to subscribers. A feed
+ * only depends on the sections subscribed to, so subscribers with the same
+ * subscriptions share a feed. The cache is invalidated when a
+ * synchronisation with <em>Converge Editorial</em> completes and when a
+ * section is changed.
+ * <p/>
+ * A feed built from data read before an invalidation is not cached, so that
+ * a feed is never served from the cache after the data it was built from
+ * has changed.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class NewsFeedCache {
+
+    private static final NewsFeedCache INSTANCE = new NewsFeedCache();
+
+    /** Maximum number of feeds kept in memory. */
+    private static final int CACHE_SIZE = 500;
+
+    private final Map<String, Feed> feeds =
+            new LinkedHashMap<String, Feed>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Feed> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private long generation = 0;
+
+    private NewsFeedCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link NewsFeedCache}.
+     *
+     * @return Singleton instance of {@link NewsFeedCache}
+     */
+    public static NewsFeedCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the current generation of the cache. The generation must be
+     * obtained before reading the data of a feed and passed when the feed is
+     * cached.
+     *
+     * @return Current generation of the cache
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets a cached feed.
+     *
+     * @param key Key of the subscribed sections
+     * @return Cached {@link Feed}, or {@code null} if the feed is not cached
+     */
+    public synchronized Feed get(String key) {
+        return feeds.get(key);
+    }
+
+    /**
+     * Caches a feed, unless the cache was invalidated since the data of the
+     * feed was read.
+     *
+     * @param key        Key of the subscribed sections
+     * @param feed       {@link Feed} to cache
+     * @param generation Generation of the cache when the data of the feed
+     *                   was read
+     */
+    public synchronized void put(String key, Feed feed, long generation) {
+        if (this.generation == generation) {
+            feeds.put(key, feed);
+        }
+    }
+
+    /**
+     * Discards all cached feeds.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        feeds.clear();
+    }
+
+    /**
+     * Discards all cached feeds once the current transaction commits, so
+     * that feeds are not rebuilt from data that is not yet visible to
+     * subscribers.
+     *
+     * @param txRegistry Registry of the current transaction
+     */
+    public void invalidateOnCommit(TransactionSynchronizationRegistry txRegistry) {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    invalidate();
+                }
+            }
+        });
+    }
+
+    /**
+     * Serialized news feed.
+     */
+    public static class Feed {
+
+        private final String etag;
+
+        private final byte[] content;
+
+        private final byte[] compressed;
+
+        /**
+         * Creates a new instance of {@link Feed}.
+         *
+         * @param etag       Entity tag of the feed
+         * @param content    Serialized feed
+         * @param compressed Serialized feed compressed with GZIP
+         */
+        public Feed(String etag, byte[] content, byte[] compressed) {
+            this.etag = etag;
+            this.content = content;
+            this.compressed = compressed;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+
+        public byte[] getCompressed() {
+            return compressed;
+        }
+    }
+}
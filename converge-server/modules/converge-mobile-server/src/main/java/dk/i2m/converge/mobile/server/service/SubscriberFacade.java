@@ -12,13 +12,21 @@
  */
 package dk.i2m.converge.mobile.server.service;
 
+import com.sun.jersey.core.header.OutBoundHeaders;
 import dk.i2m.converge.mobile.server.domain.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -27,6 +35,9 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 import javax.ws.rs.*;
+import javax.ws.rs.core.*;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
 
 /**
  * Facade for registration and update of {@link Subscriber}s.
@@ -40,9 +51,15 @@ public class SubscriberFacade {
     @PersistenceContext(unitName = "cmsPU")
     private EntityManager em;
 
+    @Context
+    private Providers providers;
+
     private static final Logger LOG = Logger.getLogger(SubscriberFacade.class.
             getName());
 
+    /** Algorithm of the digest used as the entity tag of news feeds. */
+    private static final String FEED_DIGEST = "MD5";
+
     /**
      * Registers a {@link Subscriber} in the database. If the {@link Subscriber}
      * already exist in the database, the HTTP status code 403 is returned.
@@ -324,64 +341,157 @@ public class SubscriberFacade {
     }
 
     /**
-     * Get the news available for the authenticated user.
+     * Get the news available for the authenticated user. The news feed is
+     * cached for the sections subscribed to until the next synchronisation
+     * with <em>Converge Editorial</em>. A 304 HTTP status code is returned if
+     * the feed matches the entity tag in the {@code If-None-Match} header,
+     * and the feed is compressed if the client accepts GZIP encoding.
      * <p/>
-     * @param phone    Phone number of the user
-     * @param password Password of the user
-     * @return {@link List} of {@link NewsItem}s available for the user
+     * @param phone          Phone number of the user
+     * @param password       Password of the user
+     * @param acceptEncoding Encodings accepted by the client
+     * @param request        Request used for evaluating the preconditions
+     * @return JSON array of {@link NewsItem}s available for the user
      * @throws WebApplicationException If the user provided an invalid phone number or password
      */
     @GET
     @Path("news")
     @Produces({"application/json"})
-    public List<NewsItem> getNews(@HeaderParam("phone") String phone,
-            @HeaderParam(value = "password") String password) {
+    public Response getNews(@HeaderParam("phone") String phone,
+            @HeaderParam(value = "password") String password,
+            @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+            @Context Request request) {
 
+        Subscriber subscriber;
         try {
-            Subscriber subscriber = getSubscriber(phone, password);
-            subscriber.setLastUpdate(Calendar.getInstance().getTime());
-            if (subscriber.getSubscriptions().isEmpty()) {
-                return Collections.EMPTY_LIST;
-            }
+            subscriber = getSubscriber(phone, password);
+        } catch (SubscriberNotFound ex) {
+            throw new WebApplicationException(401);
+        }
+        subscriber.setLastUpdate(Calendar.getInstance().getTime());
+
+        List<Section> sections = subscriber.getSubscriptions();
+        String key = getFeedKey(sections);
+        NewsFeedCache cache = NewsFeedCache.getInstance();
+        NewsFeedCache.Feed feed = cache.get(key);
+        if (feed == null) {
+            long generation = cache.getGeneration();
+            feed = createFeed(findNews(sections));
+            cache.put(key, feed, generation);
+        }
 
-            CriteriaBuilder builder = em.getCriteriaBuilder();
-            CriteriaQuery query = builder.createQuery();
-            Root ni = query.from(NewsItem.class);
-            query.select(ni).where(builder.equal(ni.get("available"), true)).
-                    orderBy(builder.desc(ni.get("displayOrder")));
-
-            List<NewsItem> matches = em.createQuery(query).getResultList();
-            List<NewsItem> output = new ArrayList<NewsItem>();
-            for (NewsItem newsItem : matches) {
-                // Don't store changes made to the news item before sending it out
-                em.detach(newsItem);
-
-                if (newsItem.getSection() != null
-                        && subscriber.getSubscriptions().contains(newsItem.
-                        getSection())) {
-                    newsItem.setStory(replaceHtmlEntities(newsItem.getStory()));
-                    output.add(newsItem);
-                }
-            }
+        EntityTag etag = new EntityTag(feed.getEtag());
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        cacheControl.setMaxAge(0);
 
-            return output;
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(
+                etag);
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
 
-        } catch (SubscriberNotFound ex) {
-            throw new WebApplicationException(401);
+        Response.ResponseBuilder response = Response.ok().tag(etag).
+                cacheControl(cacheControl).header("Vary",
+                HttpHeaders.ACCEPT_ENCODING).type(
+                MediaType.APPLICATION_JSON_TYPE);
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains(
+                "gzip")) {
+            response.entity(feed.getCompressed()).header("Content-Encoding",
+                    "gzip");
+        } else {
+            response.entity(feed.getContent());
         }
+        return response.build();
     }
 
-    public String replaceHtmlEntities(String input) {
-        input = input.replaceAll("&rsquo;", "'");
-        input = input.replaceAll("&lsquo;", "'");
-        input = input.replaceAll("&rdquo;", "\"");
-        input = input.replaceAll("&ldquo;", "\"");
-        input = input.replaceAll("&nbsp;", " ");
-        input = input.replaceAll("&ndash;", "-");
-        input = input.replaceAll("&mdash;", "-");
-        input = input.replaceAll("\r\n", " ");
-        input = input.replaceAll("\n", " ");
-        return input;
+    /**
+     * Finds the available {@link NewsItem}s in the given {@link Section}s.
+     *
+     * @param sections {@link Section}s from which to find {@link NewsItem}s
+     * @return {@link List} of available {@link NewsItem}s in the given
+     *         {@link Section}s
+     */
+    private List<NewsItem> findNews(List<Section> sections) {
+        if (sections.isEmpty()) {
+            return new ArrayList<NewsItem>();
+        }
+
+        CriteriaBuilder builder = em.getCriteriaBuilder();
+        CriteriaQuery<NewsItem> query = builder.createQuery(NewsItem.class);
+        Root<NewsItem> ni = query.from(NewsItem.class);
+        query.select(ni).where(builder.and(builder.equal(ni.get("available"),
+                true), ni.get("section").in(sections))).orderBy(builder.desc(
+                ni.get("displayOrder")));
+
+        return em.createQuery(query).getResultList();
+    }
+
+    /**
+     * Serializes a news feed to JSON using the JSON provider of the
+     * container, so that the cached feed is identical to the feed otherwise
+     * produced.
+     *
+     * @param news {@link NewsItem}s in the feed
+     * @return Serialized feed
+     */
+    private NewsFeedCache.Feed createFeed(List<NewsItem> news) {
+        GenericEntity<List<NewsItem>> entity =
+                new GenericEntity<List<NewsItem>>(news) {
+                };
+        Annotation[] annotations = new Annotation[0];
+        MessageBodyWriter writer = providers.getMessageBodyWriter(entity.
+                getRawType(), entity.getType(), annotations,
+                MediaType.APPLICATION_JSON_TYPE);
+        if (writer == null) {
+            throw new WebApplicationException(500);
+        }
+
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            writer.writeTo(news, entity.getRawType(), entity.getType(),
+                    annotations, MediaType.APPLICATION_JSON_TYPE,
+                    new OutBoundHeaders(), content);
+            byte[] bytes = content.toByteArray();
+
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(bytes);
+            gzip.close();
+
+            String etag = new BigInteger(1, MessageDigest.getInstance(
+                    FEED_DIGEST).digest(bytes)).toString(16);
+            return new NewsFeedCache.Feed(etag, bytes, compressed.toByteArray());
+        } catch (IOException ex) {
+            LOG.log(Level.SEVERE, "Could not serialize news feed", ex);
+            throw new WebApplicationException(ex, 500);
+        } catch (NoSuchAlgorithmException ex) {
+            LOG.log(Level.SEVERE, "Could not serialize news feed", ex);
+            throw new WebApplicationException(ex, 500);
+        }
+    }
+
+    /**
+     * Gets the key of the cached news feed for a set of {@link Section}s.
+     *
+     * @param sections Subscribed {@link Section}s
+     * @return Key of the cached news feed
+     */
+    private String getFeedKey(List<Section> sections) {
+        List<Long> ids = new ArrayList<Long>();
+        for (Section section : sections) {
+            ids.add(section.getId());
+        }
+        Collections.sort(ids);
+
+        StringBuilder key = new StringBuilder();
+        for (Long id : ids) {
+            if (key.length() > 0) {
+                key.append(",");
+            }
+            key.append(id);
+        }
+        return key.toString();
     }
 
     private Subscriber getSubscriber(String phone, String password) throws
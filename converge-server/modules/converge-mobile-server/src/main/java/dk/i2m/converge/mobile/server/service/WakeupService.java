@@ -16,7 +16,9 @@
  */
 package dk.i2m.converge.mobile.server.service;
 
+import dk.i2m.converge.mobile.server.StringUtils;
 import dk.i2m.converge.mobile.server.domain.Config;
+import dk.i2m.converge.mobile.server.domain.EditionSync;
 import dk.i2m.converge.mobile.server.domain.NewsItem;
 import dk.i2m.converge.mobile.server.domain.Outlet;
 import dk.i2m.converge.mobile.server.facades.ConfigFacadeLocal;
@@ -32,10 +34,20 @@ import java.net.Authenticator;
 import java.net.MalformedURLException;
 import java.net.PasswordAuthentication;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.imageio.ImageIO;
@@ -45,6 +57,7 @@ import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import javax.servlet.ServletContext;
+import javax.transaction.TransactionSynchronizationRegistry;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -64,6 +77,11 @@ import javax.xml.ws.Service;
  * <p/>
  * The parameters are passed in the URL path as followed:
  * {@code /wakeup/[eid]/[edition_id]/[internal_outlet_id]/[internal_outlet_key]}
+ * <p/>
+ * Only the news items added, changed or removed since the version of the
+ * edition last synchronised are downloaded. Images are downloaded in parallel
+ * and stored under the entity tag of their rendition, so that unchanged
+ * images are never downloaded again.
  *
  * @author Allan Lykke Christensen
  */
@@ -83,6 +101,9 @@ public class WakeupService {
     @PersistenceContext(unitName = "cmsPU")
     private EntityManager em;
 
+    @Resource
+    private TransactionSynchronizationRegistry txRegistry;
+
     private static final Logger LOG = Logger.getLogger(WakeupService.class.
             getName());
 
@@ -90,6 +111,9 @@ public class WakeupService {
 
     private static final String OUTLET_SERVICE_NAME = "OutletService";
 
+    /** Number of concurrent image downloads if not configured. */
+    private static final int DEFAULT_IMAGE_DOWNLOAD_THREADS = 4;
+
     /**
      * Initiates the download of a given edition on <em>Converge Editorial</em>.
      *
@@ -144,10 +168,41 @@ public class WakeupService {
                 }
             }
 
-            dk.i2m.converge.wsclient.Edition externalEdition = os.
-                    getPublishedEdition(externalEditionId);
-            em.createQuery("UPDATE NewsItem ni " + "SET ni.available = ?1").
-                    setParameter(1, false).executeUpdate();
+            EditionSync sync = em.find(EditionSync.class, outlet.getId());
+            if (sync == null) {
+                sync = new EditionSync(outlet.getId());
+                em.persist(sync);
+            }
+
+            // Only request the changes since the version last synchronised
+            String since = null;
+            if (externalEditionId.equals(sync.getEditionId())) {
+                since = sync.getVersion();
+            }
+
+            EditionChanges changes = os.getEditionChanges(externalEditionId,
+                    since);
+            if (changes.getVersion() == null) {
+                LOG.log(Level.WARNING, "Edition {0} is not available",
+                        editionId);
+                return "";
+            }
+
+            LOG.log(Level.INFO,
+                    "Applying {0} changed and {1} removed news items of edition {2} (version {3} to {4})",
+                    new Object[]{changes.getItems().size(), changes.
+                        getRemovedItems().size(), editionId, since, changes.
+                        getVersion()});
+
+            if (changes.isComplete()) {
+                em.createQuery("UPDATE NewsItem ni " + "SET ni.available = ?1").
+                        setParameter(1, false).executeUpdate();
+            } else if (!changes.getRemovedItems().isEmpty()) {
+                em.createQuery(
+                        "UPDATE NewsItem ni SET ni.available = :available WHERE ni.externalId IN :removed").
+                        setParameter("available", false).setParameter(
+                        "removed", changes.getRemovedItems()).executeUpdate();
+            }
 
             Config rndThumb = cfgFacade.find(Config.Property.RENDITION_THUMB);
             Config rndStory = cfgFacade.find(Config.Property.RENDITION_STORY);
@@ -156,101 +211,116 @@ public class WakeupService {
             Config imgTimeout = cfgFacade.find(
                     Config.Property.IMAGE_DOWNLOAD_TIMEOUT);
             int timeout = Integer.valueOf(imgTimeout.getValue());
+            Config imgThreads = cfgFacade.find(
+                    Config.Property.IMAGE_DOWNLOAD_THREADS);
+            int threads = DEFAULT_IMAGE_DOWNLOAD_THREADS;
+            if (imgThreads != null) {
+                threads = Integer.valueOf(imgThreads.getValue());
+            }
 
-            for (dk.i2m.converge.wsclient.NewsItem item : externalEdition.
-                    getItems()) {
-                if (!isNewsItemAvailable(item.getId())) {
-                    NewsItem newsItem = new NewsItem();
-                    newsItem.setExternalId(item.getId());
-                    newsItem.setHeadline(item.getTitle());
-                    newsItem.setStory(item.getStory());
-                    newsItem.setAvailable(true);
-                    newsItem.setDateline(item.getDateLine());
-                    newsItem.setByline(item.getByLine());
-                    newsItem.setDisplayOrder(item.getDisplayOrder());
-
-                    // Generate thumbs
-                    if (!item.getMedia().isEmpty()) {
-
-                        Collections.sort(item.getMedia(), new BeanComparator(
-                                "priority"));
-
-                        MediaItem img = item.getMedia().iterator().next();
-
-                        for (MediaItemRendition mir : img.getRenditions()) {
-                            String postfix = "";
-
-                            boolean isThumbImg = false;
-                            boolean isStoryImg = false;
-
-
-                            if (mir.getName().equalsIgnoreCase(
-                                    rndThumb.getValue())) {
-                                isThumbImg = true;
-                                postfix = "-thumb";
-                            } else if (mir.getName().equalsIgnoreCase(rndStory.
-                                    getValue())) {
-                                isStoryImg = true;
-                                postfix = "-story";
-                            } else {
-                                // Rendition not available - skip
-                                continue;
-                            }
-
-                            try {
-                                String filename = "" + img.getId() + postfix;
-                                URL mirImg = new URL(mir.getUrl());
-                                File copyTo = new File(imgLocation.getValue(),
-                                        filename);
-                                LOG.log(Level.INFO, "Downloading {0} to {1}",
-                                        new Object[]{mirImg.toExternalForm(),
-                                            copyTo.getCanonicalPath()});
-                                org.apache.commons.io.FileUtils.copyURLToFile(
-                                        mirImg, copyTo, timeout, timeout);
-
-                                if (isThumbImg) {
-                                    newsItem.setThumbUrl(imgUrl.getValue() + "/"
-                                            + filename);
-                                } else if (isStoryImg) {
-                                    newsItem.setImgUrl(imgUrl.getValue() + "/"
-                                            + filename);
-                                }
-                            } catch (IOException ex) {
-                                LOG.log(Level.SEVERE, null, ex);
-                            }
+            Map<String, URL> downloads = new HashMap<String, URL>();
+            List<Image> images = new ArrayList<Image>();
 
+            for (dk.i2m.converge.wsclient.NewsItem item : changes.getItems()) {
+                NewsItem newsItem = findNewsItemByExternalId(item.getId());
+                if (newsItem == null) {
+                    newsItem = new NewsItem();
+                    newsItem.setExternalId(item.getId());
+                    em.persist(newsItem);
+                }
+                newsItem.setHeadline(item.getTitle());
+                newsItem.setStory(StringUtils.replaceHtmlEntities(item.
+                        getStory()));
+                newsItem.setAvailable(true);
+                newsItem.setDateline(item.getDateLine());
+                newsItem.setByline(item.getByLine());
+                newsItem.setDisplayOrder(item.getDisplayOrder());
+                newsItem.setThumbUrl(null);
+                newsItem.setImgUrl(null);
+
+                // Generate thumbs
+                if (!item.getMedia().isEmpty()) {
+
+                    Collections.sort(item.getMedia(), new BeanComparator(
+                            "priority"));
+
+                    MediaItem img = item.getMedia().iterator().next();
+
+                    for (MediaItemRendition mir : img.getRenditions()) {
+                        String postfix = "";
+
+                        boolean isThumbImg = false;
+
+                        if (mir.getName().equalsIgnoreCase(rndThumb.getValue())) {
+                            isThumbImg = true;
+                            postfix = "-thumb";
+                        } else if (mir.getName().equalsIgnoreCase(rndStory.
+                                getValue())) {
+                            postfix = "-story";
+                        } else {
+                            // Rendition not available - skip
+                            continue;
                         }
-                    } else {
-                        // No media items - use categoy image
-                        String sid = String.valueOf(item.getSection().getId());
 
-                        dk.i2m.converge.mobile.server.domain.Section s =
-                                sectionFacade.findByExternalId(item.getSection().
-                                getId());
-
-                        if (s.isDefaultStoryImageAvailable()) {
-                            newsItem.setImgUrl(s.getDefaultStoryImageUrl());
+                        try {
+                            String filename = getImageFilename(img, mir,
+                                    postfix);
+                            downloads.put(filename, new URL(mir.getUrl()));
+                            images.add(new Image(newsItem, filename,
+                                    isThumbImg));
+                        } catch (MalformedURLException ex) {
+                            LOG.log(Level.SEVERE, null, ex);
                         }
+                    }
+                } else {
+                    // No media items - use categoy image
+                    dk.i2m.converge.mobile.server.domain.Section s =
+                            sectionFacade.findByExternalId(item.getSection().
+                            getId());
 
-                        if (s.isDefaultStoryThumbImageAvailable()) {
-                            newsItem.setThumbUrl(
-                                    s.getDefaultStoryThumbImageUrl());
-                        }
+                    if (s != null && s.isDefaultStoryImageAvailable()) {
+                        newsItem.setImgUrl(s.getDefaultStoryImageUrl());
                     }
 
-                    newsItem.setSection(findSectionByExternalId(item.getSection().
-                            getId()));
-                    //LOG.log(Level.INFO, "Adding new story {0} in {1}",
-                    //        new Object[]{newsItem.getHeadline(), newsItem.
-                    //            getSection().getTitle()});
-                    em.persist(newsItem);
-                } else {
-                    em.createQuery(
-                            "UPDATE NewsItem ni SET ni.available = ?1 WHERE ni.externalId = ?2").
-                            setParameter(1, true).setParameter(2, item.getId()).
-                            executeUpdate();
+                    if (s != null && s.isDefaultStoryThumbImageAvailable()) {
+                        newsItem.setThumbUrl(s.getDefaultStoryThumbImageUrl());
+                    }
                 }
+
+                newsItem.setSection(findSectionByExternalId(item.getSection().
+                        getId()));
+            }
+
+            boolean downloaded = downloadImages(downloads,
+                    imgLocation.getValue(), timeout, threads);
+
+            for (Image image : images) {
+                if (new File(imgLocation.getValue(), image.filename).isFile()) {
+                    String url = imgUrl.getValue() + "/" + image.filename;
+                    if (image.thumb) {
+                        image.newsItem.setThumbUrl(url);
+                    } else {
+                        image.newsItem.setImgUrl(url);
+                    }
+                }
+            }
+
+            // The version is only advanced once every image is available,
+            // otherwise the changes are applied again on the next wakeup and
+            // the missing images downloaded then
+            if (downloaded) {
+                sync.setEditionId(externalEditionId);
+                sync.setVersion(changes.getVersion());
+                sync.setSynchronised(new Date());
+            } else {
+                LOG.log(Level.WARNING,
+                        "Not all images of edition {0} could be downloaded, keeping version {1}",
+                        new Object[]{editionId, sync.getVersion()});
             }
+
+            // Cached news feeds are discarded once the synchronised items
+            // are visible to subscribers
+            NewsFeedCache.getInstance().invalidateOnCommit(txRegistry);
         } catch (MalformedURLException ex) {
             LOG.log(Level.SEVERE, null, ex);
         }
@@ -336,17 +406,107 @@ public class WakeupService {
         }
     }
 
-    private boolean isNewsItemAvailable(Long externalId) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery cq = cb.createQuery();
-        Root subs = cq.from(dk.i2m.converge.mobile.server.domain.NewsItem.class);
-        cq.select(subs).where(cb.equal(subs.get("externalId"), externalId));
+    /**
+     * Gets the name of the local copy of an image. The name is derived from
+     * the entity tag of the rendition, so that an image is only downloaded
+     * again if the rendition has changed.
+     *
+     * @param img     Media item of the image
+     * @param mir     Rendition of the image
+     * @param postfix Postfix of the name
+     * @return Name of the local copy of the image
+     */
+    private String getImageFilename(MediaItem img, MediaItemRendition mir,
+            String postfix) {
+        if (mir.getEtag() == null || mir.getEtag().trim().isEmpty()) {
+            return "" + img.getId() + postfix;
+        }
+        return mir.getEtag().replaceAll("[^A-Za-z0-9_\\-]", "") + postfix;
+    }
 
-        List<dk.i2m.converge.mobile.server.domain.NewsItem> matches = em.
-                createQuery(cq).getResultList();
+    /**
+     * Downloads the images not already available in parallel. Each image is
+     * downloaded to a temporary file and moved in place once complete, so
+     * that an interrupted download is never mistaken for a local copy.
+     *
+     * @param downloads Images to download, keyed by the name of the local copy
+     * @param location  Location of the local copies
+     * @param timeout   Connection and read timeout in milliseconds
+     * @param threads   Maximum number of concurrent downloads
+     * @return {@code true} if every image is available, {@code false} if any
+     *         download failed
+     */
+    private boolean downloadImages(Map<String, URL> downloads, String location,
+            final int timeout, int threads) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (Map.Entry<String, URL> download : downloads.entrySet()) {
+            final File copyTo = new File(location, download.getKey());
+            if (copyTo.isFile()) {
+                continue;
+            }
+            final URL url = download.getValue();
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    File partial = new File(copyTo.getParentFile(), copyTo.
+                            getName() + ".part");
+                    LOG.log(Level.INFO, "Downloading {0} to {1}",
+                            new Object[]{url.toExternalForm(), copyTo.
+                                getCanonicalPath()});
+                    org.apache.commons.io.FileUtils.copyURLToFile(url, partial,
+                            timeout, timeout);
+                    if (!partial.renameTo(copyTo)) {
+                        partial.delete();
+                        throw new IOException("Could not move " + partial
+                                + " to " + copyTo);
+                    }
+                    return null;
+                }
+            });
+        }
 
+        if (tasks.isEmpty()) {
+            return true;
+        }
 
-        return !matches.isEmpty();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(threads, tasks.size())));
+        boolean downloaded = true;
+        try {
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                try {
+                    result.get();
+                } catch (ExecutionException ex) {
+                    LOG.log(Level.SEVERE, null, ex.getCause());
+                    downloaded = false;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            downloaded = false;
+        } finally {
+            executor.shutdownNow();
+        }
+        return downloaded;
+    }
+
+    /**
+     * Image of a {@link NewsItem} to be linked once downloaded.
+     */
+    private static class Image {
+
+        private final NewsItem newsItem;
+
+        private final String filename;
+
+        private final boolean thumb;
+
+        Image(NewsItem newsItem, String filename, boolean thumb) {
+            this.newsItem = newsItem;
+            this.filename = filename;
+            this.thumb = thumb;
+        }
     }
 
     private byte[] getBytesFromUrl(URL url) {
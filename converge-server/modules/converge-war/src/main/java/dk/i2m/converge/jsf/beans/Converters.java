@@ -19,6 +19,7 @@ package dk.i2m.converge.jsf.beans;
 import dk.i2m.converge.core.workflow.Department;
 import dk.i2m.converge.core.workflow.Edition;
 import dk.i2m.converge.ejb.services.NewswireServiceLocal;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import dk.i2m.converge.jsf.converters.NewsItemAuthorDisplayConverter;
 import dk.i2m.converge.jsf.converters.UserRoleConverter;
 import dk.i2m.converge.jsf.converters.WorkflowConverter;
@@ -34,7 +35,6 @@ import dk.i2m.converge.core.workflow.WorkflowStep;
 import dk.i2m.converge.ejb.facades.CalendarFacadeLocal;
 import dk.i2m.converge.ejb.facades.ListingFacadeLocal;
 import dk.i2m.converge.ejb.facades.CatalogueFacadeLocal;
-import dk.i2m.converge.ejb.facades.MetaDataFacadeLocal;
 import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.facades.UserFacadeLocal;
@@ -78,8 +78,6 @@ public class Converters {
 
     @EJB private UserFacadeLocal userFacade;
 
-    @EJB private MetaDataFacadeLocal metaDataFacade;
-
     @EJB private CalendarFacadeLocal calendarFacade;
 
     @EJB private CatalogueFacadeLocal catalogueFacade;
@@ -90,6 +88,8 @@ public class Converters {
 
     @EJB private NewswireServiceLocal newswireService;
 
+    @EJB private ReferenceDataServiceLocal referenceDataService;
+
     /**
      * Gets an instance of the {@link SystemPrivilegeConverter}.
      *
@@ -105,7 +105,7 @@ public class Converters {
      * @return {@link Converter} for {@link Outlet} objects
      */
     public Converter getOutletConverter() {
-        return new OutletConverter(outletFacade);
+        return new OutletConverter(referenceDataService);
     }
 
     public Converter getWeatherLocationConverter() {
@@ -134,7 +134,7 @@ public class Converters {
      * @return {@link Converter} for {@link Concept} objects
      */
     public Converter getConceptConverter() {
-        return new ConceptConverter(metaDataFacade);
+        return new ConceptConverter(referenceDataService);
     }
 
     /**
@@ -143,7 +143,7 @@ public class Converters {
      * @return {@link Converter} for {@link WorkflowState} objects
      */
     public Converter getWorkflowStateConverter() {
-        return new WorkflowStateConverter(workflowFacade);
+        return new WorkflowStateConverter(referenceDataService);
     }
 
     /**
@@ -161,7 +161,7 @@ public class Converters {
      * @return {@link Converter} for {@link Workflow} objects
      */
     public Converter getWorkflowConverter() {
-        return new WorkflowConverter(workflowFacade);
+        return new WorkflowConverter(referenceDataService);
     }
 
     /**
@@ -170,7 +170,7 @@ public class Converters {
      * @return {@link Converter} for {@link UserRole} objects
      */
     public Converter getUserRoleConverter() {
-        return new UserRoleConverter(userFacade);
+        return new UserRoleConverter(referenceDataService);
     }
 
     /**
@@ -242,7 +242,7 @@ public class Converters {
      * @return {@link Converter} for {@link Section} objects
      */
     public Converter getSectionConverter() {
-        return new SectionConverter(outletFacade);
+        return new SectionConverter(referenceDataService);
     }
 
     /**
@@ -274,7 +274,7 @@ public class Converters {
      * @return JSF {@link Converter} for {@link Rendition}s
      */
     public Converter getRenditionConverter() {
-        return new RenditionConverter(catalogueFacade);
+        return new RenditionConverter(referenceDataService);
     }
 
     public Converter getLanguageConverter() {
@@ -1277,6 +1277,18 @@ public class NewsItem {
         this.selectedCatalogue = selectedCatalogue;
     }
 
+    /**
+     * Gets a new unique identifier for uploading files to the
+     * {@link #getSelectedCatalogue() selected catalogue}. The upload applet
+     * sends its files one at a time, so the identifier only has to be unique
+     * to each rendering of the applet.
+     *
+     * @return Unique identifier of an upload
+     */
+    public String getUploadId() {
+        return UUID.randomUUID().toString();
+    }
+
     /**
      * Gets the number of columns to display in the grid of attached media
      * items.
@@ -17,9 +17,18 @@
 package dk.i2m.converge.jsf.beans.administrator;
 
 import dk.i2m.converge.core.BackgroundTask;
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.job.Job;
+import dk.i2m.converge.domain.JobQueueStatistics;
+import dk.i2m.converge.domain.TaskStatistics;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
+import dk.i2m.converge.ejb.services.JobServiceLocal;
+import dk.i2m.converge.jsf.beans.Bundle;
+import dk.i2m.jsf.JsfUtils;
 import java.util.List;
 import javax.ejb.EJB;
+import javax.faces.application.FacesMessage;
+import javax.faces.event.ActionEvent;
 
 /**
  *
@@ -27,9 +36,49 @@ import javax.ejb.EJB;
  */
 public class Processes {
 
+    /** Maximum number of failed jobs displayed. */
+    private static final int FAILED_JOBS_DISPLAYED = 50;
+
     @EJB private SystemFacadeLocal systemFacade;
 
+    @EJB private JobServiceLocal jobService;
+
     public List<BackgroundTask> getBackgroundTasks() {
         return systemFacade.getBackgroundTasks();
     }
+
+    public List<TaskStatistics> getTaskStatistics() {
+        return systemFacade.getTaskStatistics();
+    }
+
+    public void onResetTaskStatistics(ActionEvent event) {
+        systemFacade.resetTaskStatistics();
+    }
+
+    public List<JobQueueStatistics> getJobStatistics() {
+        return jobService.getStatistics();
+    }
+
+    public List<Job> getFailedJobs() {
+        return jobService.findJobs(Job.Status.FAILED, 0,
+                FAILED_JOBS_DISPLAYED);
+    }
+
+    /**
+     * Retries a failed job.
+     *
+     * @param id Unique identifier of the job to retry
+     */
+    public void setRetryJob(Long id) {
+        try {
+            jobService.retry(id);
+            JsfUtils.createMessage("frmProcesses", FacesMessage.SEVERITY_INFO,
+                    Bundle.i18n.name(), "administrator_Processes_JOB_RETRIED",
+                    new Object[]{id});
+        } catch (DataNotFoundException ex) {
+            JsfUtils.createMessage("frmProcesses", FacesMessage.SEVERITY_WARN,
+                    Bundle.i18n.name(), "administrator_Processes_JOB_NOT_FOUND",
+                    new Object[]{id});
+        }
+    }
 }
@@ -18,7 +18,7 @@ package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.metadata.Concept;
-import dk.i2m.converge.ejb.facades.MetaDataFacadeLocal;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.faces.component.UIComponent;
@@ -35,17 +35,17 @@ public class ConceptConverter implements Converter {
     private static final Logger log = Logger.getLogger(ConceptConverter.class.
             getName());
 
-    private MetaDataFacadeLocal metaDataFacade;
+    private ReferenceDataServiceLocal referenceDataService;
 
-    public ConceptConverter(MetaDataFacadeLocal metaDataFacade) {
-        this.metaDataFacade = metaDataFacade;
+    public ConceptConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     @Override
     public Object getAsObject(FacesContext ctx, UIComponent component,
             String value) {
         try {
-            return metaDataFacade.findConceptById(Long.valueOf(value));
+            return referenceDataService.findById(Concept.class, Long.valueOf(value));
         } catch (DataNotFoundException ex) {
             log.log(Level.WARNING, "No matching concept", ex);
             return null;
@@ -17,8 +17,8 @@
 package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.workflow.Outlet;
-import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
 import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import javax.faces.component.UIComponent;
 import javax.faces.context.FacesContext;
 import javax.faces.convert.Converter;
@@ -30,16 +30,16 @@ import javax.faces.convert.Converter;
  */
 public class OutletConverter implements Converter {
 
-    private OutletFacadeLocal outletFacade;
+    private ReferenceDataServiceLocal referenceDataService;
 
-    public OutletConverter(OutletFacadeLocal outletFacade) {
-        this.outletFacade = outletFacade;
+    public OutletConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     public Object getAsObject(FacesContext ctx, UIComponent component,
             String value) {
         try {
-            return outletFacade.findOutletById(Long.valueOf(value));
+            return referenceDataService.findById(Outlet.class, Long.valueOf(value));
         } catch (DataNotFoundException ex) {
             return null;
         }
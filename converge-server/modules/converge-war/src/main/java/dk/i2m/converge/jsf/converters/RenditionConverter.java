@@ -17,8 +17,8 @@
 package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.content.catalogue.Rendition;
-import dk.i2m.converge.ejb.facades.CatalogueFacadeLocal;
 import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.faces.component.UIComponent;
@@ -34,16 +34,16 @@ public class RenditionConverter implements Converter {
 
     private static final Logger LOG = Logger.getLogger(RenditionConverter.class.getName());
 
-    private CatalogueFacadeLocal catalogueFacade;
+    private ReferenceDataServiceLocal referenceDataService;
 
     /**
      * Creates a new instance of {@link RenditionConverter}.
      * 
-     * @param catalogueFacade 
-     *          Facade used for looking up {@link Rendition}s
+     * @param referenceDataService 
+     *          Service used for looking up {@link Rendition}s
      */
-    public RenditionConverter(CatalogueFacadeLocal catalogueFacade) {
-        this.catalogueFacade = catalogueFacade;
+    public RenditionConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     @Override
@@ -52,7 +52,7 @@ public class RenditionConverter implements Converter {
             if (value == null) {
                 return null;
             }
-            return catalogueFacade.findRenditionById(Long.valueOf(value));
+            return referenceDataService.findById(Rendition.class, Long.valueOf(value));
 
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, "No Rendition matching [{0}]", value);
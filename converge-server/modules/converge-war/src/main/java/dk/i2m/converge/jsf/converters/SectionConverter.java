@@ -18,7 +18,7 @@ package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.workflow.Section;
 import dk.i2m.converge.core.DataNotFoundException;
-import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.faces.component.UIComponent;
@@ -33,16 +33,16 @@ public class SectionConverter implements Converter {
 
     private static final Logger log = Logger.getLogger(SectionConverter.class.getName());
 
-    private OutletFacadeLocal outletFacade;
+    private ReferenceDataServiceLocal referenceDataService;
 
-    public SectionConverter(OutletFacadeLocal outletFacade) {
-        this.outletFacade = outletFacade;
+    public SectionConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     @Override
     public Object getAsObject(FacesContext ctx, UIComponent component, String value) {
         try {
-            return outletFacade.findSectionById(Long.valueOf(value));
+            return referenceDataService.findById(Section.class, Long.valueOf(value));
         } catch (DataNotFoundException ex) {
             log.log(Level.WARNING, "No matching section", ex);
             return null;
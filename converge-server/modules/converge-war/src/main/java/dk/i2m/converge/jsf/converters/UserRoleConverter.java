@@ -18,7 +18,7 @@ package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.security.UserRole;
 import dk.i2m.converge.core.DataNotFoundException;
-import dk.i2m.converge.ejb.facades.UserFacadeLocal;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.faces.component.UIComponent;
@@ -34,22 +34,22 @@ public class UserRoleConverter implements Converter {
 
     private static final Logger log = Logger.getLogger(UserRoleConverter.class.getName());
 
-    private UserFacadeLocal userFacade;
+    private ReferenceDataServiceLocal referenceDataService;
 
     /**
      * Creates a new instance of {@link UserRoleConverter}.
      * 
-     * @param userFacade
-     *          USer facade used for looking up user roles
+     * @param referenceDataService
+     *          Reference data service used for looking up user roles
      */
-    public UserRoleConverter(UserFacadeLocal userFacade) {
-        this.userFacade = userFacade;
+    public UserRoleConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     @Override
     public Object getAsObject(FacesContext ctx, UIComponent component, String value) {
         try {
-            return userFacade.findUserRoleById(Long.valueOf(value));
+            return referenceDataService.findById(UserRole.class, Long.valueOf(value));
         } catch (DataNotFoundException ex) {
             log.log(Level.WARNING, "No user role matching [{0}]", value);
             return null;
@@ -18,7 +18,7 @@ package dk.i2m.converge.jsf.converters;
 
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.workflow.Workflow;
-import dk.i2m.converge.ejb.facades.WorkflowFacadeLocal;
+import dk.i2m.converge.ejb.services.ReferenceDataServiceLocal;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.faces.component.UIComponent;
@@ -36,23 +36,23 @@ public class WorkflowConverter implements Converter {
     private static Logger logger = Logger.getLogger(WorkflowConverter.class.
             getName());
 
-    /** Facade used for looking up domain objects. */
-    private WorkflowFacadeLocal workflowFacade;
+    /** Service used for looking up domain objects. */
+    private ReferenceDataServiceLocal referenceDataService;
 
     /**
      * Creates a new instance of {@link WorkflowStateConverter}.
      *
-     * @param workflowFacade
-     *          Workflow facade to use for looking up domain objects
+     * @param referenceDataService
+     *          Reference data service to use for looking up domain objects
      */
-    public WorkflowConverter(WorkflowFacadeLocal workflowFacade) {
-        this.workflowFacade = workflowFacade;
+    public WorkflowConverter(ReferenceDataServiceLocal referenceDataService) {
+        this.referenceDataService = referenceDataService;
     }
 
     public Object getAsObject(FacesContext ctx, UIComponent component,
             String value) {
         try {
-            return workflowFacade.findWorkflowById(Long.valueOf(value));
+            return referenceDataService.findById(Workflow.class, Long.valueOf(value));
         } catch (DataNotFoundException ex) {
             logger.log(Level.WARNING, "No workflow matching [" + value + "]", ex);
             return null;
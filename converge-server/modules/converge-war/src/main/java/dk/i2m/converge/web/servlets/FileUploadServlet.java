@@ -16,21 +16,21 @@
  */
 package dk.i2m.converge.web.servlets;
 
-import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.DataNotFoundException;
 import dk.i2m.converge.core.content.catalogue.*;
+import dk.i2m.converge.core.plugin.CatalogueEvent;
 import dk.i2m.converge.core.security.UserAccount;
+import dk.i2m.converge.core.utils.ChunkedUpload;
 import dk.i2m.converge.core.utils.HttpUtils;
 import dk.i2m.converge.ejb.facades.CatalogueFacadeLocal;
-import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.facades.UserFacadeLocal;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.Principal;
-import java.util.Enumeration;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
@@ -38,13 +38,34 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.apache.commons.fileupload.util.Streams;
 import org.apache.commons.io.FilenameUtils;
 
 /**
  * Servlet accepting file uploads for {@link Catalogue}s.
+ * <p/>
+ * Files are streamed from the request into the upload folder of the
+ * {@link Catalogue} and moved to their final location once complete, so
+ * that an upload is only written to disk once. Large files can be uploaded
+ * in chunks using the following parameters:
+ * <ul>
+ * <li><code>jupart</code> - Number of the chunk, starting from 1</li>
+ * <li><code>jufinal</code> - <code>1</code> if this is the last chunk</li>
+ * <li><code>chunkSize</code> - Size of the chunks, used for calculating the
+ * offset of a chunk from its number</li>
+ * <li><code>offset</code> - Offset of the chunk, instead of
+ * <code>jupart</code> and <code>chunkSize</code></li>
+ * <li><code>uploadId</code> - Unique identifier of the upload chosen by the
+ * client, required for uploads sent in chunks. A request without a file
+ * returns the number of bytes received for the upload, from which an
+ * interrupted upload can be resumed</li>
+ * <li><code>chunkChecksum</code> - MD5 checksum of the chunk</li>
+ * <li><code>checksum</code> - MD5 checksum of the complete file, verified
+ * when the last chunk is received</li>
+ * </ul>
  *
  * @author Allan Lykke Christensen
  */
@@ -53,9 +74,24 @@ public class FileUploadServlet extends HttpServlet {
     private static final Logger LOG = Logger.getLogger(FileUploadServlet.class.
             getName());
 
-    @EJB private CatalogueFacadeLocal catalogueFacade;
+    private static final String PARAM_PART = "jupart";
+
+    private static final String PARAM_FINAL = "jufinal";
+
+    private static final String PARAM_CHUNK_SIZE = "chunkSize";
+
+    private static final String PARAM_OFFSET = "offset";
+
+    private static final String PARAM_UPLOAD_ID = "uploadId";
+
+    private static final String PARAM_CHUNK_CHECKSUM = "chunkChecksum";
 
-    @EJB private SystemFacadeLocal systemFacade;
+    private static final String PARAM_CHECKSUM = "checksum";
+
+    /** Milliseconds after which an incomplete upload is discarded. */
+    private static final long ABANDONED_UPLOAD_AGE = 24 * 60 * 60 * 1000L;
+
+    @EJB private CatalogueFacadeLocal catalogueFacade;
 
     @EJB private UserFacadeLocal userFacade;
 
@@ -75,15 +111,10 @@ public class FileUploadServlet extends HttpServlet {
         UNKNOWN
     }
 
-    /** Authenticated user requesting an operation from the servlet. */
-    private UserAccount user = null;
-
-    /** Value returned after the SUCCESS message. */
-    private String returnValue = "";
-
     /**
-     * Processes the upload request by reading each chunk at a time and
-     * combining it to a single file.
+     * Processes the upload request by streaming each chunk to its offset in
+     * the upload and executing the requested operation once the last chunk
+     * has been received.
      * <p/>
      * @param request  Servlet request
      * @param response Servlet response
@@ -93,35 +124,15 @@ public class FileUploadServlet extends HttpServlet {
     protected void processRequest(HttpServletRequest request,
             HttpServletResponse response) throws ServletException, IOException {
 
-        boolean access = securityCheck(request);
+        UserAccount user = securityCheck(request);
 
-        if (!access) {
+        if (user == null) {
             return;
         }
 
-        //Initialization for chunk management.
-        boolean bLastChunk = false;
-        int numChunk = 0;
-
         response.setContentType("text/plain");
 
         try {
-            Enumeration paraNames = request.getParameterNames();
-
-            String pkey;
-            String pvalue;
-            if (paraNames != null) {
-                while (paraNames.hasMoreElements()) {
-                    pkey = (String) paraNames.nextElement();
-                    pvalue = request.getParameter(pkey);
-                    if (pkey.equals("jufinal")) {
-                        bLastChunk = pvalue.equals("1");
-                    } else if (pkey.equals("jupart")) {
-                        numChunk = Integer.parseInt(pvalue);
-                    }
-                }
-            }
-
             Operation operation = determineOperation(request);
 
             if (operation == Operation.UNKNOWN) {
@@ -129,107 +140,112 @@ public class FileUploadServlet extends HttpServlet {
                 return;
             }
 
+            Catalogue catalogue = findCatalogue(request, operation);
+            if (catalogue == null) {
+                return;
+            }
+            File uploadLocation = new File(catalogue.getUploadLocation());
+
+            // Clients resuming an upload query the number of bytes received
+            if (!ServletFileUpload.isMultipartContent(request)) {
+                String uploadId = request.getParameter(PARAM_UPLOAD_ID);
+                if (uploadId != null) {
+                    ChunkedUpload upload = new ChunkedUpload(uploadLocation,
+                            user.getUsername() + "-" + uploadId);
+                    response.getWriter().println("SUCCESS");
+                    response.getWriter().print(upload.getLength());
+                }
+                return;
+            }
 
-            String mediaItemId = null;
-            String renditionId = null;
-            String mediaItemRenditionId = null;
-
-            int ourMaxMemorySize = 10000000;
-            //int ourMaxRequestSize = 4000000000;
-
-            // Create a factory for disk-based file items
-            DiskFileItemFactory factory = new DiskFileItemFactory();
-
-            // Set factory constraints
-            factory.setSizeThreshold(ourMaxMemorySize);
-            factory.setRepository(new File(getTemporaryDirectory()));
-
-            // Create a new file upload handler
-            ServletFileUpload upload = new ServletFileUpload(factory);
-
-            // Set overall request size constraint
-            //upload.setSizeMax(ourMaxRequestSize);
-
-            // Parse the request
-            if (request.getContentType() != null && request.getContentType().
-                    startsWith("multipart/form-data")) {
-                List<FileItem> items = upload.parseRequest(request);
-                // Process the uploaded items
-
-                File fout;
-                for (FileItem fileItem : items) {
-                    if (!fileItem.isFormField()) {
-
-                        //If we are in chunk mode, we add ".partN" at the end of the file, where N is the chunk number.
-                        String uploadedFilename = fileItem.getName() + (numChunk
-                                > 0 ? ".part" + numChunk : "");
-                        fout = new File(getTemporaryDirectory() + (new File(
-                                uploadedFilename)).getName());
-                        LOG.log(Level.FINE, "File out: {0}", fout.toString());
-                        fileItem.write(fout);
-
-                        // Execute requested operation
-                        switch (operation) {
-                            case NEW_MEDIA_ITEM:
-                                executeNewMediaItem(request, fileItem);
-                                break;
-                            case UPDATE_MEDIA_ITEM_RENDITION:
-                                executeUpdateRendition(request, fileItem);
-                                break;
-                            case NEW_MEDIA_ITEM_RENDITION:
-                                executeNewRendition(request, fileItem);
-                                break;
-                            default:
-                                LOG.log(Level.WARNING, "Unknown operation");
-                                break;
-
-                        }
-
-                        // Chunk management: if it was the last chunk, let's 
-                        // recover the complete file by concatenating all chunk
-                        // parts.
-                        if (bLastChunk) {
-                            LOG.log(Level.FINEST,
-                                    "Last chunk received: Rebuilding complete file ({0})",
-                                    fileItem.getName());
-                            //First: construct the final filename.
-                            FileInputStream fis;
-                            FileOutputStream fos =
-                                    new FileOutputStream(getTemporaryDirectory()
-                                    + fileItem.getName());
-                            int nbBytes;
-                            byte[] byteBuff = new byte[1024];
-                            String filename;
-                            for (int i = 1; i <= numChunk; i += 1) {
-                                filename = fileItem.getName() + ".part" + i;
-                                LOG.log(Level.FINEST, "Concatenating {0}",
-                                        filename);
-
-                                fis = new FileInputStream(getTemporaryDirectory()
-                                        + filename);
-
-                                while ((nbBytes = fis.read(byteBuff)) >= 0) {
-                                    LOG.log(Level.FINEST, "Nb bytes read: {0}",
-                                            nbBytes);
-                                    fos.write(byteBuff, 0, nbBytes);
-                                }
-                                fis.close();
-                            }
-                            fos.close();
-
-                        }
-                        // End of chunk management
-
-                        fileItem.delete();
+            String returnValue = "";
+            Map<String, String> fields = new HashMap<String, String>();
+            FileItemIterator items = new ServletFileUpload().getItemIterator(
+                    request);
+            while (items.hasNext()) {
+                FileItemStream item = items.next();
+                InputStream in = item.openStream();
+                if (item.isFormField()) {
+                    fields.put(item.getFieldName(), Streams.asString(in));
+                    continue;
+                }
+
+                String filename = HttpUtils.getFilename(item.getName());
+                String uploadId = getParameter(request, fields,
+                        PARAM_UPLOAD_ID);
+                if (uploadId == null) {
+                    if (!isSingleRequest(request, fields)) {
+                        throw new IOException("Missing " + PARAM_UPLOAD_ID
+                                + " parameter for chunked upload of "
+                                + filename);
                     }
+                    uploadId = UUID.randomUUID().toString();
+                }
+                ChunkedUpload upload = new ChunkedUpload(uploadLocation,
+                        user.getUsername() + "-" + uploadId);
+
+                long offset = getOffset(request, fields, upload);
+                if (offset == 0) {
+                    ChunkedUpload.purge(uploadLocation, ABANDONED_UPLOAD_AGE);
+                }
+                try {
+                    upload.write(in, offset, getParameter(request, fields,
+                            PARAM_CHUNK_CHECKSUM));
+                } finally {
+                    in.close();
+                }
+
+                Long maxSize = catalogue.getMaxFileUploadSize();
+                if (maxSize != null && maxSize > 0
+                        && upload.getLength() > maxSize * 1024) {
+                    upload.delete();
+                    throw new IOException(filename + " exceeds the maximum "
+                            + "file size of " + maxSize + " KB");
+                }
+
+                if (!isLastChunk(request, fields)) {
+                    continue;
+                }
+
+                String checksum = getParameter(request, fields, PARAM_CHECKSUM);
+                if (checksum != null && !checksum.equalsIgnoreCase(upload.
+                        getChecksum())) {
+                    upload.delete();
+                    throw new IOException(filename + " does not match "
+                            + "checksum " + checksum);
+                }
+
+                // Execute requested operation
+                File uploadedFile = upload.getFile();
+                String contentType = item.getContentType();
+                switch (operation) {
+                    case NEW_MEDIA_ITEM:
+                        returnValue = executeNewMediaItem(user, catalogue,
+                                uploadedFile, filename, contentType);
+                        break;
+                    case UPDATE_MEDIA_ITEM_RENDITION:
+                        returnValue = executeUpdateRendition(request,
+                                uploadedFile, filename, contentType);
+                        break;
+                    case NEW_MEDIA_ITEM_RENDITION:
+                        returnValue = executeNewRendition(request,
+                                uploadedFile, filename, contentType);
+                        break;
+                    default:
+                        LOG.log(Level.WARNING, "Unknown operation");
+                        break;
                 }
+
+                // The file was moved to the catalogue unless the operation failed
+                upload.delete();
             }
 
             response.getWriter().println("SUCCESS");
-            response.getWriter().print(this.returnValue);
+            response.getWriter().print(returnValue);
 
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "File upload failed. " + e.getMessage(), e);
+            response.getWriter().println("ERROR: " + e.getMessage());
         }
     }
 
@@ -237,28 +253,25 @@ public class FileUploadServlet extends HttpServlet {
      * Checks if the user is authenticated and exist in the database.
      * <p/>
      * @param request {@link HttpServletRequest} received from the user
-     * @return {@code true} if the user is authenticated and existing, otherwise
-     *         {@code false}
+     * @return {@link UserAccount} of the authenticated user, or {@code null}
+     *         if the user is not authenticated or does not exist
      */
-    private boolean securityCheck(HttpServletRequest request) {
+    private UserAccount securityCheck(HttpServletRequest request) {
         Principal userPrincipal = request.getUserPrincipal();
         if (userPrincipal == null) {
-            this.user = null;
             LOG.log(Level.WARNING, "Unauthorised access to FileUploadServlet "
                     + "attempted from {0}", request.getRemoteAddr());
-            return false;
+            return null;
         }
 
         String uid = userPrincipal.getName();
 
         try {
-            this.user = userFacade.findById(uid);
+            return userFacade.findById(uid);
         } catch (DataNotFoundException ex) {
-            this.user = null;
             LOG.log(Level.SEVERE, ex.getMessage());
-            return false;
+            return null;
         }
-        return true;
     }
 
     private Operation determineOperation(HttpServletRequest request) {
@@ -277,65 +290,143 @@ public class FileUploadServlet extends HttpServlet {
         }
     }
 
-    private void executeNewMediaItem(HttpServletRequest request,
-            FileItem fileItem) {
-        LOG.log(Level.FINE, "Creating new media item");
-
-        String catalogueId = request.getParameter("catalogueId");
-
-        if (catalogueId == null) {
-            LOG.log(Level.WARNING, "Missing catalogueId parameter");
-            return;
+    /**
+     * Finds the {@link Catalogue} receiving the upload. New media items are
+     * uploaded to the catalogue specified in the <code>catalogueId</code>
+     * parameter, renditions to the catalogue of the media item specified in
+     * the <code>mediaItemId</code> parameter.
+     * <p/>
+     * @param request   {@link HttpServletRequest} received from the user
+     * @param operation Requested operation
+     * @return {@link Catalogue} receiving the upload, or {@code null} if the
+     *         parameters were invalid
+     */
+    private Catalogue findCatalogue(HttpServletRequest request,
+            Operation operation) {
+        String param = operation == Operation.NEW_MEDIA_ITEM ? "catalogueId"
+                : "mediaItemId";
+        String id = request.getParameter(param);
+
+        if (id == null) {
+            LOG.log(Level.WARNING, "Missing {0} parameter", param);
+            return null;
         }
 
-        Catalogue catalogue = null;
         try {
-            catalogue =
-                    catalogueFacade.findCatalogueById(Long.valueOf(catalogueId));
+            if (operation == Operation.NEW_MEDIA_ITEM) {
+                return catalogueFacade.findCatalogueById(Long.valueOf(id));
+            } else {
+                return catalogueFacade.findMediaItemById(Long.valueOf(id)).
+                        getCatalogue();
+            }
         } catch (DataNotFoundException ex) {
-            LOG.log(Level.WARNING, "Invalid catalogue: {0}",
-                    new Object[]{catalogueId});
-            return;
+            LOG.log(Level.WARNING, "Invalid {0}: {1}", new Object[]{param, id});
+            return null;
         } catch (NumberFormatException ex) {
-            LOG.log(Level.WARNING, "Invalid catalogue: {0}",
-                    new Object[]{catalogueId});
-            return;
+            LOG.log(Level.WARNING, "Invalid {0}: {1}", new Object[]{param, id});
+            return null;
+        }
+    }
+
+    /**
+     * Gets a parameter from the query string of the request or from the form
+     * fields preceding the file in the multipart request.
+     */
+    private String getParameter(HttpServletRequest request,
+            Map<String, String> fields, String name) {
+        String value = request.getParameter(name);
+        if (value == null) {
+            value = fields.get(name);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the offset of the received chunk in the upload. The offset is
+     * either specified explicitly or calculated from the number and size of
+     * the chunk, so that a chunk resent after a failure overwrites the
+     * previous attempt.
+     */
+    private long getOffset(HttpServletRequest request,
+            Map<String, String> fields, ChunkedUpload upload) {
+        String offset = getParameter(request, fields, PARAM_OFFSET);
+        if (offset != null) {
+            return Long.parseLong(offset);
+        }
+
+        String part = getParameter(request, fields, PARAM_PART);
+        if (part == null || Integer.parseInt(part) <= 1) {
+            return 0;
+        }
+
+        String chunkSize = getParameter(request, fields, PARAM_CHUNK_SIZE);
+        if (chunkSize != null) {
+            return (Integer.parseInt(part) - 1) * Long.parseLong(chunkSize);
+        }
+        // Chunks of unknown size are appended in the order received
+        return upload.getLength();
+    }
+
+    /**
+     * Determines if the received chunk completes the upload. Requests
+     * without chunk information contain the complete file.
+     */
+    private boolean isLastChunk(HttpServletRequest request,
+            Map<String, String> fields) {
+        String last = getParameter(request, fields, PARAM_FINAL);
+        if (last != null) {
+            return last.equals("1");
         }
+        return isSingleRequest(request, fields);
+    }
+
+    /**
+     * Determines if the request contains the complete file rather than a
+     * chunk of it.
+     */
+    private boolean isSingleRequest(HttpServletRequest request,
+            Map<String, String> fields) {
+        return getParameter(request, fields, PARAM_PART) == null
+                && getParameter(request, fields, PARAM_OFFSET) == null;
+    }
+
+    private String executeNewMediaItem(UserAccount user, Catalogue catalogue,
+            File uploadedFile, String filename, String contentType) {
+        LOG.log(Level.FINE, "Creating new media item");
 
         MediaItem mediaItem = new MediaItem();
-        mediaItem.setTitle(FilenameUtils.getBaseName(fileItem.getName()));
+        mediaItem.setTitle(FilenameUtils.getBaseName(filename));
         mediaItem.setStatus(MediaItemStatus.SELF_UPLOAD);
         mediaItem.setCatalogue(catalogue);
         mediaItem.setOwner(user);
         mediaItem.setByLine("");
         mediaItem = catalogueFacade.create(mediaItem);
-        this.returnValue = "" + mediaItem.getId();
 
         MediaItemRendition mir = new MediaItemRendition();
         mir.setMediaItem(mediaItem);
         mir.setRendition(catalogue.getOriginalRendition());
         mediaItem.getRenditions().add(mir);
 
-        String filename = HttpUtils.getFilename(fileItem.getName());
-        File uploadedFile = new File(getTemporaryDirectory(), filename);
         try {
             mir = catalogueFacade.create(uploadedFile,
                     mediaItem, mir.getRendition(), filename,
-                    fileItem.getContentType(), true);
+                    contentType, false);
 
             LOG.log(Level.FINE,
                     "New media item and rendition created: {0} / {1}",
                     new Object[]{mediaItem.getId(), mir.getId()});
+            executeHooks(mediaItem.getId(),
+                    CatalogueEvent.Event.UploadRendition);
         } catch (IOException ioex) {
             LOG.log(Level.WARNING, "Could not create file. "
                     + ioex.getMessage(), ioex);
         }
 
-        uploadedFile.delete();
+        return "" + mediaItem.getId();
     }
 
-    private void executeUpdateRendition(HttpServletRequest request,
-            FileItem fileItem) {
+    private String executeUpdateRendition(HttpServletRequest request,
+            File uploadedFile, String filename, String contentType) {
 
         // Retrieve parameters from request
         String paramMediaItemId = request.getParameter("mediaItemId");
@@ -350,7 +441,7 @@ public class FileUploadServlet extends HttpServlet {
         } catch (NumberFormatException ex) {
             LOG.log(Level.WARNING, "Invalid values supplied. {0}",
                     ex.getMessage());
-            return;
+            return "";
         }
 
         // Retrieve the MediaItemRendition
@@ -364,32 +455,30 @@ public class FileUploadServlet extends HttpServlet {
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, "Unknown data requested. {0}",
                     ex.getMessage());
-            return;
+            return "";
         } catch (RenditionNotFoundException ex) {
             LOG.log(Level.WARNING, "Unknown rendition requested. {0}", ex.
                     getMessage());
-            return;
+            return "";
         }
 
         // Update MediaItemRendition with the uploaded file
-        File uploadedFile =
-                new File(getTemporaryDirectory(), fileItem.getName());
         try {
-            mediaItemRendition = catalogueFacade.update(uploadedFile, fileItem.
-                    getName(), fileItem.getContentType(), mediaItemRendition, true);
-            this.returnValue = "" + mediaItemRendition.getId();
+            mediaItemRendition = catalogueFacade.update(uploadedFile, filename,
+                    contentType, mediaItemRendition, false);
             LOG.log(Level.FINE, "Media item #{0} was updated",
                     new Object[]{mediaItemRendition.getId()});
+            executeHooks(mediaItemId, CatalogueEvent.Event.UpdateRendition);
+            return "" + mediaItemRendition.getId();
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "Could not update catalogue. {0}", ex.
                     getMessage());
+            return "";
         }
-
-        uploadedFile.delete();
     }
 
-    private void executeNewRendition(HttpServletRequest request,
-            FileItem fileItem) {
+    private String executeNewRendition(HttpServletRequest request,
+            File uploadedFile, String filename, String contentType) {
 
         // Retrieve parameters from request
         String paramMediaItemId = request.getParameter("mediaItemId");
@@ -404,7 +493,7 @@ public class FileUploadServlet extends HttpServlet {
         } catch (NumberFormatException ex) {
             LOG.log(Level.WARNING, "Invalid values supplied. {0}",
                     ex.getMessage());
-            return;
+            return "";
         }
 
         // Retrieve objects from database
@@ -415,32 +504,33 @@ public class FileUploadServlet extends HttpServlet {
             rendition = catalogueFacade.findRenditionById(renditionId);
         } catch (DataNotFoundException ex) {
             LOG.log(Level.WARNING, "Unknown data requested. {0}", ex.getMessage());
-            return;
+            return "";
         }
 
-        File uploadedFile = new File(getTemporaryDirectory(), fileItem.getName());
         MediaItemRendition mediaItemRendition;
         try {
-            mediaItemRendition = catalogueFacade.create(uploadedFile, mediaItem, rendition, fileItem.getName(), fileItem.getContentType(), true);
+            mediaItemRendition = catalogueFacade.create(uploadedFile, mediaItem, rendition, filename, contentType, false);
             LOG.log(Level.FINE, "New media item rendition created: {0}", mediaItemRendition.getId());
-            this.returnValue = "" + mediaItemRendition.getId();
+            executeHooks(mediaItemId, CatalogueEvent.Event.UploadRendition);
+            return "" + mediaItemRendition.getId();
         } catch (IOException ex) {
             LOG.log(Level.SEVERE, "Could not create media item rendition. {0}", ex.getMessage());
+            return "";
         }
-        
-        uploadedFile.delete();
     }
 
     /**
-     * Gets the temporary directory for storing incoming files.
-     * <p/>
-     * @return Temporary directory for storing incoming files
+     * Executes the hooks of the catalogue for an uploaded file. The hooks are
+     * executed after storing the file, as the file is only moved into the
+     * catalogue once the transaction storing it has been committed.
      */
-    private String getTemporaryDirectory() {
-        String home = systemFacade.getProperty(
-                ConfigurationKey.WORKING_DIRECTORY);
-        String tempDirectory = home + "/tmp/";
-        return tempDirectory;
+    private void executeHooks(Long mediaItemId, CatalogueEvent.Event event) {
+        try {
+            catalogueFacade.executeHooks(mediaItemId, event);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Could not execute hooks for media item "
+                    + "#{0}. {1}", new Object[]{mediaItemId, ex.getMessage()});
+        }
     }
 
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
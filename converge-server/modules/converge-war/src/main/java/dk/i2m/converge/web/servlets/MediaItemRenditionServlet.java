@@ -0,0 +1,166 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.web.servlets;
+
+import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
+import dk.i2m.converge.core.utils.HttpUtils;
+import dk.i2m.converge.ejb.facades.CatalogueFacadeLocal;
+import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ejb.EJB;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * {@link HttpServlet} streaming the file of a {@link MediaItemRendition}
+ * from its catalogue. The rendition is specified in the path of the request,
+ * e.g. <code>/MediaItemRendition/123/video.mp4</code>, where the file name is
+ * optional and only included for clients detecting the type of the file from
+ * the URL. Range requests are supported for scrubbing audio and video.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class MediaItemRenditionServlet extends HttpServlet {
+
+    private static final Logger LOG = Logger.getLogger(
+            MediaItemRenditionServlet.class.getName());
+
+    /** Request parameter forcing the file to be downloaded. */
+    private static final String PARAM_FORCE = "force";
+
+    @EJB private CatalogueFacadeLocal catalogueFacade;
+
+    @EJB private SystemFacadeLocal systemFacade;
+
+    /**
+     * Processes requests for both HTTP <code>GET</code> and <code>POST</code>
+     * methods.
+     *
+     * @param request
+     *          servlet request
+     * @param response
+     *          servlet response
+     * @throws ServletException
+     *          if a servlet-specific error occurs
+     * @throws IOException
+     *          if an I/O error occurs
+     */
+    protected void processRequest(HttpServletRequest request,
+            HttpServletResponse response) throws ServletException, IOException {
+        Long id = getRenditionId(request);
+        if (id == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        MediaItemRendition rendition;
+        try {
+            rendition = catalogueFacade.findMediaItemRenditionById(id);
+        } catch (DataNotFoundException ex) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File file = new File(rendition.getFileLocation());
+        if (!file.isFile() || !file.canRead()) {
+            LOG.log(Level.WARNING, "File of MediaItemRendition #{0} is missing"
+                    + " from {1}", new Object[]{id, file.getAbsolutePath()});
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String contentType = rendition.getContentType();
+        if (contentType == null || contentType.trim().isEmpty()) {
+            contentType = "application/octet-stream";
+        }
+
+        String etag = HttpUtils.createETag("rendition", id, file.length(),
+                file.lastModified());
+        HttpUtils.sendFile(request, response, file, rendition.getFilename(),
+                contentType, etag, getMaxAge(), request.getParameter(
+                PARAM_FORCE) != null);
+    }
+
+    /**
+     * Gets the unique identifier of the rendition from the first segment of
+     * the path of the request.
+     */
+    private Long getRenditionId(HttpServletRequest request) {
+        String path = request.getPathInfo();
+        if (path == null || path.length() < 2) {
+            return null;
+        }
+        int end = path.indexOf('/', 1);
+        String id = end == -1 ? path.substring(1) : path.substring(1, end);
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private int getMaxAge() {
+        try {
+            return Integer.parseInt(systemFacade.getProperty(
+                    ConfigurationKey.MEDIA_DELIVERY_MAX_AGE));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Handles the HTTP <code>GET</code> method.
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request,
+            HttpServletResponse response) throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Handles the HTTP <code>POST</code> method.
+     * @param request servlet request
+     * @param response servlet response
+     * @throws ServletException if a servlet-specific error occurs
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    protected void doPost(HttpServletRequest request,
+            HttpServletResponse response) throws ServletException, IOException {
+        processRequest(request, response);
+    }
+
+    /**
+     * Returns a short description of the servlet.
+     * @return a String containing servlet description
+     */
+    @Override
+    public String getServletInfo() {
+        return "Streams renditions of media items";
+    }
+}
@@ -16,12 +16,13 @@
  */
 package dk.i2m.converge.web.servlets;
 
-import dk.i2m.commons.FilePackage;
-import dk.i2m.commons.HttpUtils;
+import dk.i2m.converge.core.ConfigurationKey;
 import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.utils.HttpUtils;
+import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import dk.i2m.converge.ejb.services.NewswireServiceLocal;
+import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.ejb.EJB;
@@ -38,6 +39,8 @@ public class NewswireItemAttachment extends HttpServlet {
 
     @EJB private NewswireServiceLocal newswireService;
 
+    @EJB private SystemFacadeLocal systemFacade;
+
     /** 
      * Processes requests for both HTTP <code>GET</code> and <code>POST</code> methods.
      * @param request servlet request
@@ -60,7 +63,7 @@ public class NewswireItemAttachment extends HttpServlet {
             dk.i2m.converge.core.newswire.NewswireItemAttachment attachment = newswireService.findNewswireItemAttachmentById(id);
 
             if (attachment.getNewswireItem().getId().equals(newswireItemId)) {
-                HttpUtils.sendBinary(response, attachment.getFilename(), attachment.getData(), attachment.getContentType());
+                sendAttachment(request, response, attachment, force);
             } else {
                 Logger.getLogger(NewswireItemAttachment.class.getName()).log(Level.SEVERE, "Attachment and NewswireItem mismatch");
             }
@@ -70,6 +73,54 @@ public class NewswireItemAttachment extends HttpServlet {
         }
     }
 
+    /**
+     * Sends an attachment from its catalogue, or from the database if it is
+     * not stored in a catalogue. Newswire attachments never change, so the
+     * entity tag is derived from the identifier and size of the attachment
+     * and validated before the data is loaded from the database.
+     */
+    private void sendAttachment(HttpServletRequest request,
+            HttpServletResponse response,
+            dk.i2m.converge.core.newswire.NewswireItemAttachment attachment,
+            boolean force) throws IOException {
+        int maxAge = getMaxAge();
+
+        if (attachment.isStoredInCatalogue()) {
+            File file = new File(attachment.getCatalogueFileLocation());
+            if (file.isFile()) {
+                String etag = HttpUtils.createETag("attachment", attachment.
+                        getId(), file.length(), file.lastModified());
+                HttpUtils.sendFile(request, response, file, attachment.
+                        getFilename(), attachment.getContentType(), etag,
+                        maxAge, force);
+                return;
+            }
+        }
+
+        String etag = HttpUtils.createETag("attachment", attachment.getId(),
+                attachment.getSize(), 0);
+        if (HttpUtils.isNotModified(request, response, etag, 0)) {
+            return;
+        }
+
+        byte[] data = attachment.getData();
+        if (data == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        HttpUtils.sendBinary(request, response, attachment.getFilename(), data,
+                attachment.getContentType(), etag, 0, maxAge, force);
+    }
+
+    private int getMaxAge() {
+        try {
+            return Integer.parseInt(systemFacade.getProperty(
+                    ConfigurationKey.MEDIA_DELIVERY_MAX_AGE));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
     // <editor-fold defaultstate="collapsed" desc="HttpServlet methods. Click on the + sign on the left to edit the code.">
     /** 
      * Handles the HTTP <code>GET</code> method.
@@ -16,10 +16,9 @@
  */
 package dk.i2m.converge.web.servlets;
 
-import dk.i2m.commons.FileUtils;
 import dk.i2m.commons.RequestUtils;
-import dk.i2m.commons.ResponseUtils;
 import dk.i2m.converge.core.ConfigurationKey;
+import dk.i2m.converge.core.utils.HttpUtils;
 import dk.i2m.converge.ejb.facades.SystemFacadeLocal;
 import java.io.File;
 import java.io.IOException;
@@ -67,8 +66,11 @@ public class UserPhotoServlet extends HttpServlet {
         File userPhoto = new File(workingDirectory, uid + ".jpg");
 
         if (userPhoto.canRead() && userPhoto.exists()) {
-            byte[] thumb = FileUtils.getBytes(userPhoto);
-            ResponseUtils.sendBinary(response, "profile.jpg", thumb, "image/jpeg");
+            // Photos are replaced by the users and must always be revalidated
+            String etag = HttpUtils.createETag("user", uid, userPhoto.length(),
+                    userPhoto.lastModified());
+            HttpUtils.sendFile(request, response, userPhoto, "profile.jpg",
+                    "image/jpeg", etag, 0, false);
         } else {
             response.sendRedirect(NO_PHOTO_URL);
         }
@@ -23,7 +23,8 @@ import javax.servlet.ServletContextListener;
 
 /**
  * Web application lifecycle listener for doing a sanity check of the system
- * upon application deployment.
+ * upon application deployment and releasing its resources upon
+ * undeployment.
  *
  * @author Allan Lykke Christensen
  */
@@ -43,12 +44,14 @@ public class StartupCheckListener implements ServletContextListener {
     }
 
     /**
-     * Context is undeployed from the servlet container.
+     * Context is undeployed from the servlet container. Releases the
+     * resources held by the system.
      *
      * @param event
      *          Event that invoked the listener
      */
     @Override
     public void contextDestroyed(ServletContextEvent event) {
+        systemFacade.shutdown();
     }
 }
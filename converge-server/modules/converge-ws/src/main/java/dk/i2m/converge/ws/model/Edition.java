@@ -29,6 +29,7 @@ public class Edition implements Serializable {
     private Date publicationDate;
     private Date expirationDate;
     private Date closeDate;
+    private String version;
     private List<NewsItem> items = new ArrayList<NewsItem>();
 
     public Edition() {
@@ -66,6 +67,22 @@ public class Edition implements Serializable {
         this.items = items;
     }
 
+    /**
+     * Gets the version of the published edition. The version changes whenever
+     * the edition or any of its items are changed, and can be passed to
+     * {@code OutletService#getPublishedEditionIfModified} to avoid downloading
+     * an unchanged edition.
+     *
+     * @return Version of the published edition
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
     public Date getPublicationDate() {
         return publicationDate;
     }
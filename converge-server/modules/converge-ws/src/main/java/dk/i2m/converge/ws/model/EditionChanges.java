@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ws.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Changes to a published {@link Edition} since a given version.
+ * <p/>
+ * If the changes are {@link #isComplete() complete}, {@link #getItems()}
+ * contains every item of the edition and items held by the client that are
+ * not included must be removed. Otherwise {@link #getItems()} only contains
+ * the items added or changed since the given version, and
+ * {@link #getRemovedItems()} the identifiers of the items removed.
+ *
+ * @author Allan Lykke Christensen
+ */
+@XmlRootElement
+public class EditionChanges implements Serializable {
+
+    private Long id;
+
+    private String version;
+
+    private boolean complete;
+
+    private List<NewsItem> items = new ArrayList<NewsItem>();
+
+    private List<Long> removedItems = new ArrayList<Long>();
+
+    public EditionChanges() {
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets the current version of the edition, to be passed when requesting
+     * the next changes.
+     *
+     * @return Current version of the edition
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    /**
+     * Determines if the changes contain the complete edition, rather than
+     * the differences from the version held by the client.
+     *
+     * @return {@code true} if the changes contain the complete edition
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public List<NewsItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<NewsItem> items) {
+        this.items = items;
+    }
+
+    public List<Long> getRemovedItems() {
+        return removedItems;
+    }
+
+    public void setRemovedItems(List<Long> removedItems) {
+        this.removedItems = removedItems;
+    }
+}
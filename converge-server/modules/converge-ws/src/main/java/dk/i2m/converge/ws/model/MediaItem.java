@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.ws.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,7 +25,7 @@ import java.util.List;
  *
  * @author Allan Lykke Christensen
  */
-public class MediaItem {
+public class MediaItem implements Serializable {
 
     private Long id;
 
@@ -16,12 +16,14 @@
  */
 package dk.i2m.converge.ws.model;
 
+import java.io.Serializable;
+
 /**
  * Rendition of a {@link MediaItem}.
  *
  * @author Allan Lykke Christensen
  */
-public class MediaItemRendition {
+public class MediaItemRendition implements Serializable {
 
     private String url;
 
@@ -29,6 +31,8 @@ public class MediaItemRendition {
 
     private String contentType;
 
+    private String etag;
+
     public MediaItemRendition() {
         this("", "", "");
     }
@@ -62,4 +66,19 @@ public class MediaItemRendition {
     public void setContentType(String contentType) {
         this.contentType = contentType;
     }
+
+    /**
+     * Gets the entity tag of the rendition file. The entity tag changes when
+     * the file changes, and can be used as the key of a local copy of the
+     * file.
+     *
+     * @return Entity tag of the rendition file
+     */
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
 }
@@ -18,6 +18,8 @@ package dk.i2m.converge.ws.model;
 
 import dk.i2m.converge.core.content.NewsItemMediaAttachment;
 import dk.i2m.converge.core.content.NewsItemPlacement;
+import dk.i2m.converge.core.utils.HttpUtils;
+import java.io.File;
 import java.text.SimpleDateFormat;
 
 /**
@@ -41,6 +43,24 @@ public class ModelConverter {
         return nia;
     }
 
+    /**
+     * Creates the entity tag of a rendition, matching the entity tag sent
+     * when the rendition is downloaded from the catalogue servlet.
+     *
+     * @param rendition Rendition for which to create the entity tag
+     * @return Entity tag of the rendition
+     */
+    public static String toEtag(
+            dk.i2m.converge.core.content.catalogue.MediaItemRendition rendition) {
+        File file = new File(rendition.getFileLocation());
+        if (file.isFile()) {
+            return HttpUtils.createETag("rendition", rendition.getId(), file.
+                    length(), file.lastModified());
+        }
+        long size = rendition.getSize() == null ? 0 : rendition.getSize();
+        return HttpUtils.createETag("rendition", rendition.getId(), size, 0);
+    }
+
     public static Section toSection(
             dk.i2m.converge.core.workflow.Section section) {
         Section s = new Section();
@@ -65,6 +85,7 @@ public class ModelConverter {
                         getRendition().getName(),
                         rendition.getAbsoluteFilename(), rendition.
                         getContentType());
+                mir.setEtag(toEtag(rendition));
                 mediaItem.getRenditions().add(mir);
             }
 
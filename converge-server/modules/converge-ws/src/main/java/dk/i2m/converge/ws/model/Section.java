@@ -16,6 +16,7 @@
  */
 package dk.i2m.converge.ws.model;
 
+import java.io.Serializable;
 import javax.xml.bind.annotation.XmlRootElement;
 
 /**
@@ -23,7 +24,7 @@ import javax.xml.bind.annotation.XmlRootElement;
  * @author Allan Lykke Christensen
  */
 @XmlRootElement
-public class Section {
+public class Section implements Serializable {
 
     private Long id;
 
@@ -25,6 +25,7 @@ import dk.i2m.converge.core.views.InboxView;
 import dk.i2m.converge.core.workflow.Edition;
 import dk.i2m.converge.core.workflow.Section;
 import dk.i2m.converge.ejb.facades.*;
+import dk.i2m.converge.ejb.services.EditionSnapshotServiceLocal;
 import dk.i2m.converge.ws.model.ModelConverter;
 import java.util.ArrayList;
 import java.util.List;
@@ -54,6 +55,8 @@ public class NewsItemService {
 
     @EJB private OutletFacadeLocal outletFacade;
 
+    @EJB private EditionSnapshotServiceLocal editionSnapshotService;
+
     @EJB private UserFacadeLocal userFacade;
 
     @EJB private MetaDataFacadeLocal metaDataFacade;
@@ -129,12 +132,8 @@ public class NewsItemService {
         List<dk.i2m.converge.ws.model.NewsItem> newsItems =
                 new ArrayList<dk.i2m.converge.ws.model.NewsItem>();
         try {
-            Edition edition = outletFacade.findEditionById(id);
-            for (NewsItemPlacement placement : edition.getPlacements()) {
-                if (placement.getNewsItem().isEndState()) {
-                    newsItems.add(ModelConverter.toNewsItem(placement));
-                }
-            }
+            newsItems = PublishedEditionCache.getInstance().getEdition(id,
+                    outletFacade, editionSnapshotService).getItems();
         } catch (DataNotFoundException ex) {
             LOG.log(Level.SEVERE, null, ex);
         }
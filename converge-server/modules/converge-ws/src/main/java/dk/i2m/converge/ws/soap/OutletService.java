@@ -17,10 +17,11 @@
 package dk.i2m.converge.ws.soap;
 
 import dk.i2m.converge.core.DataNotFoundException;
-import dk.i2m.converge.core.content.NewsItemPlacement;
 import dk.i2m.converge.core.workflow.Section;
 import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
+import dk.i2m.converge.ejb.services.EditionSnapshotServiceLocal;
 import dk.i2m.converge.ws.model.Edition;
+import dk.i2m.converge.ws.model.EditionChanges;
 import dk.i2m.converge.ws.model.ModelConverter;
 import dk.i2m.converge.ws.model.Outlet;
 import java.util.ArrayList;
@@ -47,6 +48,8 @@ public class OutletService {
 
     @EJB private OutletFacadeLocal outletFacade;
 
+    @EJB private EditionSnapshotServiceLocal editionSnapshotService;
+
     @WebMethod(operationName = "getEditions")
     public List<dk.i2m.converge.ws.model.Edition> getEditions(@WebParam(name =
             "outletId") Long outletId, @WebParam(name = "date") Date date) {
@@ -143,35 +146,73 @@ public class OutletService {
     }
 
     /**
-     * Obtains the published news items in a given edition.
+     * Obtains the published news items in a given edition. The edition is
+     * served from its snapshot, which is only rebuilt after the edition or
+     * its items have changed.
      *
      * @param id Unique identifier of the {@link Edition}
      * @return {@link Edition} containing the published {@link NewsItem}s
      */
     @WebMethod(operationName = "getPublishedEdition")
     public Edition getPublishedEdition(@WebParam(name = "editionId") Long id) {
-        Edition edition = new Edition();
+        try {
+            return PublishedEditionCache.getInstance().getEdition(id,
+                    outletFacade, editionSnapshotService);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Unknown edition requested");
+            return new Edition();
+        }
+    }
 
+    /**
+     * Obtains the published news items in a given edition if the edition has
+     * changed since a given version was obtained.
+     *
+     * @param id      Unique identifier of the {@link Edition}
+     * @param version Version of the {@link Edition} held by the client, as
+     *                returned by {@link Edition#getVersion()}
+     * @return {@link Edition} containing the published {@link NewsItem}s, or
+     *         {@code null} if the edition is unchanged
+     */
+    @WebMethod(operationName = "getPublishedEditionIfModified")
+    public Edition getPublishedEditionIfModified(@WebParam(name = "editionId") Long id,
+            @WebParam(name = "version") String version) {
         try {
-            dk.i2m.converge.core.workflow.Edition convergeEdition;
-            convergeEdition = outletFacade.findEditionById(id);
-
-            edition.setId(convergeEdition.getId());
-            edition.setCloseDate(convergeEdition.getCloseDate());
-            edition.setPublicationDate(convergeEdition.getPublicationDate().
-                    getTime());
-            edition.setExpirationDate(convergeEdition.getExpirationDate().
-                    getTime());
-
-            for (NewsItemPlacement nip : convergeEdition.getPlacements()) {
-                if (nip.getNewsItem().isEndState()) {
-                    edition.getItems().add(ModelConverter.toNewsItem(nip));
-                }
+            PublishedEditionCache cache = PublishedEditionCache.getInstance();
+            if (version != null && version.equals(cache.getVersion(id,
+                    editionSnapshotService))) {
+                return null;
             }
+            return cache.getEdition(id, outletFacade, editionSnapshotService);
         } catch (DataNotFoundException ex) {
-            LOG.log(Level.WARNING, "Unknown outlet requested");
+            LOG.log(Level.WARNING, "Unknown edition requested");
+            return new Edition();
+        }
+    }
+
+    /**
+     * Obtains the changes to the published news items in a given edition
+     * since a given version was obtained. Only the items added or changed
+     * since the given version are included, along with the identifiers of
+     * the items removed. The complete edition is included if the given
+     * version is missing or too old.
+     *
+     * @param id      Unique identifier of the {@link Edition}
+     * @param version Version of the {@link Edition} held by the client, as
+     *                returned by {@link Edition#getVersion()} or
+     *                {@link EditionChanges#getVersion()}
+     * @return Changes to the {@link Edition} since the given version
+     */
+    @WebMethod(operationName = "getEditionChanges")
+    public EditionChanges getEditionChanges(@WebParam(name = "editionId") Long id,
+            @WebParam(name = "version") String version) {
+        try {
+            return PublishedEditionCache.getInstance().getChanges(id, version,
+                    outletFacade, editionSnapshotService);
+        } catch (DataNotFoundException ex) {
+            LOG.log(Level.WARNING, "Unknown edition requested");
+            return new EditionChanges();
         }
-        return edition;
     }
 
     @WebMethod(operationName = "scheduleAction")
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ws.soap;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.core.content.NewsItemPlacement;
+import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
+import dk.i2m.converge.ejb.services.EditionSnapshotServiceLocal;
+import dk.i2m.converge.ws.model.Edition;
+import dk.i2m.converge.ws.model.EditionChanges;
+import dk.i2m.converge.ws.model.ModelConverter;
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Singleton serving published {@link Edition}s from their snapshots.
+ * <p/>
+ * The first request for an edition after it was changed builds the
+ * {@link Edition} and stores it serialized as the snapshot of the current
+ * version, shared by all nodes of the cluster. Subsequent requests only look
+ * up the version and deserialize the stored snapshot, which is also kept in a
+ * bounded in-memory LRU. Each request receives its own copy of the
+ * {@link Edition}.
+ * <p/>
+ * When a snapshot is built, it is compared with the previous snapshot to
+ * record which items were added, changed or removed, so that clients can
+ * request only the changes since the version they hold.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class PublishedEditionCache {
+
+    private static final Logger LOG =
+            Logger.getLogger(PublishedEditionCache.class.getName());
+
+    private static final PublishedEditionCache INSTANCE =
+            new PublishedEditionCache();
+
+    /** Maximum number of snapshots kept in memory. */
+    private static final int CACHE_SIZE = 50;
+
+    private final Map<Long, Snapshot> snapshots =
+            new LinkedHashMap<Long, Snapshot>(16, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Long, Snapshot> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    private PublishedEditionCache() {
+    }
+
+    /**
+     * Gets the singleton instance of {@link PublishedEditionCache}.
+     *
+     * @return Singleton instance of {@link PublishedEditionCache}
+     */
+    public static PublishedEditionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the current version of a published {@link Edition}.
+     *
+     * @param editionId       Unique identifier of the {@link Edition}
+     * @param snapshotService Service storing the snapshots
+     * @return Current version of the published {@link Edition}
+     * @throws DataNotFoundException If the {@link Edition} does not exist
+     */
+    public String getVersion(Long editionId,
+            EditionSnapshotServiceLocal snapshotService) throws
+            DataNotFoundException {
+        return toVersion(editionId, snapshotService.getVersion(editionId));
+    }
+
+    /**
+     * Gets a published {@link Edition}.
+     *
+     * @param editionId       Unique identifier of the {@link Edition}
+     * @param outletFacade    Facade used for building the {@link Edition}
+     * @param snapshotService Service storing the snapshots
+     * @return Copy of the published {@link Edition}
+     * @throws DataNotFoundException If the {@link Edition} does not exist
+     */
+    public Edition getEdition(Long editionId, OutletFacadeLocal outletFacade,
+            EditionSnapshotServiceLocal snapshotService) throws
+            DataNotFoundException {
+        return getSnapshot(editionId, outletFacade, snapshotService).
+                getEdition();
+    }
+
+    /**
+     * Gets the changes to a published {@link Edition} since a given version.
+     *
+     * @param editionId       Unique identifier of the {@link Edition}
+     * @param since           Version held by the client, as returned by
+     *                        {@link Edition#getVersion()} or
+     *                        {@link EditionChanges#getVersion()}, or
+     *                        {@code null} if the client holds no version
+     * @param outletFacade    Facade used for building the {@link Edition}
+     * @param snapshotService Service storing the snapshots
+     * @return Changes to the {@link Edition} since the given version
+     * @throws DataNotFoundException If the {@link Edition} does not exist
+     */
+    public EditionChanges getChanges(Long editionId, String since,
+            OutletFacadeLocal outletFacade,
+            EditionSnapshotServiceLocal snapshotService) throws
+            DataNotFoundException {
+        PublishedEditionSnapshot snapshot = getSnapshot(editionId,
+                outletFacade, snapshotService);
+        return snapshot.getChanges(parseVersion(editionId, since), toVersion(
+                editionId, snapshot.getVersion()));
+    }
+
+    private PublishedEditionSnapshot getSnapshot(Long editionId,
+            OutletFacadeLocal outletFacade,
+            EditionSnapshotServiceLocal snapshotService) throws
+            DataNotFoundException {
+        long version = snapshotService.getVersion(editionId);
+
+        Snapshot snapshot;
+        synchronized (snapshots) {
+            snapshot = snapshots.get(editionId);
+        }
+        if (snapshot == null || snapshot.version != version) {
+            byte[] payload = snapshotService.findPayload(editionId, version);
+            if (payload != null) {
+                try {
+                    deserialize(payload);
+                } catch (IllegalStateException ex) {
+                    // Payloads stored by an earlier release are rebuilt
+                    LOG.log(Level.WARNING, "Discarding unreadable snapshot"
+                            + " of Edition #{0}", editionId);
+                    payload = null;
+                }
+            }
+            if (payload == null) {
+                PublishedEditionSnapshot previous = null;
+                byte[] previousPayload = snapshotService.findLatestPayload(
+                        editionId);
+                if (previousPayload != null) {
+                    try {
+                        previous = deserialize(previousPayload);
+                    } catch (IllegalStateException ex) {
+                        LOG.log(Level.WARNING, "Discarding unreadable snapshot"
+                                + " of Edition #{0}", editionId);
+                    }
+                }
+                payload = serialize(PublishedEditionSnapshot.create(build(
+                        editionId, version, outletFacade), version, previous));
+                if (!snapshotService.store(editionId, version, payload)) {
+                    LOG.log(Level.FINE, "Edition #{0} changed while its "
+                            + "snapshot was being built", editionId);
+                }
+            }
+            snapshot = new Snapshot(version, payload);
+            synchronized (snapshots) {
+                // A snapshot that took longer to build must not replace a
+                // later version built concurrently
+                Snapshot current = snapshots.get(editionId);
+                if (current == null || current.version < version) {
+                    snapshots.put(editionId, snapshot);
+                }
+            }
+        }
+        return deserialize(snapshot.payload);
+    }
+
+    /**
+     * Discards the snapshots kept in memory.
+     */
+    public void clear() {
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+    }
+
+    private Edition build(Long editionId, long version,
+            OutletFacadeLocal outletFacade) throws DataNotFoundException {
+        dk.i2m.converge.core.workflow.Edition convergeEdition =
+                outletFacade.findEditionById(editionId);
+
+        Edition edition = new Edition();
+        edition.setId(convergeEdition.getId());
+        edition.setVersion(toVersion(editionId, version));
+        edition.setCloseDate(convergeEdition.getCloseDate());
+        edition.setPublicationDate(convergeEdition.getPublicationDate().
+                getTime());
+        edition.setExpirationDate(convergeEdition.getExpirationDate().
+                getTime());
+
+        for (NewsItemPlacement nip : convergeEdition.getPlacements()) {
+            if (nip.getNewsItem().isEndState()) {
+                edition.getItems().add(ModelConverter.toNewsItem(nip));
+            }
+        }
+        return edition;
+    }
+
+    private static String toVersion(Long editionId, long version) {
+        return editionId + "." + version;
+    }
+
+    /**
+     * Parses a version returned by {@link #toVersion(Long, long)}.
+     *
+     * @return Version, or {@code -1} if the version is missing, malformed or
+     *         belongs to another edition
+     */
+    private static long parseVersion(Long editionId, String version) {
+        String prefix = editionId + ".";
+        if (version == null || !version.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(version.substring(prefix.length()));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static byte[] serialize(PublishedEditionSnapshot snapshot) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(
+                    new GZIPOutputStream(bytes));
+            out.writeObject(snapshot);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not serialize edition #"
+                    + snapshot.getEdition().getId(), ex);
+        }
+    }
+
+    private static PublishedEditionSnapshot deserialize(byte[] payload) {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
+                    new ByteArrayInputStream(payload)));
+            try {
+                return (PublishedEditionSnapshot) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not deserialize edition",
+                    ex);
+        } catch (ClassNotFoundException ex) {
+            throw new IllegalStateException("Could not deserialize edition",
+                    ex);
+        } catch (ClassCastException ex) {
+            throw new IllegalStateException("Could not deserialize edition",
+                    ex);
+        }
+    }
+
+    /**
+     * Serialized {@link PublishedEditionSnapshot} of a given version of an
+     * {@link Edition}.
+     */
+    private static class Snapshot {
+
+        private final long version;
+
+        private final byte[] payload;
+
+        Snapshot(long version, byte[] payload) {
+            this.version = version;
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ws.soap;
+
+import dk.i2m.converge.ws.model.Edition;
+import dk.i2m.converge.ws.model.EditionChanges;
+import dk.i2m.converge.ws.model.MediaItem;
+import dk.i2m.converge.ws.model.MediaItemRendition;
+import dk.i2m.converge.ws.model.NewsItem;
+import dk.i2m.converge.ws.model.NewsItemActor;
+import dk.i2m.converge.ws.model.Section;
+import dk.i2m.converge.ws.model.WorkflowOption;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Payload of the snapshot of a published {@link Edition}. Besides the
+ * {@link Edition}, the payload records the version in which each item was
+ * last added or changed and the version in which items were removed, carried
+ * forward from the previous payload, so that the changes since any version
+ * built after the {@link #getBaseVersion() base version} can be determined.
+ * Removed items are only carried forward for
+ * {@link #REMOVED_ITEM_RETENTION}, after which the base version is advanced
+ * past their removal so that clients holding an older version receive the
+ * complete {@link Edition}.
+ *
+ * @author Allan Lykke Christensen
+ */
+class PublishedEditionSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private static final String FINGERPRINT_DIGEST = "MD5";
+
+    /** Number of milliseconds removed items are carried forward. */
+    static final long REMOVED_ITEM_RETENTION = 24L * 60 * 60 * 1000;
+
+    private final Edition edition;
+
+    private final long version;
+
+    private long baseVersion;
+
+    private final Map<Long, Long> itemVersions = new HashMap<Long, Long>();
+
+    private final Map<Long, byte[]> fingerprints = new HashMap<Long, byte[]>();
+
+    private final Map<Long, Removal> removedItems = new HashMap<Long, Removal>();
+
+    private PublishedEditionSnapshot(Edition edition, long version,
+            long baseVersion) {
+        this.edition = edition;
+        this.version = version;
+        this.baseVersion = baseVersion;
+    }
+
+    /**
+     * Creates the payload of a version of a published {@link Edition}.
+     *
+     * @param edition  Published {@link Edition}
+     * @param version  Version of the snapshot
+     * @param previous Payload of a previous version, or {@code null} if the
+     *                 snapshot has never been built
+     * @return Payload of the given version
+     */
+    static PublishedEditionSnapshot create(Edition edition, long version,
+            PublishedEditionSnapshot previous) {
+        return create(edition, version, previous, System.currentTimeMillis());
+    }
+
+    /**
+     * Creates the payload of a version of a published {@link Edition}.
+     *
+     * @param edition  Published {@link Edition}
+     * @param version  Version of the snapshot
+     * @param previous Payload of a previous version, or {@code null} if the
+     *                 snapshot has never been built
+     * @param time     Time the payload is created
+     * @return Payload of the given version
+     */
+    static PublishedEditionSnapshot create(Edition edition, long version,
+            PublishedEditionSnapshot previous, long time) {
+        PublishedEditionSnapshot snapshot;
+        if (previous == null) {
+            snapshot = new PublishedEditionSnapshot(edition, version, version);
+        } else {
+            snapshot = new PublishedEditionSnapshot(edition, version,
+                    previous.baseVersion);
+            snapshot.removedItems.putAll(previous.removedItems);
+        }
+
+        for (NewsItem item : edition.getItems()) {
+            byte[] fingerprint = fingerprint(item);
+            Long itemVersion = version;
+            if (previous != null && Arrays.equals(fingerprint,
+                    previous.fingerprints.get(item.getId()))) {
+                itemVersion = previous.itemVersions.get(item.getId());
+            }
+            snapshot.itemVersions.put(item.getId(), itemVersion);
+            snapshot.fingerprints.put(item.getId(), fingerprint);
+            snapshot.removedItems.remove(item.getId());
+        }
+
+        if (previous != null) {
+            for (Long itemId : previous.itemVersions.keySet()) {
+                if (!snapshot.itemVersions.containsKey(itemId)) {
+                    snapshot.removedItems.put(itemId, new Removal(version,
+                            time));
+                }
+            }
+        }
+
+        // Changes since a version before an expired removal can no longer be
+        // determined
+        Iterator<Removal> removals = snapshot.removedItems.values().iterator();
+        while (removals.hasNext()) {
+            Removal removal = removals.next();
+            if (removal.time < time - REMOVED_ITEM_RETENTION) {
+                snapshot.baseVersion = Math.max(snapshot.baseVersion,
+                        removal.version);
+                removals.remove();
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the published {@link Edition}.
+     *
+     * @return Published {@link Edition}
+     */
+    Edition getEdition() {
+        return edition;
+    }
+
+    /**
+     * Gets the version of the snapshot.
+     *
+     * @return Version of the snapshot
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the oldest version from which changes can be determined.
+     *
+     * @return Oldest version from which changes can be determined
+     */
+    long getBaseVersion() {
+        return baseVersion;
+    }
+
+    /**
+     * Gets the changes to the {@link Edition} since a given version. The
+     * complete {@link Edition} is returned if the changes since the given
+     * version cannot be determined.
+     *
+     * @param since          Version held by the client, or {@code -1} if none
+     * @param editionVersion Version of the {@link Edition} to report
+     * @return Changes since the given version
+     */
+    EditionChanges getChanges(long since, String editionVersion) {
+        EditionChanges changes = new EditionChanges();
+        changes.setId(edition.getId());
+        changes.setVersion(editionVersion);
+
+        if (since < baseVersion || since > version) {
+            changes.setComplete(true);
+            changes.getItems().addAll(edition.getItems());
+            return changes;
+        }
+
+        for (NewsItem item : edition.getItems()) {
+            if (itemVersions.get(item.getId()) > since) {
+                changes.getItems().add(item);
+            }
+        }
+        for (Map.Entry<Long, Removal> removed : removedItems.entrySet()) {
+            if (removed.getValue().version > since) {
+                changes.getRemovedItems().add(removed.getKey());
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Calculates a digest of the fields of a {@link NewsItem} returned to
+     * the clients, used for detecting items that changed between versions.
+     *
+     * @param item {@link NewsItem} to fingerprint
+     * @return Digest of the fields of the {@link NewsItem}
+     */
+    private static byte[] fingerprint(NewsItem item) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(
+                    FINGERPRINT_DIGEST);
+            DataOutputStream out = new DataOutputStream(new DigestOutputStream(
+                    new OutputStream() {
+
+                        @Override
+                        public void write(int b) {
+                            // Only the digest of the fields is kept
+                        }
+                    }, digest));
+
+            out.writeLong(item.getId() == null ? -1 : item.getId());
+            write(out, item.getTitle());
+            write(out, item.getBrief());
+            write(out, item.getStory());
+            write(out, item.getByLine());
+            write(out, item.getDateLine());
+            out.writeInt(item.getStart());
+            out.writeInt(item.getDisplayOrder());
+
+            Section section = item.getSection();
+            out.writeBoolean(section != null);
+            if (section != null) {
+                out.writeLong(section.getId() == null ? -1 : section.getId());
+                write(out, section.getTitle());
+                out.writeInt(section.getDisplayOrder());
+            }
+
+            List<MediaItem> media = item.getMedia();
+            out.writeInt(media == null ? -1 : media.size());
+            if (media != null) {
+                for (MediaItem mediaItem : media) {
+                    out.writeLong(mediaItem.getId() == null ? -1
+                            : mediaItem.getId());
+                    write(out, mediaItem.getTitle());
+                    write(out, mediaItem.getCaption());
+                    write(out, mediaItem.getContentType());
+                    out.writeInt(mediaItem.getPriority() == null ? 0
+                            : mediaItem.getPriority());
+                    List<MediaItemRendition> renditions =
+                            mediaItem.getRenditions();
+                    out.writeInt(renditions == null ? -1 : renditions.size());
+                    if (renditions != null) {
+                        for (MediaItemRendition rendition : renditions) {
+                            write(out, rendition.getName());
+                            write(out, rendition.getUrl());
+                            write(out, rendition.getContentType());
+                            write(out, rendition.getEtag());
+                        }
+                    }
+                }
+            }
+
+            List<NewsItemActor> actors = item.getActors();
+            out.writeInt(actors == null ? -1 : actors.size());
+            if (actors != null) {
+                for (NewsItemActor actor : actors) {
+                    out.writeLong(actor.getRoleId() == null ? -1
+                            : actor.getRoleId());
+                    write(out, actor.getRole());
+                    write(out, actor.getName());
+                    write(out, actor.getUsername());
+                }
+            }
+
+            List<WorkflowOption> options = item.getWorkflowOptions();
+            out.writeInt(options == null ? -1 : options.size());
+            if (options != null) {
+                for (WorkflowOption option : options) {
+                    out.writeLong(option.getOptionId() == null ? -1
+                            : option.getOptionId());
+                    write(out, option.getLabel());
+                    write(out, option.getDescription());
+                    out.writeInt(option.getDisplayOrder());
+                }
+            }
+            out.close();
+            return digest.digest();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Could not fingerprint news item #"
+                    + item.getId(), ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(FINGERPRINT_DIGEST
+                    + " is not supported", ex);
+        }
+    }
+
+    private static void write(DataOutputStream out, String value) throws
+            IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length());
+            out.writeChars(value);
+        }
+    }
+
+    /**
+     * Version and time in which an item was removed from the {@link Edition}.
+     */
+    private static class Removal implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long version;
+
+        private final long time;
+
+        Removal(long version, long time) {
+            this.version = version;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ws.soap;
+
+import dk.i2m.converge.core.DataNotFoundException;
+import dk.i2m.converge.ejb.facades.OutletFacadeLocal;
+import dk.i2m.converge.ejb.services.EditionSnapshotServiceLocal;
+import dk.i2m.converge.ws.model.Edition;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link PublishedEditionCache}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class PublishedEditionCacheTest {
+
+    private static final Long EDITION_ID = 1L;
+
+    private PublishedEditionCache cache;
+
+    private SnapshotService snapshotService;
+
+    @Before
+    public void setUp() {
+        cache = PublishedEditionCache.getInstance();
+        cache.clear();
+        snapshotService = new SnapshotService();
+    }
+
+    @Test
+    public void testSnapshotIsBuiltOnce() throws Exception {
+        OutletFacade outlet = new OutletFacade();
+
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+        assertEquals(1, outlet.builds);
+
+        cache.clear();
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+        assertEquals("Stored snapshot should be reused", 1, outlet.builds);
+    }
+
+    @Test
+    public void testInvalidatedWhileBuilding() throws Exception {
+        OutletFacade outlet = new OutletFacade() {
+
+            @Override
+            void building() {
+                if (builds == 1) {
+                    snapshotService.invalidate(EDITION_ID);
+                }
+            }
+        };
+
+        // The snapshot built for version 1 is returned, but not stored
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+        assertNull(snapshotService.findPayload(EDITION_ID, 1));
+        assertNull(snapshotService.findPayload(EDITION_ID, 2));
+
+        assertEquals("1.2", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+        assertEquals(2, outlet.builds);
+        assertNotNull(snapshotService.findPayload(EDITION_ID, 2));
+    }
+
+    @Test
+    public void testSlowBuildDoesNotReplaceLaterVersion() throws Exception {
+        final OutletFacade[] outlet = new OutletFacade[1];
+        outlet[0] = new OutletFacade() {
+
+            @Override
+            void building() throws DataNotFoundException {
+                if (builds == 1) {
+                    // Another request builds the next version while the
+                    // first build is still running
+                    snapshotService.invalidate(EDITION_ID);
+                    assertEquals("1.2", cache.getEdition(EDITION_ID,
+                            outlet[0].proxy(), snapshotService).getVersion());
+                }
+            }
+        };
+
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet[0].proxy(),
+                snapshotService).getVersion());
+        assertEquals(2, outlet[0].builds);
+
+        int lookups = snapshotService.lookups;
+        assertEquals("1.2", cache.getEdition(EDITION_ID, outlet[0].proxy(),
+                snapshotService).getVersion());
+        assertEquals("Version 2 should be served from memory", lookups,
+                snapshotService.lookups);
+        assertEquals(2, outlet[0].builds);
+    }
+
+    @Test
+    public void testEachRequestReceivesCopy() throws Exception {
+        OutletFacade outlet = new OutletFacade();
+        Edition first = cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService);
+        first.setVersion("modified");
+
+        assertEquals("1.1", cache.getEdition(EDITION_ID, outlet.proxy(),
+                snapshotService).getVersion());
+    }
+
+    /**
+     * {@link OutletFacadeLocal} counting the editions built.
+     */
+    private static class OutletFacade implements InvocationHandler {
+
+        int builds = 0;
+
+        OutletFacadeLocal proxy() {
+            return (OutletFacadeLocal) Proxy.newProxyInstance(getClass().
+                    getClassLoader(), new Class[]{OutletFacadeLocal.class},
+                    this);
+        }
+
+        void building() throws DataNotFoundException {
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws
+                Throwable {
+            if (!method.getName().equals("findEditionById")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            builds++;
+            building();
+            dk.i2m.converge.core.workflow.Edition edition =
+                    new dk.i2m.converge.core.workflow.Edition();
+            edition.setId((Long) args[0]);
+            edition.setPublicationDate(Calendar.getInstance());
+            edition.setExpirationDate(Calendar.getInstance());
+            return edition;
+        }
+    }
+
+    /**
+     * In-memory {@link EditionSnapshotServiceLocal}.
+     */
+    private static class SnapshotService implements
+            EditionSnapshotServiceLocal {
+
+        private final Map<Long, Long> versions = new HashMap<Long, Long>();
+
+        private final Map<Long, Long> payloadVersions = new HashMap<Long, Long>();
+
+        private final Map<Long, byte[]> payloads = new HashMap<Long, byte[]>();
+
+        int lookups = 0;
+
+        @Override
+        public long getVersion(Long editionId) {
+            if (!versions.containsKey(editionId)) {
+                create(editionId);
+            }
+            return versions.get(editionId);
+        }
+
+        @Override
+        public byte[] findPayload(Long editionId, long version) {
+            lookups++;
+            Long payloadVersion = payloadVersions.get(editionId);
+            if (payloadVersion == null || payloadVersion != version
+                    || versions.get(editionId) != version) {
+                return null;
+            }
+            return payloads.get(editionId);
+        }
+
+        @Override
+        public byte[] findLatestPayload(Long editionId) {
+            return payloads.get(editionId);
+        }
+
+        @Override
+        public boolean store(Long editionId, long version, byte[] payload) {
+            if (versions.get(editionId) != version) {
+                return false;
+            }
+            payloads.put(editionId, payload);
+            payloadVersions.put(editionId, version);
+            return true;
+        }
+
+        @Override
+        public void create(Long editionId) {
+            versions.put(editionId, 1L);
+        }
+
+        @Override
+        public void invalidate(Long editionId) {
+            versions.put(editionId, getVersion(editionId) + 1);
+        }
+
+        @Override
+        public void invalidateByNewsItem(Long newsItemId) {
+        }
+
+        @Override
+        public void invalidateByPlacement(Long placementId) {
+        }
+
+        @Override
+        public void invalidateByMediaItem(Long mediaItemId) {
+        }
+
+        @Override
+        public void delete(Long editionId) {
+            versions.remove(editionId);
+            payloadVersions.remove(editionId);
+            payloads.remove(editionId);
+        }
+    }
+}
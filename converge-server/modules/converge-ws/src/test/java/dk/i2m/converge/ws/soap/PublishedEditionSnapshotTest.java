@@ -0,0 +1,205 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ * 
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ * 
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ * 
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.ws.soap;
+
+import dk.i2m.converge.ws.model.Edition;
+import dk.i2m.converge.ws.model.EditionChanges;
+import dk.i2m.converge.ws.model.MediaItem;
+import dk.i2m.converge.ws.model.NewsItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unit test for {@link PublishedEditionSnapshot}.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class PublishedEditionSnapshotTest {
+
+    @Test
+    public void testFirstVersionIsComplete() {
+        PublishedEditionSnapshot snapshot = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two")), 1, null);
+
+        EditionChanges changes = snapshot.getChanges(-1, "1");
+        assertTrue(changes.isComplete());
+        assertEquals(2, changes.getItems().size());
+        assertEquals("1", changes.getVersion());
+
+        changes = snapshot.getChanges(1, "1");
+        assertFalse(changes.isComplete());
+        assertTrue(changes.getItems().isEmpty());
+        assertTrue(changes.getRemovedItems().isEmpty());
+    }
+
+    @Test
+    public void testChangedAddedAndRemovedItems() {
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two"), item(3L, "Three")),
+                1, null);
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two (updated)"),
+                item(4L, "Four")), 2, v1);
+
+        EditionChanges changes = v2.getChanges(1, "2");
+        assertFalse(changes.isComplete());
+        assertEquals(ids(2L, 4L), ids(changes.getItems()));
+        assertEquals(ids(3L), changes.getRemovedItems());
+
+        changes = v2.getChanges(2, "2");
+        assertTrue(changes.getItems().isEmpty());
+        assertTrue(changes.getRemovedItems().isEmpty());
+    }
+
+    @Test
+    public void testChangesAccumulateAcrossVersions() {
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two"), item(3L, "Three")),
+                1, null);
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One (updated)"), item(2L, "Two"),
+                item(3L, "Three")), 2, v1);
+        PublishedEditionSnapshot v3 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One (updated)"), item(2L, "Two")), 3, v2);
+
+        assertEquals(1, v3.getBaseVersion());
+
+        EditionChanges changes = v3.getChanges(1, "3");
+        assertEquals(ids(1L), ids(changes.getItems()));
+        assertEquals(ids(3L), changes.getRemovedItems());
+
+        changes = v3.getChanges(2, "3");
+        assertTrue(changes.getItems().isEmpty());
+        assertEquals(ids(3L), changes.getRemovedItems());
+    }
+
+    @Test
+    public void testReaddedItemIsNoLongerRemoved() {
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two")), 1, null);
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One")), 2, v1);
+        PublishedEditionSnapshot v3 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two")), 3, v2);
+
+        EditionChanges changes = v3.getChanges(1, "3");
+        assertEquals(ids(2L), ids(changes.getItems()));
+        assertTrue(changes.getRemovedItems().isEmpty());
+    }
+
+    @Test
+    public void testChangedMediaItemChangesItem() {
+        NewsItem one = item(1L, "One");
+        one.setMedia(new ArrayList<MediaItem>());
+        one.getMedia().add(mediaItem(10L, "Caption"));
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(one, item(2L, "Two")), 1, null);
+
+        NewsItem changed = item(1L, "One");
+        changed.setMedia(new ArrayList<MediaItem>());
+        changed.getMedia().add(mediaItem(10L, "Caption (updated)"));
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(changed, item(2L, "Two")), 2, v1);
+
+        assertEquals(ids(1L), ids(v2.getChanges(1, "2").getItems()));
+    }
+
+    @Test
+    public void testExpiredRemovalsAdvanceBaseVersion() {
+        long time = 1000000000L;
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two"), item(3L, "Three")),
+                1, null, time);
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One"), item(2L, "Two")), 2, v1, time);
+        PublishedEditionSnapshot v3 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One")), 3, v2, time
+                + PublishedEditionSnapshot.REMOVED_ITEM_RETENTION);
+        assertEquals(1, v3.getBaseVersion());
+        assertEquals(ids(2L, 3L), sorted(v3.getChanges(1, "3").
+                getRemovedItems()));
+
+        PublishedEditionSnapshot v4 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One")), 4, v3, time
+                + PublishedEditionSnapshot.REMOVED_ITEM_RETENTION + 1);
+        assertEquals(2, v4.getBaseVersion());
+        assertTrue(v4.getChanges(1, "4").isComplete());
+        assertEquals(ids(2L), v4.getChanges(2, "4").getRemovedItems());
+    }
+
+    @Test
+    public void testUnknownVersionIsComplete() {
+        PublishedEditionSnapshot v1 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One")), 5, null);
+        PublishedEditionSnapshot v2 = PublishedEditionSnapshot.create(
+                edition(item(1L, "One")), 6, v1);
+
+        assertTrue("Version before the base version",
+                v2.getChanges(4, "6").isComplete());
+        assertTrue("Version after the snapshot",
+                v2.getChanges(7, "6").isComplete());
+        assertEquals(1, v2.getChanges(4, "6").getItems().size());
+    }
+
+    private static Edition edition(NewsItem... items) {
+        Edition edition = new Edition();
+        edition.setId(1L);
+        for (NewsItem item : items) {
+            edition.getItems().add(item);
+        }
+        return edition;
+    }
+
+    private static NewsItem item(Long id, String title) {
+        NewsItem item = new NewsItem();
+        item.setId(id);
+        item.setTitle(title);
+        return item;
+    }
+
+    private static MediaItem mediaItem(Long id, String caption) {
+        MediaItem mediaItem = new MediaItem();
+        mediaItem.setId(id);
+        mediaItem.setCaption(caption);
+        return mediaItem;
+    }
+
+    private static List<Long> sorted(List<Long> ids) {
+        List<Long> list = new ArrayList<Long>(ids);
+        Collections.sort(list);
+        return list;
+    }
+
+    private static List<Long> ids(Long... ids) {
+        List<Long> list = new ArrayList<Long>();
+        for (Long id : ids) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    private static List<Long> ids(List<NewsItem> items) {
+        List<Long> list = new ArrayList<Long>();
+        for (NewsItem item : items) {
+            list.add(item.getId());
+        }
+        return list;
+    }
+}
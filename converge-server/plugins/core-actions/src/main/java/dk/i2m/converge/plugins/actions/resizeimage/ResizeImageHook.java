@@ -25,10 +25,12 @@ import dk.i2m.converge.core.plugin.CatalogueEventException;
 import dk.i2m.converge.core.plugin.CatalogueHook;
 import dk.i2m.converge.core.plugin.PluginContext;
 import dk.i2m.converge.core.utils.FileUtils;
-import dk.i2m.converge.core.utils.ImageUtils;
+import dk.i2m.converge.core.utils.ImageRenditionEngine;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.SimpleDateFormat;
@@ -36,6 +38,9 @@ import java.util.*;
 
 /**
  * {@link CatalogueHook} resizing an uploaded image and saves the resized image as a {@link Rendition} of the {@link MediaItem}.
+ * Several renditions can be generated from a single decoding of the uploaded image by specifying comma-separated
+ * lists of renditions, widths, heights and qualities. If fewer widths, heights or qualities than renditions are
+ * specified, the last value is used for the remaining renditions.
  *
  * @author Allan Lykke Christensen
  */
@@ -60,13 +65,13 @@ public class ResizeImageHook extends CatalogueHook {
 
     private String originalRendition;
 
-    private String resizeRendition;
+    private List<String> resizeRenditions;
 
-    private Integer width;
+    private List<Integer> widths;
 
-    private Integer height;
+    private List<Integer> heights;
 
-    private Integer quality;
+    private List<Integer> qualities;
 
     private ResourceBundle bundle = ResourceBundle.getBundle("dk.i2m.converge.plugins.actions.resizeimage.Messages");
 
@@ -107,48 +112,109 @@ public class ResizeImageHook extends CatalogueHook {
             return;
         }
 
-        // Which rendition should be generated
-        Rendition generateRendition = ctx.findRenditionByName(resizeRendition);
-
-        if (generateRendition == null) {
-            throw new CatalogueEventException("Rendition " + resizeRendition + " does not exist");
+        // Which renditions should be generated
+        List<Rendition> generateRenditions = new ArrayList<Rendition>();
+        for (String name : resizeRenditions) {
+            Rendition generateRendition = ctx.findRenditionByName(name);
+            if (generateRendition == null) {
+                throw new CatalogueEventException("Rendition " + name + " does not exist");
+            }
+            generateRenditions.add(generateRendition);
         }
 
-        // Load the original item
-        URL originalFile;
+        List<File> tempFiles = new ArrayList<File>();
+        List<OutputStream> outputs = new ArrayList<OutputStream>();
+        List<ImageRenditionEngine.Target> targets = new ArrayList<ImageRenditionEngine.Target>();
         try {
-            originalFile = new URL(uploadRendition.getAbsoluteFilename());
+            // Create temporary files to store the renditions
+            for (int i = 0; i < generateRenditions.size(); i++) {
+                String prefix = "xxx-" + uploadRendition.getMediaItem().getId();
+                String suffix = "" + generateRenditions.get(i).getId();
+                File tempFile = File.createTempFile(prefix, suffix);
+                tempFiles.add(tempFile);
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile));
+                outputs.add(out);
+                targets.add(new ImageRenditionEngine.Target(getValue(widths, i),
+                        getValue(heights, i), getValue(qualities, i), out));
+            }
+
+            // Generate all the renditions from a single decoding of the original
+            File originalFile = new File(uploadRendition.getFileLocation());
+            if (originalFile.isFile()) {
+                ImageRenditionEngine.getInstance().render(originalFile, targets);
+            } else {
+                URL originalUrl = new URL(uploadRendition.getAbsoluteFilename());
+                ImageRenditionEngine.getInstance().render(FileUtils.getBytes(originalUrl), targets);
+            }
+            for (OutputStream out : outputs) {
+                out.close();
+            }
+
+            // Create the Media Item Renditions
+            for (int i = 0; i < generateRenditions.size(); i++) {
+                ImageRenditionEngine.Target target = targets.get(i);
+                String extension = uploadRendition.getExtension();
+                String contentType = uploadRendition.getContentType();
+                if (!isFormat(extension, target.getFormat())) {
+                    extension = target.getFormat();
+                    contentType = "jpg".equals(extension) ? "image/jpeg" : "image/" + extension;
+                }
+                File tempFile = tempFiles.get(i);
+                ctx.createMediaItemRendition(tempFile,
+                        event.getItem().getId(), generateRenditions.get(i).getId(),
+                        tempFile.getName() + "." + extension, contentType);
+            }
         } catch (MalformedURLException ex) {
             throw new CatalogueEventException(ex);
-        }
-        try {
-            // Generate thumbnail
-            byte[] filedata = ImageUtils.generateThumbnail(FileUtils.getBytes(originalFile), width, height, quality);
-
-            // Create temporary file to store the thumbnail
-            String prefix = "xxx-" + uploadRendition.getMediaItem().getId();
-            String suffix = "" + generateRendition.getId();
-            File tempFile = File.createTempFile(prefix, suffix);
-
-            // Output thumbnail into temporary file
-            FileOutputStream fos = new FileOutputStream(tempFile);
-            fos.write(filedata);
-            fos.close();
-
-            // Create the Media Item Rendition
-            MediaItemRendition mir = ctx.createMediaItemRendition(tempFile,
-                    event.getItem().getId(), generateRendition.getId(),
-                    tempFile.getName() + "." + uploadRendition.getExtension(),
-                    uploadRendition.getContentType());
         } catch (InterruptedException ex) {
             throw new CatalogueEventException(ex);
         } catch (IOException ex) {
             throw new CatalogueEventException(ex);
         } catch (IllegalArgumentException ex) {
             throw new CatalogueEventException("Could not resize image", ex);
+        } finally {
+            for (OutputStream out : outputs) {
+                try {
+                    out.close();
+                } catch (IOException ex) {
+                }
+            }
         }
     }
 
+    /**
+     * Determines if a file extension matches an image format.
+     *
+     * @param extension File extension
+     * @param format    Image format, e.g. {@code jpg}
+     * @return {@code true} if the extension matches the format
+     */
+    private boolean isFormat(String extension, String format) {
+        if (extension == null || format == null) {
+            return false;
+        }
+        String ext = extension.toLowerCase();
+        if ("jpeg".equals(ext) || "jpe".equals(ext)) {
+            ext = "jpg";
+        }
+        if ("tif".equals(ext)) {
+            ext = "tiff";
+        }
+        return ext.equals(format);
+    }
+
+    /**
+     * Gets the value of a property for the rendition at a given index. If
+     * fewer values than renditions were given, the last value is used.
+     *
+     * @param values Values of the property
+     * @param index  Index of the rendition
+     * @return Value of the property for the rendition
+     */
+    private int getValue(List<Integer> values, int index) {
+        return values.get(Math.min(index, values.size() - 1));
+    }
+
     /**
      * Validates that the necessary properties have been provided. If not, a 
      * {@link CatalogueEventException} will be thrown. Validated properties
@@ -167,41 +233,43 @@ public class ResizeImageHook extends CatalogueHook {
         if (!instanceProperties.containsKey(RESIZED_RENDITION)) {
             throw new CatalogueEventException("Property " + RESIZED_RENDITION + " missing");
         } else {
-            this.resizeRendition = instanceProperties.get(RESIZED_RENDITION);
-        }
-
-        if (instanceProperties.containsKey(RESIZE_WIDTH)) {
-            String resizeWidth = instanceProperties.get(RESIZE_WIDTH);
-            try {
-                this.width = Integer.valueOf(resizeWidth.trim());
-            } catch (NumberFormatException ex) {
-                throw new CatalogueEventException("Property " + RESIZE_WIDTH + " is not a number");
+            this.resizeRenditions = new ArrayList<String>();
+            for (String name : instanceProperties.get(RESIZED_RENDITION).split(",")) {
+                if (!name.trim().isEmpty()) {
+                    this.resizeRenditions.add(name.trim());
+                }
             }
-        } else {
-            throw new CatalogueEventException("Property " + RESIZE_WIDTH + " missing");
-        }
-
-        if (instanceProperties.containsKey(RESIZE_HEIGHT)) {
-            String resizeHeight = instanceProperties.get(RESIZE_HEIGHT);
-            try {
-                this.height = Integer.valueOf(resizeHeight.trim());
-            } catch (NumberFormatException ex) {
-                throw new CatalogueEventException("Property " + RESIZE_HEIGHT + " is not a number");
+            if (this.resizeRenditions.isEmpty()) {
+                throw new CatalogueEventException("Property " + RESIZED_RENDITION + " missing");
             }
-        } else {
-            throw new CatalogueEventException("Property " + RESIZE_HEIGHT + " missing");
         }
 
-        if (instanceProperties.containsKey(RESIZE_QUALITY)) {
-            String resizeQuality = instanceProperties.get(RESIZE_QUALITY);
+        this.widths = getNumbers(RESIZE_WIDTH);
+        this.heights = getNumbers(RESIZE_HEIGHT);
+        this.qualities = getNumbers(RESIZE_QUALITY);
+    }
+
+    /**
+     * Gets a comma-separated list of numbers from the instance properties.
+     *
+     * @param property Name of the property
+     * @return {@link List} of numbers in the property
+     * @throws CatalogueEventException
+     *          If the property is missing or contains an invalid number
+     */
+    private List<Integer> getNumbers(String property) throws CatalogueEventException {
+        if (!instanceProperties.containsKey(property)) {
+            throw new CatalogueEventException("Property " + property + " missing");
+        }
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (String value : instanceProperties.get(property).split(",")) {
             try {
-                this.quality = Integer.valueOf(resizeQuality.trim());
+                numbers.add(Integer.valueOf(value.trim()));
             } catch (NumberFormatException ex) {
-                throw new CatalogueEventException("Property " + RESIZE_QUALITY + " is not a number");
+                throw new CatalogueEventException("Property " + property + " is not a number");
             }
-        } else {
-            throw new CatalogueEventException("Property " + RESIZE_QUALITY + " missing");
         }
+        return numbers;
     }
 
     @Override
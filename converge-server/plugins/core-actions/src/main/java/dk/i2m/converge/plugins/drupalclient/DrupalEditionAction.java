@@ -25,6 +25,7 @@ import dk.i2m.converge.core.content.NewsItemPlacement;
 import dk.i2m.converge.core.content.catalogue.MediaItem;
 import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
 import dk.i2m.converge.core.content.catalogue.RenditionNotFoundException;
+import dk.i2m.converge.core.logging.LogSeverity;
 import dk.i2m.converge.core.plugin.EditionAction;
 import dk.i2m.converge.core.plugin.PluginContext;
 import dk.i2m.converge.core.workflow.Edition;
@@ -45,17 +46,31 @@ import dk.i2m.drupal.resource.NodeResource;
 import dk.i2m.drupal.resource.UserResource;
 import dk.i2m.drupal.util.HttpMessageBuilder;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.apache.commons.httpclient.HttpStatus;
@@ -81,6 +96,7 @@ public class DrupalEditionAction implements EditionAction {
         SECTION_MAPPING,
         SERVICE_ENDPOINT,
         SOCKET_TIMEOUT,
+        UPLOAD_THREADS,
         URL,
         USERNAME
     }
@@ -88,8 +104,6 @@ public class DrupalEditionAction implements EditionAction {
     private static final Logger LOG = Logger.
             getLogger(DrupalEditionAction.class.getName());
 
-    private static final String UPLOADING = "UPLOADING";
-
     private static final String UPLOADED = "UPLOADED";
 
     private static final String FAILED = "FAILED";
@@ -102,22 +116,23 @@ public class DrupalEditionAction implements EditionAction {
 
     private static final String STATUS_LABEL = "status";
 
-    private ResourceBundle bundle = ResourceBundle.getBundle(
-            "dk.i2m.converge.plugins.drupalclient.Messages");
-
-    private Map<String, String> availableProperties;
+    private static final String FILES_LABEL = "files";
 
-    private Map<Long, Long> sectionMapping;
+    /** Number of errors tolerated before publishing is aborted. */
+    private static final int MAX_ERRORS = 4;
 
-    private DrupalClient dc;
+    /** Number of concurrent sessions if not configured. */
+    private static final String DEFAULT_UPLOAD_THREADS = "4";
 
-    private UserResource ur;
+    /** Digest used for detecting unchanged images. */
+    private static final String FILE_DIGEST = "MD5";
 
-    private FileResource fr;
+    private ResourceBundle bundle = ResourceBundle.getBundle(
+            "dk.i2m.converge.plugins.drupalclient.Messages");
 
-    private NodeResource nr;
+    private Map<String, String> availableProperties;
 
-    private NewsItemResource nir;
+    private Map<Long, Long> sectionMapping;
 
     private SimpleDateFormat sdf;
 
@@ -137,197 +152,46 @@ public class DrupalEditionAction implements EditionAction {
 
     private String date;
 
-    private Long nodeId;
-
-    @Override
-    public void execute(PluginContext ctx, Edition edition,
-            OutletEditionAction action) {
-        LOG.log(Level.INFO, "Starting action... Edition #{0}", edition.getId());
-        
-        setupPlugin(action);
-        
-        int errors = 0;
-
-        try {
-            dc.setup();
-            ur.login();
-            
-            date = sdf.format(edition.getPublicationDate().getTime());
-
-            LOG.log(Level.INFO, "Found {0} NewsItem(s)", edition.
-                    getNumberOfPlacements());
-
-            for (NewsItemPlacement nip : edition.getPlacements()) {
-                NewsItem newsItem = nip.getNewsItem();
-
-                if (!newsItem.isEndState()) {
-                    continue;
-                }
+    private String hostname;
 
-                HttpMessageBuilder fb = new HttpMessageBuilder();
-                boolean update = false;
+    private String endpoint;
 
-                try {
-                    update = newsItemExists(nir, newsItem);
-                } catch (Exception ex) {
-                    LOG.log(Level.SEVERE, "Retrieving NewsItem #{0} failed",
-                            newsItem.getId());
-                    LOG.log(Level.SEVERE, null, ex);
-
-                    errors++;
-
-                    if (errors > 4) {
-                        break;
-                    } else {
-                        continue;
-                    }
-                }
-
-                if (nodeLanguage != null) {
-                    fb = new HttpMessageBuilder(nodeLanguage);
-                }
-
-                fb = prepareHttpMessage(edition, nip, fb);
-
-                if (!update && getPublishOn() != null) {
-                    fb.add(new BasicWrapper("publish_on", getPublishOn()));
-                }
+    private String username;
 
-                List<MediaItem> mediaItems = getMediaItems(newsItem);
+    private String password;
 
-                if (!mediaItems.isEmpty()) {
-                    ImageWrapper imageWrapper = new ImageWrapper("field_image");
-
-                    if (update) {
-                        deleteNodeFiles();
-                    }
+    /**
+     * Label of the node and file states, identifying the Drupal site they
+     * belong to.
+     */
+    private String siteLabel;
 
-                    try {
-                        for (MediaItem mediaItem : mediaItems) {
-                            MediaItemRendition mir = null;
-
-                            try {
-                                mir = mediaItem.findRendition(renditionName);
-                            } catch (RenditionNotFoundException ex) {
-                                LOG.log(Level.INFO,
-                                        "Rendition ''{0}'' missing for MediaItem #{1}",
-                                        new Object[]{renditionName, mediaItem.
-                                            getId()});
-                                continue;
-                            }
-
-                            String title = truncateString(mediaItem.getTitle(),
-                                    20);
-                            File file = new File(mir.getFileLocation());
-                            FileMessage fileMessage = fr.createRaw(file, title);
-
-                            String fid = fileMessage.getId().toString();
-                            String alt = truncateString(mediaItem.getTitle(),
-                                    512);
-                            String description = truncateString(mediaItem.
-                                    getDescription(), 1024);
-
-                            imageWrapper.add(new Image(fid, alt, description));
-                        }
+    private int connectionTimeout;
 
-                        if (!mediaItems.isEmpty()) {
-                            fb.add(imageWrapper);
-                        }
-                    } catch (Exception ex) {
-                        LOG.log(Level.INFO,
-                                "Uploading NewsItem #{0} image(s) failed",
-                                newsItem.getId());
-                        LOG.log(Level.SEVERE, null, ex);
+    private int socketTimeout;
 
-                        errors++;
+    private int uploadThreads;
 
-                        if (errors > 4) {
-                            break;
-                        } else {
-                            continue;
-                        }
-                    }
-                }
+    @Override
+    public void execute(PluginContext ctx, Edition edition,
+            OutletEditionAction action) {
+        LOG.log(Level.INFO, "Starting action... Edition #{0}", edition.getId());
 
-                if (update) {
-                    LOG.log(Level.INFO,
-                            "Updating Node #{0} with NewsItem #{1} & {2} image(s)",
-                            new Object[]{nodeId, newsItem.getId(), mediaItems.
-                                size()});
+        setupPlugin(action);
 
-                    try {
-                        nr.update(nodeId, fb.toUrlEncodedFormEntity());
-                    } catch (Exception ex) {
-                        LOG.log(Level.SEVERE, null, ex);
+        LOG.log(Level.INFO, "Found {0} NewsItem(s)", edition.
+                getNumberOfPlacements());
 
-                        errors++;
+        List<NewsItemPlacement> placements = new ArrayList<NewsItemPlacement>();
 
-                        if (errors > 4) {
-                            break;
-                        } else {
-                            continue;
-                        }
-                    }
-                } else {
-                    LOG.
-                            log(Level.INFO,
-                            "Uploading NewsItem #{0} & {1} image(s)",
-                            new Object[]{newsItem.getId(), mediaItems.size()});
-
-                    NewsItemEditionState status = ctx.
-                            addNewsItemEditionState(edition.getId(), newsItem.
-                            getId(), STATUS_LABEL, UPLOADING.toString());
-                    NewsItemEditionState nid = ctx.
-                            addNewsItemEditionState(edition.
-                            getId(), newsItem.getId(), NID_LABEL, null);
-                    NewsItemEditionState uri = ctx.
-                            addNewsItemEditionState(edition.
-                            getId(), newsItem.getId(), URI_LABEL, null);
-                    NewsItemEditionState submitted = ctx.
-                            addNewsItemEditionState(edition.getId(), newsItem.
-                            getId(), DATE, null);
-
-                    try {
-                        NodeMessage nodeMessage = nr.create(fb.
-                                toUrlEncodedFormEntity());
-
-                        nid.setValue(nodeMessage.getId().toString());
-                        uri.setValue(nodeMessage.getUri().toString());
-                        submitted.setValue(new Date().toString());
-                        status.setValue(UPLOADED.toString());
-                    } catch (Exception ex) {
-                        status.setValue(FAILED.toString());
-                        LOG.log(Level.SEVERE, null, ex);
-
-                        ctx.updateNewsItemEditionState(status);
-                        ctx.updateNewsItemEditionState(nid);
-                        ctx.updateNewsItemEditionState(uri);
-                        ctx.updateNewsItemEditionState(submitted);
-
-                        errors++;
-
-                        if (errors > 4) {
-                            break;
-                        } else {
-                            continue;
-                        }
-                    }
-
-                    ctx.updateNewsItemEditionState(status);
-                    ctx.updateNewsItemEditionState(nid);
-                    ctx.updateNewsItemEditionState(uri);
-                    ctx.updateNewsItemEditionState(submitted);
-                }
+        for (NewsItemPlacement nip : edition.getPlacements()) {
+            if (nip.getNewsItem().isEndState()) {
+                placements.add(nip);
             }
-
-            LOG.log(Level.INFO, "Encountered {0} error(s)", errors);
-
-            ur.logout();
-            dc.shutdown();
-        } catch (Exception ex) {
-            LOG.log(Level.SEVERE, null, ex);
         }
 
+        publish(ctx, edition, placements);
+
         LOG.log(Level.INFO, "Finishing action... Edition #{0}", edition.getId());
     }
 
@@ -341,101 +205,204 @@ public class DrupalEditionAction implements EditionAction {
         }
 
         LOG.log(Level.INFO, "Starting action... Edition #{0}", edition.getId());
-        
+
         setupPlugin(action);
-        
-        try {
-            dc.setup();
-            ur.login();
 
-            date = sdf.format(edition.getPublicationDate().getTime());
-            
-            HttpMessageBuilder fb = new HttpMessageBuilder();
-            boolean update = newsItemExists(nir, newsItem);
+        publish(ctx, edition, Collections.singletonList(placement));
 
-            if (nodeLanguage != null) {
-                fb = new HttpMessageBuilder(nodeLanguage);
-            }
+        LOG.log(Level.INFO, "Finishing action... Edition #{0}", edition.getId());
+    }
+
+    /**
+     * Publishes {@link NewsItemPlacement}s to Drupal. The nodes and files
+     * recorded when the {@link NewsItem}s were previously published are looked
+     * up in bulk, and the {@link NewsItem}s are published concurrently over a
+     * bounded pool of sessions that are kept open for the whole edition.
+     * Everything involving the {@link PluginContext} happens on the calling
+     * thread.
+     *
+     * @param ctx        {@link PluginContext} of the action
+     * @param edition    {@link Edition} being published
+     * @param placements {@link NewsItemPlacement}s to publish
+     */
+    private void publish(PluginContext ctx, Edition edition,
+            List<NewsItemPlacement> placements) {
+        if (placements.isEmpty()) {
+            return;
+        }
+
+        PublishReport report = new PublishReport();
+        date = sdf.format(edition.getPublicationDate().getTime());
+        String publishOn = getPublishOn();
 
-            fb = prepareHttpMessage(edition, placement, fb);
+        long lookupStart = System.currentTimeMillis();
+        Map<Long, NewsItemEditionState> nodeStates = getLatestStates(ctx,
+                edition, NID_LABEL);
+        Map<Long, NewsItemEditionState> fileStates = getLatestStates(ctx,
+                edition, FILES_LABEL);
+        report.lookedUp(System.currentTimeMillis() - lookupStart);
 
-            if (!update && getPublishOn() != null) {
-                fb.add(new BasicWrapper("publish_on", getPublishOn()));
+        int threads = Math.min(uploadThreads, placements.size());
+        List<Session> opened = new ArrayList<Session>();
+        BlockingQueue<Session> sessions = new ArrayBlockingQueue<Session>(
+                threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int i = 0; i < threads; i++) {
+                Session session = new Session();
+                opened.add(session);
+                session.open();
+                sessions.add(session);
             }
 
-            List<MediaItem> mediaItems = getMediaItems(newsItem);
+            Map<NewsItemPlacement, Future<PublishResult>> results =
+                    new LinkedHashMap<NewsItemPlacement, Future<PublishResult>>();
 
-            if (!mediaItems.isEmpty()) {
-                ImageWrapper imageWrapper = new ImageWrapper("field_image");
+            for (NewsItemPlacement nip : placements) {
+                NewsItem newsItem = nip.getNewsItem();
+                Long nodeId = null;
+                Map<String, String> files = null;
 
-                if (update) {
-                    deleteNodeFiles();
+                if (nodeStates.containsKey(newsItem.getId())) {
+                    nodeId = toLong(nodeStates.get(newsItem.getId()).
+                            getValue());
+
+                    if (nodeId != null && fileStates.containsKey(newsItem.
+                            getId())) {
+                        files = parseFiles(fileStates.get(newsItem.getId()).
+                                getValue());
+                    }
                 }
 
-                try {
-                    for (MediaItem mediaItem : mediaItems) {
-                        MediaItemRendition mir = null;
-
-                        try {
-                            mir = mediaItem.findRendition(renditionName);
-                        } catch (RenditionNotFoundException ex) {
-                            LOG.log(Level.INFO,
-                                    "Rendition ''{0}'' missing for MediaItem #{1}",
-                                    new Object[]{renditionName, mediaItem.
-                                        getId()});
-                            continue;
-                        }
+                HttpMessageBuilder updateMessage = prepareHttpMessage(edition,
+                        nip, createHttpMessage());
+                HttpMessageBuilder createMessage = prepareHttpMessage(edition,
+                        nip, createHttpMessage());
 
-                        String title = truncateString(mediaItem.getTitle(), 20);
-                        File file = new File(mir.getFileLocation());
+                if (publishOn != null) {
+                    createMessage.add(new BasicWrapper("publish_on", publishOn));
+                }
 
-                        FileMessage fileMessage = fr.createRaw(file, title);
+                results.put(nip, executor.submit(new PublishTask(sessions,
+                        newsItem.getId(), nodeId, files, updateMessage,
+                        createMessage, getImages(newsItem))));
+            }
 
-                        String fid = fileMessage.getId().toString();
-                        String alt = truncateString(mediaItem.getTitle(), 512);
-                        String description = truncateString(mediaItem.
-                                getDescription(), 1024);
+            for (NewsItemPlacement nip : results.keySet()) {
+                Future<PublishResult> future = results.get(nip);
+                NewsItem newsItem = nip.getNewsItem();
 
-                        imageWrapper.add(new Image(fid, alt, description));
-                    }
+                if (report.getFailed() > MAX_ERRORS) {
+                    future.cancel(true);
+                    continue;
+                }
 
-                    if (!mediaItems.isEmpty()) {
-                        fb.add(imageWrapper);
-                    }
-                } catch (Exception ex) {
-                    LOG.log(Level.SEVERE,
-                            "Uploading NewsItem #{0} image(s) failed",
+                try {
+                    PublishResult result = future.get();
+                    record(ctx, edition, newsItem, result, nodeStates,
+                            fileStates);
+                    report.published(newsItem.getId(), result.created,
+                            result.time, result.uploaded, result.skipped,
+                            result.deleted, result.bytes, result.uploadTime);
+                } catch (ExecutionException ex) {
+                    LOG.log(Level.SEVERE, "Publishing NewsItem #{0} failed",
                             newsItem.getId());
-                    LOG.log(Level.SEVERE, null, ex);
-                }
-            }
+                    LOG.log(Level.SEVERE, null, ex.getCause());
 
-            if (update) {
-                LOG.log(Level.INFO,
-                        "Updating Node #{0} with NewsItem #{1} & {2} image(s)",
-                        new Object[]{nodeId, newsItem.getId(), mediaItems.size()});
-            } else {
-                LOG.log(Level.INFO, "Uploading NewsItem #{0} & {1} image(s)",
-                        new Object[]{newsItem.getId(), mediaItems.size()});
-            }
+                    if (!nodeStates.containsKey(newsItem.getId())) {
+                        ctx.addNewsItemEditionState(edition.getId(), newsItem.
+                                getId(), STATUS_LABEL, FAILED);
+                    }
 
-            try {
-                if (update) {
-                    nr.update(nodeId, fb.toUrlEncodedFormEntity());
-                } else {
-                    nr.create(fb.toUrlEncodedFormEntity());
+                    report.failed();
                 }
-            } catch (Exception ex) {
-                LOG.log(Level.SEVERE, null, ex);
             }
 
-            ur.logout();
-            dc.shutdown();
+            LOG.log(Level.INFO, "Encountered {0} error(s)", report.getFailed());
+        } catch (InterruptedException ex) {
+            LOG.log(Level.SEVERE, null, ex);
+            Thread.currentThread().interrupt();
         } catch (Exception ex) {
             LOG.log(Level.SEVERE, null, ex);
+        } finally {
+            executor.shutdownNow();
+
+            try {
+                executor.awaitTermination(socketTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            for (Session session : opened) {
+                session.close();
+            }
         }
 
-        LOG.log(Level.INFO, "Finishing action... Edition #{0}", edition.getId());
+        LOG.log(Level.INFO, PublishReport.getSummary(), report.getArguments());
+        ctx.log(LogSeverity.INFO, PublishReport.getSummary(), report.
+                getArguments(), edition, edition.getId());
+    }
+
+    /**
+     * Records the state of a published {@link NewsItem}.
+     */
+    private void record(PluginContext ctx, Edition edition, NewsItem newsItem,
+            PublishResult result, Map<Long, NewsItemEditionState> nodeStates,
+            Map<Long, NewsItemEditionState> fileStates) {
+        Long editionId = edition.getId();
+        Long newsItemId = newsItem.getId();
+
+        if (result.created) {
+            ctx.addNewsItemEditionState(editionId, newsItemId, STATUS_LABEL,
+                    UPLOADED);
+            ctx.addNewsItemEditionState(editionId, newsItemId, siteLabel,
+                    NID_LABEL, result.nodeId.toString());
+            ctx.addNewsItemEditionState(editionId, newsItemId, URI_LABEL,
+                    result.uri);
+            ctx.addNewsItemEditionState(editionId, newsItemId, DATE,
+                    new Date().toString());
+        } else if (!nodeStates.containsKey(newsItemId)) {
+            // Found by a remote lookup, recorded to avoid it next time
+            ctx.addNewsItemEditionState(editionId, newsItemId, siteLabel,
+                    NID_LABEL, result.nodeId.toString());
+        }
+
+        if (result.files != null) {
+            String value = formatFiles(result.files);
+            NewsItemEditionState state = fileStates.get(newsItemId);
+
+            if (state != null && state.getEdition() != null && editionId.
+                    equals(state.getEdition().getId())) {
+                state.setValue(value);
+                ctx.updateNewsItemEditionState(state);
+            } else {
+                ctx.addNewsItemEditionState(editionId, newsItemId, siteLabel,
+                        FILES_LABEL, value);
+            }
+        }
+    }
+
+    /**
+     * Gets the newest {@link NewsItemEditionState} of a property for each
+     * {@link NewsItem} placed in an {@link Edition}. Only the states recorded
+     * for the configured Drupal site are considered, the {@link NewsItem}s
+     * without such a state are looked up remotely.
+     *
+     * @return {@link Map} of {@link NewsItem} ids and their newest state
+     */
+    private Map<Long, NewsItemEditionState> getLatestStates(PluginContext ctx,
+            Edition edition, String property) {
+        Map<Long, NewsItemEditionState> states =
+                new HashMap<Long, NewsItemEditionState>();
+
+        // Ordered from the oldest to the newest state
+        for (NewsItemEditionState state : ctx.findNewsItemEditionStates(
+                edition.getId(), siteLabel, property)) {
+            states.put(state.getNewsItem().getId(), state);
+        }
+
+        return states;
     }
 
     @Override
@@ -700,33 +667,103 @@ public class DrupalEditionAction implements EditionAction {
         return fb;
     }
 
-    private boolean newsItemExists(NewsItemResource nir, NewsItem newsItem)
-            throws HttpResponseException, IOException {
+    private HttpMessageBuilder createHttpMessage() {
+        if (nodeLanguage != null) {
+            return new HttpMessageBuilder(nodeLanguage);
+        } else {
+            return new HttpMessageBuilder();
+        }
+    }
+
+    /**
+     * Get the images to upload for a {@link NewsItem}.
+     *
+     * @param newsItem {@link NewsItem}
+     * @return {@link List} of images with the configured rendition
+     */
+    private List<ImageUpload> getImages(NewsItem newsItem) {
+        List<ImageUpload> images = new ArrayList<ImageUpload>();
+
+        for (MediaItem mediaItem : getMediaItems(newsItem)) {
+            MediaItemRendition mir = null;
+
+            try {
+                mir = mediaItem.findRendition(renditionName);
+            } catch (RenditionNotFoundException ex) {
+                LOG.log(Level.INFO,
+                        "Rendition ''{0}'' missing for MediaItem #{1}",
+                        new Object[]{renditionName, mediaItem.getId()});
+                continue;
+            }
+
+            images.add(new ImageUpload(new File(mir.getFileLocation()),
+                    truncateString(mediaItem.getTitle(), 20),
+                    truncateString(mediaItem.getTitle(), 512),
+                    truncateString(mediaItem.getDescription(), 1024)));
+        }
+
+        return images;
+    }
+
+    private Long toLong(String value) {
         try {
-            NodeMessage nodeMessage = nir.retrieve(newsItem.getId());
+            return Long.valueOf(value.trim());
+        } catch (Exception ex) {
+            return null;
+        }
+    }
 
-            if (nodeMessage == null) {
-                return false;
-            } else {
-                nodeId = nodeMessage.getId();
-                return true;
+    /**
+     * Parses the uploaded files recorded for a {@link NewsItem}.
+     *
+     * @param value "HASH:FID;HASH:FID..."
+     * @return {@link Map} of file digests and file ids
+     */
+    private Map<String, String> parseFiles(String value) {
+        Map<String, String> files = new LinkedHashMap<String, String>();
+
+        for (String file : value.split(";")) {
+            String[] values = file.split(":");
+
+            if (values.length == 2) {
+                files.put(values[0], values[1]);
             }
-        } catch (HttpResponseException ex) {
-            if (ex.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
-                return false;
-            } else {
-                throw ex;
+        }
+
+        return files;
+    }
+
+    private String formatFiles(Map<String, String> files) {
+        StringBuilder sb = new StringBuilder();
+
+        for (String hash : files.keySet()) {
+            if (sb.length() > 0) {
+                sb.append(";");
             }
+
+            sb.append(hash).append(":").append(files.get(hash));
         }
+
+        return sb.toString();
     }
 
-    private void deleteNodeFiles() throws
-            HttpResponseException, IOException {
-        List<FileMessage> fileMessages = nr.loadFiles(nodeId);
+    private String digest(File file) throws IOException,
+            NoSuchAlgorithmException {
+        MessageDigest md = MessageDigest.getInstance(FILE_DIGEST);
+        InputStream in = new FileInputStream(file);
 
-        for (FileMessage fileMessage : fileMessages) {
-            fr.delete(fileMessage.getId());
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
         }
+
+        return new BigInteger(1, md.digest()).toString(16);
     }
 
     private void setupPlugin(OutletEditionAction action) {
@@ -741,13 +778,14 @@ public class DrupalEditionAction implements EditionAction {
         frontpagePlacement = properties.get(Property.FRONTPAGE_PLACEMENT.name());
         sectionMapping = new HashMap<Long, Long>();
 
-        String hostname = properties.get(Property.URL.name());
-        String endpoint = properties.get(Property.SERVICE_ENDPOINT.name());
-        String username = properties.get(Property.USERNAME.name());
-        String password = properties.get(Property.PASSWORD.name());
+        hostname = properties.get(Property.URL.name());
+        endpoint = properties.get(Property.SERVICE_ENDPOINT.name());
+        username = properties.get(Property.USERNAME.name());
+        password = properties.get(Property.PASSWORD.name());
         String connectionTimeout = properties.get(Property.CONNECTION_TIMEOUT.
                 name());
         String socketTimeout = properties.get(Property.SOCKET_TIMEOUT.name());
+        String threads = properties.get(Property.UPLOAD_THREADS.name());
 
         if (hostname == null) {
             throw new IllegalArgumentException("'hostname' cannot be null");
@@ -757,6 +795,8 @@ public class DrupalEditionAction implements EditionAction {
             throw new IllegalArgumentException("'endpoint' cannot be null");
         }
 
+        siteLabel = truncateString(hostname + endpoint, 255);
+
         if (username == null) {
             throw new IllegalArgumentException("'username' cannot be null");
         }
@@ -807,15 +847,326 @@ public class DrupalEditionAction implements EditionAction {
                     "'socketTimeout' must be an integer");
         }
 
+        if (threads == null) {
+            threads = DEFAULT_UPLOAD_THREADS;
+        } else if (!isInteger(threads)) {
+            throw new IllegalArgumentException(
+                    "'uploadThreads' must be an integer");
+        } else if (Integer.parseInt(threads) <= 0) {
+            throw new IllegalArgumentException(
+                    "'uploadThreads' cannot be <= 0");
+        }
+
         setSectionMapping(mappings);
 
-        dc = new DefaultDrupalClient(URI.create(hostname), endpoint, Integer.
-                parseInt(connectionTimeout), Integer.parseInt(socketTimeout));
-        ur = new UserResource(dc, username, password);
-        fr = new FileResource(dc);
-        nr = new NodeResource(dc);
-        nir = new NewsItemResource(dc);
+        this.connectionTimeout = Integer.parseInt(connectionTimeout);
+        this.socketTimeout = Integer.parseInt(socketTimeout);
+        this.uploadThreads = Integer.parseInt(threads);
 
         sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     }
+
+    /**
+     * Image to upload for a {@link NewsItem}.
+     */
+    private static class ImageUpload {
+
+        private final File file;
+
+        private final String title;
+
+        private final String alt;
+
+        private final String description;
+
+        ImageUpload(File file, String title, String alt, String description) {
+            this.file = file;
+            this.title = title;
+            this.alt = alt;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Outcome of publishing a {@link NewsItem}.
+     */
+    private static class PublishResult {
+
+        private Long nodeId;
+
+        private String uri;
+
+        private boolean created = false;
+
+        private Map<String, String> files;
+
+        private int uploaded = 0;
+
+        private int skipped = 0;
+
+        private int deleted = 0;
+
+        private long bytes = 0;
+
+        private long uploadTime = 0;
+
+        private long time = 0;
+    }
+
+    /**
+     * Logged in connection to Drupal. A session is only used by one thread
+     * at a time and keeps its connection alive between requests.
+     */
+    private class Session {
+
+        private final DrupalClient dc;
+
+        private final UserResource ur;
+
+        private final FileResource fr;
+
+        private final NodeResource nr;
+
+        private final NewsItemResource nir;
+
+        private boolean loggedIn = false;
+
+        Session() {
+            dc = new DefaultDrupalClient(URI.create(hostname), endpoint,
+                    connectionTimeout, socketTimeout);
+            ur = new UserResource(dc, username, password);
+            fr = new FileResource(dc);
+            nr = new NodeResource(dc);
+            nir = new NewsItemResource(dc);
+        }
+
+        void open() throws Exception {
+            dc.setup();
+            ur.login();
+            loggedIn = true;
+        }
+
+        void close() {
+            try {
+                if (loggedIn) {
+                    ur.logout();
+                }
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, null, ex);
+            }
+
+            try {
+                dc.shutdown();
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, null, ex);
+            }
+        }
+
+        /**
+         * Finds the node of a {@link NewsItem}.
+         *
+         * @param newsItemId Unique identifier of the {@link NewsItem}
+         * @return Unique identifier of the node, or {@code null} if the
+         *         {@link NewsItem} was not found
+         */
+        Long findNodeId(Long newsItemId) throws HttpResponseException,
+                IOException {
+            try {
+                NodeMessage nodeMessage = nir.retrieve(newsItemId);
+
+                if (nodeMessage == null) {
+                    return null;
+                } else {
+                    return nodeMessage.getId();
+                }
+            } catch (HttpResponseException ex) {
+                if (ex.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+                    return null;
+                } else {
+                    throw ex;
+                }
+            }
+        }
+
+        /**
+         * Deletes all the files of a node.
+         *
+         * @param nodeId Unique identifier of the node
+         * @return Number of files deleted
+         */
+        int deleteNodeFiles(Long nodeId) throws HttpResponseException,
+                IOException {
+            List<FileMessage> fileMessages = nr.loadFiles(nodeId);
+
+            for (FileMessage fileMessage : fileMessages) {
+                fr.delete(fileMessage.getId());
+            }
+
+            return fileMessages.size();
+        }
+    }
+
+    /**
+     * Publishes a single {@link NewsItem} using a {@link Session} from the
+     * pool. Images with the same digest as previously uploaded files of the
+     * node are not uploaded again.
+     */
+    private class PublishTask implements Callable<PublishResult> {
+
+        private final BlockingQueue<Session> sessions;
+
+        private final Long newsItemId;
+
+        private final Long knownNodeId;
+
+        private final Map<String, String> knownFiles;
+
+        private final HttpMessageBuilder updateMessage;
+
+        private final HttpMessageBuilder createMessage;
+
+        private final List<ImageUpload> images;
+
+        PublishTask(BlockingQueue<Session> sessions, Long newsItemId,
+                Long knownNodeId, Map<String, String> knownFiles,
+                HttpMessageBuilder updateMessage,
+                HttpMessageBuilder createMessage, List<ImageUpload> images) {
+            this.sessions = sessions;
+            this.newsItemId = newsItemId;
+            this.knownNodeId = knownNodeId;
+            this.knownFiles = knownFiles;
+            this.updateMessage = updateMessage;
+            this.createMessage = createMessage;
+            this.images = images;
+        }
+
+        @Override
+        public PublishResult call() throws Exception {
+            Session session = sessions.take();
+
+            try {
+                long start = System.currentTimeMillis();
+                PublishResult result = publish(session);
+                result.time = System.currentTimeMillis() - start;
+                return result;
+            } finally {
+                sessions.put(session);
+            }
+        }
+
+        private PublishResult publish(Session session) throws Exception {
+            PublishResult result = new PublishResult();
+            Long nodeId = knownNodeId;
+            Map<String, String> reusable = knownFiles;
+
+            if (nodeId == null) {
+                nodeId = session.findNodeId(newsItemId);
+                reusable = null;
+            }
+
+            if (nodeId != null) {
+                if (reusable == null && !images.isEmpty()) {
+                    result.deleted += session.deleteNodeFiles(nodeId);
+                }
+
+                upload(session, updateMessage, reusable, result);
+
+                LOG.log(Level.INFO,
+                        "Updating Node #{0} with NewsItem #{1} & {2} image(s)",
+                        new Object[]{nodeId, newsItemId, images.size()});
+
+                try {
+                    session.nr.update(nodeId, updateMessage.
+                            toUrlEncodedFormEntity());
+                    result.nodeId = nodeId;
+                    deleteObsoleteFiles(session, reusable, result);
+                    return result;
+                } catch (HttpResponseException ex) {
+                    if (ex.getStatusCode() != HttpStatus.SC_NOT_FOUND) {
+                        throw ex;
+                    }
+
+                    LOG.log(Level.WARNING,
+                            "Node #{0} of NewsItem #{1} no longer exists",
+                            new Object[]{nodeId, newsItemId});
+                }
+            }
+
+            upload(session, createMessage, null, result);
+
+            LOG.log(Level.INFO, "Uploading NewsItem #{0} & {1} image(s)",
+                    new Object[]{newsItemId, images.size()});
+
+            NodeMessage nodeMessage = session.nr.create(createMessage.
+                    toUrlEncodedFormEntity());
+
+            result.nodeId = nodeMessage.getId();
+            result.uri = nodeMessage.getUri().toString();
+            result.created = true;
+            return result;
+        }
+
+        private void upload(Session session, HttpMessageBuilder message,
+                Map<String, String> reusable, PublishResult result) throws
+                Exception {
+            if (images.isEmpty()) {
+                return;
+            }
+
+            ImageWrapper imageWrapper = new ImageWrapper("field_image");
+            Map<String, String> files = new LinkedHashMap<String, String>();
+
+            for (ImageUpload image : images) {
+                String hash = digest(image.file);
+                String fid = files.get(hash);
+
+                if (fid == null && reusable != null) {
+                    fid = reusable.get(hash);
+                }
+
+                if (fid == null) {
+                    long start = System.currentTimeMillis();
+                    FileMessage fileMessage = session.fr.createRaw(image.file,
+                            image.title);
+                    fid = fileMessage.getId().toString();
+
+                    result.uploadTime += System.currentTimeMillis() - start;
+                    result.bytes += image.file.length();
+                    result.uploaded++;
+                } else {
+                    result.skipped++;
+                }
+
+                files.put(hash, fid);
+                imageWrapper.add(new Image(fid, image.alt, image.description));
+            }
+
+            message.add(imageWrapper);
+            result.files = files;
+        }
+
+        /**
+         * Deletes the previously uploaded files no longer used by the node.
+         */
+        private void deleteObsoleteFiles(Session session,
+                Map<String, String> reusable, PublishResult result) {
+            if (reusable == null || result.files == null) {
+                return;
+            }
+
+            for (String fid : reusable.values()) {
+                if (result.files.containsValue(fid)) {
+                    continue;
+                }
+
+                try {
+                    session.fr.delete(Long.valueOf(fid));
+                    result.deleted++;
+                } catch (Exception ex) {
+                    LOG.log(Level.WARNING, "Deleting File #{0} failed", fid);
+                    LOG.log(Level.FINE, null, ex);
+                }
+            }
+        }
+    }
 }
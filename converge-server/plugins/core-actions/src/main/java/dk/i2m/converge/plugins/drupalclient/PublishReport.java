@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2012 Interactive Media Management
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.plugins.drupalclient;
+
+/**
+ * Counters and timings of publishing an edition to Drupal.
+ *
+ * @author Raymond Wanyoike <rwa at i2m.dk>
+ */
+class PublishReport {
+
+    private final long started = System.currentTimeMillis();
+
+    private long lookupTime = 0;
+
+    private int created = 0;
+
+    private int updated = 0;
+
+    private int failed = 0;
+
+    private int imagesUploaded = 0;
+
+    private int imagesSkipped = 0;
+
+    private int filesDeleted = 0;
+
+    private long bytesUploaded = 0;
+
+    private long uploadTime = 0;
+
+    private long slowestTime = 0;
+
+    private Long slowestNewsItem = null;
+
+    /**
+     * Records the time spent looking up the state of the remote nodes.
+     *
+     * @param lookupTime Time in milliseconds
+     */
+    void lookedUp(long lookupTime) {
+        this.lookupTime += lookupTime;
+    }
+
+    /**
+     * Records a published news item.
+     *
+     * @param newsItemId     Unique identifier of the news item
+     * @param created        {@code true} if a node was created, {@code false}
+     *                       if an existing node was updated
+     * @param time           Time in milliseconds spent publishing the news item
+     * @param uploaded       Number of images uploaded
+     * @param skipped        Number of unchanged images not uploaded
+     * @param deleted        Number of obsolete files deleted
+     * @param bytes          Number of bytes uploaded
+     * @param uploadTime     Time in milliseconds spent uploading images
+     */
+    void published(Long newsItemId, boolean created, long time, int uploaded,
+            int skipped, int deleted, long bytes, long uploadTime) {
+        if (created) {
+            this.created++;
+        } else {
+            this.updated++;
+        }
+        this.imagesUploaded += uploaded;
+        this.imagesSkipped += skipped;
+        this.filesDeleted += deleted;
+        this.bytesUploaded += bytes;
+        this.uploadTime += uploadTime;
+
+        if (time > slowestTime) {
+            slowestTime = time;
+            slowestNewsItem = newsItemId;
+        }
+    }
+
+    /**
+     * Records a news item that could not be published.
+     */
+    void failed() {
+        this.failed++;
+    }
+
+    int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the arguments of {@link #getSummary()}.
+     *
+     * @return Arguments of the summary
+     */
+    Object[] getArguments() {
+        return new Object[]{created, updated, failed, imagesUploaded,
+                    imagesSkipped, filesDeleted, bytesUploaded / 1024,
+                    uploadTime, lookupTime, slowestNewsItem == null ? "-"
+                    : slowestNewsItem.toString(), slowestTime,
+                    System.currentTimeMillis() - started};
+    }
+
+    /**
+     * Gets the {@link java.text.MessageFormat} pattern of the summary.
+     *
+     * @return Pattern of the summary
+     */
+    static String getSummary() {
+        return "Published {0} new and {1} updated node(s), {2} failed. "
+                + "Uploaded {3} image(s) ({6} KB, {7} ms), skipped {4} "
+                + "unchanged image(s) and deleted {5} obsolete file(s). "
+                + "Lookup took {8} ms, slowest NewsItem #{9} took {10} ms, "
+                + "total {11} ms";
+    }
+}
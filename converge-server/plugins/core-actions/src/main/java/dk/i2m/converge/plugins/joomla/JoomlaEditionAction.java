@@ -26,10 +26,13 @@ import dk.i2m.converge.core.workflow.OutletEditionAction;
 import dk.i2m.converge.core.workflow.OutletEditionActionProperty;
 import dk.i2m.converge.plugins.joomla.client.JoomlaConnection;
 import dk.i2m.converge.plugins.joomla.client.JoomlaException;
+import dk.i2m.converge.plugins.joomla.client.JoomlaResult;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.ResourceBundle;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -45,6 +48,9 @@ public class JoomlaEditionAction extends JoomlaPlugin implements EditionAction {
     private static final Logger LOG =
             Logger.getLogger(JoomlaEditionAction.class.getName());
 
+    /** Number of news items uploaded to Joomla in a single request. */
+    private static final int BATCH_SIZE = 10;
+
     private ResourceBundle bundle = ResourceBundle.getBundle(
             "dk.i2m.converge.plugins.joomla.JoomlaEditionAction");
 
@@ -76,23 +82,15 @@ public class JoomlaEditionAction extends JoomlaPlugin implements EditionAction {
                 JoomlaEditionAction.XMLRPC_METHOD_NEW_ARTICLE)) {
             fetchJoomlaCategories(connection);
 
+            List<NewsItemPlacement> batch = new ArrayList<NewsItemPlacement>();
             for (NewsItemPlacement placement : edition.getPlacements()) {
                 NewsItem item = placement.getNewsItem();
                 if (item.isEndState()) {
                     if (isCategoryMapped(placement)) {
-                        try {
-                            Integer aid = newArticle(connection, placement);
-                            pluginContext.log(LogSeverity.INFO,
-                                    bundle.getString("LOG_UPLOADED_WITH_ID_X"),
-                                    new Object[]{placement.getNewsItem().getId(),
-                                        aid}, placement.getNewsItem(),
-                                    placement.getNewsItem().getId());
-                        } catch (JoomlaActionException ex) {
-                            pluginContext.log(LogSeverity.SEVERE, bundle.
-                                    getString("LOG_COULD_NOT_CREATE_ARTICLE"),
-                                    new Object[]{ex.getMessage()}, action,
-                                    action.getId());
-                            LOG.log(Level.FINE, "", ex);
+                        batch.add(placement);
+                        if (batch.size() == BATCH_SIZE) {
+                            publish(connection, batch, action);
+                            batch.clear();
                         }
                     } else {
                         pluginContext.log(LogSeverity.INFO, bundle.getString(
@@ -103,18 +101,59 @@ public class JoomlaEditionAction extends JoomlaPlugin implements EditionAction {
                     }
                 }
             }
+
+            if (!batch.isEmpty()) {
+                publish(connection, batch, action);
+            }
         } else if (method.equalsIgnoreCase(XMLRPC_METHOD_DELETE_ARTICLE)) {
+            List<String> foreignIds = new ArrayList<String>();
             for (NewsItemPlacement placement : edition.getPlacements()) {
-                try {
-                    deleteArticle(connection, placement.getNewsItem());
-                } catch (JoomlaActionException ex) {
-                    LOG.log(Level.SEVERE, ex.getMessage());
-                    LOG.log(Level.FINE, "", ex);
+                LOG.log(Level.INFO, "Deleting news item #{0} from Joomla",
+                        new Object[]{placement.getNewsItem().getId()});
+                foreignIds.add(String.valueOf(placement.getNewsItem().getId()));
+            }
+
+            for (int i = 0; i < foreignIds.size(); i += BATCH_SIZE) {
+                List<JoomlaResult<Object>> results = connection.deleteArticles(
+                        foreignIds.subList(i, Math.min(i + BATCH_SIZE,
+                        foreignIds.size())));
+                for (JoomlaResult<Object> result : results) {
+                    if (!result.isSuccessful()) {
+                        LOG.log(Level.SEVERE, result.getError().getMessage());
+                        LOG.log(Level.FINE, "", result.getError());
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Uploads a batch of news items to Joomla and logs the outcome of each
+     * news item.
+     *
+     * @param connection Connection to the Joomla installation
+     * @param batch      News items to upload
+     * @param action     Action being executed
+     */
+    private void publish(JoomlaConnection connection,
+            List<NewsItemPlacement> batch, OutletEditionAction action) {
+        List<JoomlaResult<Integer>> results = newArticles(connection, batch);
+        for (int i = 0; i < batch.size(); i++) {
+            NewsItem item = batch.get(i).getNewsItem();
+            try {
+                Integer aid = results.get(i).getValue();
+                pluginContext.log(LogSeverity.INFO,
+                        bundle.getString("LOG_UPLOADED_WITH_ID_X"),
+                        new Object[]{item.getId(), aid}, item, item.getId());
+            } catch (JoomlaException ex) {
+                pluginContext.log(LogSeverity.SEVERE, bundle.getString(
+                        "LOG_COULD_NOT_CREATE_ARTICLE"),
+                        new Object[]{ex.getMessage()}, action, action.getId());
+                LOG.log(Level.FINE, "", ex);
+            }
+        }
+    }
+
     @Override
     public void executePlacement(PluginContext ctx, NewsItemPlacement placement,
             Edition edition, OutletEditionAction action) {
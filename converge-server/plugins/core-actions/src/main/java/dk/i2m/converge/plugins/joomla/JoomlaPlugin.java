@@ -24,12 +24,13 @@ import dk.i2m.converge.core.content.catalogue.MediaItem;
 import dk.i2m.converge.core.content.catalogue.MediaItemRendition;
 import dk.i2m.converge.core.content.catalogue.RenditionNotFoundException;
 import dk.i2m.converge.core.metadata.Concept;
-import dk.i2m.converge.core.utils.FileUtils;
 import dk.i2m.converge.core.utils.StringUtils;
+import dk.i2m.converge.plugins.joomla.client.JoomlaArticle;
 import dk.i2m.converge.plugins.joomla.client.JoomlaConnection;
 import dk.i2m.converge.plugins.joomla.client.JoomlaException;
-import java.io.IOException;
-import java.net.URL;
+import dk.i2m.converge.plugins.joomla.client.JoomlaMediaFile;
+import dk.i2m.converge.plugins.joomla.client.JoomlaResult;
+import java.io.File;
 import java.text.MessageFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -452,60 +453,111 @@ public abstract class JoomlaPlugin {
      */
     protected Integer newArticle(JoomlaConnection connection,
             NewsItemPlacement placement) throws JoomlaActionException {
-
-        NewsItem newsItem = placement.getNewsItem();
         try {
+            return newArticles(connection, Collections.singletonList(
+                    placement)).get(0).getValue();
+        } catch (JoomlaException ex) {
+            throw new JoomlaActionException(ex);
+        }
+    }
 
-            String joomlaCategoryId = generateCategoryId(placement);
+    /**
+     * Connects to the Joomla installation and uploads new news items. The
+     * media files of all the news items are uploaded together, followed by
+     * the articles, so that each step requires a single request if the
+     * Joomla installation supports {@code system.multicall}.
+     *
+     * @param connection Connection to the Joomla installation
+     * @param placements News items to upload
+     * @return Unique identifiers of the created articles on Joomla, in the
+     *         same order as the news items
+     */
+    protected List<JoomlaResult<Integer>> newArticles(
+            JoomlaConnection connection, List<NewsItemPlacement> placements) {
 
-            boolean imageUpload = true;
-            if (properties.containsKey(PROPERTY_IMAGE_UPLOAD)) {
-                imageUpload = Boolean.parseBoolean(properties.get(
-                        PROPERTY_IMAGE_UPLOAD));
-            }
+        boolean imageUpload = true;
+        if (properties.containsKey(PROPERTY_IMAGE_UPLOAD)) {
+            imageUpload = Boolean.parseBoolean(properties.get(
+                    PROPERTY_IMAGE_UPLOAD));
+        }
+
+        List<List<UploadedMediaFile>> mediaFiles =
+                new ArrayList<List<UploadedMediaFile>>();
+        List<PendingMediaFile> pending = new ArrayList<PendingMediaFile>();
+
+        for (int i = 0; i < placements.size(); i++) {
+            NewsItemPlacement placement = placements.get(i);
+            mediaFiles.add(new ArrayList<UploadedMediaFile>());
 
-            List<UploadedMediaFile> mediaFiles =
-                    new ArrayList<UploadedMediaFile>();
             if (imageUpload) {
                 LOG.log(Level.INFO, "Uploading media files for news item #{0}",
-                        new Object[]{newsItem.getId()});
-                mediaFiles = uploadMediaItems(connection, newsItem,
-                        joomlaCategoryId);
+                        new Object[]{placement.getNewsItem().getId()});
+                for (PendingMediaFile file : prepareMediaFiles(placement.
+                        getNewsItem(), generateCategoryId(placement))) {
+                    file.index = i;
+                    pending.add(file);
+                }
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            List<JoomlaMediaFile> files = new ArrayList<JoomlaMediaFile>();
+            for (PendingMediaFile file : pending) {
+                files.add(file.file);
+            }
+
+            List<JoomlaResult<String>> locations = connection.uploadMediaFiles(
+                    files);
+            for (int i = 0; i < pending.size(); i++) {
+                PendingMediaFile file = pending.get(i);
+                try {
+                    mediaFiles.get(file.index).add(new UploadedMediaFile(
+                            locations.get(i).getValue(), file.caption));
+                } catch (JoomlaException ex) {
+                    LOG.log(Level.WARNING,
+                            "Could not upload media file to Joomla", ex);
+                }
             }
+        }
+
+        List<JoomlaArticle> articles = new ArrayList<JoomlaArticle>();
+        for (int i = 0; i < placements.size(); i++) {
+            NewsItemPlacement placement = placements.get(i);
+            NewsItem newsItem = placement.getNewsItem();
 
             Date publishDate = generatePublishDate(placement);
             Date expireDate = generateExpireDate(placement);
 
             LOG.log(Level.INFO, "Original publish date for #{0} set to {1}. Publish date on Joomla set to {2}. Expire date on Joomla set to {3}", new Object[]{newsItem.getId(), dateFormat.format(placement.getEdition().getPublicationDate().getTime()), dateFormat.format(publishDate.getTime()), expireDate != null ? dateFormat.format(expireDate.getTime()) : "null"});
 
-
-            Integer foreignId = connection.newArticle(String.valueOf(newsItem.
-                    getId()),
-                    newsItem.getTitle(), generateIntro(newsItem, mediaFiles),
-                    generateStory(newsItem, mediaFiles), generateAuthors(
-                    newsItem),
-                    joomlaCategoryId, generateFrontPage(placement),
+            articles.add(new JoomlaArticle(String.valueOf(newsItem.getId()),
+                    newsItem.getTitle(), generateIntro(newsItem, mediaFiles.
+                    get(i)), generateStory(newsItem, mediaFiles.get(i)),
+                    generateAuthors(newsItem), generateCategoryId(placement),
+                    generateFrontPage(placement),
                     String.valueOf(placement.getStart())
                     + String.valueOf(placement.getPosition()),
                     generateKeywords(newsItem),
                     generateMetaDescription(newsItem),
-                    publishDate, expireDate);
-            
+                    publishDate, expireDate));
+        }
 
-            if (foreignId != null) {
+        List<JoomlaResult<Integer>> results = connection.newArticles(articles);
+        for (int i = 0; i < results.size(); i++) {
+            Long newsItemId = placements.get(i).getNewsItem().getId();
+            try {
                 LOG.log(Level.INFO,
                         "News item #{0} created or updated in Joomla with article id #{1}",
-                        new Object[]{newsItem.getId(), foreignId});
-                return foreignId;
-            } else {
-                LOG.log(Level.WARNING,
-                        "Foreign key was not received from Converge Joomla API");
-                return 0;
+                        new Object[]{newsItemId, results.get(i).getValue()});
+            } catch (JoomlaException ex) {
+                // Reported to the user by the caller
+                LOG.log(Level.FINE,
+                        "News item #{0} could not be uploaded to Joomla. {1}",
+                        new Object[]{newsItemId, ex.getMessage()});
             }
-
-        } catch (JoomlaException ex) {
-            throw new JoomlaActionException(ex);
         }
+
+        return results;
     }
 
     protected void deleteArticle(JoomlaConnection connection, NewsItem newsItem)
@@ -519,8 +571,14 @@ public abstract class JoomlaPlugin {
         }
     }
 
-    protected List<UploadedMediaFile> uploadMediaItems(
-            JoomlaConnection connection, NewsItem newsItem,
+    /**
+     * Prepares the media files of a news item for uploading.
+     *
+     * @param newsItem         News item for which to prepare media files
+     * @param joomlaCategoryId Category of the news item on Joomla
+     * @return Media files to upload
+     */
+    protected List<PendingMediaFile> prepareMediaFiles(NewsItem newsItem,
             String joomlaCategoryId) {
         String renditionName = properties.get(PROPERTY_MEDIA_TAG);
         String[] excludeContentTypes = new String[]{};
@@ -530,8 +588,7 @@ public abstract class JoomlaPlugin {
         }
 
         MediaItemRendition webVersion = null;
-        List<UploadedMediaFile> uploadedImages =
-                new ArrayList<UploadedMediaFile>();
+        List<PendingMediaFile> mediaFiles = new ArrayList<PendingMediaFile>();
 
         for (NewsItemMediaAttachment attachment : newsItem.getMediaAttachments()) {
 
@@ -551,7 +608,6 @@ public abstract class JoomlaPlugin {
             }
 
             // Check if a rendition of the image exist
-            String renditionFile = "";
             try {
                 webVersion = item.findRendition(renditionName);
 
@@ -565,29 +621,45 @@ public abstract class JoomlaPlugin {
                     continue;
                 }
 
+                File renditionFile = new File(webVersion.getFileLocation());
+                if (!renditionFile.isFile()) {
+                    LOG.log(Level.WARNING,
+                            "Rendition ({0} / {2}) could not be retrieved for Media Item #{1}. Ignoring Media Item.",
+                            new Object[]{renditionName, item.getId(),
+                                renditionFile});
+                    continue;
+                }
+
                 String filename = newsItem.getId() + "-" + webVersion.getId()
                         + "." + webVersion.getExtension();
-                renditionFile = webVersion.getAbsoluteFilename();
-                byte[] filedata = FileUtils.getBytes(new URL(renditionFile));
-                String webImgLocation = connection.uploadMediaFile(String.
-                        valueOf(newsItem.getId()), filename, filedata);
-                uploadedImages.add(new UploadedMediaFile(webImgLocation,
+                mediaFiles.add(new PendingMediaFile(new JoomlaMediaFile(String.
+                        valueOf(newsItem.getId()), filename, renditionFile),
                         attachment.getCaption()));
 
             } catch (RenditionNotFoundException ex) {
                 LOG.log(Level.WARNING,
                         "Rendition ({0}) missing for Media Item #{1}. Ignoring Media Item.",
                         new Object[]{renditionName, item.getId()});
-            } catch (IOException ex) {
-                LOG.log(Level.WARNING,
-                        "Rendition ({0} / {2}) could not be retrieved for Media Item #{1}. Ignoring Media Item.",
-                        new Object[]{renditionName, item.getId(), renditionFile});
-            } catch (JoomlaException ex) {
-                LOG.log(Level.WARNING, "Could not upload media file to Joomla",
-                        ex);
             }
         }
 
-        return uploadedImages;
+        return mediaFiles;
+    }
+
+    /**
+     * Media file waiting to be uploaded with the news item it belongs to.
+     */
+    protected static class PendingMediaFile {
+
+        private JoomlaMediaFile file;
+
+        private String caption;
+
+        private int index = 0;
+
+        PendingMediaFile(JoomlaMediaFile file, String caption) {
+            this.file = file;
+            this.caption = caption;
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.plugins.joomla.client;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.ws.commons.util.Base64;
+import org.apache.xmlrpc.serializer.TypeSerializerImpl;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+/**
+ * Serializes a {@link File} as an XML-RPC {@code base64} value by streaming
+ * the content of the file through the encoder, rather than reading the file
+ * into memory.
+ *
+ * @author Allan Lykke Christensen
+ */
+class FileSerializer extends TypeSerializerImpl {
+
+    private static final String BASE_64_TAG = "base64";
+
+    /** Number of bytes read from the file at a time. */
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public void write(ContentHandler handler, Object object) throws
+            SAXException {
+        File file = (File) object;
+
+        handler.startElement("", VALUE_TAG, VALUE_TAG, ZERO_ATTRIBUTES);
+        handler.startElement("", BASE_64_TAG, BASE_64_TAG, ZERO_ATTRIBUTES);
+
+        Base64.Encoder encoder = new Base64.SAXEncoder(new char[1024], 0, null,
+                handler);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                encoder.write(buffer, 0, read);
+            }
+            encoder.flush();
+        } catch (Base64.SAXIOException ex) {
+            throw ex.getSAXException();
+        } catch (IOException ex) {
+            throw new SAXException(ex);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ex) {
+                }
+            }
+        }
+
+        handler.endElement("", BASE_64_TAG, BASE_64_TAG);
+        handler.endElement("", VALUE_TAG, VALUE_TAG);
+    }
+}
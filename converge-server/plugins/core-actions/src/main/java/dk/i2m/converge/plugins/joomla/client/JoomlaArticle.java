@@ -0,0 +1,122 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.plugins.joomla.client;
+
+import java.util.Date;
+
+/**
+ * Article to upload to a Joomla instance. See
+ * {@link JoomlaConnection#newArticle(java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, boolean, java.lang.String, java.lang.String, java.lang.String, java.util.Date, java.util.Date)}
+ * for a description of the fields.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class JoomlaArticle {
+
+    private String foreignId;
+
+    private String title;
+
+    private String intro;
+
+    private String story;
+
+    private String author;
+
+    private String categoryId;
+
+    private boolean frontPage;
+
+    private String displayOrder;
+
+    private String keywords;
+
+    private String description;
+
+    private Date publish;
+
+    private Date expire;
+
+    /**
+     * Creates a new instance of {@link JoomlaArticle}.
+     */
+    public JoomlaArticle(String foreignId, String title, String intro,
+            String story, String author, String categoryId, boolean frontPage,
+            String displayOrder, String keywords, String description,
+            Date publish, Date expire) {
+        this.foreignId = foreignId;
+        this.title = title;
+        this.intro = intro;
+        this.story = story;
+        this.author = author;
+        this.categoryId = categoryId;
+        this.frontPage = frontPage;
+        this.displayOrder = displayOrder;
+        this.keywords = keywords;
+        this.description = description;
+        this.publish = publish;
+        this.expire = expire;
+    }
+
+    public String getForeignId() {
+        return foreignId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getIntro() {
+        return intro;
+    }
+
+    public String getStory() {
+        return story;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getCategoryId() {
+        return categoryId;
+    }
+
+    public boolean isFrontPage() {
+        return frontPage;
+    }
+
+    public String getDisplayOrder() {
+        return displayOrder;
+    }
+
+    public String getKeywords() {
+        return keywords;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Date getPublish() {
+        return publish;
+    }
+
+    public Date getExpire() {
+        return expire;
+    }
+}
@@ -16,18 +16,32 @@
  */
 package dk.i2m.converge.plugins.joomla.client;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.*;
 import org.apache.xmlrpc.client.TimingOutCallback.TimeoutException;
+import org.apache.xmlrpc.common.TypeFactoryImpl;
+import org.apache.xmlrpc.common.XmlRpcController;
+import org.apache.xmlrpc.common.XmlRpcStreamConfig;
+import org.apache.xmlrpc.serializer.TypeSerializer;
+import org.xml.sax.SAXException;
 
 /**
  * Connection to a Joomla instances with the XML-RPC Plug-in installed.
@@ -60,6 +74,61 @@ public class JoomlaConnection {
     /** XML RPC method for uploading a photo. */
     private static final String XMLRPC_METHOD_NEW_MEDIA = "converge.newMedia";
 
+    /** XML RPC method for executing several calls in a single request. */
+    private static final String XMLRPC_METHOD_MULTICALL = "system.multicall";
+
+    /** XML RPC method for obtaining the methods supported by the service. */
+    private static final String XMLRPC_METHOD_LIST_METHODS = "system.listMethods";
+
+    /** Additional time (in seconds) allowed for uploading a media file. */
+    private static final int UPLOAD_TIMEOUT = 120;
+
+    /** Maximum number of pooled HTTP connections to each XML-RPC service. */
+    private static final int MAX_CONNECTIONS = 4;
+
+    /** Maximum number of pooled HTTP connections to all XML-RPC services. */
+    private static final int MAX_TOTAL_CONNECTIONS = 20;
+
+    /** Maximum number of XML-RPC clients cached. */
+    private static final int MAX_CLIENTS = 32;
+
+    /**
+     * HTTP connections shared by the XML-RPC clients, so that the number of
+     * open connections is bounded however many clients have been created.
+     */
+    private static final MultiThreadedHttpConnectionManager CONNECTIONS = new MultiThreadedHttpConnectionManager();
+
+    static {
+        CONNECTIONS.getParams().setDefaultMaxConnectionsPerHost(MAX_CONNECTIONS);
+        CONNECTIONS.getParams().setMaxTotalConnections(MAX_TOTAL_CONNECTIONS);
+    }
+
+    /**
+     * XML-RPC clients cached for each XML-RPC service and timeout setting.
+     * The least recently used client is discarded when the cache is full.
+     */
+    private static final Map<String, XmlRpcClient> CLIENTS = new LinkedHashMap<String, XmlRpcClient>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XmlRpcClient> eldest) {
+            if (size() > MAX_CLIENTS) {
+                // Connections to services no longer used are not kept open
+                CONNECTIONS.closeIdleConnections(0);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /** XML-RPC services and whether they support {@code system.multicall}. */
+    private static final Map<String, Boolean> MULTICALL = new HashMap<String, Boolean>();
+
+    /**
+     * XML-RPC services that rejected requests without a content length, e.g.
+     * PHP behind FastCGI.
+     */
+    private static final Map<String, Boolean> CONTENT_LENGTH_REQUIRED = new HashMap<String, Boolean>();
+
     private String url;
 
     private String username;
@@ -263,45 +332,55 @@ public class JoomlaConnection {
      * @throws JoomlaException
      */
     public Integer newArticle(String foreignId, String title, String intro, String story, String author, String categoryId, boolean frontPage, String displayOrder, String keywords, String description, Date publish, Date expire) throws JoomlaException {
-        logger.log(Level.INFO, "Executing {0} at {1} ", new Object[]{XMLRPC_METHOD_NEW_ARTICLE, url});
-        try {
-            TimingOutCallback callback = new TimingOutCallback(getTimeout() * 1000);
-            XmlRpcClient client = getXmlRpcClient();
+        JoomlaArticle article = new JoomlaArticle(foreignId, title, intro, story, author, categoryId, frontPage, displayOrder, keywords, description, publish, expire);
+        return newArticles(Collections.singletonList(article)).get(0).getValue();
+    }
 
-            String showOnFrontPage = (frontPage ? "true" : "false");
+    /**
+     * Uploads new articles to the configured Joomla instance. The articles
+     * are uploaded in a single request if the Joomla instance supports
+     * {@code system.multicall}.
+     *
+     * @param articles
+     *          Articles to upload
+     * @return Unique identifiers of the articles in Joomla, in the same order
+     *         as the articles
+     */
+    public List<JoomlaResult<Integer>> newArticles(List<JoomlaArticle> articles) {
+        List<Object[]> calls = new ArrayList<Object[]>();
+        for (JoomlaArticle article : articles) {
+            String showOnFrontPage = (article.isFrontPage() ? "true" : "false");
             Object publishTime = "0";
             Object expireTime = "0";
 
-            if (publish != null) {
-                publishTime = publish;
+            if (article.getPublish() != null) {
+                publishTime = article.getPublish();
             }
 
-            if (expire != null) {
-                expireTime = expire;
+            if (article.getExpire() != null) {
+                expireTime = article.getExpire();
             }
 
-            Object[] params = new Object[]{username, password, foreignId, title, intro, story, author, categoryId, showOnFrontPage, displayOrder, keywords, description, publishTime, expireTime};
-
-            client.executeAsync(XMLRPC_METHOD_NEW_ARTICLE, params, callback);
+            calls.add(new Object[]{username, password, article.getForeignId(), article.getTitle(), article.getIntro(), article.getStory(), article.getAuthor(), article.getCategoryId(), showOnFrontPage, article.getDisplayOrder(), article.getKeywords(), article.getDescription(), publishTime, expireTime});
+        }
 
-            String articleId = (String) callback.waitForResponse();
+        List<JoomlaResult<Integer>> results = new ArrayList<JoomlaResult<Integer>>();
+        for (JoomlaResult<Object> result : executeBatch(XMLRPC_METHOD_NEW_ARTICLE, calls, false, getTimeout())) {
+            try {
+                String articleId = (String) result.getValue();
 
-            if (articleId != null && !articleId.trim().isEmpty()) {
-                return Integer.valueOf(articleId);
-            } else {
-                throw new JoomlaException("Article was not uploaded to Joomla. Joomla ID was not received from XML-RPC service");
+                if (articleId != null && !articleId.trim().isEmpty()) {
+                    results.add(JoomlaResult.success(Integer.valueOf(articleId)));
+                } else {
+                    results.add(JoomlaResult.<Integer>failure(new JoomlaException("Article was not uploaded to Joomla. Joomla ID was not received from XML-RPC service")));
+                }
+            } catch (JoomlaException ex) {
+                results.add(JoomlaResult.<Integer>failure(ex));
+            } catch (RuntimeException ex) {
+                results.add(JoomlaResult.<Integer>failure(new InvalidResponseException(ex)));
             }
-        } catch (TimeoutException ex) {
-            throw new JoomlaException(ex);
-        } catch (MalformedURLException ex) {
-            throw new JoomlaException(ex);
-        } catch (XmlRpcException ex) {
-            throw new JoomlaException(ex);
-        } catch (IOException ex) {
-            throw new JoomlaException(ex);
-        } catch (Throwable t) {
-            throw new JoomlaException(t);
         }
+        return results;
     }
 
     /**
@@ -311,27 +390,24 @@ public class JoomlaConnection {
      *          Unique identifier of the article outside of Joomla
      */
     public void deleteArticle(String foreignId) throws JoomlaException {
-        logger.log(Level.INFO, "Executing {0} at {1} ", new Object[]{XMLRPC_METHOD_DELETE_ARTICLE, url});
-        try {
-            TimingOutCallback callback = new TimingOutCallback(getTimeout() * 1000);
-            XmlRpcClient client = getXmlRpcClient();
-            Object[] params = new Object[]{username, password, foreignId};
-
-            client.executeAsync(XMLRPC_METHOD_DELETE_ARTICLE, params, callback);
-            //String status = (String) client.execute(XMLRPC_METHOD_DELETE_ARTICLE, params);
+        deleteArticles(Collections.singletonList(foreignId)).get(0).getValue();
+    }
 
-            String status = (String) callback.waitForResponse();
-        } catch (TimeoutException ex) {
-            throw new JoomlaException(ex);
-        } catch (MalformedURLException ex) {
-            throw new JoomlaException(ex);
-        } catch (XmlRpcException ex) {
-            throw new JoomlaException(ex);
-        } catch (IOException ex) {
-            throw new JoomlaException(ex);
-        } catch (Throwable t) {
-            throw new JoomlaException(t);
+    /**
+     * Deletes articles from the Joomla installation. The articles are deleted
+     * in a single request if the Joomla instance supports
+     * {@code system.multicall}.
+     *
+     * @param foreignIds
+     *          Unique identifiers of the articles outside of Joomla
+     * @return Results of the deletions, in the same order as the identifiers
+     */
+    public List<JoomlaResult<Object>> deleteArticles(List<String> foreignIds) {
+        List<Object[]> calls = new ArrayList<Object[]>();
+        for (String foreignId : foreignIds) {
+            calls.add(new Object[]{username, password, foreignId});
         }
+        return executeBatch(XMLRPC_METHOD_DELETE_ARTICLE, calls, false, getTimeout());
     }
 
     /**
@@ -380,47 +456,243 @@ public class JoomlaConnection {
     }
 
     /**
-     * Uploads a media file to the Joomla instance.
+     * Uploads a media file to the Joomla instance. The file is streamed to the
+     * Joomla instance without being read into memory.
      *
      * @param subfolder
      *          Subfolder to upload the file
      * @param filename
      *          Name of the file to upload
-     * @param filedata
-     *          Data contained in the file
+     * @param file
+     *          File to upload
      * @return Relative URL of the uploaded file
      * @throws JoomlaException
      *          If the file could not be uploaded
      */
-    public String uploadMediaFile(String subfolder, String filename, byte[] filedata) throws JoomlaException {
-        try {
-            logger.log(Level.INFO, "Uploading {0}", new Object[]{filename});
-            TimingOutCallback callback = new TimingOutCallback((getTimeout() + 120) * 1000);
-            XmlRpcClient client = getXmlRpcClient();
+    public String uploadMediaFile(String subfolder, String filename, File file) throws JoomlaException {
+        JoomlaMediaFile mediaFile = new JoomlaMediaFile(subfolder, filename, file);
+        return uploadMediaFiles(Collections.singletonList(mediaFile)).get(0).getValue();
+    }
 
-            Object[] params = new Object[]{username, password, subfolder, filename, filedata};
+    /**
+     * Uploads media files to the Joomla instance. The files are uploaded in a
+     * single request if the Joomla instance supports {@code system.multicall}.
+     * The files are streamed to the Joomla instance without being read into
+     * memory, unless the Joomla instance requires the content length of
+     * requests.
+     *
+     * @param files
+     *          Files to upload
+     * @return Relative URLs of the uploaded files, in the same order as the
+     *         files
+     */
+    public List<JoomlaResult<String>> uploadMediaFiles(List<JoomlaMediaFile> files) {
+        List<Object[]> calls = new ArrayList<Object[]>();
+        for (JoomlaMediaFile file : files) {
+            logger.log(Level.INFO, "Uploading {0}", new Object[]{file.getFilename()});
+            calls.add(new Object[]{username, password, file.getSubfolder(), file.getFilename(), file.getFile()});
+        }
 
-            client.executeAsync(XMLRPC_METHOD_NEW_MEDIA, params, callback);
-            //String location = (String) client.execute(XMLRPC_METHOD_NEW_MEDIA, params);
+        List<JoomlaResult<String>> results = new ArrayList<JoomlaResult<String>>();
+        List<JoomlaResult<Object>> responses = executeBatch(XMLRPC_METHOD_NEW_MEDIA, calls, true, getTimeout() + UPLOAD_TIMEOUT);
+        for (int i = 0; i < responses.size(); i++) {
+            try {
+                String location = (String) responses.get(i).getValue();
+                logger.log(Level.INFO, "Media file #{0} uploaded to {1}", new Object[]{files.get(i).getFilename(), location});
+                results.add(JoomlaResult.success(location));
+            } catch (JoomlaException ex) {
+                results.add(JoomlaResult.<String>failure(ex));
+            } catch (RuntimeException ex) {
+                results.add(JoomlaResult.<String>failure(new InvalidResponseException(ex)));
+            }
+        }
+        return results;
+    }
 
-            String location = (String) callback.waitForResponse();
+    /**
+     * Determines if the Joomla instance supports executing several calls in
+     * a single request using {@code system.multicall}. The outcome is cached
+     * for each Joomla instance.
+     *
+     * @return {@code true} if {@code system.multicall} is supported,
+     *         otherwise {@code false}
+     */
+    public boolean isMulticallSupported() {
+        synchronized (MULTICALL) {
+            if (MULTICALL.containsKey(getUrl())) {
+                return MULTICALL.get(getUrl());
+            }
+        }
 
-            logger.log(Level.INFO, "Media file #{0} uploaded to {1}", new Object[]{filename, location});
-            return location;
-        } catch (TimeoutException ex) {
-            throw new JoomlaException(ex);
-        } catch (XmlRpcException ex) {
-            throw new JoomlaException(ex);
-        } catch (IOException ex) {
-            throw new JoomlaException(ex);
+        try {
+            Object[] methods = (Object[]) execute(XMLRPC_METHOD_LIST_METHODS, new Object[]{}, false, getTimeout());
+            boolean supported = Arrays.asList(methods).contains(XMLRPC_METHOD_MULTICALL);
+            setMulticallSupported(supported);
+            return supported;
         } catch (Throwable t) {
-            throw new JoomlaException(t);
+            if (isFault(t)) {
+                // The Joomla instance does not support introspection
+                setMulticallSupported(false);
+                return false;
+            }
+            logger.log(Level.FINE, "Could not determine if " + XMLRPC_METHOD_MULTICALL + " is supported", t);
+            return false;
+        }
+    }
+
+    private void setMulticallSupported(boolean supported) {
+        logger.log(Level.INFO, "{0} supported at {1}: {2}", new Object[]{XMLRPC_METHOD_MULTICALL, getUrl(), supported});
+        synchronized (MULTICALL) {
+            MULTICALL.put(getUrl(), supported);
+        }
+    }
+
+    /**
+     * Executes a batch of calls to the same method. The calls are executed in
+     * a single {@code system.multicall} request if supported by the Joomla
+     * instance, otherwise one at a time.
+     *
+     * @param method
+     *          Method to execute
+     * @param calls
+     *          Parameters of each call
+     * @param streaming
+     *          Should the request be streamed to the Joomla instance
+     * @param timeout
+     *          Timeout (in seconds) of each call
+     * @return Results of the calls, in the same order as the calls
+     */
+    private List<JoomlaResult<Object>> executeBatch(String method, List<Object[]> calls, boolean streaming, int timeout) {
+        logger.log(Level.INFO, "Executing {0} x {1} at {2} ", new Object[]{method, calls.size(), url});
+        List<JoomlaResult<Object>> results = new ArrayList<JoomlaResult<Object>>();
+
+        if (calls.size() > 1 && isMulticallSupported()) {
+            Object[] requests = new Object[calls.size()];
+            for (int i = 0; i < calls.size(); i++) {
+                Map<String, Object> request = new HashMap<String, Object>();
+                request.put("methodName", method);
+                request.put("params", calls.get(i));
+                requests[i] = request;
+            }
+
+            try {
+                Object[] responses = (Object[]) execute(XMLRPC_METHOD_MULTICALL, new Object[]{requests}, streaming, timeout * calls.size());
+
+                if (responses == null || responses.length != calls.size()) {
+                    throw new InvalidResponseException("Unexpected number of responses from " + XMLRPC_METHOD_MULTICALL);
+                }
+
+                for (Object response : responses) {
+                    if (response instanceof Object[] && ((Object[]) response).length > 0) {
+                        // Successful calls are wrapped in an array
+                        results.add(JoomlaResult.success(((Object[]) response)[0]));
+                    } else if (response instanceof Map) {
+                        results.add(JoomlaResult.failure(new JoomlaException(String.valueOf(((Map) response).get("faultString")))));
+                    } else {
+                        results.add(JoomlaResult.failure(new InvalidResponseException()));
+                    }
+                }
+                return results;
+            } catch (Throwable t) {
+                if (isFault(t)) {
+                    // Rejected before any call was executed, retried one at a time
+                    logger.log(Level.WARNING, "{0} failed at {1}. {2}", new Object[]{XMLRPC_METHOD_MULTICALL, url, t.getMessage()});
+                    setMulticallSupported(false);
+                } else {
+                    JoomlaException error = toJoomlaException(t);
+                    for (int i = 0; i < calls.size(); i++) {
+                        results.add(JoomlaResult.<Object>failure(error));
+                    }
+                    return results;
+                }
+            }
+        }
+
+        for (Object[] params : calls) {
+            try {
+                results.add(JoomlaResult.success(execute(method, params, streaming, timeout)));
+            } catch (Throwable t) {
+                results.add(JoomlaResult.failure(toJoomlaException(t)));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Executes a call on the XML-RPC service.
+     *
+     * @param method
+     *          Method to execute
+     * @param params
+     *          Parameters of the call
+     * @param streaming
+     *          Should the request be streamed to the Joomla instance
+     * @param timeout
+     *          Timeout (in seconds) of the call
+     * @return Response of the call
+     * @throws Throwable
+     *          If the call failed or timed out
+     */
+    private Object execute(String method, Object[] params, boolean streaming, int timeout) throws Throwable {
+        XmlRpcClient client = getXmlRpcClient();
+
+        if (streaming && !isContentLengthRequired()) {
+            // Requests are written directly to the connection with chunked
+            // encoding instead of being buffered to obtain the content length
+            XmlRpcClientConfigImpl config = ((XmlRpcClientConfigImpl) client.getClientConfig()).cloneMe();
+            config.setEnabledForExtensions(true);
+            config.setContentLengthOptional(true);
+            TimingOutCallback callback = new TimingOutCallback(timeout * 1000);
+            client.executeAsync(config, method, params, callback);
+            try {
+                return callback.waitForResponse();
+            } catch (XmlRpcHttpTransportException ex) {
+                if (ex.getStatusCode() != HttpStatus.SC_LENGTH_REQUIRED) {
+                    throw ex;
+                }
+                // Rejected before the request was processed, sent again
+                // buffered with its content length
+                logger.log(Level.WARNING, "{0} requires the content length of requests. Uploads will be buffered in memory", url);
+                synchronized (CONTENT_LENGTH_REQUIRED) {
+                    CONTENT_LENGTH_REQUIRED.put(getUrl(), Boolean.TRUE);
+                }
+            }
+        }
+
+        TimingOutCallback callback = new TimingOutCallback(timeout * 1000);
+        client.executeAsync(method, params, callback);
+        return callback.waitForResponse();
+    }
+
+    private boolean isContentLengthRequired() {
+        synchronized (CONTENT_LENGTH_REQUIRED) {
+            return CONTENT_LENGTH_REQUIRED.containsKey(getUrl());
+        }
+    }
+
+    /**
+     * Determines if a call failed because the XML-RPC service returned a
+     * fault, rather than because of a transport error.
+     */
+    private boolean isFault(Throwable t) {
+        return t instanceof XmlRpcException && ((XmlRpcException) t).code != 0;
+    }
+
+    private JoomlaException toJoomlaException(Throwable t) {
+        if (t instanceof JoomlaException) {
+            return (JoomlaException) t;
+        } else if (t instanceof TimeoutException) {
+            return new JoomlaTimeoutException(t);
+        } else {
+            return new JoomlaException(t);
         }
     }
 
     /**
      * Obtains the XmlRpcClient used for communicating with the
-     * XML-RPC service.
+     * XML-RPC service. A client is cached for each XML-RPC service and
+     * timeout setting. The clients share a pool of HTTP connections that
+     * are reused between calls.
      * 
      * @return XmlRpcClient used for communicating with the 
      *         XML-RPC service
@@ -428,15 +700,47 @@ public class JoomlaConnection {
      *          If the XML-RPC service URL is malformed
      */
     private XmlRpcClient getXmlRpcClient() throws MalformedURLException {
-        XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
-        config.setServerURL(new URL(getUrl()));
-        config.setConnectionTimeout(getTimeout() * 1000);
-        config.setReplyTimeout(getReplyTimeout() * 1000);
+        String key = getUrl() + " " + getTimeout() + " " + getReplyTimeout();
+
+        synchronized (CLIENTS) {
+            XmlRpcClient client = CLIENTS.get(key);
+
+            if (client == null) {
+                XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
+                config.setServerURL(new URL(getUrl()));
+                config.setConnectionTimeout(getTimeout() * 1000);
+                config.setReplyTimeout(getReplyTimeout() * 1000);
 
-        XmlRpcClient client = new XmlRpcClient();
-        client.setTransportFactory(new XmlRpcCommonsTransportFactory(client));
-        client.setConfig(config);
+                client = new XmlRpcClient();
+                XmlRpcCommonsTransportFactory transportFactory = new XmlRpcCommonsTransportFactory(client);
+                transportFactory.setHttpClient(new HttpClient(CONNECTIONS));
+                client.setTransportFactory(transportFactory);
+                client.setTypeFactory(new JoomlaTypeFactory(client));
+                client.setConfig(config);
 
-        return client;
+                CLIENTS.put(key, client);
+            }
+
+            return client;
+        }
+    }
+
+    /**
+     * {@link TypeFactoryImpl} streaming {@link File}s as {@code base64}
+     * values.
+     */
+    private static class JoomlaTypeFactory extends TypeFactoryImpl {
+
+        JoomlaTypeFactory(XmlRpcController controller) {
+            super(controller);
+        }
+
+        @Override
+        public TypeSerializer getSerializer(XmlRpcStreamConfig config, Object object) throws SAXException {
+            if (object instanceof File) {
+                return new FileSerializer();
+            }
+            return super.getSerializer(config, object);
+        }
     }
 }
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.plugins.joomla.client;
+
+import java.io.File;
+
+/**
+ * Media file to upload to a Joomla instance. The content of the file is
+ * streamed from disk when the file is uploaded.
+ *
+ * @author Allan Lykke Christensen
+ */
+public class JoomlaMediaFile {
+
+    private String subfolder;
+
+    private String filename;
+
+    private File file;
+
+    /**
+     * Creates a new instance of {@link JoomlaMediaFile}.
+     *
+     * @param subfolder
+     *          Subfolder to upload the file
+     * @param filename
+     *          Name of the file on the Joomla instance
+     * @param file
+     *          File to upload
+     */
+    public JoomlaMediaFile(String subfolder, String filename, File file) {
+        this.subfolder = subfolder;
+        this.filename = filename;
+        this.file = file;
+    }
+
+    /**
+     * Gets the subfolder to upload the file.
+     *
+     * @return Subfolder to upload the file
+     */
+    public String getSubfolder() {
+        return subfolder;
+    }
+
+    /**
+     * Gets the name of the file on the Joomla instance.
+     *
+     * @return Name of the file on the Joomla instance
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Gets the file to upload.
+     *
+     * @return File to upload
+     */
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (C) 2012 Interactive Media Management
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.i2m.converge.plugins.joomla.client;
+
+/**
+ * Result of a single call in a batch sent to a Joomla instance. Each call in
+ * a batch succeeds or fails independently of the other calls.
+ *
+ * @param <T> Type of the value returned by the call
+ * @author Allan Lykke Christensen
+ */
+public class JoomlaResult<T> {
+
+    private T value;
+
+    private JoomlaException error;
+
+    private JoomlaResult(T value, JoomlaException error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * Creates the result of a successful call.
+     *
+     * @param <T> Type of the value returned by the call
+     * @param value
+     *          Value returned by the call
+     * @return Result of the successful call
+     */
+    public static <T> JoomlaResult<T> success(T value) {
+        return new JoomlaResult<T>(value, null);
+    }
+
+    /**
+     * Creates the result of a failed call.
+     *
+     * @param <T> Type of the value returned by the call
+     * @param error
+     *          Cause of the failure
+     * @return Result of the failed call
+     */
+    public static <T> JoomlaResult<T> failure(JoomlaException error) {
+        return new JoomlaResult<T>(null, error);
+    }
+
+    /**
+     * Determines if the call was successful.
+     *
+     * @return {@code true} if the call was successful, otherwise
+     *         {@code false}
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * Gets the value returned by the call.
+     *
+     * @return Value returned by the call
+     * @throws JoomlaException
+     *          If the call failed
+     */
+    public T getValue() throws JoomlaException {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the cause of the failure.
+     *
+     * @return Cause of the failure, or {@code null} if the call was
+     *         successful
+     */
+    public JoomlaException getError() {
+        return error;
+    }
+}
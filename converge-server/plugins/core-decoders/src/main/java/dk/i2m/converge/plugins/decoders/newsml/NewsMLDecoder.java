@@ -340,13 +340,12 @@ public class NewsMLDecoder implements NewswireDecoder {
 
             // Get list of NewsML files to process
             File[] xmlFilesToProcess = newswireDirectory.listFiles(xmlFiles);
+            Set<String> processed = findProcessed(xmlFilesToProcess);
 
             for (File file : xmlFilesToProcess) {
                 boolean fileMissing = false;
-                List<NewswireItem> results = pluginCtx.
-                        findNewswireItemsByExternalId(file.getName());
 
-                if (results.isEmpty()) {
+                if (!processed.contains(file.getName())) {
                     List<File> moveOrDelete = new ArrayList<File>();
                     NewswireItem newswireItem = new NewswireItem();
                     newswireItem.setExternalId(file.getName());
@@ -719,6 +718,20 @@ public class NewsMLDecoder implements NewswireDecoder {
         }
     }
 
+    /**
+     * Finds the files that have already been processed in a single lookup.
+     *
+     * @param files Files to check
+     * @return {@link Set} of the names of the files already processed
+     */
+    private Set<String> findProcessed(File[] files) {
+        List<String> names = new ArrayList<String>();
+        for (File file : files) {
+            names.add(file.getName());
+        }
+        return pluginCtx.findNewswireItemExternalIds(newswireService, names);
+    }
+
     /**
      * Post processing of a {@link File}. If the processed files were set to
      * be moved, they will be relocated to the processed location. If they were
@@ -197,8 +197,18 @@ public class NewsMLDecoder implements NewswireDecoder {
         File[] xmlFilesToProcess = getFilesToProcess();
         int pending = xmlFilesToProcess.length;
         log(LogSeverity.INFO, "{0} NewsML files ready for processing", pending);
+
+        List<String> names = new ArrayList<String>();
         for (File file : xmlFilesToProcess) {
-            processNewswireFile(file);
+            names.add(file.getName());
+        }
+        Set<String> processed = pluginCtx.findNewswireItemExternalIds(
+                this.newswireService, names);
+
+        for (File file : xmlFilesToProcess) {
+            if (!processed.contains(file.getName())) {
+                processNewswireFile(file);
+            }
         }
         log(LogSeverity.INFO, "{0} NewsML files processed", pending);
     }
@@ -209,14 +219,6 @@ public class NewsMLDecoder implements NewswireDecoder {
      * @param file Newswire file to process
      */
     private void processNewswireFile(File file) {
-
-        List<NewswireItem> existing =
-                pluginCtx.findNewswireItemsByExternalId(file.getName());
-        if (!existing.isEmpty()) {
-            // Already processed
-            return;
-        }
-
         NewswireItem item = new NewswireItem();
         item.setExternalId(file.getName());
         item.setNewswireService(this.newswireService);
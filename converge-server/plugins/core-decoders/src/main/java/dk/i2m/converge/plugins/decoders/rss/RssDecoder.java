@@ -21,7 +21,6 @@ import com.sun.syndication.feed.synd.SyndFeed;
 import com.sun.syndication.io.FeedException;
 import com.sun.syndication.io.SyndFeedInput;
 import com.sun.syndication.io.XmlReader;
-import dk.i2m.converge.core.DataExistsException;
 import dk.i2m.converge.core.EnrichException;
 import dk.i2m.converge.core.content.ContentTag;
 import dk.i2m.converge.core.logging.LogSeverity;
@@ -33,16 +32,27 @@ import dk.i2m.converge.core.plugin.NewswireDecoder;
 import dk.i2m.converge.core.plugin.PluginContext;
 import dk.i2m.converge.core.search.SearchEngineIndexingException;
 import dk.i2m.converge.core.utils.StringUtils;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Newswire decoder for RSS feeds. The decoder has a single property, the
- * {@link RssDecoder#URL} of the RSS feed.
+ * {@link RssDecoder#URL} of the RSS feed. The feed is requested with the
+ * {@code ETag} and {@code Last-Modified} validators of the previous fetch. An
+ * unchanged feed is skipped without being downloaded, and a feed with the same
+ * content as the previous fetch is skipped without its entries being
+ * processed.
  *
  * @author Allan Lykke Christensen
  */
@@ -60,6 +70,9 @@ public class RssDecoder implements NewswireDecoder {
     /** Number of seconds to wait for the feed to be downloaded. */
     public static final int READ_TIMEOUT = 60 * 3;
 
+    /** Size of the buffer used for reading the rest of the feed. */
+    private static final int BUFFER_SIZE = 8192;
+
     private Map<String, String> availableProperties = null;
 
     private ResourceBundle bundle = ResourceBundle.getBundle(
@@ -102,23 +115,89 @@ public class RssDecoder implements NewswireDecoder {
         int duplicates = 0;
         int newItems = 0;
 
+        HttpURLConnection httpConnection = null;
         try {
             URL feedSource = new URL(url);
             URLConnection feedConnection = feedSource.openConnection();
             feedConnection.setConnectTimeout(CONNECTION_TIMEOUT * 1000);
             feedConnection.setReadTimeout(READ_TIMEOUT * 1000);
+            feedConnection.setRequestProperty("Accept-Encoding", "gzip");
+
+            if (feedConnection instanceof HttpURLConnection) {
+                httpConnection = (HttpURLConnection) feedConnection;
+                if (newswire.getLastFetchETag() != null) {
+                    httpConnection.setRequestProperty("If-None-Match",
+                            newswire.getLastFetchETag());
+                }
+                if (newswire.getLastFetchModified() != null) {
+                    httpConnection.setRequestProperty("If-Modified-Since",
+                            newswire.getLastFetchModified());
+                }
+
+                if (httpConnection.getResponseCode()
+                        == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    ctx.log(LogSeverity.INFO, "{0} has not been modified",
+                            new Object[]{newswire.getSource()},
+                            this.newswireService, this.newswireService.getId());
+                    return;
+                }
+            }
+
+            // The feed is parsed as it is downloaded and the checksum of the
+            // content is calculated along the way
+            SyndFeed feed;
+            String checksum;
+            InputStream in = open(feedConnection);
+            try {
+                DigestInputStream content = new DigestInputStream(in,
+                        MessageDigest.getInstance("MD5"));
+                InputStream feedContent = new FilterInputStream(content) {
+
+                    @Override
+                    public void close() {
+                        // The rest of the content is read after parsing
+                    }
+                };
+                XmlReader reader = httpConnection == null
+                        || feedConnection.getContentType() == null
+                        ? new XmlReader(feedContent)
+                        : new XmlReader(feedContent,
+                        feedConnection.getContentType());
+                SyndFeedInput input = new SyndFeedInput();
+                feed = input.build(reader);
+                skip(content);
+                checksum = toHex(content.getMessageDigest().digest());
+            } finally {
+                in.close();
+            }
+
+            if (checksum.equals(newswire.getLastFetchChecksum())) {
+                ctx.log(LogSeverity.INFO, "{0} has not been modified",
+                        new Object[]{newswire.getSource()},
+                        this.newswireService, this.newswireService.getId());
+                storeValidators(newswire, feedConnection, checksum);
+                return;
+            }
+
+            List<SyndEntry> entries = (List<SyndEntry>) feed.getEntries();
 
-            SyndFeedInput input = new SyndFeedInput();
-            SyndFeed feed = input.build(new XmlReader(feedConnection));
+            List<String> externalIds = new ArrayList<String>();
+            for (SyndEntry entry : entries) {
+                externalIds.add(entry.getUri());
+            }
+            Set<String> existing = new HashSet<String>(
+                    ctx.findNewswireItemExternalIds(newswire, externalIds));
 
-            for (SyndEntry entry : (List<SyndEntry>) feed.getEntries()) {
-                try {
-                    create(entry, newswire);
-                    newItems++;
-                } catch (DataExistsException dee) {
+            for (SyndEntry entry : entries) {
+                if (entry.getUri() != null && !existing.add(entry.getUri())) {
                     duplicates++;
+                    continue;
                 }
+                create(entry, newswire);
+                newItems++;
             }
+
+            storeValidators(newswire, feedConnection, checksum);
         } catch (MalformedURLException ex) {
             throw new NewswireDecoderException(ex);
         } catch (IllegalArgumentException ex) {
@@ -127,6 +206,12 @@ public class RssDecoder implements NewswireDecoder {
             throw new NewswireDecoderException(ex);
         } catch (IOException ex) {
             throw new NewswireDecoderException(ex);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new NewswireDecoderException(ex);
+        } finally {
+            if (httpConnection != null) {
+                httpConnection.disconnect();
+            }
         }
 
         ctx.log(LogSeverity.INFO,
@@ -206,47 +291,102 @@ public class RssDecoder implements NewswireDecoder {
         return bundle;
     }
 
-    private void create(SyndEntry entry, NewswireService source) throws
-            DataExistsException {
-        List<NewswireItem> results =
-                pluginContext.findNewswireItemsByExternalId(entry.getUri());
-
-        if (results.isEmpty()) {
-
-            NewswireItem item = new NewswireItem();
-            item.setExternalId(entry.getUri());
-            item.setTitle(StringUtils.stripHtml(entry.getTitle()));
-            item.setSummary(StringUtils.stripHtml(entry.getDescription().
-                    getValue()));
-            item.setUrl(entry.getLink());
-            item.setNewswireService(source);
-            item.setAuthor(entry.getAuthor());
-            Calendar now = Calendar.getInstance();
-            item.setDate(now);
-            item.setUpdated(now);
-
-            if (entry.getPublishedDate() != null) {
-                item.getDate().setTime(entry.getPublishedDate());
-                item.getUpdated().setTime(entry.getPublishedDate());
+    /**
+     * Opens the content of the feed. The content is decompressed if the
+     * server returned it compressed.
+     *
+     * @param connection Connection to the feed
+     * @return Content of the feed
+     * @throws IOException If the content could not be opened
+     */
+    private InputStream open(URLConnection connection) throws IOException {
+        InputStream in = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+            try {
+                in = new GZIPInputStream(in);
+            } catch (IOException ex) {
+                in.close();
+                throw ex;
             }
+        }
+        return in;
+    }
 
-            if (entry.getUpdatedDate() != null) {
-                item.getUpdated().setTime(entry.getUpdatedDate());
-            }
+    /**
+     * Reads the rest of the content of the feed. The parser may stop before
+     * the end of the content, e.g. at trailing whitespace, which must still
+     * be included in the checksum.
+     *
+     * @param in Content of the feed
+     * @throws IOException If the content could not be read
+     */
+    private void skip(InputStream in) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (in.read(buffer) != -1) {
+            // The content is only read for the checksum
+        }
+    }
 
-            if (useOpenCalais) {
-                enrich(pluginContext, item);
-            }
-            NewswireItem nwi = pluginContext.createNewswireItem(item);
-            try {
-                pluginContext.index(nwi);
-            } catch (SearchEngineIndexingException ex) {
-                pluginContext.log(LogSeverity.SEVERE, ex.getMessage(),
-                        this.newswireService, this.newswireService.getId());
-            }
-        } else {
-            throw new DataExistsException("NewswireItem with external id ["
-                    + entry.getUri() + "] already downloaded");
+    /**
+     * Converts the MD5 checksum of the content of the feed to hexadecimal.
+     *
+     * @param digest MD5 checksum of the content
+     * @return Hexadecimal MD5 checksum of the content
+     */
+    private String toHex(byte[] digest) {
+        StringBuilder checksum = new StringBuilder();
+        for (byte b : digest) {
+            checksum.append(String.format("%02x", b));
+        }
+        return checksum.toString();
+    }
+
+    /**
+     * Stores the validators of a successful fetch on the
+     * {@link NewswireService} for use in the next conditional request.
+     *
+     * @param newswire   {@link NewswireService} that was fetched
+     * @param connection Connection used for the fetch
+     * @param checksum   Checksum of the fetched content
+     */
+    private void storeValidators(NewswireService newswire,
+            URLConnection connection, String checksum) {
+        newswire.setLastFetchETag(connection.getHeaderField("ETag"));
+        newswire.setLastFetchModified(connection.getHeaderField("Last-Modified"));
+        newswire.setLastFetchChecksum(checksum);
+    }
+
+    private void create(SyndEntry entry, NewswireService source) {
+        NewswireItem item = new NewswireItem();
+        item.setExternalId(entry.getUri());
+        item.setTitle(StringUtils.stripHtml(entry.getTitle()));
+        item.setSummary(StringUtils.stripHtml(entry.getDescription().
+                getValue()));
+        item.setUrl(entry.getLink());
+        item.setNewswireService(source);
+        item.setAuthor(entry.getAuthor());
+        Calendar now = Calendar.getInstance();
+        item.setDate(now);
+        item.setUpdated(now);
+
+        if (entry.getPublishedDate() != null) {
+            item.getDate().setTime(entry.getPublishedDate());
+            item.getUpdated().setTime(entry.getPublishedDate());
+        }
+
+        if (entry.getUpdatedDate() != null) {
+            item.getUpdated().setTime(entry.getUpdatedDate());
+        }
+
+        if (useOpenCalais) {
+            enrich(pluginContext, item);
+        }
+        NewswireItem nwi = pluginContext.createNewswireItem(item);
+        try {
+            pluginContext.index(nwi);
+        } catch (SearchEngineIndexingException ex) {
+            pluginContext.log(LogSeverity.SEVERE, ex.getMessage(),
+                    this.newswireService, this.newswireService.getId());
         }
     }
 
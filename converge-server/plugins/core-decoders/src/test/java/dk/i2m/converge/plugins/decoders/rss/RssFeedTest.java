@@ -22,7 +22,8 @@ import dk.i2m.converge.core.newswire.NewswireItem;
 import dk.i2m.converge.core.newswire.NewswireService;
 import dk.i2m.converge.core.newswire.NewswireServiceProperty;
 import dk.i2m.converge.core.plugin.PluginContext;
-import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import org.easymock.EasyMock;
 import static org.easymock.EasyMock.*;
 import org.easymock.IAnswer;
@@ -61,9 +62,10 @@ public class RssFeedTest {
 
         expectLastCall().andAnswer(voidAnswer).times(1);
 
-        // Expect that it will try to see if the item already exists in the database
-        expect(mockCtx.findNewswireItemsByExternalId(anyObject(String.class))).
-                andReturn(new ArrayList<NewswireItem>()).times(10);
+        // Expect that it will check which items already exist in the database
+        expect(mockCtx.findNewswireItemExternalIds(same(service),
+                anyObject(Collection.class))).
+                andReturn(new HashSet<String>()).times(1);
 
         // Expect that it will create the items in the database
         expect(mockCtx.createNewswireItem(anyObject(NewswireItem.class))).
@@ -26,3 +26,74 @@ CREATE TABLE `news_item_edition_state` (
   `visible` tinyint(11) DEFAULT NULL,
   PRIMARY KEY (`id`)
 );
+
+-- Newswire fetch scheduler
+ALTER TABLE `newswire_service` ADD COLUMN `processing_since` datetime DEFAULT NULL;
+ALTER TABLE `newswire_service` ADD COLUMN `next_fetch` datetime DEFAULT NULL;
+ALTER TABLE `newswire_service` ADD COLUMN `fetch_interval` int(11) DEFAULT '0';
+ALTER TABLE `newswire_service` ADD COLUMN `last_fetch_etag` varchar(255) DEFAULT NULL;
+ALTER TABLE `newswire_service` ADD COLUMN `last_fetch_modified` varchar(255) DEFAULT NULL;
+ALTER TABLE `newswire_service` ADD COLUMN `last_fetch_checksum` varchar(255) DEFAULT NULL;
+
+-- Inbox of the active user
+ALTER TABLE `news_item` ADD INDEX `IDX_news_item_outlet_state` (`outlet_id`,`current_state_id`);
+ALTER TABLE `news_item_actor` ADD INDEX `IDX_news_item_actor_item_user_role` (`news_item_id`,`user_id`,`role_id`);
+
+-- Asynchronous workflow actions
+ALTER TABLE `workflow_step_action` ADD COLUMN `asynchronous` tinyint(1) DEFAULT '0';
+ALTER TABLE `workflow_step_action` ADD COLUMN `execution_timeout` int(11) DEFAULT '0';
+ALTER TABLE `workflow_step_action` ADD COLUMN `max_attempts` int(11) DEFAULT '0';
+
+CREATE TABLE `workflow_step_action_execution` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `workflow_step_action_id` bigint(20) DEFAULT NULL,
+  `news_item_id` bigint(20) DEFAULT NULL,
+  `user_account_id` bigint(20) DEFAULT NULL,
+  `status` varchar(255) DEFAULT NULL,
+  `attempts` int(11) DEFAULT '0',
+  `owner` varchar(255) DEFAULT NULL,
+  `queued` datetime DEFAULT NULL,
+  `started` datetime DEFAULT NULL,
+  `finished` datetime DEFAULT NULL,
+  `next_attempt` datetime DEFAULT NULL,
+  `message` longtext,
+  PRIMARY KEY (`id`),
+  KEY `FK_workflow_step_action_execution_action_id` (`workflow_step_action_id`),
+  KEY `IDX_workflow_step_action_execution_news_item_id` (`news_item_id`),
+  KEY `IDX_workflow_step_action_execution_status` (`status`,`next_attempt`)
+);
+
+-- Durable job queue
+CREATE TABLE `job` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `job_type` varchar(255) DEFAULT NULL,
+  `queue` varchar(255) DEFAULT NULL,
+  `priority` int(11) DEFAULT '4',
+  `deduplication_key` varchar(255) DEFAULT NULL,
+  `active_key` varchar(255) DEFAULT NULL,
+  `owner` varchar(255) DEFAULT NULL,
+  `payload` longtext,
+  `status` varchar(255) DEFAULT NULL,
+  `attempts` int(11) DEFAULT '0',
+  `created` datetime DEFAULT NULL,
+  `queued` datetime DEFAULT NULL,
+  `started` datetime DEFAULT NULL,
+  `finished` datetime DEFAULT NULL,
+  `next_attempt` datetime DEFAULT NULL,
+  `message` longtext,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `UNQ_job_active_key` (`active_key`),
+  KEY `IDX_job_deduplication_key` (`deduplication_key`,`status`),
+  KEY `IDX_job_queue_status` (`queue`,`status`,`priority`),
+  KEY `IDX_job_status` (`status`,`next_attempt`)
+);
+
+-- Snapshots of published editions
+CREATE TABLE `edition_snapshot` (
+  `edition_id` bigint(20) NOT NULL,
+  `version` bigint(20) DEFAULT '1',
+  `payload_version` bigint(20) DEFAULT NULL,
+  `payload` longblob,
+  `built` datetime DEFAULT NULL,
+  PRIMARY KEY (`edition_id`)
+);
@@ -331,6 +331,17 @@ CREATE TABLE `edition_section` (
   KEY `FK_edition_section_edition_id` (`edition_id`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
+DROP TABLE IF EXISTS `edition_snapshot`;
+
+CREATE TABLE `edition_snapshot` (
+  `edition_id` bigint(20) NOT NULL,
+  `version` bigint(20) DEFAULT '1',
+  `payload_version` bigint(20) DEFAULT NULL,
+  `payload` longblob,
+  `built` datetime DEFAULT NULL,
+  PRIMARY KEY (`edition_id`)
+) ENGINE=MyISAM DEFAULT CHARSET=utf8;
+
 DROP TABLE IF EXISTS `edition_template`;
 
 CREATE TABLE `edition_template` (
@@ -437,6 +448,32 @@ CREATE TABLE `index_queue` (
   PRIMARY KEY (`id`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
+DROP TABLE IF EXISTS `job`;
+
+CREATE TABLE `job` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `job_type` varchar(255) DEFAULT NULL,
+  `queue` varchar(255) DEFAULT NULL,
+  `priority` int(11) DEFAULT '4',
+  `deduplication_key` varchar(255) DEFAULT NULL,
+  `active_key` varchar(255) DEFAULT NULL,
+  `owner` varchar(255) DEFAULT NULL,
+  `payload` longtext,
+  `status` varchar(255) DEFAULT NULL,
+  `attempts` int(11) DEFAULT '0',
+  `created` datetime DEFAULT NULL,
+  `queued` datetime DEFAULT NULL,
+  `started` datetime DEFAULT NULL,
+  `finished` datetime DEFAULT NULL,
+  `next_attempt` datetime DEFAULT NULL,
+  `message` longtext,
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `UNQ_job_active_key` (`active_key`),
+  KEY `IDX_job_deduplication_key` (`deduplication_key`,`status`),
+  KEY `IDX_job_queue_status` (`queue`,`status`,`priority`),
+  KEY `IDX_job_status` (`status`,`next_attempt`)
+) ENGINE=MyISAM DEFAULT CHARSET=utf8;
+
 DROP TABLE IF EXISTS `market_value`;
 
 CREATE TABLE `market_value` (
@@ -563,7 +600,8 @@ CREATE TABLE `news_item` (
   KEY `FK_news_item_checked_out_by` (`checked_out_by`),
   KEY `FK_news_item_section_id` (`section_id`),
   KEY `FK_news_item_assignment_id` (`assignment_id`),
-  KEY `FK_news_item_language_id` (`language_id`)
+  KEY `FK_news_item_language_id` (`language_id`),
+  KEY `IDX_news_item_outlet_state` (`outlet_id`,`current_state_id`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
 DROP TABLE IF EXISTS `news_item_actor`;
@@ -577,7 +615,8 @@ CREATE TABLE `news_item_actor` (
   PRIMARY KEY (`id`),
   KEY `FK_news_item_actor_user_id` (`user_id`),
   KEY `FK_news_item_actor_news_item_id` (`news_item_id`),
-  KEY `FK_news_item_actor_role_id` (`role_id`)
+  KEY `FK_news_item_actor_role_id` (`role_id`),
+  KEY `IDX_news_item_actor_item_user_role` (`news_item_id`,`user_id`,`role_id`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
 DROP TABLE IF EXISTS `news_item_concept`;
@@ -783,6 +822,12 @@ CREATE TABLE `newswire_service` (
   `days_to_keep` int(11) DEFAULT '0',
   `copyright` TEXT DEFAULT '',
   `processing` TINYINT(1) DEFAULT '0',
+  `processing_since` datetime DEFAULT NULL,
+  `next_fetch` datetime DEFAULT NULL,
+  `fetch_interval` int(11) DEFAULT '0',
+  `last_fetch_etag` varchar(255) DEFAULT NULL,
+  `last_fetch_modified` varchar(255) DEFAULT NULL,
+  `last_fetch_checksum` varchar(255) DEFAULT NULL,
   PRIMARY KEY (`id`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
@@ -1192,10 +1237,34 @@ CREATE TABLE `workflow_step_action` (
   `action_class` varchar(255) DEFAULT NULL,
   `label` varchar(255) DEFAULT NULL,
   `workflow_step` bigint(20) DEFAULT NULL,
+  `asynchronous` tinyint(1) DEFAULT '0',
+  `execution_timeout` int(11) DEFAULT '0',
+  `max_attempts` int(11) DEFAULT '0',
   PRIMARY KEY (`id`),
   KEY `FK_workflow_step_action_workflow_step` (`workflow_step`)
 ) ENGINE=MyISAM DEFAULT CHARSET=utf8;
 
+DROP TABLE IF EXISTS `workflow_step_action_execution`;
+
+CREATE TABLE `workflow_step_action_execution` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `workflow_step_action_id` bigint(20) DEFAULT NULL,
+  `news_item_id` bigint(20) DEFAULT NULL,
+  `user_account_id` bigint(20) DEFAULT NULL,
+  `status` varchar(255) DEFAULT NULL,
+  `attempts` int(11) DEFAULT '0',
+  `owner` varchar(255) DEFAULT NULL,
+  `queued` datetime DEFAULT NULL,
+  `started` datetime DEFAULT NULL,
+  `finished` datetime DEFAULT NULL,
+  `next_attempt` datetime DEFAULT NULL,
+  `message` longtext,
+  PRIMARY KEY (`id`),
+  KEY `FK_workflow_step_action_execution_action_id` (`workflow_step_action_id`),
+  KEY `IDX_workflow_step_action_execution_news_item_id` (`news_item_id`),
+  KEY `IDX_workflow_step_action_execution_status` (`status`,`next_attempt`)
+) ENGINE=MyISAM DEFAULT CHARSET=utf8;
+
 DROP TABLE IF EXISTS `workflow_step_action_property`;
 
 CREATE TABLE `workflow_step_action_property` (